@@ -24,13 +24,38 @@ public class Ball {
     // Rep invariant: 
     //      A Ball is mutable. It's position and velocity are free to be anything,
     //           and can change. There isn't really an invariant, so no checkrep.
+    // Abstraction function:
+    //      the ball's state is handle slot.handle of slot.store: it is centered at (x, y) 
+    //      and moves at (vx, vy) L/s, both in cartesian coordinates, i.e. display coordinates 
+    //      with y negated. A ball on a board lives in the board's store; any other ball 
+    //      lives in home, a store of its own. The Vect getters and setters convert to and 
+    //      from display coordinates; the primitive ones don't allocate, so Board and the 
+    //      gadgets use them on every timestep.
+    //
+    // Thread Safety Argument:
+    //      the store and the handle are only ever published together, in one immutable 
+    //      Slot through a volatile field, so a thread reading the ball while it moves 
+    //      between stores, e.g. the GUI painting it, sees it in one store or the other 
+    //      but never the handle of one in the arrays of the other.
+    
+    private static final double RADIUS = .25;
     
     private String NAME;
-    private Vect position;
-    private Vect velocity;
-    private double radius = .25;
-
-    private boolean isImmune;
+    private final Slot home;
+    private volatile Slot slot;
+    
+    /**
+     * Immutable place of a ball's state: the store it is in and its handle there.
+     */
+    private static final class Slot {
+        private final BallStore store;
+        private final int handle;
+        
+        private Slot(BallStore store, int handle){
+            this.store = store;
+            this.handle = handle;
+        }
+    }
     
     
     /**
@@ -53,14 +78,42 @@ public class Ball {
      */
     public Ball(Vect position, Vect velocity){
         //convert out to cartesian
-        this.position = new Vect(position.x(), -position.y());
-        double speed = velocity.length();
-        speed = capSpeed(speed);
-        
-        //this.velocity = new Vect(Angle.ZERO.minus(velocity.angle()), speed);
-        this.velocity = new Vect(velocity.x(),-1*velocity.y());
-
-        this.isImmune = false;
+        BallStore homeStore = new BallStore(1);
+        this.home = new Slot(homeStore, homeStore.add(position.x(), -position.y(), velocity.x(), -1*velocity.y(), RADIUS, false));
+        this.slot = home;
+    }
+    
+    /**
+     * Moves the ball's state into another store, e.g. that of the board it's being added to,
+     * and out of the store it was in
+     * @param newStore the store to keep the ball's state in from now on
+     */
+    void moveTo(BallStore newStore){
+        Slot old = slot;
+        if (newStore == old.store){
+            return;
+        }
+        int newHandle = newStore.add(old.store.x[old.handle], old.store.y[old.handle], old.store.vx[old.handle], 
+                old.store.vy[old.handle], old.store.radius[old.handle], old.store.immune[old.handle]);
+        // the home store only ever holds this ball, so it gets back the handle it had there
+        slot = newStore == home.store && newHandle == home.handle ? home : new Slot(newStore, newHandle);
+        old.store.remove(old.handle);
+    }
+    
+    /**
+     * Moves the ball's state back into the store of its own it started in, 
+     * e.g. as it's removed from a board, and out of the store it was in
+     */
+    void moveHome(){
+        moveTo(home.store);
+    }
+    
+    /**
+     * Getter for the ball's handle in the store that holds its state
+     * @return the handle
+     */
+    int getHandle(){
+        return slot.handle;
     }
     
     
@@ -69,8 +122,8 @@ public class Ball {
      * @param board the board the ball belongs to.
      */
     public void drawBallOnBoard(Board board){
-        int ballX = (int) this.getPosition().x();
-        int ballY = (int) this.getPosition().y();
+        int ballX = (int) this.getX();
+        int ballY = (int) this.getY();
         board.getDisplayArray()[ballY][ballX] = "*";
     }
     
@@ -79,7 +132,18 @@ public class Ball {
      * @return a circle representing the ball's actual size.
      */
     public Circle getCircle(){
-        return new Circle(this.getPosition().x(), this.getPosition().y(), this.radius);
+        Slot s = slot;
+        return new Circle(this.getX(), this.getY(), s.store.radius[s.handle]);
+    }
+    
+    /**
+     * Getter for circle representation of the Ball in cartesian coordinates, 
+     * as the physics package expects it
+     * @return a circle representing the ball's actual size.
+     */
+    public Circle getCartesianCircle(){
+        Slot s = slot;
+        return new Circle(s.store.x[s.handle], s.store.y[s.handle], s.store.radius[s.handle]);
     }
     
     /**
@@ -87,7 +151,26 @@ public class Ball {
      * @return the position vector
      */
     public Vect getPosition(){
-        return new Vect(this.position.x(),-this.position.y());
+        Slot s = slot;
+        return new Vect(s.store.x[s.handle],-s.store.y[s.handle]);
+    }
+    
+    /**
+     * Getter for the x coordinate of the ball's center, the same in display and cartesian coordinates
+     * @return the x coordinate
+     */
+    public double getX(){
+        Slot s = slot;
+        return s.store.x[s.handle];
+    }
+    
+    /**
+     * Getter for the y coordinate of the ball's center (in display coordinates)
+     * @return the y coordinate
+     */
+    public double getY(){
+        Slot s = slot;
+        return -s.store.y[s.handle];
     }
     
     /**
@@ -95,7 +178,8 @@ public class Ball {
      * @return ball radius.
      */
     public double getRadius(){
-        return this.radius;
+        Slot s = slot;
+        return s.store.radius[s.handle];
     }
     
     /**
@@ -103,8 +187,46 @@ public class Ball {
      * @return the velocity vector
      */
     public Vect getVelocity(){
-        Vect displayVelocity = new Vect(this.velocity.x(),-1*this.velocity.y());
-        return displayVelocity;
+        Slot s = slot;
+        return new Vect(s.store.vx[s.handle],-1*s.store.vy[s.handle]);
+    }
+    
+    /**
+     * Getter for velocity vector in cartesian coordinates, in L/s, as the physics package expects it
+     * @return the velocity vector
+     */
+    public Vect getCartesianVelocity(){
+        Slot s = slot;
+        return new Vect(s.store.vx[s.handle], s.store.vy[s.handle]);
+    }
+    
+    /**
+     * Getter for the x component of the velocity, the same in display and cartesian coordinates, in L/s
+     * @return the x component of the velocity
+     */
+    public double getVelocityX(){
+        Slot s = slot;
+        return s.store.vx[s.handle];
+    }
+    
+    /**
+     * Getter for the y component of the velocity (in display coordinates), in L/s
+     * @return the y component of the velocity
+     */
+    public double getVelocityY(){
+        Slot s = slot;
+        return -s.store.vy[s.handle];
+    }
+    
+    /**
+     * Getter for the ball's speed, in L/s
+     * @return the length of the velocity vector
+     */
+    public double getSpeed(){
+        Slot s = slot;
+        double vx = s.store.vx[s.handle];
+        double vy = s.store.vy[s.handle];
+        return Math.sqrt(vx*vx + vy*vy);
     }
     
     /**
@@ -115,10 +237,12 @@ public class Ball {
      * @return the position vector where the ball is predicted to be, display coordinates.
      */
     public Vect predictPositionUpdate(long timestep, Vect gravity){
-        Vect newPosition = this.velocity.times((double) timestep/1000.)
-                .plus(gravity.times(.5*timestep/1000.*timestep/1000.))
-                .plus(this.position);
-        return new Vect(newPosition.x(),-newPosition.y());
+        Slot s = slot;
+        double seconds = timestep/1000.;
+        double gravityTime = .5*timestep/1000.*timestep/1000.;
+        double newX = s.store.vx[s.handle]*seconds + gravity.x()*gravityTime + s.store.x[s.handle];
+        double newY = s.store.vy[s.handle]*seconds + gravity.y()*gravityTime + s.store.y[s.handle];
+        return new Vect(newX,-newY);
     }
     
     /**
@@ -128,12 +252,15 @@ public class Ball {
      * @return the velocity vector where the ball is predicted to be going, display coordinates
      */
     public Vect predictVelocityUpdate(long timestep, Vect gravity, double friction1, double friction2) {
-        Vect newVelocityGravity = this.velocity.plus(gravity.times(timestep/1000.));
-        Vect newVelocityFriction = newVelocityGravity.times(1 - friction1 * timestep/1000. - friction2 * Math.abs(newVelocityGravity.length()) * timestep/1000.);
-        double speed = newVelocityFriction.length();
-        speed = capSpeed(speed);
-        Vect newVelocity = new Vect(Angle.ZERO.minus(newVelocityFriction.angle()), speed);
-        return newVelocity;
+        Slot s = slot;
+        double seconds = timestep/1000.;
+        double gravityVx = s.store.vx[s.handle] + gravity.x()*seconds;
+        double gravityVy = s.store.vy[s.handle] + gravity.y()*seconds;
+        double frictionScale = BallStore.frictionScale(gravityVx, gravityVy, timestep, friction1, friction2);
+        double newVx = gravityVx*frictionScale;
+        double newVy = gravityVy*frictionScale;
+        double speedScale = BallStore.speedCapScale(newVx, newVy);
+        return new Vect(newVx*speedScale, -newVy*speedScale);
     }
     
     /**
@@ -142,33 +269,53 @@ public class Ball {
      * @param gravity the gravity vector of the board the ball is in.
      */
     public void update(long timestep, Vect gravity, double friction1, double friction2) {
+        update((double) timestep, gravity, friction1, friction2);
+    }
+    
+    /**
+     * Updates the ball object to reflect a possibly fractional amount of time passing, 
+     * given no obstacles or other limitations.
+     * @param timestep amount of time in ms that has passed
+     * @param gravity the gravity vector of the board the ball is in.
+     */
+    public void update(double timestep, Vect gravity, double friction1, double friction2) {
+        Slot s = slot;
         //account for gravity and friction
-        Vect newPosition = this.velocity.times((double) timestep/1000.)
-                .plus(gravity.times(.5*timestep/1000.*timestep/1000.))
-                .plus(this.position);
-        Vect newVelocityGravity = this.velocity.plus(gravity.times(timestep/1000.));
-        Vect newVelocityFriction = newVelocityGravity.times(1 - friction1 * timestep/1000. - friction2 * Math.abs(newVelocityGravity.length()) * timestep/1000.);
-        this.position = newPosition;
-        double speed = newVelocityFriction.length();
-        speed = capSpeed(speed);
-        this.velocity = new Vect(newVelocityFriction.angle(), speed);
+        s.store.integrate(s.handle, timestep, gravity.x(), gravity.y(), friction1, friction2);
     }
     
     /**
      * Setter for position vector Takes in display coordinates.
      */
     public void setPosition(Vect newPosition){
-        this.position = new Vect(newPosition.x(), -1*newPosition.y());
+        Slot s = slot;
+        s.store.x[s.handle] = newPosition.x();
+        s.store.y[s.handle] = -1*newPosition.y();
     }
     
     /**
      * Setter for velocity vector. Takes in display coordinates.
      */
     public void setVelocity(Vect newVelocity){
-        double speed = newVelocity.length();
-        speed = capSpeed(speed);
-        Vect newLimitedVelocity = new Vect(newVelocity.angle(), speed);
-        this.velocity = new Vect(newLimitedVelocity.x(), -1*newLimitedVelocity.y());
+        setCartesianVelocity(newVelocity.x(), -1*newVelocity.y());
+    }
+    
+    /**
+     * Setter for velocity vector in cartesian coordinates, as the physics package gives it
+     * @param newVelocity the new velocity in L/s
+     */
+    public void setCartesianVelocity(Vect newVelocity){
+        setCartesianVelocity(newVelocity.x(), newVelocity.y());
+    }
+    
+    /**
+     * Setter for velocity in cartesian coordinates. The speed is capped as in capSpeed.
+     * @param newVx the x component of the new velocity in L/s
+     * @param newVy the y component of the new velocity in L/s
+     */
+    public void setCartesianVelocity(double newVx, double newVy){
+        Slot s = slot;
+        s.store.setVelocity(s.handle, newVx, newVy);
     }
     
     /**
@@ -192,8 +339,9 @@ public class Ball {
             Ball otherBall = (Ball) other;
              
             if ( ((NAME == null && otherBall.NAME == null) || (NAME!=null && otherBall.NAME!=null && NAME.equals(otherBall.NAME))) && 
-                    position.equals(otherBall.position) &&
-                    velocity.equals(otherBall.velocity) && radius == otherBall.radius) {
+                    getX() == otherBall.getX() && getY() == otherBall.getY() &&
+                    getVelocityX() == otherBall.getVelocityX() && getVelocityY() == otherBall.getVelocityY() && 
+                    getRadius() == otherBall.getRadius()) {
                 return true;
             }
         }
@@ -202,7 +350,9 @@ public class Ball {
 
     @Override
     public String toString() {
-        return "Ball " + NAME + " at position " + position + " with velocity " + velocity; 
+        Slot s = slot;
+        return "Ball " + NAME + " at position <" + s.store.x[s.handle] + "," + s.store.y[s.handle] 
+                + "> with velocity <" + s.store.vx[s.handle] + "," + s.store.vy[s.handle] + ">"; 
     }
     
     /**
@@ -227,7 +377,8 @@ public class Ball {
      * @return the immunity of the ball: true for immune, false for not
      */
     public boolean isImmune() {
-        return this.isImmune;
+        Slot s = slot;
+        return s.store.immune[s.handle];
     }
 
     /**
@@ -237,7 +388,8 @@ public class Ball {
      * @param isImmune
      */
     public void setImmunue(boolean isImmune) {
-        this.isImmune = isImmune;
+        Slot s = slot;
+        s.store.immune[s.handle] = isImmune;
     }
     
     /**
@@ -250,8 +402,9 @@ public class Ball {
      * @return the shape of this gadget at the correct location
      */
     public Shape getShape(int scale){
-        double x = position.x() * scale - scale/4.0;
-        double y = -1*(position.y() * scale) - scale/4.0;
+        Slot s = slot;
+        double x = s.store.x[s.handle] * scale - scale/4.0;
+        double y = -1*(s.store.y[s.handle] * scale) - scale/4.0;
         double width = scale/2.0;
         double height = scale/2.0;
         return new Ellipse2D.Double(x,y,width,height);
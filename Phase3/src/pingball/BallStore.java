@@ -0,0 +1,218 @@
+package pingball;
+
+import java.util.Arrays;
+
+/**
+ * A mutable store that keeps the state of many balls in parallel primitive arrays, so that
+ * moving every ball on a board is a tight loop over contiguous memory instead of a walk over
+ * scattered objects. Each ball in the store is known by an integer handle that stays the same
+ * for as long as the ball is in the store, however many other balls come and go.
+ */
+public class BallStore {
+    // Abstraction function:
+    //      for each handle h in [0, highWater) with live[h], the store holds a ball centered at
+    //      (x[h], y[h]) moving at (vx[h], vy[h]) L/s, both in cartesian coordinates, with
+    //      radius radius[h], immune to portals iff immune[h]. The handles of the other slots
+    //      below highWater are the first freeCount entries of freeHandles, to be reused.
+    // Rep invariant:
+    //      0 <= size <= highWater <= capacity, where capacity is the length of every array
+    //      size + freeCount == highWater
+    //
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // the speed no ball goes faster than, in L/s
+    static final double MAX_SPEED = 200;
+
+    double[] x;
+    double[] y;
+    double[] vx;
+    double[] vy;
+    double[] radius;
+    boolean[] immune;
+    private boolean[] live;
+    private int[] freeHandles;
+    private int freeCount = 0;
+    private int highWater = 0;
+    private int size = 0;
+
+    /**
+     * Constructor for an empty BallStore with room for a few balls; it grows as needed.
+     */
+    public BallStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for an empty BallStore
+     * @param capacity number of balls to make room for; it grows as needed. Must be positive.
+     */
+    public BallStore(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        radius = new double[capacity];
+        immune = new boolean[capacity];
+        live = new boolean[capacity];
+        freeHandles = new int[capacity];
+        checkRep();
+    }
+
+    /**
+     * Adds a ball to the store. The velocity is stored as given, without capping its speed.
+     * @param x x coordinate of the ball's center, cartesian
+     * @param y y coordinate of the ball's center, cartesian
+     * @param vx x component of the ball's velocity in L/s, cartesian
+     * @param vy y component of the ball's velocity in L/s, cartesian
+     * @param radius the ball's radius
+     * @param immune whether the ball is immune to portals
+     * @return the handle of the ball in this store
+     */
+    public int add(double x, double y, double vx, double vy, double radius, boolean immune) {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (highWater == live.length) {
+                grow();
+            }
+            handle = highWater++;
+        }
+        this.x[handle] = x;
+        this.y[handle] = y;
+        this.vx[handle] = vx;
+        this.vy[handle] = vy;
+        this.radius[handle] = radius;
+        this.immune[handle] = immune;
+        live[handle] = true;
+        size++;
+        checkRep();
+        return handle;
+    }
+
+    /**
+     * Removes a ball from the store; its handle may be given to a later ball.
+     * @param handle handle of a ball in this store
+     */
+    public void remove(int handle) {
+        if (!contains(handle)) {
+            throw new IllegalArgumentException("No ball with handle " + handle);
+        }
+        live[handle] = false;
+        freeHandles[freeCount++] = handle;
+        size--;
+        checkRep();
+    }
+
+    /**
+     * Tells whether a handle names a ball in this store
+     * @param handle the handle to check
+     * @return true if a ball in this store has that handle
+     */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < highWater && live[handle];
+    }
+
+    /**
+     * Gets the number of balls in the store
+     * @return the number of balls
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets a ball's velocity, capping its speed at 200L/s in the direction given
+     * @param handle handle of a ball in this store
+     * @param newVx x component of the new velocity in L/s, cartesian
+     * @param newVy y component of the new velocity in L/s, cartesian
+     */
+    public void setVelocity(int handle, double newVx, double newVy) {
+        double speedScale = speedCapScale(newVx, newVy);
+        vx[handle] = newVx*speedScale;
+        vy[handle] = newVy*speedScale;
+    }
+
+    /**
+     * Moves a ball along its path for a timestep, given no obstacles, accounting for gravity and friction
+     * @param handle handle of a ball in this store
+     * @param timestep amount of time in ms that has passed
+     * @param gravityX x component of the board's gravity in L/s^2, cartesian
+     * @param gravityY y component of the board's gravity in L/s^2, cartesian
+     * @param friction1 the board's friction1 parameter
+     * @param friction2 the board's friction2 parameter
+     */
+    public void integrate(int handle, double timestep, double gravityX, double gravityY,
+            double friction1, double friction2) {
+        double seconds = timestep/1000.;
+        double gravityTime = .5*timestep/1000.*timestep/1000.;
+        double ballVx = vx[handle];
+        double ballVy = vy[handle];
+        x[handle] = ballVx*seconds + gravityX*gravityTime + x[handle];
+        y[handle] = ballVy*seconds + gravityY*gravityTime + y[handle];
+        double gravityVx = ballVx + gravityX*seconds;
+        double gravityVy = ballVy + gravityY*seconds;
+        double frictionScale = frictionScale(gravityVx, gravityVy, timestep, friction1, friction2);
+        setVelocity(handle, gravityVx*frictionScale, gravityVy*frictionScale);
+    }
+
+    /**
+     * Finds what a velocity is multiplied by to account for friction over a timestep
+     * @param vx x component of the velocity in L/s
+     * @param vy y component of the velocity in L/s
+     * @param timestep amount of time in ms
+     * @param friction1 the board's friction1 parameter
+     * @param friction2 the board's friction2 parameter
+     * @return the factor the velocity is multiplied by
+     */
+    static double frictionScale(double vx, double vy, double timestep, double friction1, double friction2) {
+        double speed = Math.sqrt(vx*vx + vy*vy);
+        return 1 - friction1 * timestep/1000. - friction2 * speed * timestep/1000.;
+    }
+
+    /**
+     * Finds what a velocity has to be multiplied by to have its speed capped at MAX_SPEED
+     * @param vx x component of the velocity in L/s
+     * @param vy y component of the velocity in L/s
+     * @return 1 if the speed is under the cap, otherwise the cap over the speed
+     */
+    static double speedCapScale(double vx, double vy) {
+        double speed = Math.sqrt(vx*vx + vy*vy);
+        return speed > MAX_SPEED ? MAX_SPEED / speed : 1;
+    }
+
+    /**
+     * Moves some of the balls along their paths for a timestep, as integrate does for each one
+     * @param handles handles of balls in this store
+     * @param count number of handles at the start of handles to move
+     * @param timestep amount of time in ms that has passed
+     * @param gravityX x component of the board's gravity in L/s^2, cartesian
+     * @param gravityY y component of the board's gravity in L/s^2, cartesian
+     * @param friction1 the board's friction1 parameter
+     * @param friction2 the board's friction2 parameter
+     */
+    public void integrate(int[] handles, int count, double timestep, double gravityX, double gravityY,
+            double friction1, double friction2) {
+        for (int i = 0; i < count; i++) {
+            integrate(handles[i], timestep, gravityX, gravityY, friction1, friction2);
+        }
+    }
+
+    private void grow() {
+        int capacity = live.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        immune = Arrays.copyOf(immune, capacity);
+        live = Arrays.copyOf(live, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert 0 <= size && size <= highWater && highWater <= live.length;
+        assert size + freeCount == highWater;
+    }
+}
@@ -0,0 +1,113 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BallStoreTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: add(), remove(), contains(), size()
+     * - Partitions: empty store, adding past the initial capacity, removing a ball
+     *               and adding another, handles of the other balls after a removal,
+     *               removing a handle that isn't in the store
+     *
+     * Method: setVelocity()
+     * - Partitions: speed under the cap, speed over the cap
+     *
+     * Method: integrate()
+     * - Partitions: one ball, some of the balls; no gravity, gravity
+     */
+
+    //add(), remove(), contains(), size()
+    @Test
+    public void testEmpty() {
+        BallStore store = new BallStore();
+        assertEquals(0, store.size());
+        assertFalse(store.contains(0));
+    }
+
+    @Test
+    public void testAddPastCapacity() {
+        BallStore store = new BallStore(1);
+        int first = store.add(1, -1, 0, 0, .25, false);
+        int second = store.add(2, -2, 0, 0, .25, true);
+        assertEquals(2, store.size());
+        assertTrue(first != second);
+        assertEquals(1, store.x[first], 0);
+        assertEquals(-2, store.y[second], 0);
+        assertTrue(store.immune[second]);
+    }
+
+    @Test
+    public void testRemoveKeepsOtherHandles() {
+        BallStore store = new BallStore();
+        int first = store.add(1, -1, 0, 0, .25, false);
+        int second = store.add(2, -2, 0, 0, .25, false);
+        store.remove(first);
+        assertFalse(store.contains(first));
+        assertTrue(store.contains(second));
+        assertEquals(2, store.x[second], 0);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testRemoveThenAddReusesHandle() {
+        BallStore store = new BallStore();
+        int first = store.add(1, -1, 0, 0, .25, false);
+        store.remove(first);
+        int second = store.add(3, -3, 0, 0, .25, false);
+        assertEquals(first, second);
+        assertEquals(3, store.x[second], 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testRemoveMissing() {
+        BallStore store = new BallStore();
+        store.remove(0);
+    }
+
+    //setVelocity()
+    @Test
+    public void testSetVelocityWithinThreshold() {
+        BallStore store = new BallStore();
+        int handle = store.add(1, -1, 0, 0, .25, false);
+        store.setVelocity(handle, 3, -4);
+        assertEquals(3, store.vx[handle], 0);
+        assertEquals(-4, store.vy[handle], 0);
+    }
+
+    @Test
+    public void testSetVelocityExceedThreshold() {
+        BallStore store = new BallStore();
+        int handle = store.add(1, -1, 0, 0, .25, false);
+        store.setVelocity(handle, 300, -400);
+        assertEquals(120, store.vx[handle], 0.0000001);
+        assertEquals(-160, store.vy[handle], 0.0000001);
+    }
+
+    //integrate()
+    @Test
+    public void testIntegrateNoGravity() {
+        BallStore store = new BallStore();
+        int handle = store.add(1, -1, 2, 0, .25, false);
+        store.integrate(handle, 1000, 0, 0, 0, 0);
+        assertEquals(3, store.x[handle], 0.0000001);
+        assertEquals(-1, store.y[handle], 0.0000001);
+        assertEquals(2, store.vx[handle], 0.0000001);
+    }
+
+    @Test
+    public void testIntegrateSomeBalls() {
+        BallStore store = new BallStore();
+        int moving = store.add(1, -1, 0, 0, .25, false);
+        int held = store.add(5, -5, 0, 0, .25, false);
+        store.integrate(new int[] {moving}, 1, 1000, 0, -10, 0, 0);
+        assertEquals(-6, store.y[moving], 0.0000001);
+        assertEquals(-10, store.vy[moving], 0.0000001);
+        assertEquals(-5, store.y[held], 0);
+        assertEquals(0, store.vy[held], 0);
+    }
+}
@@ -20,6 +20,12 @@ public class BallTest {
      *              - -200 < speed < 200 
      *              - speed > 200 or speed < -200 
      * 
+     * Methods: primitive getters and setters: getX(), getY(), getVelocityX(), getVelocityY(), getSpeed(),
+     *          getCartesianCircle(), getCartesianVelocity(), setCartesianVelocity()
+     * - Partitions: agree with the Vect getters, with y negated for cartesian coordinates
+     *      - For setCartesianVelocity() 
+     *          - speed under the cap, speed over the cap
+     * 
      * Method: predictPositionUpdate()
      * - Partitions: 
      *      - timestep (sec)
@@ -106,6 +112,43 @@ public class BallTest {
         assertTrue(testBall.getVelocity().equals(new Vect(141.4213562373095, 141.4213562373095))); 
     }
     
+    //primitive getters and setters
+    @Test 
+    public void testGetXY() {
+        Ball testBall = new Ball(new Vect(1,3), new Vect(2, -4));
+        assertTrue(testBall.getX() == testBall.getPosition().x()); 
+        assertTrue(testBall.getY() == testBall.getPosition().y()); 
+        assertTrue(testBall.getVelocityX() == testBall.getVelocity().x()); 
+        assertTrue(testBall.getVelocityY() == testBall.getVelocity().y()); 
+    }
+    
+    @Test 
+    public void testGetCartesian() {
+        Ball testBall = new Ball(new Vect(1,3), new Vect(2, -4));
+        assertTrue(testBall.getCartesianCircle().equals(new Circle(1, -3, 0.25))); 
+        assertTrue(testBall.getCartesianVelocity().equals(new Vect(2, 4))); 
+    }
+    
+    @Test 
+    public void testGetSpeed() {
+        Ball testBall = new Ball(new Vect(1,1), new Vect(3, 4));
+        assertEquals(5, testBall.getSpeed(), 0.0000001); 
+    }
+    
+    @Test 
+    public void testSetCartesianVelocityWithinThreshold() {
+        Ball testBall = new Ball(new Vect(1,1), new Vect(2, 2));
+        testBall.setCartesianVelocity(4, 3); 
+        assertTrue(testBall.getVelocity().equals(new Vect(4, -3))); 
+    }
+    
+    @Test 
+    public void testSetCartesianVelocityExceedThreshold() {
+        Ball testBall = new Ball(new Vect(1,1), new Vect(2, 2));
+        testBall.setCartesianVelocity(new Vect(0, -1000)); 
+        assertTrue(testBall.getVelocity().equals(new Vect(0, 200))); 
+    }
+    
     //predictPositionUpdate() 
     @Test
     public void testPredictPositionUpdateZeroTimestep() {
@@ -163,6 +206,7 @@ public class BallTest {
         Ball testBall = new Ball(new Vect(1,1), new Vect(2, 2));
         testBall.update(0, new Vect(1,1), default_friction1, default_friction2); 
         assertTrue(testBall.getPosition().equals(new Vect(1,1))); 
+        assertTrue(testBall.getVelocity().equals(new Vect(2,2))); 
     }
     
     @Test
@@ -2,6 +2,8 @@ package pingball;
 
 import java.awt.event.KeyEvent;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import physics.*;
 import physics.Geometry.VectPair;
@@ -9,6 +11,7 @@ import pingball.Gadgets.Absorber;
 import pingball.Gadgets.CircleBumper;
 import pingball.Gadgets.Flipper;
 import pingball.Gadgets.Gadget;
+import pingball.Gadgets.GadgetCollision;
 import pingball.Gadgets.Portal;
 import pingball.Gadgets.SquareBumper;
 import pingball.Gadgets.TriangleBumper;
@@ -29,6 +32,10 @@ public class Board {
     //      Board cannot have a playing area larger than 20L x 20L. 
     //      All balls, gadgets, must stay within Board area, must not 
     //      overlap on placement.
+    //      occupancy[y][x] is one more than the index of the gadget covering the
+    //      cell [x, x+1) x [y, y+1) in display coordinates, or 0 if no gadget does.
+    //      absorbers, flippers, portalMap and portalsByDestinationBoard hold exactly the 
+    //      absorbers, flippers and portals among the first indexedGadgets gadgets, in order.
     //
     
     
@@ -39,7 +46,25 @@ public class Board {
     private final List<Circle> boardCorners = Collections.unmodifiableList(new ArrayList<Circle>(
             Arrays.asList(new Circle(0,0,0), new Circle(0,-20,0), new Circle(20,-20,0), new Circle(20,0,0))));
     private List<Ball> balls = new ArrayList<Ball>();
+    private final List<Ball> ballsView = Collections.unmodifiableList(balls);
+    // the state of every ball on the board, in parallel arrays
+    private final BallStore ballStore = new BallStore();
     private List<Gadget> gadgets = new ArrayList<Gadget>(); 
+    // broad-phase index of gadgets by the 1L cells they cover
+    private final GadgetGrid gadgetGrid = new GadgetGrid(width, height);
+    // foresight, tolerances and scratch space for working out times of impact, kept by the 
+    // board rather than globally so that boards can be updated on different threads at once
+    private final PhysicsContext context = new PhysicsContext();
+    // which gadget covers each 1L cell, used to reject overlapping gadgets as they are placed
+    private final int[][] occupancy = new int[height][width];
+    private int placedGadgets = 0;
+    // the gadgets of each kind that update() and the portal messages act on, so that they 
+    // don't scan every gadget; balls are allowed to overlap around absorbers and flippers
+    private final List<Gadget> absorbers = new ArrayList<Gadget>();
+    private final List<Flipper> flippers = new ArrayList<Flipper>();
+    private final Map<String, List<Portal>> portalsByDestinationBoard = new HashMap<String, List<Portal>>();
+    // number of gadgets, from the start of the list, the typed indexes were built from
+    private int indexedGadgets = 0;
     private String[][] displayArray = new String[20][20];
     
     // board configuration values to be used
@@ -54,6 +79,68 @@ public class Board {
     private static final double DEFAULT_FRICTION1 = .025;
     private static final double DEFAULT_FRICTION2 = .025;
     
+    // how much of the rep invariant is checked after each update
+    private RepCheckMode repCheckMode = RepCheckMode.getDefault();
+    // number of updates since the whole rep invariant was last checked in SAMPLED mode
+    private int updatesSinceFullCheck = 0;
+    // number of updates between checks of the whole rep invariant in SAMPLED mode
+    private static final int SAMPLE_INTERVAL = 64;
+    
+    // whether update() jumps from one predicted collision to the next instead of making fixed passes
+    private boolean eventDriven = false;
+    // times the phases of update(), if a profile is set
+    private TickProfile.Laps laps = TickProfile.Laps.OFF;
+    // longest time in seconds a straight-line prediction is trusted while gravity or friction bend it
+    private static final double MAX_PREDICTION_TIME = .01;
+    // most collisions a ball may have at a single instant before it is treated as wedged and brought to rest
+    private static final int MAX_PINCHED_COLLISIONS = 8;
+    // most collisions resolved in one event-driven update, as a last guard against stalling
+    private static final int MAX_EVENTS_PER_UPDATE = 100000;
+    
+    // event-driven state, only meaningful during an event-driven update; per-ball arrays are by index in balls,
+    // kept from one update to the next and only made again when there are more balls than they hold
+    private final PriorityQueue<CollisionEvent> events = new PriorityQueue<CollisionEvent>();
+    private double eventTime;
+    private double eventEndTime;
+    private int[] predictionVersions = new int[0];
+    private Object[] lastPartners = new Object[0];
+    private double[] lastCollisionTimes = new double[0];
+    private int[] pinchedCollisions = new int[0];
+    private boolean[] heldBalls = new boolean[0];
+    private boolean[] leavingBalls = new boolean[0];
+    private boolean[] ballsHitGadgets = new boolean[0];
+    private int[] movingBalls = new int[0];
+    
+    // fixed-pass state. The balls share sharedTime, so a collision of one ball shortens the 
+    // moves of the balls after it; only when no ball can collide are they split into islands, 
+    // each ball keeping a clock of its own in ballTimes. Per-ball arrays are by index in balls.
+    private ForkJoinPool islandPool = null;
+    private boolean sharedClock = true;
+    private long sharedTime;
+    private final List<Island> islands = new ArrayList<Island>();
+    // every island made so far, the first of them in islands, kept to be used again
+    private final List<Island> spareIslands = new ArrayList<Island>();
+    // the messages of each island, and how far into each they have been merged
+    private final List<LeavingMessages<GoodbyePortalBall>> islandPortalMessages = new ArrayList<LeavingMessages<GoodbyePortalBall>>();
+    private final List<LeavingMessages<GoodbyeWallBall>> islandWallMessages = new ArrayList<LeavingMessages<GoodbyeWallBall>>();
+    private int[] mergedMessages = new int[1];
+    private int[] islandOfBall = new int[0];
+    private long[] ballTimes = new long[0];
+    private boolean[] ballsLeaving = new boolean[0];
+    // indices of the balls by the left end of their box when islands were last found, and by 
+    // the left end of their sweep along x when they last bounced off each other, kept from one 
+    // update to the next so that sorting them again is nearly linear; reset when marked stale
+    private int[] islandOrder = new int[0];
+    private int[] sweepOrder = new int[0];
+    private boolean ballOrdersStale = true;
+    // the ends along x of each ball's box or sweep, whichever is being sorted
+    private double[] ballLow = new double[0];
+    private double[] ballHigh = new double[0];
+    // contexts of the pool threads islands are updated on
+    private static final ThreadLocal<PhysicsContext> WORKER_CONTEXTS = ThreadLocal.withInitial(PhysicsContext::new);
+    // most islands a single task of the pool updates
+    private static final int ISLANDS_PER_TASK = 8;
+    
     private List<GoodbyePortalBall> goodbyePortalBallMessages = new ArrayList<GoodbyePortalBall>(); 
     private List<GoodbyeWallBall> goodbyeWallBallMessages = new ArrayList<GoodbyeWallBall>(); 
     
@@ -125,6 +212,7 @@ public class Board {
      */
     public Board(double gravity, double friction1, double friction2) {
         this.gravity = new Vect(0, -gravity);
+        context.setGravity(this.gravity);
         
         // fill empty displayArray with spaces
         for(int i = 0; i < this.displayArray.length; i++){
@@ -174,8 +262,50 @@ public class Board {
      * @param newBall ball to be added
      */
     public void addBall(Ball newBall){
+        newBall.moveTo(ballStore);
         balls.add(newBall);
-        checkRep();
+        ballOrdersStale = true;
+        keepBallsOnBoard();
+        if (repCheckMode == RepCheckMode.FULL) {
+            checkRep();
+        } else if (repCheckMode == RepCheckMode.SAMPLED) {
+            checkBallBounds(newBall);
+            checkBallOverlaps(newBall);
+        }
+    }
+    
+    /**Mutator
+     * Adds a ball coming in from another board through one of this board's walls, just inside that wall
+     * @param ball the ball coming in; its position along the wall and its velocity are kept
+     * @param wall the wall of this board the ball comes in through
+     */
+    public void addBallThroughWall(Ball ball, WallType wall){
+        if (wall.equals(WallType.TOP)){
+            ball.setPosition(new Vect(ball.getX(),0.25005));
+        }
+        else if (wall.equals(WallType.BOTTOM)){
+            ball.setPosition(new Vect(ball.getX(),19.7495));
+        }
+        else if (wall.equals(WallType.LEFT)){
+            ball.setPosition(new Vect(0.25005,ball.getY()));
+        }
+        else {
+            ball.setPosition(new Vect(19.7495,ball.getY()));
+        }
+        addBall(ball);
+    }
+    
+    /**Mutator
+     * Adds a ball coming in from another board through one of this board's portals. The ball is
+     * made immune so that it doesn't go straight back through the portal.
+     * @param ball the ball coming in; its velocity is kept
+     * @param portalName name of the portal on this board the ball comes out of; it must exist
+     */
+    public void addBallThroughPortal(Ball ball, String portalName){
+        ball.setImmunue(true); 
+        Portal portal = getPortalByName(portalName);
+        ball.setPosition(new Vect(portal.getX(), portal.getY()));
+        addBall(ball);
     }
     
     /**Mutator
@@ -183,12 +313,113 @@ public class Board {
      * @param newGadget gadget to be added
      */
     public void addGadget(Gadget newGadget){
+        placeGadget(newGadget, gadgets.size());
         gadgets.add(newGadget);
-        if (newGadget.isPortal()) {
-            Portal newPortal = (Portal) newGadget;
-            portalMap.put(newPortal.getName(), newPortal);
+        gadgetGrid.add(newGadget, gadgets.size() - 1);
+        indexGadgets();
+        keepBallsOnBoard();
+        if (repCheckMode == RepCheckMode.FULL) {
+            checkRep();
+        }
+    }
+    
+    /**
+     * Brings the typed indexes of absorbers, flippers and portals up to date with the list of 
+     * gadgets: gadgets added since are indexed, and if the list was changed any other way 
+     * through getGadgets(), the indexes are built again
+     */
+    private void indexGadgets(){
+        if (indexedGadgets == gadgets.size()){
+            return;
+        }
+        if (indexedGadgets > gadgets.size()){
+            absorbers.clear();
+            flippers.clear();
+            portalMap.clear();
+            portalsByDestinationBoard.clear();
+            indexedGadgets = 0;
+        }
+        for (; indexedGadgets < gadgets.size(); indexedGadgets++){
+            Gadget gadget = gadgets.get(indexedGadgets);
+            if (gadget.isAbsorber()){
+                absorbers.add(gadget);
+            }
+            if (gadget.isFlipper()){
+                flippers.add((Flipper) gadget);
+            }
+            if (gadget.isPortal()){
+                Portal portal = (Portal) gadget;
+                portalMap.put(portal.getName(), portal);
+                portalsByDestinationBoard.computeIfAbsent(portal.getDestinationBoard(), 
+                        board -> new ArrayList<Portal>()).add(portal);
+            }
         }
-        checkRep();
+    }
+    
+    /**
+     * Marks the cells a new gadget covers as occupied, after checking that it is on the board
+     * and doesn't overlap any gadget already placed
+     * @param newGadget the gadget being added
+     * @param index the index the gadget will have in the board's list of gadgets
+     * @throws IndexOutOfBoundsException if the gadget is off the board or overlaps another gadget
+     */
+    private void placeGadget(Gadget newGadget, int index) throws IndexOutOfBoundsException{
+        if(newGadget.getX() < 0 || (newGadget.getX() + newGadget.getWidth()) > this.width
+                || newGadget.getY() < 0 || (newGadget.getY() + newGadget.getHeight()) > this.height){
+            throw new IndexOutOfBoundsException("A gadget (" + index + ") is out of bounds.");
+        }
+        int minX = (int) Math.floor(newGadget.getX());
+        int minY = (int) Math.floor(newGadget.getY());
+        int maxX = (int) Math.ceil(newGadget.getX() + newGadget.getWidth());
+        int maxY = (int) Math.ceil(newGadget.getY() + newGadget.getHeight());
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                if (occupancy[y][x] != 0) {
+                    Gadget other = gadgets.get(occupancy[y][x] - 1);
+                    throw new IndexOutOfBoundsException("Gadgets overlapping. "
+                            + "(" + index + ", " + (occupancy[y][x] - 1) + ")"
+                            + newGadget.getX() + " " + newGadget.getY() + " " + other.getX() + " " + other.getY());
+                }
+            }
+        }
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                occupancy[y][x] = index + 1;
+            }
+        }
+        placedGadgets = index + 1;
+    }
+    
+    /**
+     * Marks the cells covered by every gadget again from scratch, for after gadgets were removed
+     * and the others' indexes changed
+     * @throws IndexOutOfBoundsException if a gadget is off the board or overlaps another gadget
+     */
+    private void placeGadgets() throws IndexOutOfBoundsException{
+        for (int[] row : occupancy) {
+            Arrays.fill(row, 0);
+        }
+        placedGadgets = 0;
+        for (int k = 0; k < gadgets.size(); k++) {
+            placeGadget(gadgets.get(k), k);
+        }
+    }
+    
+    /**
+     * Sets how much of the rep invariant is checked after each update
+     * @param mode the mode to check in
+     */
+    public void setRepCheckMode(RepCheckMode mode){
+        repCheckMode = mode;
+        updatesSinceFullCheck = 0;
+    }
+    
+    /**
+     * Gets how much of the rep invariant is checked after each update
+     * @return the board's mode
+     */
+    public RepCheckMode getRepCheckMode(){
+        return repCheckMode;
     }
     
     /**
@@ -233,59 +464,107 @@ public class Board {
      * Check rep invariant is being preserved.
      */
     private void checkRep() throws IndexOutOfBoundsException{
-        // get all the absorbers and make a list of them.
-        List<Absorber> absorbers = new ArrayList<Absorber>();
-        for(Gadget absorbCheck : gadgets){
-            if(absorbCheck.isAbsorber()){
-                absorbers.add((Absorber) absorbCheck);
-            }
-        }
-        balls:
+        indexGadgets();
         for(Ball i : balls){
-            if (i.getPosition().x() >=this.width){
-                i.setPosition(new Vect(this.width-.25,i.getPosition().y()));
-            }
-            if(i.getPosition().x() < 0 || i.getPosition().x() > this.width
-                    || i.getPosition().y() < 0 || i.getPosition().y() > this.height){
-                throw new IndexOutOfBoundsException("A ball (" + i.getPosition() + ") is out of bounds.");
-            }
-            // check ball-gadget collisions, if absorber, continue to next iteration, because absorbers are black magic.
-            for(Gadget inGadget : gadgets){
-                if(inGadget.isAbsorber() || inGadget.isFlipper()){ 
-                    continue balls;
+            checkBallBounds(i);
+            checkBallOverlaps(i);
+        }
+        if (placedGadgets != gadgets.size()){
+            // the gadget list was changed through getGadgets(), so its gadgets are placed again
+            placeGadgets();
+        }
+        // gadgets were checked as they were placed, so it's enough that each still covers its cells
+        int occupied = 0;
+        for(int k = 0; k < gadgets.size(); k++){
+            Gadget gadget = gadgets.get(k);
+            int minX = (int) Math.floor(gadget.getX());
+            int minY = (int) Math.floor(gadget.getY());
+            int maxX = (int) Math.ceil(gadget.getX() + gadget.getWidth());
+            int maxY = (int) Math.ceil(gadget.getY() + gadget.getHeight());
+            for (int y = minY; y < maxY; y++) {
+                for (int x = minX; x < maxX; x++) {
+                    if (occupancy[y][x] != k + 1) {
+                        throw new IndexOutOfBoundsException("A gadget (" + k + ") moved since it was placed.");
+                    }
+                    occupied++;
                 }
             }
-            for(Ball j: balls){
-                if (Math.sqrt((i.getPosition().x() - j.getPosition().x())*(i.getPosition().x() - j.getPosition().x()) + 
-                       (i.getPosition().y() - j.getPosition().y())*(i.getPosition().y() - j.getPosition().y())) < i.getRadius() + j.getRadius()
-                       && (!i.equals(j))){
-                    throw new IndexOutOfBoundsException("Balls overlapping." + j + i);
+        }
+        for (int[] row : occupancy) {
+            for (int cell : row) {
+                if (cell != 0) {
+                    occupied--;
                 }
             }
         }
-        //check only gadget-gadget collisions
-        for(Gadget k : gadgets){
-            if(k.getX() < 0 || (k.getX() + k.getWidth()) > this.width
-                    || k.getY() < 0 || (k.getY() + k.getHeight()) > this.height){
-                throw new IndexOutOfBoundsException("A gadget (" + gadgets.indexOf(k) + ") is out of bounds.");
-            }
-            for(Gadget l : gadgets){
-                double deltaXkl = k.getX() - l.getX();
-                double deltaXlk = l.getX() - k.getX();
-                double deltaYkl = k.getY() - l.getY();
-                double deltaYlk = l.getY() - k.getY();
-                if(
-                        ((deltaXkl < l.getWidth() && deltaXkl > 0)
-                                || (deltaXlk < k.getWidth()  && deltaXlk > 0))
-                        && ((deltaYkl < l.getHeight() && deltaYkl > 0)
-                                || (deltaYlk < k.getHeight() && deltaYlk > 0))
-                        && !(k.equals(l))
-                        ){
-                    throw new IndexOutOfBoundsException("Gadgets overlapping. "
-                            + "(" + gadgets.indexOf(k) + ", "+ gadgets.indexOf(l) + ")"
-                                    + k.getX() + " " + k.getY() + " " + l.getX() + " " + l.getY());
+        assert occupied == 0;
+    }
+    
+    /**
+     * Checks as much of the rep invariant as the board's RepCheckMode asks for at the end of an update
+     */
+    private void checkRepAfterUpdate() throws IndexOutOfBoundsException{
+        keepBallsOnBoard();
+        switch (repCheckMode) {
+        case FULL:
+            checkRep();
+            break;
+        case SAMPLED:
+            if (++updatesSinceFullCheck >= SAMPLE_INTERVAL) {
+                updatesSinceFullCheck = 0;
+                checkRep();
+            } else {
+                for (Ball ball : balls) {
+                    checkBallBounds(ball);
                 }
             }
+            break;
+        default:
+            break;
+        }
+    }
+    
+    /**
+     * Moves any ball that has reached the right wall back to just inside it
+     */
+    private void keepBallsOnBoard(){
+        for(Ball ball : balls){
+            if (ball.getX() >= this.width){
+                ball.setPosition(new Vect(this.width-.25,ball.getY()));
+            }
+        }
+    }
+    
+    /**
+     * Checks that a ball is on the board
+     * @param ball a ball on the board
+     * @throws IndexOutOfBoundsException if the ball is out of bounds
+     */
+    private void checkBallBounds(Ball ball) throws IndexOutOfBoundsException{
+        double x = ball.getX();
+        double y = ball.getY();
+        if(x < 0 || x > this.width || y < 0 || y > this.height){
+            throw new IndexOutOfBoundsException("A ball (" + ball.getPosition() + ") is out of bounds.");
+        }
+    }
+    
+    /**
+     * Checks that a ball doesn't overlap any other ball on the board, unless the board has an
+     * absorber or flipper, which balls are allowed to pile up around
+     * @param ball a ball on the board
+     * @throws IndexOutOfBoundsException if the ball overlaps another
+     */
+    private void checkBallOverlaps(Ball ball) throws IndexOutOfBoundsException{
+        if (!absorbers.isEmpty() || !flippers.isEmpty()) {
+            return;
+        }
+        for(Ball other : balls){
+            double dx = ball.getX() - other.getX();
+            double dy = ball.getY() - other.getY();
+            double minDistance = ball.getRadius() + other.getRadius();
+            if (dx*dx + dy*dy < minDistance*minDistance && !other.equals(ball)){
+                throw new IndexOutOfBoundsException("Balls overlapping." + other + ball);
+            }
         }
     }
     
@@ -348,10 +627,11 @@ public class Board {
     
     /**
      * Returns a list of references to all the balls on the board, as Balls.
-     * @return a List of references to all the Balls on this board
+     * @return an unmodifiable List of references to all the Balls on this board; use addBall 
+     *         and removeBall to change it
      */
     public List<Ball> getBalls(){
-        return balls;
+        return ballsView;
     }
     
     /**
@@ -399,7 +679,11 @@ public class Board {
      * @param ball the ball you wish to remove.
      */
     public void removeBall(Ball ball){
-        balls.remove(ball);
+        if (balls.remove(ball)){
+            ballOrdersStale = true;
+            // the ball may still be read, e.g. by the message sending it to another board
+            ball.moveHome();
+        }
     }
     
     /**Mutator
@@ -407,7 +691,13 @@ public class Board {
      * @param gadget the gadget you wish to remove.
      */
     public void removeGadget(Gadget gadget){
-        gadgets.remove(gadget);
+        if (!gadgets.remove(gadget)){
+            return;
+        }
+        // the gadgets after it moved down an index, so their cells are marked again
+        placeGadgets();
+        gadgetGrid.rebuild(gadgets);
+        indexGadgets();
     }
     
     /**
@@ -415,65 +705,384 @@ public class Board {
      * @param timestep the length of the desired timestep
      */
     public void update(long timestep){
-        //check collisions for each ball
-        long timeRemaining = timestep;
-        ballCheck:
-        for(Ball currentBall : this.balls){
-            //first: if the ball is in any way in an absorber, ignore everything happening to it.
-            //Because absorbers are black magic.
-            for(Gadget checkAbsorber : gadgets){
-                if(checkAbsorber.isAbsorber() && checkAbsorber.getX() <= currentBall.getPosition().x()-currentBall.getRadius()
-                        && currentBall.getPosition().x()+currentBall.getRadius() <= checkAbsorber.getX()+checkAbsorber.getWidth()
-                        && checkAbsorber.getY() <= currentBall.getPosition().y()-currentBall.getRadius()
-                        && currentBall.getPosition().y()+currentBall.getRadius() <= checkAbsorber.getY()+checkAbsorber.getHeight()){
-                    //currentBall.update(timeRemaining, gravity, friction1, friction2); no gravity for balls in an absorber!
-                    continue ballCheck;
-                }
-            }
-            //check corner collisions
-            timeRemaining = updateCornerCollisions(currentBall, timeRemaining);
-            
-            //check board-wall collisions
-            timeRemaining = updateWallCollisions(currentBall, timeRemaining);
-            
-            // check ball-ball collisions
-            timeRemaining = updateBallBallCollisions(currentBall, timeRemaining);
-
-            // check ball-gadget collisions
-            timeRemaining = updateBallGadgetCollisions(currentBall, timeRemaining);
+        indexGadgets();
+        if (eventDriven){
+            updateEventDriven(timestep);
+            return;
         }
+        laps.start();
+        findIslands(timestep);
+        laps.lap(TickProfile.Phase.ISLANDS);
+        //check collisions for each ball with the corners, walls and gadgets
+        updateIslands(true);
+        laps.skip();
+        collectIslandMessages();
+        // check ball-ball collisions, once for each pair of balls that might meet, then 
+        // gadgets and walls again, and move the balls
+        sortSweepOrder();
+        laps.lap(TickProfile.Phase.BALL_BALL);
+        updateIslands(false);
+        laps.skip();
+        collectIslandMessages();
+        for (Flipper flipper : flippers){
+            flipper.updateFlipper(sharedClock ? sharedTime : timestep);
+        }
+        laps.lap(TickProfile.Phase.GADGETS);
         for ( GoodbyePortalBall message : goodbyePortalBallMessages){
-        this.removeBall(message.getBall());
+            this.removeBall(message.getBall());   
         }
         for ( GoodbyeWallBall message : goodbyeWallBallMessages){
         this.removeBall(message.getBall());
         }
-        for(Ball currentBall : this.balls){
-            // check ball-gadget collisions
-            timeRemaining = updateBallGadgetCollisions(currentBall, timeRemaining);
-
-            // check ball-wall collisions
-            timeRemaining = updateWallCollisions(currentBall, timeRemaining);
-            
-            // check ball-ball collisions
-            timeRemaining = updateBallBallCollisions(currentBall, timeRemaining);
-            
-            // do the gravity thing (and friction??)
-            currentBall.update(timeRemaining, gravity, friction1, friction2);
-
+        laps.finish();
+        checkRepAfterUpdate();
+    }
+    
+    /**
+     * Checks whether a ball is entirely inside an absorber
+     * @param ball the ball to check
+     * @return true if the ball is held by an absorber
+     */
+    private boolean isInAbsorber(Ball ball){
+        for(Gadget checkAbsorber : absorbers){
+            if(checkAbsorber.getX() <= ball.getX()-ball.getRadius()
+                    && ball.getX()+ball.getRadius() <= checkAbsorber.getX()+checkAbsorber.getWidth()
+                    && checkAbsorber.getY() <= ball.getY()-ball.getRadius()
+                    && ball.getY()+ball.getRadius() <= checkAbsorber.getY()+checkAbsorber.getHeight()){
+                return true;
+            }
         }
-        for (Gadget gadget: gadgets){
-            if (gadget.isFlipper()){
-                ((Flipper) gadget).updateFlipper(timeRemaining);
+        return false;
+    }
+    
+    /**
+     * Updates the board by timestep, jumping straight from each predicted collision to the next 
+     * instead of making fixed passes over the balls. After a collision only the predictions of 
+     * the balls involved are made again, so a quiet board costs a handful of events however long 
+     * the timestep is, and collisions aren't rounded to whole milliseconds.
+     * @param timestep the length of the desired timestep in ms
+     */
+    private void updateEventDriven(long timestep){
+        int ballCount = balls.size();
+        events.clear();
+        eventTime = 0;
+        eventEndTime = timestep / 1000.;
+        resetBallArrays(ballCount);
+        for (int i = 0; i < ballCount; i++){
+            predictCollisions(i);
+        }
+        int eventsHandled = 0;
+        while (!events.isEmpty() && eventsHandled < MAX_EVENTS_PER_UPDATE){
+            CollisionEvent event = events.poll();
+            if (!event.isValid(predictionVersions)){
+                continue;
             }
+            advanceBalls(event.getTime() - eventTime);
+            eventTime = event.getTime();
+            handleEvent(event);
+            eventsHandled++;
         }
-        for ( GoodbyePortalBall message : goodbyePortalBallMessages){
+        if (events.isEmpty()){
+            advanceBalls(eventEndTime - eventTime);
+        }
+        // otherwise the event limit was hit, and the balls stay where they are rather than 
+        // moving on without collisions
+        events.clear();
+        for (int i = 0; i < ballCount; i++){
+            if (!ballsHitGadgets[i] && balls.get(i).isImmune()){
+                balls.get(i).setImmunue(false);
+            }
+        }
+        // don't hold on to what the balls last hit until the next update
+        Arrays.fill(lastPartners, 0, ballCount, null);
+        for (Flipper flipper : flippers){
+            flipper.updateFlipper(timestep);
+        }
+        for (GoodbyePortalBall message : goodbyePortalBallMessages){
             this.removeBall(message.getBall());   
         }
-        for ( GoodbyeWallBall message : goodbyeWallBallMessages){
-        this.removeBall(message.getBall());
+        for (GoodbyeWallBall message : goodbyeWallBallMessages){
+            this.removeBall(message.getBall());
         }
-        checkRep();
+        checkRepAfterUpdate();
+    }
+    
+    /**
+     * Readies the per-ball arrays of an event-driven update for ballCount balls, with nothing 
+     * predicted, held, leaving or hit yet. The arrays are only made again if they are too short.
+     * @param ballCount the number of balls on the board
+     */
+    private void resetBallArrays(int ballCount){
+        if (predictionVersions.length < ballCount){
+            predictionVersions = new int[ballCount];
+            lastPartners = new Object[ballCount];
+            lastCollisionTimes = new double[ballCount];
+            pinchedCollisions = new int[ballCount];
+            heldBalls = new boolean[ballCount];
+            leavingBalls = new boolean[ballCount];
+            ballsHitGadgets = new boolean[ballCount];
+            movingBalls = new int[ballCount];
+            return;
+        }
+        Arrays.fill(predictionVersions, 0, ballCount, 0);
+        Arrays.fill(lastPartners, 0, ballCount, null);
+        Arrays.fill(lastCollisionTimes, 0, ballCount, 0);
+        Arrays.fill(pinchedCollisions, 0, ballCount, 0);
+        Arrays.fill(heldBalls, 0, ballCount, false);
+        Arrays.fill(leavingBalls, 0, ballCount, false);
+        Arrays.fill(ballsHitGadgets, 0, ballCount, false);
+        // movingBalls is filled afresh before each use
+    }
+    
+    /**
+     * Moves every free ball along its path, with gravity and friction
+     * @param time the time in seconds to move the balls by
+     */
+    private void advanceBalls(double time){
+        if (time <= 0){
+            return;
+        }
+        int movingCount = 0;
+        for (int i = 0; i < balls.size(); i++){
+            if (!heldBalls[i] && !leavingBalls[i]){
+                movingBalls[movingCount++] = balls.get(i).getHandle();
+            }
+        }
+        ballStore.integrate(movingBalls, movingCount, time * 1000., gravity.x(), gravity.y(), friction1, friction2);
+    }
+    
+    /**
+     * Queues the soonest collisions of a ball with each wall, corner, ball and nearby gadget,
+     * treating its velocity as constant. While gravity or friction act on the ball, predictions
+     * only reach MAX_PREDICTION_TIME ahead, and a REFRESH event makes them again after that.
+     * @param i index of the ball in balls
+     */
+    private void predictCollisions(int i){
+        Ball ball = balls.get(i);
+        heldBalls[i] = isInAbsorber(ball);
+        if (heldBalls[i] || leavingBalls[i]){
+            return;
+        }
+        double horizon = eventEndTime - eventTime;
+        boolean refresh = false;
+        if ((gravity.length() > 0 || friction1 != 0 || friction2 != 0) && horizon > MAX_PREDICTION_TIME){
+            horizon = MAX_PREDICTION_TIME;
+            refresh = true;
+        }
+        Circle circle = ball.getCartesianCircle();
+        Vect velocity = ball.getCartesianVelocity();
+        WallType[] wallTypes = WallType.values();
+        for (int w = 0; w < wallTypes.length; w++){
+            Wall wall = walls.get(wallTypes[w]);
+            double time = context.timeUntilWallCollision(wall.getShape(), circle, velocity);
+            queueEvent(i, CollisionEvent.Kind.WALL, w, wall, time, horizon);
+        }
+        for (int c = 0; c < boardCorners.size(); c++){
+            Circle corner = boardCorners.get(c);
+            double time = context.timeUntilCircleCollision(corner, circle, velocity);
+            queueEvent(i, CollisionEvent.Kind.CORNER, c, corner, time, horizon);
+        }
+        for (int j = 0; j < balls.size(); j++){
+            Ball otherBall = balls.get(j);
+            if (j == i || heldBalls[j] || leavingBalls[j]){
+                continue;
+            }
+            Circle otherCircle = otherBall.getCartesianCircle();
+            double time = context.timeUntilBallBallCollision(circle, velocity, otherCircle, 
+                    otherBall.getCartesianVelocity());
+            queueEvent(i, CollisionEvent.Kind.BALL, j, otherBall, time, horizon);
+        }
+        findGadgetCandidates(context, ball, (long) Math.ceil(horizon * 1000));
+        for (int g = context.getGadgetCandidates().nextSetBit(0); g >= 0; g = context.getGadgetCandidates().nextSetBit(g + 1)){
+            Gadget gadget = gadgets.get(g);
+            queueEvent(i, CollisionEvent.Kind.GADGET, g, gadget, gadget.timeUntilBallCollision(context, ball), horizon);
+        }
+        if (refresh){
+            events.add(new CollisionEvent(eventTime + horizon, CollisionEvent.Kind.REFRESH, i, -1, 
+                    predictionVersions[i], 0));
+        }
+    }
+    
+    /**
+     * Queues a predicted collision of a ball if it happens within the horizon. A ball that 
+     * has just bounced off something may still touch it, so touching it again straight away
+     * is not a new collision.
+     * @param i index of the ball in balls
+     * @param kind the kind of thing the ball collides with
+     * @param target index of the thing the ball collides with
+     * @param partner the thing the ball collides with
+     * @param time time in seconds until the collision
+     * @param horizon how far ahead in seconds the prediction is trusted
+     */
+    private void queueEvent(int i, CollisionEvent.Kind kind, int target, Object partner, double time, double horizon){
+        if (time > horizon){
+            return;
+        }
+        if (time <= context.getContactTolerance() && lastPartners[i] == partner 
+                && eventTime - lastCollisionTimes[i] <= context.getContactTolerance()){
+            return;
+        }
+        int targetVersion = kind == CollisionEvent.Kind.BALL ? predictionVersions[target] : 0;
+        events.add(new CollisionEvent(eventTime + time, kind, i, target, predictionVersions[i], targetVersion));
+    }
+    
+    /**
+     * Makes the predictions of a ball again, dropping the ones already queued
+     * @param i index of the ball in balls
+     */
+    private void repredictCollisions(int i){
+        predictionVersions[i]++;
+        predictCollisions(i);
+    }
+    
+    /**
+     * Remembers that a ball just collided with something and makes its predictions again
+     * @param i index of the ball in balls
+     * @param partner the thing the ball collided with
+     */
+    private void recordCollision(int i, Object partner){
+        if (lastPartners[i] != null && eventTime - lastCollisionTimes[i] <= context.getContactTolerance()){
+            pinchedCollisions[i]++;
+        } else {
+            pinchedCollisions[i] = 0;
+        }
+        if (pinchedCollisions[i] >= MAX_PINCHED_COLLISIONS){
+            // wedged between things it touches at once, e.g. in the corner of a triangle bumper,
+            // so it can only bounce between them without moving
+            balls.get(i).setVelocity(new Vect(0, 0));
+            pinchedCollisions[i] = 0;
+        }
+        lastPartners[i] = partner;
+        lastCollisionTimes[i] = eventTime;
+        repredictCollisions(i);
+    }
+    
+    /**
+     * Resolves a predicted collision that is now due. If gravity or friction have bent the ball's
+     * path so that it no longer touches its target, its predictions are just made again.
+     * @param event the collision to resolve
+     */
+    private void handleEvent(CollisionEvent event){
+        int i = event.getBall();
+        Ball ball = balls.get(i);
+        Circle circle = ball.getCartesianCircle();
+        Vect velocity = ball.getCartesianVelocity();
+        switch (event.getKind()){
+        case WALL: {
+            Wall wallObject = walls.get(WallType.values()[event.getTarget()]);
+            LineSegment wall = wallObject.getShape();
+            if (context.timeUntilWallCollision(wall, circle, velocity) > context.getContactTolerance()){
+                repredictCollisions(i);
+                return;
+            }
+            if (wallObject.isTransparent()){
+                goodbyeWallBallMessages.add(new GoodbyeWallBall(this.getName(), wallObject.getType(), ball));
+                leavingBalls[i] = true;
+            } else {
+                ball.setCartesianVelocity(Geometry.reflectWall(wall, velocity));
+            }
+            recordCollision(i, wallObject);
+            return;
+        }
+        case CORNER: {
+            Circle corner = boardCorners.get(event.getTarget());
+            if (context.timeUntilCircleCollision(corner, circle, velocity) > context.getContactTolerance()){
+                repredictCollisions(i);
+                return;
+            }
+            ball.setCartesianVelocity(Geometry.reflectCircle(corner.getCenter(), circle.getCenter(), velocity));
+            recordCollision(i, corner);
+            return;
+        }
+        case BALL: {
+            int j = event.getTarget();
+            Ball otherBall = balls.get(j);
+            Circle otherCircle = otherBall.getCartesianCircle();
+            Vect otherVelocity = otherBall.getCartesianVelocity();
+            if (context.timeUntilBallBallCollision(circle, velocity, otherCircle, otherVelocity) > context.getContactTolerance()){
+                repredictCollisions(i);
+                return;
+            }
+            VectPair newVelocities = Geometry.reflectBalls(circle.getCenter(), 1, velocity, otherCircle.getCenter(), 1, otherVelocity);
+            ball.setCartesianVelocity(newVelocities.v1);
+            otherBall.setCartesianVelocity(newVelocities.v2);
+            recordCollision(j, ball);
+            recordCollision(i, otherBall);
+            return;
+        }
+        case GADGET: {
+            Gadget gadget = gadgets.get(event.getTarget());
+            if (gadget.timeUntilBallCollision(context, ball) > context.getContactTolerance()){
+                repredictCollisions(i);
+                return;
+            }
+            long remaining = (long) Math.ceil((eventEndTime - eventTime) * 1000);
+            gadget.collisionBallGadget(context, ball, gadget.checkCollision(context, ball, remaining));
+            gadget.triggerGadgets(ball);
+            ballsHitGadgets[i] = true;
+            if (gadget.getGoodbyePortalBallMessages().size() > 0){
+                for (GoodbyePortalBall message : gadget.getGoodbyePortalBallMessages()){
+                    goodbyePortalBallMessages.add(message);
+                }
+                gadget.emptyBallsToEject();
+                leavingBalls[i] = true;
+            }
+            recordCollision(i, gadget);
+            if (!gadget.getGadgetsToTrigger().isEmpty()){
+                // a triggered gadget can move any ball, e.g. an absorber firing the ball it holds
+                for (int k = 0; k < balls.size(); k++){
+                    if (k != i){
+                        repredictCollisions(k);
+                    }
+                }
+            }
+            return;
+        }
+        case REFRESH:
+            repredictCollisions(i);
+            return;
+        }
+    }
+    
+    /**
+     * Sets whether update() jumps from one predicted collision to the next (event-driven)
+     * or makes fixed passes over the balls
+     * @param eventDriven true to use the event-driven mode
+     */
+    public void setEventDriven(boolean eventDriven){
+        this.eventDriven = eventDriven;
+    }
+    
+    /**
+     * Sets the pool a fixed-pass update() spreads the board's balls over. The balls are updated 
+     * one after another on one clock, so a collision of any ball shortens the moves of the balls 
+     * after it and the turn of the flippers; they are only spread over the pool in updates where 
+     * no ball can touch a wall, a gadget or another ball, so the board ends up the same, with the 
+     * same messages in the same order, with or without a pool.
+     * @param pool the pool, or null to update the balls on the thread calling update()
+     */
+    public void setIslandPool(ForkJoinPool pool){
+        islandPool = pool;
+    }
+    
+    /**
+     * Sets the profile the phases of each update are recorded in: the time spent on collisions 
+     * with corners, walls, other balls and gadgets, and moving the balls. An event-driven update 
+     * handles its collisions in the order they happen rather than phase by phase, so its phases 
+     * aren't recorded, and islands updated on a pool overlap, so only the phases before and 
+     * after them are.
+     * @param profile the profile, or null to stop timing the phases
+     */
+    public void setProfile(TickProfile profile){
+        laps = profile == null ? TickProfile.Laps.OFF : profile.newLaps();
+    }
+    
+    /**
+     * Tells whether update() is event-driven
+     * @return true if update() jumps from one predicted collision to the next
+     */
+    public boolean isEventDriven(){
+        return eventDriven;
     }
     
     /**
@@ -483,16 +1092,22 @@ public class Board {
      * @return time left in the timeframe after the collision
      */
     public long updateCornerCollisions(Ball currentBall, long timeRemaining){
+        return updateCornerCollisions(context, currentBall, timeRemaining);
+    }
+    
+    // as updateCornerCollisions(), working out times of impact with the given context
+    private long updateCornerCollisions(PhysicsContext context, Ball currentBall, long timeRemaining){
         // check corner collisions
         for(Circle corner : this.boardCorners){
             // need currentBall's Cartesian circle coordinates
-            Circle cartesianCurrentBallCircle = new Circle(this.displayToCartesian(currentBall.getCircle().getCenter()),currentBall.getRadius());
+            Circle cartesianCurrentBallCircle = currentBall.getCartesianCircle();
             // if we hit a corner (already Cartesian)
-            long timeToCornerHit = (long) Geometry.timeUntilCircleCollision(corner, cartesianCurrentBallCircle, this.displayToCartesian(currentBall.getVelocity().times(1/1000.)));
+            long timeToCornerHit = (long) context.timeUntilCircleCollision(corner, cartesianCurrentBallCircle, 
+                    currentBall.getCartesianVelocity().times(1/1000.), gravity.times(1/1000000.), timeRemaining + 1);
             if(timeToCornerHit <= timeRemaining){
                 // bounce and update remaining time
                 currentBall.update(timeToCornerHit, gravity, friction1, friction2);
-                currentBall.setVelocity(Geometry.reflectCircle(corner.getCenter(), this.displayToCartesian(currentBall.getPosition()), this.displayToCartesian(currentBall.getVelocity())));
+                currentBall.setVelocity(Geometry.reflectCircle(corner.getCenter(), currentBall.getCartesianCircle().getCenter(), currentBall.getCartesianVelocity()));
                 
                 timeRemaining -= timeToCornerHit;
             }
@@ -507,31 +1122,35 @@ public class Board {
      * @return time left in the timeframe after the collision
      */
     public long updateWallCollisions(Ball currentBall, long timeRemaining){
+        return updateWallCollisions(context, goodbyeWallBallMessages, currentBall, timeRemaining);
+    }
+    
+    // as updateWallCollisions(), working out times of impact with the given context and adding 
+    // the messages of balls leaving through transparent walls to wallMessages
+    private long updateWallCollisions(PhysicsContext context, List<GoodbyeWallBall> wallMessages, 
+            Ball currentBall, long timeRemaining){
         // check board wall collisions
         for (Wall wallObject : walls.values()) {
             LineSegment wall = wallObject.getShape();
             // need currentBall's Cartesian circle coordinates
-            Circle cartesianCurrentBallCircle = new Circle(
-                    this.displayToCartesian(currentBall.getCircle().getCenter()),
-                    currentBall.getRadius());
+            Circle cartesianCurrentBallCircle = currentBall.getCartesianCircle();
             // if we hit a wall (already in Cartesian)
-            long timeToWallHit = (long) (Geometry.timeUntilWallCollision(
+            long timeToWallHit = (long) (context.timeUntilWallCollision(
                     wall,
                     cartesianCurrentBallCircle,
-                    this.displayToCartesian(currentBall.getVelocity().times(
-                            1 / 1000.))));
+                    currentBall.getCartesianVelocity().times(1 / 1000.),
+                    gravity.times(1 / 1000000.),
+                    timeRemaining + 1));
             if (timeToWallHit <= timeRemaining) {
                 // bounce and update remaining time
                 currentBall.update(timeToWallHit, gravity, friction1, friction2);
                 // transparent
                 if (wallObject.isTransparent()) {
-                    goodbyeWallBallMessages.add(new GoodbyeWallBall(this
+                    wallMessages.add(new GoodbyeWallBall(this
                             .getName(), wallObject.getType(), currentBall));
                 } else { // if it's not transparent
-                    currentBall.setVelocity(this.cartesianToDisplay(Geometry
-                            .reflectWall(wall, this
-                                    .displayToCartesian(currentBall
-                                            .getVelocity()))));
+                    currentBall.setCartesianVelocity(Geometry.reflectWall(wall,
+                            currentBall.getCartesianVelocity()));
                 }
                 timeRemaining -= timeToWallHit;
             }
@@ -540,35 +1159,51 @@ public class Board {
     }
     
     /**
-     * Checks to see if a ball will bounce off another ball and, if it will, updates it to its post-collision velocity
-     * @param currentBall the ball to corner collide
-     * @param timeRemaining the timeframe to check for a collision in 
-     * @return time left in the timeframe after the collision
+     * Checks to see if a ball will bounce off any other ball on the board and, if it will, updates 
+     * both to their post-collision velocities. update() checks each pair of balls that might meet 
+     * once instead of calling this for every ball.
+     * @param currentBall the ball to check
+     * @param timeRemaining the timeframe to check for a collision in, in ms
+     * @return time left in the timeframe after the collisions
      */
     public long updateBallBallCollisions(Ball currentBall, long timeRemaining){
-        // check ball-ball collisions
-        for(Ball otherBall : balls){
-            // need currentBall's Cartesian circle coordinates
-            Circle cartesianCurrentBallCircle = new Circle(this.displayToCartesian(currentBall.getCircle().getCenter()),currentBall.getRadius());
-            // need otherBall's Cartesian circle coordinates
-            Circle cartesianOtherBallCircle = new Circle(this.displayToCartesian(otherBall.getCircle().getCenter()),otherBall.getRadius()); 
-            // if we're going to hit the otherBall
-            long timeToBallHit = (long) Geometry.timeUntilBallBallCollision(cartesianCurrentBallCircle, this.displayToCartesian(currentBall.getVelocity()), cartesianOtherBallCircle, this.displayToCartesian(otherBall.getVelocity()));
-            if(currentBall != otherBall && timeToBallHit <= timeRemaining){
-                // get them both to update location
-                currentBall.update(timeToBallHit, gravity, friction1, friction2);
-                otherBall.update(timeToBallHit, gravity, friction1, friction2);
-                // collide
-                VectPair newVelocities = Geometry.reflectBalls(cartesianCurrentBallCircle.getCenter(), 1, this.displayToCartesian(currentBall.getVelocity()), cartesianOtherBallCircle.getCenter(), 1, this.displayToCartesian(otherBall.getVelocity()));
-                currentBall.setVelocity(this.cartesianToDisplay(newVelocities.v1));
-                otherBall.setVelocity(this.cartesianToDisplay(newVelocities.v2));
-                // subtract time taken from the clock
-                timeRemaining -= timeToBallHit;
+        for (Ball otherBall : balls){
+            if (otherBall != currentBall){
+                timeRemaining = updateBallBallCollision(context, currentBall, otherBall, timeRemaining);
             }
         }
         return timeRemaining;
     }
     
+    /**
+     * Checks to see if two balls will bounce off each other and, if they will, updates both to 
+     * their post-collision velocities
+     * @param context the context to work out the time of impact with
+     * @param ball one ball
+     * @param otherBall the other ball, not the same as ball
+     * @param timeRemaining the timeframe to check for a collision in, in ms
+     * @return time left in the timeframe after the collision
+     */
+    private long updateBallBallCollision(PhysicsContext context, Ball ball, Ball otherBall, long timeRemaining){
+        long timeToBallHit = (long) context.timeUntilBallBallCollision(
+                ball.getCartesianCircle(), ball.getCartesianVelocity().times(1 / 1000.),
+                otherBall.getCartesianCircle(), otherBall.getCartesianVelocity().times(1 / 1000.));
+        if (timeToBallHit <= timeRemaining){
+            // get them both to where they meet
+            ball.update(timeToBallHit, gravity, friction1, friction2);
+            otherBall.update(timeToBallHit, gravity, friction1, friction2);
+            // collide
+            VectPair newVelocities = Geometry.reflectBalls(ball.getCartesianCircle().getCenter(), 1, 
+                    ball.getCartesianVelocity(), otherBall.getCartesianCircle().getCenter(), 1, 
+                    otherBall.getCartesianVelocity());
+            ball.setCartesianVelocity(newVelocities.v1);
+            otherBall.setCartesianVelocity(newVelocities.v2);
+            // subtract time taken from the clock
+            timeRemaining -= timeToBallHit;
+        }
+        return timeRemaining;
+    }
+    
     /**
      * Checks to see if a ball will bounce off a gadget and, if it will, updates the ball to its post-collision velocity
      * @param currentBall the ball to corner collide
@@ -576,24 +1211,45 @@ public class Board {
      * @return time left in the timeframe after the collision 
      */
     public long updateBallGadgetCollisions(Ball currentBall, long timestep){
-        // check ball-gadget collisions
+        return updateBallGadgetCollisions(context, goodbyePortalBallMessages, currentBall, timestep);
+    }
+    
+    // as updateBallGadgetCollisions(), working out times of impact with the given context and 
+    // adding the messages of balls leaving through portals to portalMessages
+    private long updateBallGadgetCollisions(PhysicsContext context, List<GoodbyePortalBall> portalMessages, 
+            Ball currentBall, long timestep){
+        // check ball-gadget collisions, only against gadgets near the ball's path, bouncing 
+        // off the gadget the ball reaches first, then looking again along its new path
         boolean ballCollides = false;
-        for (Gadget gadget : gadgets){
-           if (gadget.ballHitsGadgetThisTimestep(currentBall,timestep)<Double.POSITIVE_INFINITY){
-               ballCollides = true;
-               long timeToHit = (long) gadget.ballHitsGadgetThisTimestep(currentBall,timestep);
-               currentBall.update((long) gadget.ballHitsGadgetThisTimestep(currentBall,timestep), 
-                       gravity, friction1, friction2);
-               gadget.collisionBallGadget(currentBall, timestep);
-               gadget.triggerGadgets(currentBall);
-               timestep -= timeToHit;
-           }   
-           if (gadget.getGoodbyePortalBallMessages().size() >0){
-               for (GoodbyePortalBall message : gadget.getGoodbyePortalBallMessages()){
-                   goodbyePortalBallMessages.add(message);
-               }
-               gadget.emptyBallsToEject();
-           }
+        for (int bounces = 0; bounces < gadgets.size(); bounces++){
+            findGadgetCandidates(context, currentBall, timestep);
+            Gadget hitGadget = null;
+            // the collision is only worked out once, and reused for the bounce
+            GadgetCollision soonestCollision = null;
+            for (int i = context.getGadgetCandidates().nextSetBit(0); i >= 0; i = context.getGadgetCandidates().nextSetBit(i + 1)){
+                Gadget gadget = gadgets.get(i);
+                GadgetCollision collision = gadget.checkCollision(context, currentBall, timestep);
+                if (collision.isHit() && (hitGadget == null || collision.getHitTime() < soonestCollision.getHitTime())){
+                    hitGadget = gadget;
+                    soonestCollision = collision;
+                }
+            }
+            if (hitGadget == null){
+                break;
+            }
+            ballCollides = true;
+            // gadgets give the time in seconds; the ball stops short at the last whole ms
+            long timeToHit = (long) (soonestCollision.getHitTime() * 1000);
+            currentBall.update(timeToHit, gravity, friction1, friction2);
+            hitGadget.collisionBallGadget(context, currentBall, soonestCollision.afterMoving(timeToHit));
+            hitGadget.triggerGadgets(currentBall);
+            timestep -= timeToHit;
+            if (hitGadget.getGoodbyePortalBallMessages().size() >0){
+                for (GoodbyePortalBall message : hitGadget.getGoodbyePortalBallMessages()){
+                    portalMessages.add(message);
+                }
+                hitGadget.emptyBallsToEject();
+            }
         }
         if (!ballCollides && currentBall.isImmune()){
             currentBall.setImmunue(false);
@@ -601,6 +1257,429 @@ public class Board {
         return timestep;
     }
     
+    /**
+     * Fills the context's gadget candidates with the indices of every gadget the ball could touch 
+     * within timestep, falling with the board's gravity. Any gadget that is not 
+     * a candidate is guaranteed to return INFINITY from ballHitsGadgetThisTimestep.
+     * @param context the context whose candidates to fill
+     * @param currentBall the ball to find candidates for
+     * @param timestep the timeframe in ms the ball travels in
+     */
+    private void findGadgetCandidates(PhysicsContext context, Ball currentBall, long timestep){
+        if (gadgetGrid.getIndexedCount() != gadgets.size()){
+            // the gadget list was changed through getGadgets()
+            gadgetGrid.rebuild(gadgets);
+        }
+        double x = currentBall.getX();
+        double y = currentBall.getY();
+        // the physics library reports contact up to one radius after the ball has
+        // touched a component, so reach two radii beyond the distance travelled, 
+        // gravity included
+        double seconds = Math.max(timestep, 0) / 1000.;
+        double reach = currentBall.getSpeed() * seconds + .5 * gravity.length() * seconds * seconds
+                + 2 * currentBall.getRadius() + context.getGridTolerance();
+        gadgetGrid.query(x - reach, y - reach, x + reach, y + reach, context.getGadgetCandidates());
+    }
+    
+    /**
+     * Starts the clocks of the balls for a fixed-pass update, and splits the balls into islands. 
+     * All the balls share one clock, so a collision of any of them shortens the moves of the 
+     * balls after it, and only while none of them can collide do islands come out the same. So 
+     * the balls are split one to an island, each on a clock of its own, only if there is a pool 
+     * and no ball might touch a wall, a gadget or another ball within the timestep; otherwise 
+     * they are all in one island on the shared clock. No ball goes faster than 
+     * BallStore.MAX_SPEED plus what gravity adds, which bounds how far it can go. Islands are in 
+     * the order of their first ball in balls, with their balls in that order too.
+     * @param timestep the timestep of the update in ms
+     */
+    private void findIslands(long timestep){
+        int ballCount = balls.size();
+        prepareBallOrders(ballCount);
+        for (int i = 0; i < ballCount; i++){
+            ballTimes[i] = timestep;
+            ballsLeaving[i] = false;
+        }
+        sharedClock = islandPool == null || ballCount < 2 || mightCollide(timestep);
+        sharedTime = timestep;
+        islands.clear();
+        for (int i = 0; i < ballCount; i++){
+            islandOfBall[i] = sharedClock ? 0 : i;
+            if (!sharedClock || i == 0){
+                addIsland();
+            }
+            islands.get(islandOfBall[i]).addBall(i);
+        }
+    }
+    
+    /**
+     * Checks whether any ball might touch a wall, a gadget or another ball within a timestep
+     * @param timestep the timestep of the update in ms
+     * @return false if no ball can collide with anything in the timestep, true if one might
+     */
+    private boolean mightCollide(long timestep){
+        int ballCount = balls.size();
+        if (gadgetGrid.getIndexedCount() != gadgets.size()){
+            // the gadget list was changed through getGadgets()
+            gadgetGrid.rebuild(gadgets);
+        }
+        // collisions are found up to a ms after the time left, as their times are floored
+        double seconds = (Math.max(timestep, 0) + 1) / 1000.;
+        double reach = BallStore.MAX_SPEED * seconds + .5 * gravity.length() * seconds * seconds 
+                + context.getGridTolerance();
+        for (int i = 0; i < ballCount; i++){
+            Ball ball = balls.get(i);
+            ballLow[i] = ball.getX() - ball.getRadius() - reach;
+            ballHigh[i] = ball.getX() + ball.getRadius() + reach;
+            double yLow = ball.getY() - ball.getRadius() - reach;
+            double yHigh = ball.getY() + ball.getRadius() + reach;
+            // the corners are on the walls, so they are covered too
+            if (ballLow[i] <= 0 || ballHigh[i] >= width || yLow <= 0 || yHigh >= height){
+                return true;
+            }
+        }
+        // the library reports contact up to a radius late, so look for gadgets a radius further
+        BitSet nearGadgets = context.getGadgetCandidates();
+        insertionSort(islandOrder, ballCount, ballLow);
+        for (int a = 0; a < ballCount; a++){
+            int i = islandOrder[a];
+            Ball ball = balls.get(i);
+            for (int b = a + 1; b < ballCount && ballLow[islandOrder[b]] <= ballHigh[i]; b++){
+                Ball otherBall = balls.get(islandOrder[b]);
+                if (Math.abs(ball.getY() - otherBall.getY()) <= ball.getRadius() + otherBall.getRadius() + 2 * reach){
+                    return true;
+                }
+            }
+            double gadgetReach = 2 * ball.getRadius() + reach;
+            gadgetGrid.query(ball.getX() - gadgetReach, ball.getY() - gadgetReach, 
+                    ball.getX() + gadgetReach, ball.getY() + gadgetReach, nearGadgets);
+            if (!nearGadgets.isEmpty()){
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // adds an empty island to islands, one made for an earlier update if there is one
+    private Island addIsland(){
+        if (islands.size() == spareIslands.size()){
+            spareIslands.add(new Island());
+        }
+        Island island = spareIslands.get(islands.size());
+        island.memberCount = 0;
+        islands.add(island);
+        return island;
+    }
+    
+    // makes sure the per-ball arrays hold ballCount balls, and resets the orders of the balls 
+    // if balls were added or removed
+    private void prepareBallOrders(int ballCount){
+        if (ballLow.length < ballCount){
+            int capacity = Math.max(ballCount, 2 * ballLow.length);
+            ballLow = new double[capacity];
+            ballHigh = new double[capacity];
+            islandOfBall = new int[capacity];
+            ballTimes = new long[capacity];
+            ballsLeaving = new boolean[capacity];
+            islandOrder = new int[capacity];
+            sweepOrder = new int[capacity];
+            ballOrdersStale = true;
+        }
+        if (ballOrdersStale){
+            for (int i = 0; i < ballCount; i++){
+                islandOrder[i] = i;
+                sweepOrder[i] = i;
+            }
+            ballOrdersStale = false;
+        }
+    }
+    
+    // sorts the first count indices of order by their keys, by insertion, so an order that is 
+    // nearly sorted already is sorted in close to linear time
+    private static void insertionSort(int[] order, int count, double[] keys){
+        for (int k = 1; k < count; k++){
+            int index = order[k];
+            double key = keys[index];
+            int j = k;
+            while (j > 0 && keys[order[j - 1]] > key){
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = index;
+        }
+    }
+    
+    /**
+     * Sorts the balls by the left end of their sweep along x over the time they have left, and 
+     * hands each island its balls that are staying on the board in that order, so 
+     * that an island only checks the pairs of its balls whose sweeps overlap, and each of them 
+     * once. The order is kept from one update to the next, when balls have barely moved, so 
+     * sorting it again by insertion is close to linear.
+     */
+    private void sortSweepOrder(){
+        int ballCount = balls.size();
+        for (int i = 0; i < ballCount; i++){
+            Ball ball = balls.get(i);
+            // a collision counts if it is less than the time left + 1 ms away, as its time is floored
+            double horizon = (Math.max(timeLeft(i), 0) + 1) / 1000.;
+            double reach = ball.getVelocityX() * horizon;
+            ballLow[i] = ball.getX() - ball.getRadius() + Math.min(reach, 0);
+            ballHigh[i] = ball.getX() + ball.getRadius() + Math.max(reach, 0);
+        }
+        insertionSort(sweepOrder, ballCount, ballLow);
+        for (Island island : islands){
+            island.sweepCount = 0;
+        }
+        for (int k = 0; k < ballCount; k++){
+            int i = sweepOrder[k];
+            if (!ballsLeaving[i]){
+                Island island = islands.get(islandOfBall[i]);
+                island.sweep[island.sweepCount++] = i;
+            }
+        }
+    }
+    
+    // the time ball i has left in the update: its own, or that of every ball on a shared clock
+    private long timeLeft(int i){
+        return sharedClock ? sharedTime : ballTimes[i];
+    }
+    
+    // sets the time ball i has left in the update, which is every ball's on a shared clock
+    private void setTimeLeft(int i, long time){
+        if (sharedClock){
+            sharedTime = time;
+        } else {
+            ballTimes[i] = time;
+        }
+    }
+    
+    // runs a pass of the update over every island, on the pool if there is one and it is worth it
+    private void updateIslands(boolean firstPass){
+        if (islandPool == null || islands.size() <= 1){
+            for (Island island : islands){
+                island.update(firstPass, context, laps);
+            }
+        } else {
+            islandPool.invoke(new IslandTask(0, islands.size(), firstPass));
+        }
+    }
+    
+    // hands the messages of the balls leaving the board that the islands collected to the board
+    private void collectIslandMessages(){
+        islandPortalMessages.clear();
+        islandWallMessages.clear();
+        for (Island island : islands){
+            islandPortalMessages.add(island.portalMessages);
+            islandWallMessages.add(island.wallMessages);
+        }
+        if (mergedMessages.length < islands.size()){
+            mergedMessages = new int[Math.max(islands.size(), 2 * mergedMessages.length)];
+        }
+        mergeMessages(islandPortalMessages, goodbyePortalBallMessages, mergedMessages);
+        mergeMessages(islandWallMessages, goodbyeWallBallMessages, mergedMessages);
+    }
+    
+    /**
+     * Moves messages collected by islands to a list of the board, in the order of the balls 
+     * they were collected for, which is the order they come in when every ball is in one island
+     * @param collected the messages of each island, each in the order of its balls; emptied
+     * @param boardMessages the list to add them to
+     * @param next room for how far into the messages of each island have been merged
+     */
+    private static <M> void mergeMessages(List<LeavingMessages<M>> collected, List<M> boardMessages, int[] next){
+        if (collected.size() == 1){
+            // already in order
+            boardMessages.addAll(collected.get(0).messages);
+        } else {
+            Arrays.fill(next, 0, collected.size(), 0);
+            while (true){
+                int first = -1;
+                for (int k = 0; k < collected.size(); k++){
+                    if (next[k] < collected.get(k).ballCount && (first < 0 
+                            || collected.get(k).balls[next[k]] < collected.get(first).balls[next[first]])){
+                        first = k;
+                    }
+                }
+                if (first < 0){
+                    break;
+                }
+                boardMessages.add(collected.get(first).messages.get(next[first]++));
+            }
+        }
+        for (LeavingMessages<M> messages : collected){
+            messages.messages.clear();
+            messages.ballCount = 0;
+        }
+    }
+    
+    /**
+     * Package-private for tests
+     * @return the number of islands the balls were split into by the last fixed-pass update, 
+     *      one if there was no pool and there were balls
+     */
+    int getIslandCount(){
+        return islands.size();
+    }
+    
+    /**
+     * Messages about balls leaving the board, collected by an island, each with the index in 
+     * balls of the ball being updated when it was collected
+     */
+    private static class LeavingMessages<M> {
+        private final List<M> messages = new ArrayList<M>();
+        // the ball of each of the first ballCount messages
+        private int[] balls = new int[1];
+        private int ballCount = 0;
+        
+        // tags the messages collected since the last call with ball i; true if there were any
+        private boolean tag(int i){
+            boolean collected = ballCount < messages.size();
+            if (balls.length < messages.size()){
+                balls = Arrays.copyOf(balls, Math.max(messages.size(), 2 * balls.length));
+            }
+            while (ballCount < messages.size()){
+                balls[ballCount++] = i;
+            }
+            return collected;
+        }
+    }
+    
+    /**
+     * Balls that may touch each other or the same gadgets within a fixed-pass update. An island 
+     * only touches its own balls, its own gadgets and its own lists of messages, so islands can 
+     * be updated on different threads at once.
+     */
+    private class Island {
+        // indices in balls of the island's balls in order, and of those staying on the board 
+        // by the left end of their sweep along x
+        private int[] members = new int[1];
+        private int memberCount = 0;
+        private int[] sweep = new int[1];
+        private int sweepCount = 0;
+        private final LeavingMessages<GoodbyePortalBall> portalMessages = new LeavingMessages<GoodbyePortalBall>();
+        private final LeavingMessages<GoodbyeWallBall> wallMessages = new LeavingMessages<GoodbyeWallBall>();
+        
+        private void addBall(int i){
+            if (memberCount == members.length){
+                members = Arrays.copyOf(members, 2 * memberCount);
+                sweep = new int[members.length];
+            }
+            members[memberCount++] = i;
+        }
+        
+        /**
+         * Runs a pass of the update over the island's balls: in the first, checks them against 
+         * the corners, walls and gadgets, and marks the ones leaving the board; in the second, 
+         * bounces the ones staying off each other, checks them against the gadgets and walls 
+         * again and moves them
+         * @param firstPass true for the first pass, false for the second
+         * @param context the context to work out times of impact with
+         * @param laps times the phases of the pass
+         */
+        private void update(boolean firstPass, PhysicsContext context, TickProfile.Laps laps){
+            if (firstPass){
+                for (int m = 0; m < memberCount; m++){
+                    int i = members[m];
+                    Ball currentBall = balls.get(i);
+                    //first: if the ball is in any way in an absorber, ignore everything happening to it.
+                    //Because absorbers are black magic.
+                    boolean absorbed = isInAbsorber(currentBall);
+                    laps.lap(TickProfile.Phase.GADGETS);
+                    if (absorbed){
+                        //currentBall.update(timeRemaining, gravity, friction1, friction2); no gravity for balls in an absorber!
+                        continue;
+                    }
+                    //check corner collisions
+                    setTimeLeft(i, updateCornerCollisions(context, currentBall, timeLeft(i)));
+                    laps.lap(TickProfile.Phase.CORNERS);
+                    
+                    //check board-wall collisions
+                    setTimeLeft(i, updateWallCollisions(context, wallMessages.messages, currentBall, timeLeft(i)));
+                    laps.lap(TickProfile.Phase.WALLS);
+                    
+                    // check ball-gadget collisions
+                    setTimeLeft(i, updateBallGadgetCollisions(context, portalMessages.messages, currentBall, timeLeft(i)));
+                    laps.lap(TickProfile.Phase.GADGETS);
+                    boolean leavingThroughWall = wallMessages.tag(i);
+                    ballsLeaving[i] = portalMessages.tag(i) || leavingThroughWall;
+                }
+                return;
+            }
+            for (int a = 0; a < sweepCount; a++){
+                int i = sweep[a];
+                for (int b = a + 1; b < sweepCount && ballLow[sweep[b]] <= ballHigh[i]; b++){
+                    int j = sweep[b];
+                    // the pair has as long as the ball with less time left
+                    long timeRemaining = Math.min(timeLeft(i), timeLeft(j));
+                    long timeTaken = timeRemaining - updateBallBallCollision(context, balls.get(i), balls.get(j), timeRemaining);
+                    if (sharedClock){
+                        sharedTime -= timeTaken;
+                    } else {
+                        ballTimes[i] -= timeTaken;
+                        ballTimes[j] -= timeTaken;
+                    }
+                }
+            }
+            laps.lap(TickProfile.Phase.BALL_BALL);
+            for (int m = 0; m < memberCount; m++){
+                int i = members[m];
+                if (ballsLeaving[i]){
+                    continue;
+                }
+                Ball currentBall = balls.get(i);
+                // check ball-gadget collisions
+                setTimeLeft(i, updateBallGadgetCollisions(context, portalMessages.messages, currentBall, timeLeft(i)));
+                laps.lap(TickProfile.Phase.GADGETS);
+
+                // check ball-wall collisions
+                setTimeLeft(i, updateWallCollisions(context, wallMessages.messages, currentBall, timeLeft(i)));
+                laps.lap(TickProfile.Phase.WALLS);
+                
+                // do the gravity thing (and friction??)
+                currentBall.update(timeLeft(i), gravity, friction1, friction2);
+                laps.lap(TickProfile.Phase.MOVE);
+                wallMessages.tag(i);
+                portalMessages.tag(i);
+            }
+        }
+    }
+    
+    /**
+     * Runs a pass of the update over a range of islands on the pool, splitting the range 
+     * until each task has a few islands. Each thread works out times of impact with a context 
+     * of its own, and the phases aren't timed.
+     * 
+     * Thread safety: islands share no ball, gadget or list of messages, so the threads write 
+     * different elements of the ball store and of the per-ball arrays, and nothing else of the 
+     * board. The board's lists and arrays aren't resized while a pass runs, and invoke() 
+     * returning makes everything the pool did visible to the thread that called update().
+     */
+    private class IslandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final boolean firstPass;
+        
+        private IslandTask(int from, int to, boolean firstPass){
+            this.from = from;
+            this.to = to;
+            this.firstPass = firstPass;
+        }
+        
+        @Override
+        protected void compute(){
+            if (to - from <= ISLANDS_PER_TASK){
+                PhysicsContext workerContext = WORKER_CONTEXTS.get();
+                workerContext.setGravity(gravity);
+                for (int k = from; k < to; k++){
+                    islands.get(k).update(firstPass, workerContext, TickProfile.Laps.OFF);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new IslandTask(from, middle, firstPass), new IslandTask(middle, to, firstPass));
+        }
+    }
+    
     /**
      * Setter for displayArray
      */
@@ -678,6 +1757,7 @@ public class Board {
      * @return the Portal of name portalName
      */
     public Portal getPortalByName(String portalName) {
+        indexGadgets();
         if (portalMap.containsKey(portalName)) {
             return portalMap.get(portalName);
         }
@@ -703,11 +1783,10 @@ public class Board {
      * @param boardNames an array of names of boards to connect
      */
     public void connectBoardsToPortals(String[] boardNames) {
+        indexGadgets();
         for (String boardName : boardNames) {
-            for (Portal portal : portalMap.values()) {
-                if (portal.getDestinationBoard().equals(boardName)) {
-                    portal.setConnected(true);
-                }
+            for (Portal portal : portalsByDestinationBoard.getOrDefault(boardName, Collections.<Portal>emptyList())) {
+                portal.setConnected(true);
             }
         }
     }
@@ -742,10 +1821,9 @@ public class Board {
      * @param boardName the name of the disconnected board
      */
     public void disconnectSingleBoardFromPortals(String boardName) {
-        for (Portal portal : portalMap.values()) {
-            if (portal.getDestinationBoard().equals(boardName)) {
-                portal.setConnected(false);
-            } 
+        indexGadgets();
+        for (Portal portal : portalsByDestinationBoard.getOrDefault(boardName, Collections.<Portal>emptyList())) {
+            portal.setConnected(false);
         }
     }
     
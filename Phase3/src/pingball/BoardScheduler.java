@@ -0,0 +1,331 @@
+package pingball;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import pingball.Messages.GoodbyePortalBall;
+import pingball.Messages.GoodbyeWallBall;
+
+/**
+ * Runs many boards in one JVM on a fixed pool of worker threads, instead of one update
+ * thread per board. Every frame, each board is updated in parallel; once they have all
+ * finished, balls leaving a board through a wall or portal that leads to another board in
+ * the scheduler are handed over directly, without going through a server.
+ * The class is mutable.
+ */
+public class BoardScheduler {
+
+    /* Thread Safety Argument
+     *
+     * The boards are only touched by tick(). During a frame, each board is updated by exactly
+     * one worker, and the frame waits for every worker before it hands balls between boards on
+     * its own thread, so no board is ever used by two threads at once. tick(), addBoard(),
+     * removeBoard() and the methods that join boards are synchronized on the scheduler, so
+     * frames never overlap each other or a change to the set of boards. Tick statistics are
+     * written by one thread at a time and kept in volatile fields, and boards are looked up by
+     * name in a concurrent map, so the statistics can be read from any thread, even mid-frame.
+     *
+     * Each board works out times of impact in a PhysicsContext of its own, and never changes
+     * the global foresight setting of the physics package, so boards updated in parallel find
+     * the same collisions as they would alone.
+     */
+
+    // Abstraction function:
+    //      represents the boards in scheduledBoards, by name in boardsByName, being updated
+    //      together one frame at a time on pool; if running is not null, a frame of frameTime
+    //      ms is started every frameTime ms.
+    // Rep invariant:
+    //      boardsByName maps the name of every board in scheduledBoards to it, and nothing else
+    //      board names are unique
+    //
+
+    // number of fixed-step updates a frame is split into, as Pingball does
+    private static final int UPDATES_PER_FRAME = 4;
+
+    private final ExecutorService pool;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<ScheduledBoard> scheduledBoards = new ArrayList<ScheduledBoard>();
+    private final ConcurrentMap<String, ScheduledBoard> boardsByName = new ConcurrentHashMap<String, ScheduledBoard>();
+    private ScheduledFuture<?> running;
+    private long frameTime;
+    private volatile long frameOverruns = 0;
+
+    /**
+     * A board in the scheduler, along with how long its updates take
+     */
+    private static class ScheduledBoard implements Callable<Void> {
+        private final Board board;
+        private long timestep;
+        private volatile long lastTickNanos = 0;
+        private volatile long maxTickNanos = 0;
+        private volatile long overruns = 0;
+
+        private ScheduledBoard(Board board) {
+            this.board = board;
+        }
+
+        @Override
+        public Void call() {
+            long start = System.nanoTime();
+            int updatesPerFrame = board.isEventDriven() ? 1 : UPDATES_PER_FRAME;
+            for (int j = 0; j < updatesPerFrame; j++) {
+                // the first timestep % updatesPerFrame updates take the ms left over, so the
+                // frame simulates all of timestep
+                board.update(timestep / updatesPerFrame + (j < timestep % updatesPerFrame ? 1 : 0));
+            }
+            long tickNanos = System.nanoTime() - start;
+            lastTickNanos = tickNanos;
+            if (tickNanos > maxTickNanos) {
+                maxTickNanos = tickNanos;
+            }
+            if (tickNanos > TimeUnit.MILLISECONDS.toNanos(timestep)) {
+                overruns++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Makes a BoardScheduler with one worker thread per available processor
+     */
+    public BoardScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Makes a BoardScheduler
+     * @param threads number of worker threads to update boards on; must be positive
+     */
+    public BoardScheduler(int threads) {
+        this.pool = Executors.newFixedThreadPool(threads);
+        checkRep();
+    }
+
+    /**
+     * Adds a board to be updated with the others from the next frame on. Portals on the boards
+     * in the scheduler that lead to each other are connected.
+     * @param board the board to add; it must have a name, different from every other board's
+     */
+    public synchronized void addBoard(Board board) {
+        if (board.getName() == null) {
+            throw new IllegalArgumentException("Only named boards can be scheduled");
+        }
+        if (boardsByName.containsKey(board.getName())) {
+            throw new IllegalArgumentException("A board named " + board.getName() + " is already scheduled");
+        }
+        ScheduledBoard scheduledBoard = new ScheduledBoard(board);
+        scheduledBoards.add(scheduledBoard);
+        boardsByName.put(board.getName(), scheduledBoard);
+        String[] names = boardsByName.keySet().toArray(new String[0]);
+        for (ScheduledBoard other : scheduledBoards) {
+            other.board.connectBoardsToPortals(names);
+        }
+        checkRep();
+    }
+
+    /**
+     * Removes a board from the scheduler. Walls and portals of the other boards that lead to it
+     * are disconnected.
+     * @param board the board to remove
+     */
+    public synchronized void removeBoard(Board board) {
+        if (board.getName() == null) {
+            return;
+        }
+        ScheduledBoard scheduledBoard = boardsByName.remove(board.getName());
+        if (scheduledBoard == null) {
+            return;
+        }
+        scheduledBoards.remove(scheduledBoard);
+        for (ScheduledBoard other : scheduledBoards) {
+            other.board.disconnectSingleBoardFromPortals(board.getName());
+            other.board.removeConnectedBoard(board.getName());
+        }
+        checkRep();
+    }
+
+    /**
+     * Joins the right wall of one board to the left wall of another, like the server's h command
+     * @param left the board on the left
+     * @param right the board on the right
+     */
+    public synchronized void joinHorizontally(Board left, Board right) {
+        left.joinWall("right", right.getName());
+        right.joinWall("left", left.getName());
+    }
+
+    /**
+     * Joins the bottom wall of one board to the top wall of another, like the server's v command
+     * @param top the board on top
+     * @param bottom the board below
+     */
+    public synchronized void joinVertically(Board top, Board bottom) {
+        top.joinWall("bottom", bottom.getName());
+        bottom.joinWall("top", top.getName());
+    }
+
+    /**
+     * Updates every board by one frame in parallel, then hands over the balls that left a board
+     * for another board in the scheduler. Messages for balls going to boards outside the
+     * scheduler are left on their boards' lists.
+     * @param timestep the length of the frame in ms
+     */
+    public synchronized void tick(long timestep) {
+        long start = System.nanoTime();
+        for (ScheduledBoard scheduledBoard : scheduledBoards) {
+            scheduledBoard.timestep = timestep;
+        }
+        List<Future<Void>> updates;
+        try {
+            updates = pool.invokeAll(scheduledBoards);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (int i = 0; i < updates.size(); i++) {
+            try {
+                updates.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Board " + scheduledBoards.get(i).board.getName()
+                        + " failed to update", e.getCause());
+            }
+        }
+        exchangeBalls();
+        if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(timestep)) {
+            frameOverruns++;
+        }
+    }
+
+    /**
+     * Hands over balls leaving each board through a wall or portal to the board they go to,
+     * if it is in the scheduler
+     */
+    private void exchangeBalls() {
+        for (ScheduledBoard scheduledBoard : scheduledBoards) {
+            Board board = scheduledBoard.board;
+            Iterator<GoodbyeWallBall> wallMessages = board.getGoodbyeWallBallMessages().iterator();
+            while (wallMessages.hasNext()) {
+                GoodbyeWallBall message = wallMessages.next();
+                String destinationName = board.getConnectedWalls().get(message.getWalltype());
+                ScheduledBoard destination = destinationName == null ? null : boardsByName.get(destinationName);
+                if (destination != null) {
+                    destination.board.addBallThroughWall(message.getBall(), message.getWalltype().opposite());
+                    wallMessages.remove();
+                }
+            }
+            Iterator<GoodbyePortalBall> portalMessages = board.getGoodbyePortalBallMessages().iterator();
+            while (portalMessages.hasNext()) {
+                GoodbyePortalBall message = portalMessages.next();
+                ScheduledBoard destination = boardsByName.get(message.getDestinationBoard());
+                if (destination != null) {
+                    destination.board.addBallThroughPortal(message.getBall(), message.getDestinationPortal());
+                    portalMessages.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts ticking every board one frame every frameTime ms, until stop() is called.
+     * A frame that takes longer than frameTime delays the next one rather than overlapping it.
+     * @param frameTime the length of a frame in ms; must be positive
+     */
+    public synchronized void start(long frameTime) {
+        stop();
+        this.frameTime = frameTime;
+        running = timer.scheduleAtFixedRate(() -> tick(this.frameTime), 0, frameTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops ticking the boards periodically, after the current frame if one is running
+     */
+    public synchronized void stop() {
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    /**
+     * Stops ticking the boards and shuts down the worker threads; the scheduler can't be used afterwards
+     */
+    public synchronized void shutdown() {
+        stop();
+        timer.shutdown();
+        pool.shutdown();
+    }
+
+    /**
+     * Gets the number of boards in the scheduler
+     * @return the number of boards
+     */
+    public synchronized int getNumberOfBoards() {
+        return scheduledBoards.size();
+    }
+
+    /**
+     * Gets how long the last frame of a board took to update
+     * @param boardName name of a board in the scheduler
+     * @return the time in ns
+     */
+    public long getLastTickNanos(String boardName) {
+        return getScheduledBoard(boardName).lastTickNanos;
+    }
+
+    /**
+     * Gets the longest any frame of a board has taken to update
+     * @param boardName name of a board in the scheduler
+     * @return the time in ns
+     */
+    public long getMaxTickNanos(String boardName) {
+        return getScheduledBoard(boardName).maxTickNanos;
+    }
+
+    /**
+     * Gets the number of frames a board took longer to update than the time they simulated
+     * @param boardName name of a board in the scheduler
+     * @return the number of overrun frames
+     */
+    public long getOverrunCount(String boardName) {
+        return getScheduledBoard(boardName).overruns;
+    }
+
+    /**
+     * Gets the number of frames that took longer, across all boards and including handing
+     * balls over, than the time they simulated
+     * @return the number of overrun frames
+     */
+    public long getFrameOverrunCount() {
+        return frameOverruns;
+    }
+
+    private ScheduledBoard getScheduledBoard(String boardName) {
+        ScheduledBoard scheduledBoard = boardsByName.get(boardName);
+        if (scheduledBoard == null) {
+            throw new IllegalArgumentException("No board named " + boardName + " is scheduled");
+        }
+        return scheduledBoard;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert boardsByName.size() == scheduledBoards.size();
+        for (ScheduledBoard scheduledBoard : scheduledBoards) {
+            assert boardsByName.get(scheduledBoard.board.getName()) == scheduledBoard;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics.Vect;
+import pingball.Gadgets.Portal;
+
+public class BoardSchedulerTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: tick()
+     * - Partitions:
+     *      - Boards: one board, several boards
+     *      - Timestep: divisible by the updates in a frame, not, shorter than them
+     *      - Balls leaving: through a wall joined to a scheduled board, through a portal
+     *        to a scheduled board, through a wall joined to a board outside the scheduler
+     *
+     * Method: addBoard(), removeBoard()
+     * - Partitions: new name, name already scheduled, removing a joined board
+     *
+     * Methods: getLastTickNanos(), getMaxTickNanos(), getOverrunCount()
+     * - Partitions: before any frame, after a frame
+     */
+
+    //tick()
+    @Test
+    public void testTickSingleBoard() {
+        BoardScheduler scheduler = new BoardScheduler(2);
+        Board board = new Board("A", 0, 0, 0);
+        Ball ball = new Ball(new Vect(5.25, 5.25), new Vect(10, 0));
+        board.addBall(ball);
+        scheduler.addBoard(board);
+        scheduler.tick(100);
+        assertEquals(6.25, ball.getX(), 0.0001);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTickSimulatesWholeFrame() {
+        BoardScheduler scheduler = new BoardScheduler(2);
+        Board board = new Board("A", 0, 0, 0);
+        Ball ball = new Ball(new Vect(5.25, 5.25), new Vect(10, 0));
+        board.addBall(ball);
+        scheduler.addBoard(board);
+        scheduler.tick(49);
+        assertEquals(5.74, ball.getX(), 0.0001);
+        scheduler.tick(3);
+        assertEquals(5.77, ball.getX(), 0.0001);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTickBallThroughWall() {
+        BoardScheduler scheduler = new BoardScheduler(2);
+        Board left = new Board("A", 0, 0, 0);
+        Board right = new Board("B", 0, 0, 0);
+        left.addBall(new Ball(new Vect(19.25, 10.25), new Vect(20, 0)));
+        scheduler.addBoard(left);
+        scheduler.addBoard(right);
+        scheduler.joinHorizontally(left, right);
+        scheduler.tick(100);
+        assertEquals(0, left.getNumberOfBalls());
+        assertEquals(1, right.getNumberOfBalls());
+        assertTrue(right.getBalls().get(0).getX() < 3);
+        assertTrue(left.getGoodbyeWallBallMessages().isEmpty());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTickBallThroughPortal() {
+        BoardScheduler scheduler = new BoardScheduler(2);
+        Board from = new Board("A", 0, 0, 0);
+        Board to = new Board("B", 0, 0, 0);
+        from.addGadget(new Portal("P", 10, 10, "Q", "B"));
+        to.addGadget(new Portal("Q", 5, 5, "P", "A"));
+        from.addBall(new Ball(new Vect(10.5, 9.25), new Vect(0, 10)));
+        scheduler.addBoard(from);
+        scheduler.addBoard(to);
+        scheduler.tick(100);
+        assertEquals(0, from.getNumberOfBalls());
+        assertEquals(1, to.getNumberOfBalls());
+        assertTrue(to.getBalls().get(0).isImmune());
+        assertTrue(from.getGoodbyePortalBallMessages().isEmpty());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTickBallToUnscheduledBoard() {
+        BoardScheduler scheduler = new BoardScheduler(2);
+        Board board = new Board("A", 0, 0, 0);
+        board.addBall(new Ball(new Vect(19.25, 10.25), new Vect(20, 0)));
+        board.joinWall("right", "Elsewhere");
+        scheduler.addBoard(board);
+        scheduler.tick(100);
+        assertEquals(0, board.getNumberOfBalls());
+        assertEquals(1, board.getGoodbyeWallBallMessages().size());
+        scheduler.shutdown();
+    }
+
+    //addBoard(), removeBoard()
+    @Test(expected=IllegalArgumentException.class)
+    public void testAddBoardSameName() {
+        BoardScheduler scheduler = new BoardScheduler(1);
+        try {
+            scheduler.addBoard(new Board("A"));
+            scheduler.addBoard(new Board("A"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemoveJoinedBoard() {
+        BoardScheduler scheduler = new BoardScheduler(1);
+        Board left = new Board("A", 0, 0, 0);
+        Board right = new Board("B", 0, 0, 0);
+        scheduler.addBoard(left);
+        scheduler.addBoard(right);
+        scheduler.joinHorizontally(left, right);
+        scheduler.removeBoard(right);
+        assertEquals(1, scheduler.getNumberOfBoards());
+        assertEquals("", left.getConnectedWalls().get(WallType.RIGHT));
+        scheduler.shutdown();
+    }
+
+    //getLastTickNanos(), getMaxTickNanos(), getOverrunCount()
+    @Test
+    public void testTickStatistics() {
+        BoardScheduler scheduler = new BoardScheduler(1);
+        scheduler.addBoard(new Board("A"));
+        assertEquals(0, scheduler.getLastTickNanos("A"));
+        scheduler.tick(50);
+        assertTrue(scheduler.getLastTickNanos("A") > 0);
+        assertTrue(scheduler.getMaxTickNanos("A") >= scheduler.getLastTickNanos("A"));
+        assertTrue(scheduler.getOverrunCount("A") <= 1);
+        scheduler.shutdown();
+    }
+}
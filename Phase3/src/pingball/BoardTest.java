@@ -4,11 +4,16 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
 import physics.Vect;
+import pingball.Gadgets.Absorber;
 import pingball.Gadgets.CircleBumper;
+import pingball.Gadgets.Flipper;
+import pingball.Gadgets.Portal;
+import pingball.Gadgets.SquareBumper;
 
 public class BoardTest {
 
@@ -31,6 +36,49 @@ public class BoardTest {
      *      - Timestep
      *          - 0 
      *          - >= 0
+     *      - Mode
+     *          - fixed passes
+     *          - event-driven: no collisions, one wall collision, 
+     *            many collisions in one long timestep, balls removed and added 
+     *            between updates
+     *      - Balls, with fixed passes: meeting within the timestep, meeting only after it,
+     *        balls added and removed between updates, one ball hitting a wall while another 
+     *        and a flipper are moving
+     *      - Islands, with fixed passes: balls far apart, within reach of each other, of a 
+     *        gadget or of a wall; updated on a pool or on the calling thread
+     *      - Gadgets, with fixed passes: ball falling onto one from rest in a long timestep, 
+     *        reaching the wall of one before the corner of its neighbour, long and short 
+     *        timesteps over the same time, fast balls entering a bumper from each side 
+     *        at 12ms
+     *      
+     *      
+     * Method: addBall(), removeBall(), getBalls()
+     * - Partitions: ball read after it is removed, changing the list from getBalls(),
+     *               ball moved back and forth between boards, read on another thread 
+     *               while it moves
+     * 
+     * 
+     * Method: updateBallBallCollisions()
+     * - Partitions: ball meeting another within the timeframe, meeting none
+     * 
+     * 
+     * Method: addGadget()
+     * - Partitions: next to another gadget, on top of another gadget at the same or a different 
+     *   position, where a gadget was removed
+     * 
+     * 
+     * Method: setRepCheckMode()
+     * - Partitions: OFF, SAMPLED, FULL; overlapping balls added in each
+     * 
+     * 
+     * Method: setProfile()
+     * - Partitions: fixed passes, event-driven; profile set, then unset
+     * 
+     * 
+     * Method: connectBoardsToPortals(), disconnectSingleBoardFromPortals(), getPortalByName()
+     * - Partitions: 
+     *      - Board named: destination of one portal, of several, of none
+     *      - Gadgets: added with addGadget(), through getGadgets(), removed with removeGadget()
      */         
     
     //setter and getter methods
@@ -85,6 +133,584 @@ public class BoardTest {
         assertEquals(testBall.getPosition(), new Vect(1,1));
     }
     
+    @Test 
+    public void testUpdateEventDrivenNoCollisions() {
+        Ball testBall = new Ball(new Vect(5,5), new Vect(2,1));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.setEventDriven(true);
+        testBoard.addBall(testBall); 
+        testBoard.update(1000);
+        assertEquals(7, testBall.getPosition().x(), 0.00001);
+        assertEquals(6, testBall.getPosition().y(), 0.00001);
+    }
+    
+    @Test 
+    public void testUpdateEventDrivenWallCollision() {
+        Ball testBall = new Ball(new Vect(18,5), new Vect(4,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.setEventDriven(true);
+        testBoard.addBall(testBall); 
+        // reaches the right wall at x = 19.75 after 437.5ms, then bounces back
+        testBoard.update(1000);
+        assertEquals(19.75 - 4 * .5625, testBall.getPosition().x(), 0.00001);
+        assertEquals(-4, testBall.getVelocity().x(), 0.00001);
+    }
+    
+    @Test 
+    public void testUpdateEventDrivenLongTimestep() {
+        Ball testBall = new Ball(new Vect(2,3), new Vect(13,-7));
+        Board testBoard = new Board();
+        testBoard.setEventDriven(true);
+        testBoard.addBall(testBall); 
+        testBoard.addGadget(new CircleBumper(8,8)); 
+        for (int i = 0; i < 5; i++) {
+            testBoard.update(1000);
+            Vect position = testBall.getPosition();
+            assertTrue(position.x() >= 0 && position.x() <= 20);
+            assertTrue(position.y() >= 0 && position.y() <= 20);
+        }
+        assertTrue(testBoard.isEventDriven());
+    }
+    
+    @Test 
+    public void testUpdateEventDrivenBallCountChanges() {
+        Ball first = new Ball(new Vect(5,5), new Vect(2,0));
+        Ball second = new Ball(new Vect(7,5), new Vect(-2,0));
+        Ball third = new Ball(new Vect(5,10), new Vect(0,3));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.setEventDriven(true);
+        testBoard.addBall(first); 
+        testBoard.addBall(second); 
+        testBoard.addBall(third); 
+        // first and second touch after 375ms and swap velocities
+        testBoard.update(500);
+        assertEquals(5.5, first.getPosition().x(), 0.00001);
+        assertEquals(6.5, second.getPosition().x(), 0.00001);
+        // fewer balls than last update: nothing left over from the collision
+        testBoard.removeBall(first);
+        testBoard.removeBall(third);
+        testBoard.update(500);
+        assertEquals(7.5, second.getPosition().x(), 0.00001);
+        assertEquals(2, second.getVelocity().x(), 0.00001);
+        // more balls than ever before
+        Ball[] added = {new Ball(new Vect(2,15), new Vect(1,0)), new Ball(new Vect(6,15), new Vect(1,0)),
+                new Ball(new Vect(10,15), new Vect(1,0)), new Ball(new Vect(14,15), new Vect(1,0))};
+        for (Ball ball : added) {
+            testBoard.addBall(ball);
+        }
+        testBoard.update(500);
+        assertEquals(8.5, second.getPosition().x(), 0.00001);
+        for (int i = 0; i < added.length; i++) {
+            assertEquals(2.5 + 4 * i, added[i].getPosition().x(), 0.00001);
+        }
+    }
+    
+    @Test 
+    public void testUpdateBallsCollide() {
+        Ball testBall = new Ball(new Vect(5,5), new Vect(2,0));
+        Ball otherBall = new Ball(new Vect(7,5), new Vect(-2,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(testBall); 
+        testBoard.addBall(otherBall); 
+        // they touch after 375ms, at x = 5.75 and x = 6.25, and swap velocities
+        testBoard.update(500);
+        assertEquals(-2, testBall.getVelocity().x(), 0.00001);
+        assertEquals(2, otherBall.getVelocity().x(), 0.00001);
+        assertEquals(5.5, testBall.getPosition().x(), 0.00001);
+        assertEquals(6.5, otherBall.getPosition().x(), 0.00001);
+    }
+    
+    @Test 
+    public void testUpdateBallsMeetAfterTimestep() {
+        Ball testBall = new Ball(new Vect(2,5), new Vect(1,0));
+        Ball otherBall = new Ball(new Vect(15,5), new Vect(-1,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(testBall); 
+        testBoard.addBall(otherBall); 
+        // they would touch after 6.25s
+        testBoard.update(100);
+        assertEquals(1, testBall.getVelocity().x(), 0.00001);
+        assertEquals(-1, otherBall.getVelocity().x(), 0.00001);
+        assertEquals(2.1, testBall.getPosition().x(), 0.00001);
+        assertEquals(14.9, otherBall.getPosition().x(), 0.00001);
+    }
+    
+    //updateBallBallCollisions()
+    @Test 
+    public void testUpdateBallBallCollisionsMeeting() {
+        Ball testBall = new Ball(new Vect(5,5), new Vect(2,0));
+        Ball otherBall = new Ball(new Vect(7,5), new Vect(-2,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(testBall); 
+        testBoard.addBall(otherBall); 
+        // they touch after 375ms, at x = 5.75 and x = 6.25, and swap velocities
+        assertEquals(125, testBoard.updateBallBallCollisions(testBall, 500));
+        assertEquals(-2, testBall.getVelocity().x(), 0.00001);
+        assertEquals(2, otherBall.getVelocity().x(), 0.00001);
+        assertEquals(5.75, testBall.getPosition().x(), 0.00001);
+        assertEquals(6.25, otherBall.getPosition().x(), 0.00001);
+    }
+    
+    @Test 
+    public void testUpdateBallBallCollisionsMeetingNone() {
+        Ball testBall = new Ball(new Vect(2,5), new Vect(1,0));
+        Ball otherBall = new Ball(new Vect(15,5), new Vect(-1,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(testBall); 
+        testBoard.addBall(otherBall); 
+        assertEquals(100, testBoard.updateBallBallCollisions(testBall, 100));
+        assertEquals(new Vect(2,5), testBall.getPosition());
+        assertEquals(new Vect(1,0), testBall.getVelocity());
+    }
+    
+    @Test 
+    public void testUpdateBallsCollideAfterBallsChange() {
+        Ball farBall = new Ball(new Vect(15,15), new Vect(0,0));
+        Ball testBall = new Ball(new Vect(5,5), new Vect(2,0));
+        Ball otherBall = new Ball(new Vect(7,5), new Vect(-2,0));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(farBall); 
+        testBoard.addBall(new Ball(new Vect(2,15), new Vect(0,0))); 
+        testBoard.update(10);
+        testBoard.removeBall(farBall);
+        testBoard.addBall(otherBall); 
+        testBoard.addBall(testBall); 
+        testBoard.update(500);
+        assertEquals(-2, testBall.getVelocity().x(), 0.00001);
+        assertEquals(2, otherBall.getVelocity().x(), 0.00001);
+        assertEquals(3, testBoard.getBalls().size());
+    }
+    
+    @Test 
+    public void testUpdateWallHitElsewhereTrajectory() {
+        // the first ball reaches the right wall 25ms into the step, far from the second
+        Board testBoard = new Board(0, 0, 0);
+        Ball bouncing = new Ball(new Vect(19.5, 5), new Vect(10, 0));
+        Ball free = new Ball(new Vect(5, 15), new Vect(10, 0));
+        testBoard.addBall(bouncing);
+        testBoard.addBall(free);
+        testBoard.update(50);
+        assertEquals(new Vect(19.5, 5), bouncing.getPosition());
+        assertEquals(new Vect(-10, 0), bouncing.getVelocity());
+        // the balls share a clock, so the second only moves for the 25ms left after the bounce
+        assertEquals(new Vect(5.25, 15), free.getPosition());
+    }
+    
+    @Test 
+    public void testUpdateWallHitElsewhereFlipper() {
+        Board testBoard = new Board(0, 0, 0);
+        Flipper flipper = new Flipper(2, 2, 0, false, true);
+        testBoard.addGadget(flipper);
+        testBoard.addBall(new Ball(new Vect(19.5, 15), new Vect(10, 0)));
+        flipper.activateGadget();
+        testBoard.update(50);
+        Flipper expected = new Flipper(2, 2, 0, false, true);
+        expected.activateGadget();
+        // the flipper turns for the 25ms left after the ball's bounce
+        expected.updateFlipper(25);
+        assertEquals(expected, flipper);
+    }
+    
+    @Test 
+    public void testUpdateFarApartBallsInSeparateIslands() {
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addBall(new Ball(new Vect(3,3), new Vect(1,0)));
+        testBoard.addBall(new Ball(new Vect(17,17), new Vect(-1,0)));
+        testBoard.update(10);
+        // all in one without a pool
+        assertEquals(1, testBoard.getIslandCount());
+        testBoard.setIslandPool(ForkJoinPool.commonPool());
+        testBoard.update(10);
+        assertEquals(2, testBoard.getIslandCount());
+        // within reach of the second ball in 10ms, so the balls share a clock again
+        testBoard.addBall(new Ball(new Vect(14,17), new Vect(0,0)));
+        testBoard.update(10);
+        assertEquals(1, testBoard.getIslandCount());
+    }
+    
+    @Test 
+    public void testUpdateBallNearGadgetOrWallKeepsOneIsland() {
+        CircleBumper bumper = new CircleBumper(8, 8);
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.setIslandPool(ForkJoinPool.commonPool());
+        testBoard.addGadget(bumper);
+        testBoard.addBall(new Ball(new Vect(9.5,9.5), new Vect(1,0)));
+        testBoard.addBall(new Ball(new Vect(3,17), new Vect(-1,0)));
+        testBoard.update(10);
+        assertEquals(1, testBoard.getIslandCount());
+        testBoard.removeGadget(bumper);
+        testBoard.update(10);
+        assertEquals(2, testBoard.getIslandCount());
+        // within reach of the bottom wall in 10ms
+        testBoard.addBall(new Ball(new Vect(12,19), new Vect(0,0)));
+        testBoard.update(10);
+        assertEquals(1, testBoard.getIslandCount());
+    }
+    
+    @Test 
+    public void testUpdateIslandPoolSameAsSequential() {
+        Board sequential = crowdedBoard();
+        Board parallel = crowdedBoard();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setIslandPool(pool);
+        try {
+            for (int step = 0; step < 1500; step++) {
+                sequential.update(2);
+                parallel.update(2);
+                assertEquals(sequential.getBalls().size(), parallel.getBalls().size());
+                for (int i = 0; i < sequential.getBalls().size(); i++) {
+                    assertEquals(sequential.getBalls().get(i).getPosition(), parallel.getBalls().get(i).getPosition());
+                    assertEquals(sequential.getBalls().get(i).getVelocity(), parallel.getBalls().get(i).getVelocity());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(sequential.getGoodbyeWallBallMessages().size() > 1);
+        assertEquals(sequential.getGoodbyeWallBallMessages().size(), parallel.getGoodbyeWallBallMessages().size());
+        for (int i = 0; i < sequential.getGoodbyeWallBallMessages().size(); i++) {
+            assertEquals(sequential.getGoodbyeWallBallMessages().get(i).getBall().getPosition(), 
+                    parallel.getGoodbyeWallBallMessages().get(i).getBall().getPosition());
+        }
+    }
+    
+    @Test 
+    public void testUpdateBallFallsOntoBumperInOneTimestep() {
+        // at rest, so a straight-line prediction would never see the bumper below it
+        Ball testBall = new Ball(new Vect(5.5,8.5), new Vect(0,0));
+        Board testBoard = new Board(25, 0, 0);
+        testBoard.addGadget(new CircleBumper(5, 10));
+        testBoard.addBall(testBall);
+        // it touches the bumper after falling 1.25L, in about 316ms, and bounces back up
+        testBoard.update(500);
+        assertTrue(testBall.getVelocity().y() < 0);
+        assertTrue(testBall.getPosition().y() < 9.75);
+    }
+    
+    @Test 
+    public void testUpdateSoonestGadgetFirst() {
+        Ball testBall = new Ball(new Vect(1.1,1.7), new Vect(0,5));
+        Board testBoard = new Board(0, 0, 0);
+        testBoard.addGadget(new SquareBumper(0, 2));
+        testBoard.addGadget(new SquareBumper(1, 2));
+        testBoard.addBall(testBall);
+        // the top of the second bumper is reached after 10ms, the corner of the first 
+        // one only after 14ms
+        testBoard.update(24);
+        assertEquals(0, testBall.getVelocity().x(), 0.00001);
+        assertEquals(-5, testBall.getVelocity().y(), 0.00001);
+    }
+    
+    @Test 
+    public void testUpdateLongTimestepsSameAsShortOnes() {
+        // one ball at a time, as the collisions of a ball shorten the moves of the balls after 
+        // it by however much of its timestep they took
+        for (int ball = 0; ball < 3; ball++) {
+            Board shortSteps = bumperBoard(ball);
+            Board longSteps = bumperBoard(ball);
+            for (int step = 0; step < 100; step++) {
+                for (int j = 0; j < 6; j++) {
+                    shortSteps.update(2);
+                }
+                longSteps.update(12);
+            }
+            assertEquals(shortSteps.getBalls().get(0).getX(), longSteps.getBalls().get(0).getX(), 0.00001);
+            assertEquals(shortSteps.getBalls().get(0).getY(), longSteps.getBalls().get(0).getY(), 0.00001);
+        }
+    }
+    
+    @Test 
+    public void testUpdateFastBallsBounceOffEverySide() {
+        // a square bumper spans 10 to 11 on both axes; balls come at it from the left, the 
+        // right, above and below, starting at different distances so that they reach it at 
+        // different points in a 12ms step
+        double[][] directions = {{1,0}, {-1,0}, {0,1}, {0,-1}};
+        for (double speed : new double[] {150, 200}) {
+            for (double[] direction : directions) {
+                for (int k = 0; k < 20; k++) {
+                    double distance = .3 + k * .137;
+                    Vect start = new Vect(10.5 - direction[0] * (.75 + distance) + direction[1] * .2, 
+                            10.5 - direction[1] * (.75 + distance) + direction[0] * .2);
+                    Ball testBall = new Ball(start, new Vect(direction[0] * speed, direction[1] * speed));
+                    Board testBoard = new Board(25, 0, 0);
+                    testBoard.addGadget(new SquareBumper(10, 10));
+                    testBoard.addBall(testBall);
+                    for (int step = 0; step < 3; step++) {
+                        testBoard.update(12);
+                    }
+                    String where = speed + "L/s along " + direction[0] + "," + direction[1] + " from " + start;
+                    // back out on the side it came from
+                    assertTrue(where, (testBall.getX() - 10.5) * direction[0] + (testBall.getY() - 10.5) * direction[1] < -.75 + 1e-6);
+                    assertTrue(where, testBall.getVelocity().dot(new Vect(direction[0], direction[1])) < 0);
+                }
+            }
+        }
+    }
+    
+    // a board without friction whose ball, one of three, falls onto circle bumpers and bounces off them
+    private static Board bumperBoard(int ball) {
+        Board board = new Board(25, 0, 0);
+        board.addGadget(new CircleBumper(5, 12));
+        board.addGadget(new CircleBumper(12, 15));
+        board.addGadget(new CircleBumper(9, 9));
+        board.addGadget(new CircleBumper(14, 8));
+        Ball[] balls = {new Ball(new Vect(5.4,2), new Vect(3,0)), 
+                new Ball(new Vect(12.3,4), new Vect(-2,1)), new Ball(new Vect(9.2,1), new Vect(0,0))};
+        board.addBall(balls[ball]);
+        return board;
+    }
+    
+    // a board with balls spread over it, falling on bumpers and a self-triggering absorber, 
+    // with its left wall joined to another board
+    private static Board crowdedBoard() {
+        Board board = new Board("Crowded");
+        Absorber absorber = new Absorber(0, 19, 20, 1);
+        absorber.addGadgetToTrigger(absorber);
+        board.addGadget(absorber);
+        for (int x = 1; x < 20; x += 4) {
+            CircleBumper bumper = new CircleBumper(x, 12);
+            bumper.addGadgetToTrigger(absorber);
+            board.addGadget(bumper);
+        }
+        for (int i = 0; i < 24; i++) {
+            board.addBall(new Ball(new Vect(1.5 + (i % 6) * 3, 1.5 + (i / 6) * 2.5), new Vect(-6 + i % 7 * 2, i % 5 - 2)));
+        }
+        board.joinWall("left", "Other");
+        return board;
+    }
+    
+    //addBall(), removeBall(), getBalls()
+    @Test
+    public void testRemovedBallKeepsState() {
+        Board testBoard = new Board();
+        Ball testBall = new Ball(new Vect(5.25, 3.25), new Vect(2, 1));
+        Ball otherBall = new Ball(new Vect(10.25, 3.25), new Vect(-2, 1));
+        testBoard.addBall(testBall);
+        testBoard.addBall(otherBall);
+        testBoard.removeBall(testBall);
+        testBoard.update(10);
+        assertEquals(new Vect(5.25, 3.25), testBall.getPosition());
+        assertEquals(new Vect(2, 1), testBall.getVelocity());
+        assertEquals(1, testBoard.getBalls().size());
+    }
+    
+    @Test
+    public void testBallMovedBetweenBoards() {
+        Board first = new Board();
+        Board second = new Board();
+        first.addBall(new Ball(new Vect(15.25, 3.25), new Vect(0, 0)));
+        Ball testBall = new Ball(new Vect(5.25, 3.25), new Vect(2, 1));
+        for (int i = 0; i < 3; i++) {
+            first.addBall(testBall);
+            first.removeBall(testBall);
+            second.addBall(testBall);
+            second.removeBall(testBall);
+        }
+        assertEquals(new Vect(5.25, 3.25), testBall.getPosition());
+        assertEquals(new Vect(2, 1), testBall.getVelocity());
+        assertEquals(1, first.getBalls().size());
+        assertEquals(0, second.getBalls().size());
+    }
+    
+    @Test
+    public void testBallReadWhileMoving() throws InterruptedException {
+        // the GUI paints balls while the board they're on adds and removes them
+        Board testBoard = new Board();
+        for (int i = 0; i < 10; i++) {
+            testBoard.addBall(new Ball(new Vect(1.25 + i, 3.25), new Vect(0, 0)));
+        }
+        Ball testBall = new Ball(new Vect(5.25, 15.25), new Vect(2, 1));
+        List<Throwable> failures = new ArrayList<Throwable>();
+        Thread painter = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100000; i++) {
+                    testBall.getShape(20);
+                }
+            } catch (Throwable t) {
+                synchronized (failures) {
+                    failures.add(t);
+                }
+            }
+        });
+        painter.start();
+        for (int i = 0; i < 10000; i++) {
+            testBoard.addBall(testBall);
+            testBoard.removeBall(testBall);
+        }
+        painter.join();
+        assertEquals(0, failures.size());
+        assertEquals(new Vect(5.25, 15.25), testBall.getPosition());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testGetBallsUnmodifiable() {
+        Board testBoard = new Board();
+        testBoard.getBalls().add(new Ball(new Vect(5.25, 3.25), new Vect(2, 1)));
+    }
+    
+    //addGadget()
+    @Test
+    public void testAddGadgetNextToAnother() {
+        Board testBoard = new Board();
+        testBoard.addGadget(new SquareBumper(3, 3));
+        testBoard.addGadget(new SquareBumper(4, 3));
+        testBoard.addGadget(new Absorber(0, 4, 20, 1));
+        assertEquals(3, testBoard.getNumberOfGadgets());
+    }
+    
+    @Test
+    public void testAddGadgetSamePosition() {
+        Board testBoard = new Board();
+        testBoard.addGadget(new SquareBumper(3, 3));
+        try {
+            testBoard.addGadget(new CircleBumper(3, 3));
+            fail("expected overlapping gadgets to be rejected");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(1, testBoard.getNumberOfGadgets());
+        }
+    }
+    
+    @Test
+    public void testAddGadgetWhereRemoved() {
+        Board testBoard = new Board();
+        SquareBumper first = new SquareBumper(5, 5);
+        SquareBumper second = new SquareBumper(7, 7);
+        testBoard.addGadget(first);
+        testBoard.addGadget(second);
+        testBoard.removeGadget(first);
+        testBoard.addGadget(first);
+        assertEquals(2, testBoard.getNumberOfGadgets());
+        // the gadget that moved down an index still covers its cell
+        try {
+            testBoard.addGadget(new CircleBumper(7, 7));
+            fail("expected overlapping gadgets to be rejected");
+        } catch (IndexOutOfBoundsException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("(2, 0)"));
+        }
+        testBoard.setRepCheckMode(RepCheckMode.FULL);
+        testBoard.update(10);
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testAddGadgetInsideAbsorber() {
+        Board testBoard = new Board();
+        testBoard.addGadget(new Absorber(0, 18, 20, 2));
+        testBoard.addGadget(new SquareBumper(7, 19));
+    }
+    
+    //setRepCheckMode()
+    @Test
+    public void testRepCheckModeDefault() {
+        assertEquals(RepCheckMode.SAMPLED, new Board().getRepCheckMode());
+    }
+    
+    @Test
+    public void testRepCheckModeOffAllowsOverlappingBalls() {
+        Board testBoard = new Board();
+        testBoard.setRepCheckMode(RepCheckMode.OFF);
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(0, 0)));
+        testBoard.addBall(new Ball(new Vect(5.1, 5), new Vect(1, 0)));
+        assertEquals(2, testBoard.getNumberOfBalls());
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testRepCheckModeSampledRejectsOverlappingBalls() {
+        Board testBoard = new Board();
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(0, 0)));
+        testBoard.addBall(new Ball(new Vect(5.1, 5), new Vect(1, 0)));
+    }
+    
+    @Test
+    public void testRepCheckModeFullUpdate() {
+        Board testBoard = new Board();
+        testBoard.setRepCheckMode(RepCheckMode.FULL);
+        testBoard.addGadget(new SquareBumper(3, 3));
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(3, 4)));
+        for (int i = 0; i < 100; i++) {
+            testBoard.update(2);
+        }
+        assertEquals(RepCheckMode.FULL, testBoard.getRepCheckMode());
+        assertEquals(1, testBoard.getNumberOfBalls());
+    }
+    
+    //setProfile()
+    @Test
+    public void testProfileRecordsPhasesOncePerUpdate() {
+        Board testBoard = new Board();
+        TickProfile profile = new TickProfile();
+        testBoard.setProfile(profile);
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(3, 4)));
+        testBoard.addBall(new Ball(new Vect(10, 10), new Vect(-3, 4)));
+        testBoard.update(2);
+        testBoard.update(2);
+        for (TickProfile.Phase phase : new TickProfile.Phase[] {TickProfile.Phase.CORNERS, TickProfile.Phase.WALLS, 
+                TickProfile.Phase.BALL_BALL, TickProfile.Phase.GADGETS, TickProfile.Phase.MOVE}) {
+            assertEquals(phase.name(), 2, profile.getHistogram(phase).getCount());
+        }
+        testBoard.setProfile(null);
+        testBoard.update(2);
+        assertEquals(2, profile.getHistogram(TickProfile.Phase.MOVE).getCount());
+    }
+    
+    @Test
+    public void testProfileSkipsPhasesWhenEventDriven() {
+        Board testBoard = new Board();
+        TickProfile profile = new TickProfile();
+        testBoard.setProfile(profile);
+        testBoard.setEventDriven(true);
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(3, 4)));
+        testBoard.update(50);
+        assertEquals(0, profile.getHistogram(TickProfile.Phase.MOVE).getCount());
+    }
+    
+    //connectBoardsToPortals(), disconnectSingleBoardFromPortals(), getPortalByName()
+    @Test
+    public void testConnectPortalsByDestinationBoard() {
+        Board testBoard = new Board("Alpha");
+        Portal toBeta = new Portal("P", 1, 1, "Q", "Beta");
+        Portal alsoToBeta = new Portal("R", 3, 1, "S", "Beta");
+        Portal toGamma = new Portal("T", 5, 1, "U", "Gamma");
+        testBoard.addGadget(toBeta);
+        testBoard.addGadget(alsoToBeta);
+        testBoard.addGadget(toGamma);
+        testBoard.connectBoardsToPortals(new String[] {"Beta", "Delta"});
+        assertTrue(toBeta.isConnected());
+        assertTrue(alsoToBeta.isConnected());
+        assertFalse(toGamma.isConnected());
+        testBoard.disconnectSingleBoardFromPortals("Beta");
+        testBoard.disconnectSingleBoardFromPortals("Delta");
+        assertFalse(toBeta.isConnected());
+        assertFalse(alsoToBeta.isConnected());
+    }
+    
+    @Test
+    public void testPortalsFollowGadgetList() {
+        Board testBoard = new Board("Alpha");
+        Portal toBeta = new Portal("P", 1, 1, "Q", "Beta");
+        testBoard.getGadgets().add(toBeta);
+        assertSame(toBeta, testBoard.getPortalByName("P"));
+        testBoard.connectBoardsToPortals(new String[] {"Beta"});
+        assertTrue(toBeta.isConnected());
+        testBoard.removeGadget(toBeta);
+        try {
+            testBoard.getPortalByName("P");
+            fail("expected the removed portal to be gone");
+        } catch (RuntimeException e) {
+            // removed
+        }
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testRemovedAbsorberNoLongerAllowsOverlappingBalls() {
+        Board testBoard = new Board();
+        Absorber absorber = new Absorber(0, 18, 20, 2);
+        testBoard.addGadget(absorber);
+        testBoard.addBall(new Ball(new Vect(5, 5), new Vect(0, 0)));
+        testBoard.addBall(new Ball(new Vect(5.1, 5), new Vect(1, 0)));
+        testBoard.removeGadget(absorber);
+        testBoard.addBall(new Ball(new Vect(5.2, 5), new Vect(1, 0)));
+    }
+    
     @Test
     public void equalsTest(){
         Board testBoard = new Board();
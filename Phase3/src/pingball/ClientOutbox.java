@@ -0,0 +1,241 @@
+package pingball;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The lines waiting to be sent to one client of a server that blocks a thread per client,
+ * with its own writer thread. Routing threads only put lines in the outbox, which never blocks,
+ * so a client that reads slowly or not at all only delays its own lines. The outbox holds at
+ * most a fixed number of lines; what happens to a line sent when it is full is set by an
+ * OverflowPolicy. Lines that pile up while the client is being written to are sent together,
+ * in one write.
+ * The class is mutable.
+ */
+public class ClientOutbox {
+
+    /* Thread Safety Argument
+     *
+     * Any thread may call offer(), close() and the getters. The lines are kept in a thread-safe
+     * BlockingQueue, which only the writer thread takes from, so the lines are written in order
+     * and the Sink is confined to the writer thread. The count of dropped lines is atomic,
+     * and closed is volatile, so a closed outbox is seen as closed by every thread.
+     */
+
+    // Abstraction function:
+    //      represents the lines in queue, oldest first, waiting for the writer thread to write
+    //      them to out; dropped lines didn't fit. If closed, no more lines are written, and if
+    //      the client was disconnected for overflowing, connection has been closed.
+    // Rep invariant:
+    //      capacity > 0, queue.size() <= capacity, dropped >= 0
+    //
+
+    /**
+     * Where an outbox writes its lines
+     */
+    public interface Sink {
+        /**
+         * Writes lines to the client and flushes them together; only called on the outbox's
+         * writer thread
+         * @param lines the lines, without line terminators
+         * @throws IOException if the client can't be written to
+         */
+        public void writeLines(List<String> lines) throws IOException;
+    }
+
+    // lines held for a client, by default, before the overflow policy applies
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("pingball.outbox.capacity", 1024);
+
+    // name of the writer threads
+    static final String WRITER_NAME = "ClientOutbox writer";
+
+    // most lines the writer thread sends to the client in one write
+    static final int MAX_BATCH_LINES = 256;
+
+    private final Sink out;
+    private final Closeable connection;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<String> queue;
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    /**
+     * Makes an outbox that writes to a PrintWriter and starts its writer thread
+     * @param out where to write the lines; only written to and flushed on the writer thread
+     * @param connection closed to disconnect the client under OverflowPolicy.DISCONNECT
+     * @param capacity most lines held before the policy applies; must be positive
+     * @param policy what to do with a line that doesn't fit
+     */
+    public ClientOutbox(PrintWriter out, Closeable connection, int capacity, OverflowPolicy policy) {
+        this(lines -> {
+            for (String line : lines) {
+                out.write(line);
+                out.write(System.lineSeparator());
+            }
+            out.flush();
+        }, connection, capacity, policy);
+    }
+
+    /**
+     * Makes an outbox and starts its writer thread, a platform thread
+     * @param out where to write the lines
+     * @param connection closed to disconnect the client under OverflowPolicy.DISCONNECT
+     * @param capacity most lines held before the policy applies; must be positive
+     * @param policy what to do with a line that doesn't fit
+     */
+    public ClientOutbox(Sink out, Closeable connection, int capacity, OverflowPolicy policy) {
+        this(out, connection, capacity, policy, ThreadMode.PLATFORM.threadFactory(WRITER_NAME));
+    }
+
+    /**
+     * Makes an outbox and starts its writer thread
+     * @param out where to write the lines
+     * @param connection closed to disconnect the client under OverflowPolicy.DISCONNECT
+     * @param capacity most lines held before the policy applies; must be positive
+     * @param policy what to do with a line that doesn't fit
+     * @param threads makes the writer thread
+     */
+    public ClientOutbox(Sink out, Closeable connection, int capacity, OverflowPolicy policy, ThreadFactory threads) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.out = out;
+        this.connection = connection;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<String>(capacity);
+        this.writer = threads.newThread(new Runnable() {
+            public void run() {
+                writeLines();
+            }
+        });
+        writer.start();
+        checkRep();
+    }
+
+    /**
+     * Puts a line in the outbox to be sent to the client, without blocking
+     * @param line the line to send, without a line terminator
+     * @return true if the line is waiting to be sent, false if it was dropped because the
+     *         outbox is full or closed
+     */
+    public boolean offer(String line) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        switch (policy) {
+        case DROP_OLDEST:
+            while (!queue.offer(line)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+            return true;
+        case DISCONNECT:
+            if (queue.offer(line)) {
+                return true;
+            }
+            dropped.incrementAndGet();
+            disconnect();
+            return false;
+        default:
+            if (queue.offer(line)) {
+                return true;
+            }
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the writer thread; lines still in the outbox aren't sent
+     */
+    public void close() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    /**
+     * Tells whether the outbox has been closed, either by close() or by disconnecting the
+     * client for overflowing
+     * @return true if the outbox is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Gets the number of lines waiting to be sent
+     * @return the number of lines in the outbox
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the most lines the outbox holds
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of lines that were never sent because the outbox was full or closed
+     * @return the number of dropped lines
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes lines as they arrive until the outbox is closed; whatever has piled up while
+     * the last lines were written goes out together in one write
+     */
+    private void writeLines() {
+        List<String> batch = new ArrayList<String>();
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_LINES - 1);
+                out.writeLines(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (IOException e) {
+            // the client is gone; its reading thread cleans up
+            closed = true;
+        }
+    }
+
+    /**
+     * Closes the outbox and the client's connection, so the thread reading from the client
+     * sees it disconnect
+     */
+    private void disconnect() {
+        close();
+        try {
+            connection.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert capacity > 0;
+        assert queue.size() <= capacity;
+        assert dropped.get() >= 0;
+    }
+}
@@ -0,0 +1,249 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ClientOutboxTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: offer()
+     * - Partitions:
+     *      - Client: reading, not reading (writer thread stuck)
+     *      - Outbox: empty, full, closed
+     *      - Policy: DROP_NEWEST, DROP_OLDEST, DISCONNECT
+     *
+     * Method: close()
+     * - Partitions: writer thread waiting for lines; lines offered after closing
+     *
+     * Writer thread:
+     * - Partitions: lines piled up while writing, more than MAX_BATCH_LINES piled up
+     *
+     * A client that isn't reading is simulated by a Writer that blocks until released, so
+     * the writer thread holds one line while the rest wait in the outbox.
+     */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    /**
+     * A Writer that records what is written to it, and blocks each write until released
+     */
+    private static class StuckWriter extends Writer {
+        private final StringBuffer written = new StringBuffer();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released;
+
+        StuckWriter(boolean stuck) {
+            released = new CountDownLatch(stuck ? 1 : 0);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            written.append(chars, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void awaitEntered() throws InterruptedException {
+            assertTrue(entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        String getWritten() {
+            return written.toString().replace(System.lineSeparator(), "\n");
+        }
+    }
+
+    /**
+     * A connection that records whether it was closed
+     */
+    private static class Connection implements Closeable {
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+
+    // waits until every line in the outbox has been written
+    private static void awaitEmpty(ClientOutbox outbox, StuckWriter writer, String expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!writer.getWritten().equals(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, writer.getWritten());
+        assertEquals(0, outbox.size());
+    }
+
+    // fills an outbox of capacity 2 whose writer is stuck on "a", then offers "b", "c", "d"
+    private static ClientOutbox overflow(StuckWriter writer, Connection connection, OverflowPolicy policy)
+            throws InterruptedException {
+        ClientOutbox outbox = new ClientOutbox(new PrintWriter(writer, true), connection, 2, policy);
+        assertTrue(outbox.offer("a"));
+        writer.awaitEntered();
+        outbox.offer("b");
+        outbox.offer("c");
+        outbox.offer("d");
+        return outbox;
+    }
+
+    //offer()
+    @Test
+    public void testOfferReadingClientInOrder() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(false);
+        ClientOutbox outbox = new ClientOutbox(new PrintWriter(writer, true), new Connection(), 128, OverflowPolicy.DROP_NEWEST);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(outbox.offer("line " + i));
+            expected.append("line " + i + "\n");
+        }
+        awaitEmpty(outbox, writer, expected.toString());
+        assertEquals(0, outbox.getDropped());
+        outbox.close();
+    }
+
+    @Test
+    public void testOfferDropNewest() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(true);
+        Connection connection = new Connection();
+        ClientOutbox outbox = overflow(writer, connection, OverflowPolicy.DROP_NEWEST);
+        assertEquals(2, outbox.size());
+        assertEquals(1, outbox.getDropped());
+        assertFalse(outbox.offer("e"));
+        assertEquals(2, outbox.getDropped());
+        writer.release();
+        awaitEmpty(outbox, writer, "a\nb\nc\n");
+        assertFalse(connection.closed.get());
+        outbox.close();
+    }
+
+    @Test
+    public void testOfferDropOldest() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(true);
+        Connection connection = new Connection();
+        ClientOutbox outbox = overflow(writer, connection, OverflowPolicy.DROP_OLDEST);
+        assertEquals(2, outbox.size());
+        assertEquals(1, outbox.getDropped());
+        assertTrue(outbox.offer("e"));
+        assertEquals(2, outbox.getDropped());
+        writer.release();
+        awaitEmpty(outbox, writer, "a\nd\ne\n");
+        assertFalse(connection.closed.get());
+        outbox.close();
+    }
+
+    @Test
+    public void testOfferDisconnect() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(true);
+        Connection connection = new Connection();
+        ClientOutbox outbox = overflow(writer, connection, OverflowPolicy.DISCONNECT);
+        assertTrue(connection.closed.get());
+        assertTrue(outbox.isClosed());
+        assertFalse(outbox.offer("e"));
+        assertEquals(2, outbox.getDropped());
+    }
+
+    @Test
+    public void testOfferDoesNotWaitForStuckClient() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(true);
+        ClientOutbox outbox = new ClientOutbox(new PrintWriter(writer, true), new Connection(), 8, OverflowPolicy.DROP_OLDEST);
+        outbox.offer("first");
+        writer.awaitEntered();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10000; i++) {
+            outbox.offer("line " + i);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        assertEquals(8, outbox.size());
+        assertEquals(10000 - 8, outbox.getDropped());
+        outbox.close();
+    }
+
+    //writer thread
+    @Test
+    public void testPiledUpLinesAreWrittenTogether() throws InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        List<List<String>> writes = Collections.synchronizedList(new ArrayList<List<String>>());
+        ClientOutbox outbox = new ClientOutbox(lines -> {
+            writes.add(new ArrayList<String>(lines));
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, new Connection(), 1024, OverflowPolicy.DROP_NEWEST);
+        assertTrue(outbox.offer("first"));
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (writes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        int count = ClientOutbox.MAX_BATCH_LINES + 10;
+        for (int i = 0; i < count; i++) {
+            assertTrue(outbox.offer("line " + i));
+        }
+        released.countDown();
+        while (outbox.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);
+        synchronized (writes) {
+            assertEquals(3, writes.size());
+            assertEquals(Collections.singletonList("first"), writes.get(0));
+            assertEquals(ClientOutbox.MAX_BATCH_LINES, writes.get(1).size());
+            assertEquals("line 0", writes.get(1).get(0));
+            assertEquals(10, writes.get(2).size());
+            assertEquals("line " + (count - 1), writes.get(2).get(9));
+        }
+        outbox.close();
+    }
+
+    //close()
+    @Test
+    public void testCloseDropsLaterLines() throws InterruptedException {
+        StuckWriter writer = new StuckWriter(false);
+        ClientOutbox outbox = new ClientOutbox(new PrintWriter(writer, true), new Connection(), 4, OverflowPolicy.DROP_NEWEST);
+        assertTrue(outbox.offer("a"));
+        awaitEmpty(outbox, writer, "a\n");
+        outbox.close();
+        assertTrue(outbox.isClosed());
+        assertFalse(outbox.offer("b"));
+        assertEquals(1, outbox.getDropped());
+        Thread.sleep(50);
+        assertEquals("a\n", writer.getWritten());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        new ClientOutbox(new PrintWriter(new StuckWriter(false), true), new Connection(), 0, OverflowPolicy.DROP_NEWEST);
+    }
+}
@@ -13,23 +13,119 @@ public class ClientSocket {
     //
     // Abstraction function:
     //      Represents a single client connected to the server,
-    //      with its ID, specific socket, input & output streams.
+    //      with its ID, specific socket, input & output streams,
+    //      and the outbox of lines waiting to be written to the output stream;
+    //      or, for a server serving without blocking, with its ID
+    //      and its connection. The bytes written to the client are counted
+    //      in metrics, if there are any.
     //
     // Rep invariant:
     //      The fields are of the correct types, and this is 
     //      statically checked.
     //
     
-    private String id; 
+    // read by the outbox's writer thread when it counts the bytes it wrote
+    private volatile String id; 
     private final Socket socket; 
     private final BufferedReader in; 
     private final PrintWriter out; 
+    private final ClientOutbox outbox;
+    private final NioConnection connection;
+    private final boolean binaryCapable;
+    private final ServerMetrics metrics;
     
     public ClientSocket(String id, Socket socket, BufferedReader in, PrintWriter out) {
         this.id = id;
         this.socket = socket; 
         this.in = in; 
         this.out = out; 
+        this.outbox = new ClientOutbox(out, socket, ClientOutbox.DEFAULT_CAPACITY, OverflowPolicy.getDefault());
+        this.connection = null;
+        this.binaryCapable = false;
+        this.metrics = null;
+    }
+    
+    /**
+     * Makes a ClientSocket for a client of a server that blocks a thread per client, 
+     * and starts the writer thread of its outbox
+     * @param id the ID of the client, null until the client names its board
+     * @param socket the client's socket
+     * @param out the client's end of the wire protocol, only written to by the outbox
+     * @param outboxCapacity most lines waiting to be sent to the client
+     * @param overflowPolicy what to do with lines sent while the outbox is full
+     * @param threadMode the kind of thread the outbox writes on
+     * @param metrics counts the bytes out writes to the client
+     */
+    public ClientSocket(String id, Socket socket, WireWriter out, 
+            int outboxCapacity, OverflowPolicy overflowPolicy, ThreadMode threadMode, ServerMetrics metrics) {
+        this.id = id;
+        this.socket = socket; 
+        this.in = null; 
+        this.out = null; 
+        this.outbox = new ClientOutbox(lines -> {
+            long written = out.getBytesWritten();
+            out.writeLines(lines);
+            metrics.sentBytes(getId(), out.getBytesWritten() - written);
+        }, socket, outboxCapacity, overflowPolicy, threadMode.threadFactory(ClientOutbox.WRITER_NAME));
+        this.connection = null;
+        this.binaryCapable = true;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Makes a ClientSocket for a client of a server serving without blocking
+     * @param id the ID of the client, null until the client names its board
+     * @param connection the client's connection
+     * @param metrics counts the bytes connection queues for the client
+     */
+    public ClientSocket(String id, NioConnection connection, ServerMetrics metrics) {
+        this.id = id;
+        this.socket = null;
+        this.in = null;
+        this.out = null;
+        this.outbox = null;
+        this.connection = connection;
+        this.binaryCapable = false;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Sends a line to the client, without waiting for the client to read it
+     * @param line the line to send, without a line terminator
+     */
+    public void send(String line) {
+        if (connection != null) {
+            metrics.sentBytes(id, connection.send(line));
+        } else {
+            outbox.offer(line);
+        }
+    }
+    
+    /**
+     * Tells whether the client's connection can switch to the binary framing of the wire 
+     * protocol, if the client offers it
+     * @return true if the connection can be framed
+     */
+    public boolean supportsBinary() {
+        return binaryCapable;
+    }
+    
+    /**
+     * Stops sending to the client; call once the client has disconnected
+     */
+    public void close() {
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+    
+    /**
+     * Gets the number of lines for the client that were dropped because it wasn't
+     * reading fast enough
+     * @return the number of dropped lines, 0 for a client served without blocking
+     */
+    public long getDroppedLines() {
+        return outbox == null ? 0 : outbox.getDropped();
     }
     
     /**
@@ -43,7 +139,10 @@ public class ClientSocket {
     /**
      * Gets the output stream for the server, so the input stream
      * for the client that is connected.
-     * @return the input stream for the client
+     * @return the input stream for the client, or null if the client speaks 
+     *         the wire protocol through a WireWriter or is served without blocking; 
+     *         send() should be used instead, so that
+     *         writing to a slow client doesn't block the caller
      */
     public PrintWriter getOutputStream() {
         return this.out; 
@@ -59,7 +158,7 @@ public class ClientSocket {
     
     /**
      * Gets the socket reference for this client.
-     * @return the socket
+     * @return the socket, or null if the client is served without blocking
      */
     public Socket getSocket() {
         return this.socket; 
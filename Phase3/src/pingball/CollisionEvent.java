@@ -0,0 +1,119 @@
+package pingball;
+
+/**
+ * An immutable prediction that a ball will collide with something on its board
+ * at a given time, used by the event-driven mode of Board. A prediction goes stale
+ * as soon as the predictions of any ball it involves are made again, e.g. because
+ * that ball collided with something else first.
+ */
+public class CollisionEvent implements Comparable<CollisionEvent> {
+    // Abstraction function:
+    //      represents ball number ball colliding at time seconds (measured from the start
+    //      of the current update) with the target-th thing of the given kind: a wall in
+    //      WallType order, a board corner, another ball or a gadget, in the board's lists.
+    //      A REFRESH event is not a collision; it marks when the ball's prediction
+    //      must be made again.
+    // Rep invariant:
+    //      time >= 0
+    //      ball >= 0
+    //      target >= 0 unless kind is REFRESH
+    //      ballVersion, targetVersion >= 0
+    //
+
+    /**
+     * The kinds of things a ball can be predicted to collide with.
+     */
+    public enum Kind {
+        WALL, CORNER, BALL, GADGET, REFRESH;
+    }
+
+    private final double time;
+    private final Kind kind;
+    private final int ball;
+    private final int target;
+    private final int ballVersion;
+    private final int targetVersion;
+
+    /**
+     * Constructor for CollisionEvent
+     * @param time time in seconds from the start of the update when the collision happens
+     * @param kind the kind of thing the ball collides with
+     * @param ball index of the ball in the board's list of balls
+     * @param target index of the thing the ball collides with, -1 for REFRESH
+     * @param ballVersion number of times the ball's predictions had been made again
+     *        when this was predicted
+     * @param targetVersion the same for the other ball, 0 unless kind is BALL
+     */
+    public CollisionEvent(double time, Kind kind, int ball, int target, int ballVersion, int targetVersion) {
+        this.time = time;
+        this.kind = kind;
+        this.ball = ball;
+        this.target = target;
+        this.ballVersion = ballVersion;
+        this.targetVersion = targetVersion;
+        checkRep();
+    }
+
+    /**
+     * Getter for the time of the collision
+     * @return time in seconds from the start of the update
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Getter for the kind of thing the ball collides with
+     * @return the kind of collision
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Getter for the colliding ball
+     * @return index of the ball in the board's list of balls
+     */
+    public int getBall() {
+        return ball;
+    }
+
+    /**
+     * Getter for the thing the ball collides with
+     * @return index of the wall, corner, ball or gadget; -1 for REFRESH
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * Checks whether this prediction still holds, i.e. the predictions of no ball
+     * it involves have been made again since it was made.
+     * @param versions number of times each ball's predictions have been made again, by index
+     * @return true if the prediction is still valid
+     */
+    public boolean isValid(int[] versions) {
+        if (versions[ball] != ballVersion) {
+            return false;
+        }
+        return kind != Kind.BALL || versions[target] == targetVersion;
+    }
+
+    @Override
+    public int compareTo(CollisionEvent other) {
+        return Double.compare(time, other.time);
+    }
+
+    @Override
+    public String toString() {
+        return kind + " collision of ball " + ball + " with " + target + " at " + time;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert time >= 0;
+        assert ball >= 0;
+        assert target >= 0 || kind == Kind.REFRESH;
+        assert ballVersion >= 0 && targetVersion >= 0;
+    }
+}
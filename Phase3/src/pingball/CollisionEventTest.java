@@ -0,0 +1,66 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.util.PriorityQueue;
+
+import org.junit.Test;
+
+/*
+ * Testing Strategy:
+ *
+ * Method: compareTo()
+ * - Partitions: earlier event, later event, events queued out of order
+ *
+ * Method: isValid()
+ * - Partitions: kind is BALL or not, versions unchanged, ball's version changed,
+ *               other ball's version changed
+ */
+
+public class CollisionEventTest {
+
+    //testing compareTo()
+    @Test
+    public void testCompareToOrder() {
+        CollisionEvent early = new CollisionEvent(.1, CollisionEvent.Kind.WALL, 0, 1, 0, 0);
+        CollisionEvent late = new CollisionEvent(.2, CollisionEvent.Kind.GADGET, 0, 3, 0, 0);
+        assertTrue(early.compareTo(late) < 0);
+        assertTrue(late.compareTo(early) > 0);
+    }
+
+    @Test
+    public void testCompareToQueue() {
+        PriorityQueue<CollisionEvent> events = new PriorityQueue<CollisionEvent>();
+        events.add(new CollisionEvent(.3, CollisionEvent.Kind.REFRESH, 2, -1, 0, 0));
+        events.add(new CollisionEvent(.1, CollisionEvent.Kind.CORNER, 1, 0, 0, 0));
+        events.add(new CollisionEvent(.2, CollisionEvent.Kind.BALL, 0, 1, 0, 0));
+        assertEquals(CollisionEvent.Kind.CORNER, events.poll().getKind());
+        assertEquals(CollisionEvent.Kind.BALL, events.poll().getKind());
+        assertEquals(CollisionEvent.Kind.REFRESH, events.poll().getKind());
+    }
+
+    //testing isValid()
+    @Test
+    public void testIsValidUnchanged() {
+        CollisionEvent event = new CollisionEvent(.1, CollisionEvent.Kind.BALL, 0, 1, 2, 5);
+        assertTrue(event.isValid(new int[] {2, 5}));
+    }
+
+    @Test
+    public void testIsValidBallChanged() {
+        CollisionEvent event = new CollisionEvent(.1, CollisionEvent.Kind.WALL, 0, 3, 2, 0);
+        assertFalse(event.isValid(new int[] {3}));
+    }
+
+    @Test
+    public void testIsValidOtherBallChanged() {
+        CollisionEvent event = new CollisionEvent(.1, CollisionEvent.Kind.BALL, 0, 1, 2, 5);
+        assertFalse(event.isValid(new int[] {2, 6}));
+    }
+
+    @Test
+    public void testIsValidGadgetIgnoresOtherVersions() {
+        CollisionEvent event = new CollisionEvent(.1, CollisionEvent.Kind.GADGET, 1, 0, 4, 0);
+        assertTrue(event.isValid(new int[] {7, 4}));
+    }
+}
@@ -2,12 +2,17 @@ package pingball;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -51,7 +56,6 @@ public class FileParsing {
     // generic regexes for other declarations
     private static final String name = "(\\s+name\\s*=\\s*" + NAME +")";
     private static final String onlyWhiteSpace = "(\\s*)";
-    private static final String comment = "(#.*)";
     private static final String xInt = "(\\s+x\\s*=" + INTEGER + ")";
     private static final String yInt = "(\\s+y\\s*=" + INTEGER + ")";
     private static final String xDouble = "(\\s+x\\s*=" + FLOAT + ")";
@@ -64,8 +68,7 @@ public class FileParsing {
     private static final String regexBoard = "(\\s*board)" + name + regexGravity + regexFriction1 + 
             regexFriction2 + onlyWhiteSpace;
     
-    // regex for comment lines
-    private static final String regexComment = onlyWhiteSpace + comment;
+    // comment lines start with # after any whitespace, and are picked out by getDeclarationType
     
     // regex for ball declaration
     private static final String xVelocity = "(\\s+xVelocity\\s*=\\s*" + FLOAT + ")";
@@ -130,60 +133,144 @@ public class FileParsing {
     private static final String xVelocityWord = "xVelocity";
     private static final String yVelocityWord = "yVelocity";
     
+    // the declaration regexes, compiled once; a line is only matched against the one its first word picks
+    private static final Pattern patternBoard = Pattern.compile(regexBoard);
+    private static final Pattern patternBall = Pattern.compile(regexBall);
+    private static final Pattern patternGadget = Pattern.compile(regexGadget);
+    private static final Pattern patternAbsorber = Pattern.compile(regexAbsorber);
+    private static final Pattern patternFire = Pattern.compile(regexFire);
+    private static final Pattern patternPortal = Pattern.compile(regexPortal);
+    private static final Pattern patternKeyDeclaration = Pattern.compile(regexKeyDeclaration);
     
     
     
     /**
-     * Helper method to get list of matched regex group in a line.
-     * @param line
-     * @param regex
-     * @return list of factors in a single declaration in board file
+     * Helper method to get attribute-value pairs for board and gadgets
+     * declared in the board files.
+     * @param m a matcher for a declaration line that its pattern matches
+     * @return map of attribute -> value for declarations in board file
      */
-    private  static List<String> getMatchedGroups(String line, String regex) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher m = pattern.matcher(line);
-
-        List<String> matchedGroups = new ArrayList<String>();
-        while (m.find()) { 
-            // the first element is always the original string, so ignore it
-            for (int i = 1; i <= m.groupCount(); i++) { 
+    private static Map<String, String> getPairs(Matcher m) {
+        Map<String, String> pairs = new HashMap<String, String>();
+        boolean typeSkipped = false;
+        // the pairs are read from successive find()s rather than from the whole-line match, as
+        // they always have been; a find() may stop short of an optional attribute that the
+        // whole-line match would have taken
+        m.reset();
+        while (m.find()) {
+            for (int i = 1; i <= m.groupCount(); i++) {
                 String group = m.group(i);
-                // ignore unmatched and empty spaces
-                if (group != null && !group.matches("\\s*")) {
-                    matchedGroups.add(group);
+                // ignore unmatched groups and empty spaces
+                if (group == null || isOnlyWhiteSpace(group)) {
+                    continue;
+                }
+                // first element is always the type of element
+                if (!typeSkipped) {
+                    typeSkipped = true;
+                    continue;
+                }
+                String declaration = removeWhiteSpace(group); // remove superfluous whitespace
+                int equals = declaration.indexOf('=');
+                // only groups of the form attribute=value make a pair
+                if (equals >= 0 && equals == declaration.lastIndexOf('=') && equals < declaration.length() - 1) {
+                    pairs.put(declaration.substring(0, equals), declaration.substring(equals + 1));
                 }
             }
         }
-        return matchedGroups;
+        return pairs;
     }
     
     /**
-     * Helper method to get attribute-value pairs for board and gadgets
-     * declared in the board files.
-     * @param groups
-     * @return map of attribute -> value for declarations in board file
+     * Gets the type of a declaration: its first word, or "#" for a comment
+     * @param line a line of a board file
+     * @return the first word of the line, "#" if the line is a comment, or "" if it is only whitespace
      */
-    private static Map<String, String> getPairsFromLine(String line, String regex) {
-        List<String> groups = getMatchedGroups(line, regex);
-        Map<String, String> pairs = new HashMap<String, String>();
-        // first element is always the type of element
-        for (int i = 1; i < groups.size(); i++) {
-            String declaration = groups.get(i).replaceAll("\\s+",""); // remove superfluous whitespace
-            String[] pair = declaration.split("=");
-            if (pair.length == 2) {
-                pairs.put(pair[0], pair[1]);
+    private static String getDeclarationType(String line) {
+        int start = 0;
+        while (start < line.length() && isWhiteSpace(line.charAt(start))) {
+            start++;
+        }
+        if (start < line.length() && line.charAt(start) == '#') {
+            return "#";
+        }
+        int end = start;
+        while (end < line.length() && !isWhiteSpace(line.charAt(end))) {
+            end++;
+        }
+        return line.substring(start, end);
+    }
+    
+    /**
+     * Checks whether a character is whitespace as \s means in the declaration regexes
+     * @param c the character
+     * @return true if c is a space, tab, newline, vertical tab, form feed or carriage return
+     */
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+    
+    private static boolean isOnlyWhiteSpace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!isWhiteSpace(s.charAt(i))) {
+                return false;
             }
         }
-        return pairs;
+        return true;
+    }
+    
+    private static String removeWhiteSpace(String s) {
+        StringBuilder stripped = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            if (!isWhiteSpace(s.charAt(i))) {
+                stripped.append(s.charAt(i));
+            }
+        }
+        return stripped.toString();
     }
     
     /**
      * Creates a Board as specified in a file
-     * @param filename path to file
+     * @param file the board file, in the platform's default charset
      * @return instance of Board according to file contents
-     * @throws IOException
+     * @throws IOException if the file can't be read or isn't a valid board file
      */
     public static Board createBoardFromFile(File file) throws IOException {
+        return createBoard(new FileInputStream(file), Charset.defaultCharset());
+    }
+    
+    /**
+     * Creates a Board as specified by the contents of a stream, which is closed afterwards
+     * @param in the contents of a board file, in UTF-8
+     * @return instance of Board according to the contents
+     * @throws IOException if the stream can't be read or isn't a valid board file
+     */
+    public static Board createBoard(InputStream in) throws IOException {
+        return createBoard(in, StandardCharsets.UTF_8);
+    }
+    
+    private static Board createBoard(InputStream in, Charset charset) throws IOException {
+        return createBoard(new InputStreamReader(in, charset));
+    }
+    
+    /**
+     * Creates a Board as specified by the contents of a buffer; the buffer's position is not changed
+     * @param buffer the contents of a board file, in UTF-8, between its position and limit
+     * @return instance of Board according to the contents
+     * @throws IOException if the contents aren't a valid board file
+     */
+    public static Board createBoard(ByteBuffer buffer) throws IOException {
+        return createBoard(new StringReader(StandardCharsets.UTF_8.decode(buffer.duplicate()).toString()));
+    }
+    
+    /**
+     * Creates a Board as specified by the contents of a reader, which is closed afterwards.
+     * The contents are read in a single pass, and each line is matched against only the one
+     * declaration its first word names.
+     * @param reader the contents of a board file
+     * @return instance of Board according to the contents
+     * @throws IOException if the reader fails or the contents aren't a valid board file
+     */
+    public static Board createBoard(Reader reader) throws IOException {
         // track names of all elements to ensure no repeated names
         Set<String> addedNames = new HashSet<String>();
         
@@ -193,50 +280,78 @@ public class FileParsing {
         // ensure that board declaration is first line & occurs only once
         boolean boardIsDeclared = false;
         
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        String line;
-        Board board = new Board(); // placeholder
-        while ((line = br.readLine()) != null) {
-            if (line.matches(regexBoard)) {
-                board = parseBoardRegex(line, boardIsDeclared, addedNames);
-                boardIsDeclared = true;
-            }
-            else if (line.matches(regexComment) || line.matches(onlyWhiteSpace)) {
-                continue; // ignore comment lines and empty lines
-            }
-            else if (line.matches(regexBall)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                parseBallRegex(board, line, addedNames);   
-            }
-            else if (line.matches(regexGadget)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                parseGadgetRegex(board, line, addedGadgets, addedNames);
-            }
-            else if (line.matches(regexAbsorber)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                parseAbsorberRegex(board, line, addedGadgets, addedNames);
-            }
-            else if (line.matches(regexFire)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                Map<String, String> pairs = getPairsFromLine(line, regexFire);
-                addedGadgets.get(pairs.get(triggerWord)).addGadgetToTrigger(
-                        addedGadgets.get(pairs.get(actionWord)));
-            }
-            else if (line.matches(regexPortal)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                parsePortalRegex(board, line, addedGadgets, addedNames, board.getName());
-            }
-            else if (line.matches(regexKeyDeclaration)) {
-                checkBoardIsDeclared(boardIsDeclared);
-                parseKeyRegex(board, line, addedGadgets);
-            }
-            else {
-                br.close();
-                throw new IOException("The file is not properly formatted.");
+        try (BufferedReader br = new BufferedReader(reader)) {
+            String line;
+            Board board = new Board(); // placeholder
+            while ((line = br.readLine()) != null) {
+                Matcher m;
+                switch (getDeclarationType(line)) {
+                case "#":
+                case "":
+                    continue; // ignore comment lines and empty lines
+                case "board":
+                    m = matchDeclaration(patternBoard, line);
+                    board = parseBoardRegex(m, boardIsDeclared, addedNames);
+                    boardIsDeclared = true;
+                    break;
+                case "ball":
+                    m = matchDeclaration(patternBall, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    parseBallRegex(board, m, addedNames);
+                    break;
+                case "squareBumper":
+                case "circleBumper":
+                case "triangleBumper":
+                case "rightFlipper":
+                case "leftFlipper":
+                    m = matchDeclaration(patternGadget, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    parseGadgetRegex(board, m, addedGadgets, addedNames);
+                    break;
+                case "absorber":
+                    m = matchDeclaration(patternAbsorber, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    parseAbsorberRegex(board, m, addedGadgets, addedNames);
+                    break;
+                case "fire":
+                    m = matchDeclaration(patternFire, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    Map<String, String> pairs = getPairs(m);
+                    addedGadgets.get(pairs.get(triggerWord)).addGadgetToTrigger(
+                            addedGadgets.get(pairs.get(actionWord)));
+                    break;
+                case "portal":
+                    m = matchDeclaration(patternPortal, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    parsePortalRegex(board, m, addedGadgets, addedNames, board.getName());
+                    break;
+                case "keyup":
+                case "keydown":
+                    m = matchDeclaration(patternKeyDeclaration, line);
+                    checkBoardIsDeclared(boardIsDeclared);
+                    parseKeyRegex(board, line, m, addedGadgets);
+                    break;
+                default:
+                    throw new IOException("The file is not properly formatted.");
+                }
             }
+            return board;
         }
-        br.close();
-        return board;
+    }
+    
+    /**
+     * Matches a whole line against the declaration its first word names
+     * @param pattern the declaration's regex
+     * @param line the line
+     * @return a matcher that has matched the line
+     * @throws IOException if the line isn't a valid declaration
+     */
+    private static Matcher matchDeclaration(Pattern pattern, String line) throws IOException {
+        Matcher m = pattern.matcher(line);
+        if (!m.matches()) {
+            throw new IOException("The file is not properly formatted.");
+        }
+        return m;
     }
     
     /**
@@ -254,18 +369,18 @@ public class FileParsing {
     
     /**
      * Helper method to create a Board from a board declaration line
-     * @param line the line in which the Board is declared
+     * @param line the matched line in which the Board is declared
      * @return an instance of Board
      * @throws IOException 
      */
-    private static Board parseBoardRegex(String line, boolean isDeclared, 
+    private static Board parseBoardRegex(Matcher line, boolean isDeclared, 
             Set<String> addedNames) throws IOException {
         if (isDeclared) {
             throw new IOException("There can only be one board "
                     + "declaration line in a board file");
         }
         
-        Map<String, String> pairs = getPairsFromLine(line, regexBoard);
+        Map<String, String> pairs = getPairs(line);
         double gravity = DEFAULT_GRAVITY;
         String gravityWord = "gravity";
         if (pairs.containsKey(gravityWord)) {
@@ -290,11 +405,11 @@ public class FileParsing {
     /**
      * Helper method to add a ball that is declared to the new Board
      * @param board the new Board that is created in the board file
-     * @param line the line in which the ball is declared
+     * @param line the matched line in which the ball is declared
      * @throws IOException 
      */
-    private static void parseBallRegex(Board board, String line,  Set<String> addedNames) throws IOException {
-        Map<String, String> pairs = getPairsFromLine(line, regexBall);
+    private static void parseBallRegex(Board board, Matcher line,  Set<String> addedNames) throws IOException {
+        Map<String, String> pairs = getPairs(line);
         String ballName = pairs.get(nameWord);
         
         // ensure that all added elements have unique names
@@ -314,13 +429,13 @@ public class FileParsing {
     /**
      * Helper method to add a gadget that is declared to the new Board
      * @param board the new Board that is created in the board file
-     * @param line the line in which the gadget is declared
+     * @param line the matched line in which the gadget is declared
      * @throws IOException 
      */
-    private static void parseGadgetRegex(Board board, String line, 
+    private static void parseGadgetRegex(Board board, Matcher line, 
             Map<String, Gadget> addedGadgets,  Set<String> addedNames) throws IOException {
-        List<String> groups = getMatchedGroups(line, regexGadget);
-        Map<String, String> pairs = getPairsFromLine(line, regexGadget);;
+        String gadgetType = removeWhiteSpace(line.group(1));
+        Map<String, String> pairs = getPairs(line);
         // get constructor arguments
         String gadgetName = pairs.get(nameWord);
         
@@ -340,7 +455,6 @@ public class FileParsing {
         }
         
         // check which gadget to create
-        String gadgetType = groups.get(0).replaceAll("\\s+","");
         Gadget newGadget;
         switch (gadgetType) {
         case "squareBumper":
@@ -374,12 +488,12 @@ public class FileParsing {
     /**
      * Helper method to add an absorber that is declared to the new Board
      * @param board the new Board that is created in the board file
-     * @param line the line in which the absorber is declared
+     * @param line the matched line in which the absorber is declared
      * @throws IOException 
      */
-    private static void parseAbsorberRegex(Board board, String line, 
+    private static void parseAbsorberRegex(Board board, Matcher line, 
             Map<String, Gadget> addedGadgets,  Set<String> addedNames) throws IOException {
-        Map<String, String> pairs = getPairsFromLine(line, regexAbsorber);
+        Map<String, String> pairs = getPairs(line);
         String name = pairs.get(nameWord);
         
         // ensure that all added elements have unique names
@@ -399,12 +513,12 @@ public class FileParsing {
     /**
      * Helper method to add a portal that is declared to the new Board
      * @param board the new Board that is created in the board file
-     * @param line the line in which the portal is declared
+     * @param line the matched line in which the portal is declared
      * @throws IOException 
      */
-    private static void parsePortalRegex(Board board, String line, Map<String, 
+    private static void parsePortalRegex(Board board, Matcher line, Map<String, 
             Gadget> addedGadgets,  Set<String> addedNames, String residentBoardName) throws IOException {
-        Map<String, String> pairs = getPairsFromLine(line, regexPortal);
+        Map<String, String> pairs = getPairs(line);
         String name = pairs.get(nameWord);
 
         // ensure that all added elements have unique names
@@ -435,10 +549,11 @@ public class FileParsing {
      * Helper method to add a key trigger to the board.
      * @param board the new Board that is created in the board file
      * @param line the line in which the key trigger is declared
+     * @param m the matcher that matched the line
      */
-    private static void parseKeyRegex(Board board, String line, Map<String, 
+    private static void parseKeyRegex(Board board, String line, Matcher m, Map<String, 
             Gadget> addedGadgets) {
-        Map<String, String> pairs = getPairsFromLine(line, regexKeyDeclaration);
+        Map<String, String> pairs = getPairs(m);
         String key = pairs.get(keyWord);
         Gadget gadget = addedGadgets.get(pairs.get(actionWord));
         String keyType = line.split(" ")[0].replace(" ", "");
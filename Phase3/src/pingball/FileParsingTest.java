@@ -1,9 +1,15 @@
 package pingball;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -48,6 +54,11 @@ public class FileParsingTest {
      *      key triggers
      *      - up and down key presses
      *      - [a-z], [0-9], space/others
+     *      
+     * Method: createBoard
+     * - Partitions:
+     *      - source: Reader, InputStream, ByteBuffer
+     *      - contents: valid board, line that isn't any declaration, misformed declaration
 
      */
     
@@ -275,4 +286,52 @@ public class FileParsingTest {
 
     }      
     
+    // ==================== TESTS FOR OTHER SOURCES =========================
+    
+    @Test public void testCreateBoardFromReader() throws IOException {
+        String contents = new String(Files.readAllBytes(new File("boards/default.pb").toPath()), StandardCharsets.UTF_8);
+        Board boardActual = FileParsing.createBoard(new StringReader(contents));
+        assertEquals(BenchmarkBoards.DEFAULT, boardActual);
+    }
+    
+    @Test public void testCreateBoardFromInputStream() throws IOException {
+        byte[] contents = Files.readAllBytes(new File("boards/absorber.pb").toPath());
+        Board boardActual = FileParsing.createBoard(new ByteArrayInputStream(contents));
+        assertEquals(BenchmarkBoards.ABSORBER, boardActual);
+    }
+    
+    @Test public void testCreateBoardFromByteBuffer() throws IOException {
+        ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(new File("boards/flippers.pb").toPath()));
+        Board boardActual = FileParsing.createBoard(contents);
+        assertEquals(BenchmarkBoards.FLIPPERS, boardActual);
+        assertEquals(0, contents.position());
+    }
+    
+    @Test public void testCreateBoardUnknownDeclaration() {
+        try {
+            FileParsing.createBoard(new StringReader("board name=A\nbumper name=B x=1 y=1\n"));
+            fail("expected the unknown declaration to be rejected");
+        } catch (IOException e) {
+            assertEquals("The file is not properly formatted.", e.getMessage());
+        }
+    }
+    
+    @Test public void testCreateBoardMisformedDeclarationFirst() {
+        try {
+            FileParsing.createBoard(new StringReader("  # comment\nball name=B x=1\nboard name=A\n"));
+            fail("expected the misformed declaration to be rejected");
+        } catch (IOException e) {
+            assertEquals("The file is not properly formatted.", e.getMessage());
+        }
+    }
+    
+    @Test public void testCreateBoardDeclarationBeforeBoard() {
+        try {
+            FileParsing.createBoard(new StringReader("\t\nsquareBumper name=S x=1 y=1\nboard name=A\n"));
+            fail("expected the declaration before the board to be rejected");
+        } catch (IOException e) {
+            assertEquals("Board must be declared first in the file", e.getMessage());
+        }
+    }
+    
 }
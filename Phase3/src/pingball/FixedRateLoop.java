@@ -0,0 +1,235 @@
+package pingball;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation in fixed-length steps, keeping simulated time locked to wall-clock time.
+ * Wall time that passes is added to an accumulator, and a step is run for every full step
+ * length in it, so time spent inside the steps themselves is made up for rather than added
+ * on. If the steps fall too far behind, at most maxCatchUpSteps are run at once and the rest
+ * of the backlog is dropped, so the simulation slows down instead of spiraling. Between steps
+ * and while paused, the thread running the loop parks instead of spinning.
+ * The class is mutable.
+ */
+public class FixedRateLoop implements Runnable {
+
+    /* Thread Safety Argument
+     *
+     * run() is meant to be called by exactly one thread, which is the only thread that runs
+     * steps and writes the statistics. The statistics, paused and stopped are volatile, so the
+     * other threads can pause, resume and stop the loop and read its statistics at any time.
+     * pause(), resume() and stop() unpark the loop thread after changing the flags, so it sees
+     * them without waiting out a park.
+     */
+
+    // Abstraction function:
+    //      represents running step every stepMillis ms of wall time, on the thread runner, until
+    //      stopped; while paused, no wall time passes for the simulation. Of the wall time that
+    //      has passed, simulatedNanos has been simulated in steps steps, droppedNanos was given up
+    //      to catch up, and the rest is waiting in the accumulator of run().
+    // Rep invariant:
+    //      stepMillis > 0, maxCatchUpSteps > 0
+    //      simulatedNanos == steps * stepMillis ms
+    //      simulatedNanos + droppedNanos <= wallNanos
+    //
+
+    /**
+     * One step of a simulation
+     */
+    public interface Step {
+        /**
+         * Advances the simulation by one step
+         * @param timestep length of the step in ms
+         * @throws IOException if the step can't be completed; the loop stops
+         */
+        public void run(long timestep) throws IOException;
+    }
+
+    private final Step step;
+    private final long stepMillis;
+    private final long stepNanos;
+    private final int maxCatchUpSteps;
+
+    private volatile Thread runner;
+    private volatile boolean paused = false;
+    private volatile boolean stopped = false;
+
+    private volatile long steps = 0;
+    private volatile long simulatedNanos = 0;
+    private volatile long droppedNanos = 0;
+    private volatile long wallNanos = 0;
+
+    /**
+     * Constructor for FixedRateLoop
+     * @param step the step to run
+     * @param stepMillis amount of time in ms each step simulates; must be positive
+     * @param maxCatchUpSteps most steps to run back to back when the loop has fallen behind;
+     *        must be positive
+     */
+    public FixedRateLoop(Step step, long stepMillis, int maxCatchUpSteps) {
+        if (stepMillis <= 0 || maxCatchUpSteps <= 0) {
+            throw new IllegalArgumentException("Step length and catch-up limit must be positive");
+        }
+        this.step = step;
+        this.stepMillis = stepMillis;
+        this.stepNanos = TimeUnit.MILLISECONDS.toNanos(stepMillis);
+        this.maxCatchUpSteps = maxCatchUpSteps;
+        checkRep();
+    }
+
+    /**
+     * Runs steps on the calling thread until stop() is called, a step throws, or the thread is
+     * interrupted. Must only be called once.
+     */
+    @Override
+    public void run() {
+        runner = Thread.currentThread();
+        long accumulated = 0;
+        long last = System.nanoTime();
+        try {
+            while (!stopped && !runner.isInterrupted()) {
+                if (paused) {
+                    LockSupport.park(this);
+                    // time spent paused isn't simulated
+                    last = System.nanoTime();
+                    continue;
+                }
+                long now = System.nanoTime();
+                accumulated += now - last;
+                wallNanos += now - last;
+                last = now;
+                long maxAccumulated = maxCatchUpSteps * stepNanos;
+                if (accumulated > maxAccumulated) {
+                    droppedNanos += accumulated - maxAccumulated;
+                    accumulated = maxAccumulated;
+                }
+                while (accumulated >= stepNanos && !paused && !stopped) {
+                    step.run(stepMillis);
+                    accumulated -= stepNanos;
+                    simulatedNanos += stepNanos;
+                    steps++;
+                }
+                if (accumulated < stepNanos) {
+                    LockSupport.parkNanos(this, stepNanos - accumulated);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        checkRep();
+    }
+
+    /**
+     * Stops running steps until resume() is called; the loop thread parks in the meantime
+     */
+    public void pause() {
+        paused = true;
+        wake();
+    }
+
+    /**
+     * Lets steps run again after pause()
+     */
+    public void resume() {
+        paused = false;
+        wake();
+    }
+
+    /**
+     * Makes run() return after the step it is in, if any
+     */
+    public void stop() {
+        stopped = true;
+        wake();
+    }
+
+    /**
+     * Tells whether the loop is paused
+     * @return true if pause() was called more recently than resume()
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Gets the amount of time each step simulates
+     * @return the step length in ms
+     */
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    /**
+     * Gets the number of steps run so far
+     * @return the number of steps
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the amount of simulated time so far
+     * @return the simulated time in ms
+     */
+    public long getSimulatedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(simulatedNanos);
+    }
+
+    /**
+     * Gets the amount of wall time that passed while the loop was running and not paused
+     * @return the wall time in ms
+     */
+    public long getWallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wallNanos);
+    }
+
+    /**
+     * Gets the amount of wall time that was given up, not simulated, because the steps fell behind
+     * @return the dropped time in ms
+     */
+    public long getDroppedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(droppedNanos);
+    }
+
+    /**
+     * Gets the rate steps are meant to run at
+     * @return the target number of steps per second of wall time
+     */
+    public double getTargetStepsPerSecond() {
+        return 1e9 / stepNanos;
+    }
+
+    /**
+     * Gets the rate steps have actually run at
+     * @return the number of steps per second of unpaused wall time, 0 before any time has passed
+     */
+    public double getActualStepsPerSecond() {
+        long wall = wallNanos;
+        return wall == 0 ? 0 : steps * 1e9 / wall;
+    }
+
+    /**
+     * Gets how fast simulated time has passed compared to wall time; 1 when the loop keeps up
+     * @return simulated time over unpaused wall time, 0 before any time has passed
+     */
+    public double getSimulationRate() {
+        long wall = wallNanos;
+        return wall == 0 ? 0 : (double) simulatedNanos / wall;
+    }
+
+    private void wake() {
+        Thread thread = runner;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert stepMillis > 0 && maxCatchUpSteps > 0;
+        assert simulatedNanos == steps * stepNanos;
+        assert simulatedNanos + droppedNanos <= wallNanos;
+    }
+}
@@ -0,0 +1,122 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class FixedRateLoopTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: run()
+     * - Partitions:
+     *      - Steps: faster than the step length, slower than the step length
+     *      - State: running, paused, stopped
+     *
+     * Methods: getSimulationRate(), getActualStepsPerSecond(), getDroppedMillis()
+     * - Partitions: before running, loop keeping up, loop falling behind
+     *
+     * The scheduling of the test threads isn't controlled, so the tests check how the statistics
+     * relate to each other and to time measured around the loop, not the rates they come to.
+     */
+
+    // asserts what the statistics of a stopped loop, with the given step length and catch-up
+    // limit, must satisfy however its thread was scheduled
+    private static void assertAccounted(FixedRateLoop loop, long stepMillis, int maxCatchUpSteps) {
+        long simulated = loop.getSimulatedMillis();
+        long dropped = loop.getDroppedMillis();
+        long wall = loop.getWallMillis();
+        assertEquals(loop.getSteps() * stepMillis, simulated);
+        assertTrue(simulated + dropped <= wall);
+        // what is left in the accumulator is never more than the catch-up limit; each statistic
+        // is rounded down to a ms
+        assertTrue(wall - simulated - dropped <= maxCatchUpSteps * stepMillis + 2);
+        assertTrue(loop.getSimulationRate() <= 1);
+        assertEquals(loop.getSimulationRate(), 
+                loop.getActualStepsPerSecond() / loop.getTargetStepsPerSecond(), 1e-9);
+    }
+
+    private static Thread startLoop(FixedRateLoop loop) {
+        Thread thread = new Thread(loop);
+        thread.start();
+        return thread;
+    }
+
+    //run()
+    @Test
+    public void testRunKeepsUp() throws InterruptedException {
+        AtomicLong simulated = new AtomicLong();
+        FixedRateLoop loop = new FixedRateLoop(timestep -> simulated.addAndGet(timestep), 5, 10);
+        long started = System.nanoTime();
+        Thread thread = startLoop(loop);
+        Thread.sleep(500);
+        loop.stop();
+        thread.join(1000);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertFalse(thread.isAlive());
+        assertEquals(loop.getSimulatedMillis(), simulated.get());
+        assertEquals(200, loop.getTargetStepsPerSecond(), 1e-9);
+        assertAccounted(loop, 5, 10);
+        assertTrue(loop.getWallMillis() <= elapsedMillis);
+    }
+
+    @Test
+    public void testRunPausedParks() throws InterruptedException {
+        AtomicLong stepCount = new AtomicLong();
+        FixedRateLoop loop = new FixedRateLoop(timestep -> stepCount.incrementAndGet(), 2, 10);
+        loop.pause();
+        assertTrue(loop.isPaused());
+        Thread thread = startLoop(loop);
+        Thread.sleep(200);
+        assertEquals(0, stepCount.get());
+        assertEquals(0, loop.getWallMillis());
+        long resumed = System.nanoTime();
+        loop.resume();
+        Thread.sleep(200);
+        loop.stop();
+        thread.join(1000);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - resumed);
+        assertTrue(stepCount.get() > 0);
+        assertEquals(stepCount.get(), loop.getSteps());
+        assertAccounted(loop, 2, 10);
+        // the time spent paused isn't counted
+        assertTrue(loop.getWallMillis() <= elapsedMillis);
+    }
+
+    @Test
+    public void testRunFallsBehind() throws InterruptedException {
+        FixedRateLoop loop = new FixedRateLoop(timestep -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, 3);
+        Thread thread = startLoop(loop);
+        Thread.sleep(300);
+        loop.stop();
+        thread.join(1000);
+        // every step takes longer than the catch-up limit allows for
+        assertTrue(loop.getDroppedMillis() > 0);
+        assertTrue(loop.getSimulationRate() < 0.5);
+        assertAccounted(loop, 2, 3);
+    }
+
+    //getSimulationRate(), getActualStepsPerSecond()
+    @Test
+    public void testRatesBeforeRunning() {
+        FixedRateLoop loop = new FixedRateLoop(timestep -> {}, 2, 1);
+        assertEquals(0, loop.getSimulationRate(), 0);
+        assertEquals(0, loop.getActualStepsPerSecond(), 0);
+        assertEquals(500, loop.getTargetStepsPerSecond(), 1e-9);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroStepLength() {
+        new FixedRateLoop(timestep -> {}, 0, 1);
+    }
+}
@@ -0,0 +1,143 @@
+package pingball;
+
+import java.util.BitSet;
+import java.util.List;
+
+import pingball.Gadgets.Gadget;
+
+/**
+ * A mutable uniform grid over the board that buckets gadgets by the 1L x 1L
+ * cells they cover, so that a ball only has to be tested against the gadgets
+ * near its path instead of against every gadget on the board.
+ */
+public class GadgetGrid {
+    // Abstraction function:
+    //      cells[y][x] holds the indices (into the board's gadget list) of every
+    //      gadget whose bounding box touches the closed cell [x, x+1] x [y, y+1],
+    //      in display coordinates.
+    // Rep invariant:
+    //      every index in a cell is in [0, indexedCount)
+    //      indices in each cell are in increasing order
+    //
+
+    private final int width;
+    private final int height;
+    private final int[][][] cells;
+    private final int[][] cellSizes;
+    private int indexedCount = 0;
+
+    /**
+     * Constructs an empty grid covering a width x height board.
+     * @param width width of the board in L
+     * @param height height of the board in L
+     */
+    public GadgetGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.cells = new int[height][width][];
+        this.cellSizes = new int[height][width];
+        checkRep();
+    }
+
+    /**
+     * Gets the number of gadgets this grid has indexed.
+     * @return the number of gadgets indexed, i.e. one more than the largest index added
+     */
+    public int getIndexedCount() {
+        return indexedCount;
+    }
+
+    /**
+     * Adds a gadget to every cell its bounding box touches. Gadgets must be added
+     * in the order of their index in the board's gadget list.
+     * @param gadget the gadget to index
+     * @param index the index of the gadget in the board's gadget list
+     */
+    public void add(Gadget gadget, int index) {
+        int minX = clampX((int) Math.floor(gadget.getX()));
+        int minY = clampY((int) Math.floor(gadget.getY()));
+        int maxX = clampX((int) Math.floor(gadget.getX() + gadget.getWidth()));
+        int maxY = clampY((int) Math.floor(gadget.getY() + gadget.getHeight()));
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                addToCell(x, y, index);
+            }
+        }
+        indexedCount = index + 1;
+        checkRep();
+    }
+
+    /**
+     * Clears the grid and indexes every gadget in the list again.
+     * @param gadgets the board's gadgets, in order
+     */
+    public void rebuild(List<Gadget> gadgets) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cellSizes[y][x] = 0;
+            }
+        }
+        indexedCount = 0;
+        for (int i = 0; i < gadgets.size(); i++) {
+            add(gadgets.get(i), i);
+        }
+    }
+
+    /**
+     * Collects the indices of every gadget touching the given box, in display coordinates.
+     * @param minX left edge of the box
+     * @param minY top edge of the box
+     * @param maxX right edge of the box
+     * @param maxY bottom edge of the box
+     * @param candidates cleared and then filled with the indices of the gadgets
+     *        that touch the box
+     */
+    public void query(double minX, double minY, double maxX, double maxY, BitSet candidates) {
+        candidates.clear();
+        if (!(minX <= maxX && minY <= maxY)) {
+            // a NaN box can't be bucketed, so every gadget is a candidate
+            candidates.set(0, indexedCount);
+            return;
+        }
+        int fromX = clampX((int) Math.floor(Math.max(minX, 0)));
+        int fromY = clampY((int) Math.floor(Math.max(minY, 0)));
+        int toX = clampX((int) Math.floor(Math.min(maxX, width)));
+        int toY = clampY((int) Math.floor(Math.min(maxY, height)));
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                int[] cell = cells[y][x];
+                for (int i = 0; i < cellSizes[y][x]; i++) {
+                    candidates.set(cell[i]);
+                }
+            }
+        }
+    }
+
+    private void addToCell(int x, int y, int index) {
+        int[] cell = cells[y][x];
+        int size = cellSizes[y][x];
+        if (cell == null) {
+            cell = new int[2];
+        } else if (size == cell.length) {
+            int[] grown = new int[size * 2];
+            System.arraycopy(cell, 0, grown, 0, size);
+            cell = grown;
+        }
+        cell[size] = index;
+        cells[y][x] = cell;
+        cellSizes[y][x] = size + 1;
+    }
+
+    private int clampX(int x) {
+        return Math.max(0, Math.min(width - 1, x));
+    }
+
+    private int clampY(int y) {
+        return Math.max(0, Math.min(height - 1, y));
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert indexedCount >= 0;
+    }
+}
@@ -0,0 +1,118 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import pingball.Gadgets.Gadget;
+
+/*
+ * Testing Strategy:
+ *
+ * Method: add()
+ * - Partitions: 1x1 gadget, gadget spanning several cells, gadget on the edge of the board
+ *
+ * Method: query()
+ * - Partitions: box touching no gadgets, box touching one gadget, box touching several gadgets,
+ *               box partly outside the board, NaN box
+ *
+ * Method: rebuild()
+ * - Partitions: empty list, list with a gadget removed
+ */
+
+public class GadgetGridTest {
+
+    //testing add() and query()
+    @Test
+    public void testQueryEmptyBox() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(5, 5), 0);
+        BitSet candidates = new BitSet();
+        grid.query(10.2, 10.2, 10.8, 10.8, candidates);
+        assertTrue(candidates.isEmpty());
+    }
+
+    @Test
+    public void testQuerySingleGadget() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(5, 5), 0);
+        grid.add(Gadget.circleBumper(10, 10), 1);
+        BitSet candidates = new BitSet();
+        grid.query(5.2, 5.2, 5.8, 5.8, candidates);
+        assertEquals(1, candidates.cardinality());
+        assertTrue(candidates.get(0));
+    }
+
+    @Test
+    public void testQueryMultiCellGadget() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.absorber(0, 18, 20, 2), 0);
+        BitSet candidates = new BitSet();
+        grid.query(15.2, 19.2, 15.8, 19.8, candidates);
+        assertTrue(candidates.get(0));
+    }
+
+    @Test
+    public void testQuerySeveralGadgets() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(5, 5), 0);
+        grid.add(Gadget.squareBumper(6, 5), 1);
+        grid.add(Gadget.squareBumper(15, 15), 2);
+        BitSet candidates = new BitSet();
+        grid.query(5.5, 5.5, 6.5, 5.5, candidates);
+        assertEquals(2, candidates.cardinality());
+        assertTrue(candidates.get(0));
+        assertTrue(candidates.get(1));
+    }
+
+    @Test
+    public void testQueryOutsideBoard() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(19, 0), 0);
+        BitSet candidates = new BitSet();
+        grid.query(19.5, -3, 25, 0.5, candidates);
+        assertTrue(candidates.get(0));
+    }
+
+    @Test
+    public void testQueryNaN() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(5, 5), 0);
+        grid.add(Gadget.squareBumper(15, 15), 1);
+        BitSet candidates = new BitSet();
+        grid.query(Double.NaN, 0, Double.NaN, 0, candidates);
+        assertEquals(2, candidates.cardinality());
+    }
+
+    //testing rebuild()
+    @Test
+    public void testRebuildEmpty() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        grid.add(Gadget.squareBumper(5, 5), 0);
+        grid.rebuild(new ArrayList<Gadget>());
+        BitSet candidates = new BitSet();
+        grid.query(0, 0, 20, 20, candidates);
+        assertTrue(candidates.isEmpty());
+        assertEquals(0, grid.getIndexedCount());
+    }
+
+    @Test
+    public void testRebuildRemovedGadget() {
+        GadgetGrid grid = new GadgetGrid(20, 20);
+        List<Gadget> gadgets = new ArrayList<Gadget>();
+        gadgets.add(Gadget.squareBumper(5, 5));
+        gadgets.add(Gadget.squareBumper(15, 15));
+        grid.rebuild(gadgets);
+        gadgets.remove(0);
+        grid.rebuild(gadgets);
+        BitSet candidates = new BitSet();
+        grid.query(15.2, 15.2, 15.8, 15.8, candidates);
+        assertEquals(1, candidates.cardinality());
+        assertTrue(candidates.get(0));
+        assertEquals(1, grid.getIndexedCount());
+    }
+}
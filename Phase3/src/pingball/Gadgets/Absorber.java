@@ -15,6 +15,7 @@ import physics.LineSegment;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 public class Absorber implements Gadget {
     
@@ -232,25 +233,41 @@ public class Absorber implements Gadget {
 	} 
 
     @Override
-    public double ballHitsGadgetThisTimestep(Ball ball, long time) {
-        Geometry.setForesight(time);
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time) {
+        context.setForesight(time);
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
         for (Object lineComponent : lineComponents){
-            if (Geometry.timeUntilWallCollision((LineSegment) lineComponent,cartesianCircle,cartesianVelocity)<=time/1000.){
-                return Geometry.timeUntilWallCollision((LineSegment) lineComponent,cartesianCircle,cartesianVelocity);
+            double wallTime = context.timeUntilWallCollision((LineSegment) lineComponent,cartesianCircle,cartesianVelocity, context.getGravity(), time/1000.);
+            if (wallTime<=time/1000.){
+                return new GadgetCollision(ball, time, wallTime);
             }
         }
         for (Object circleComponent : circleComponents){
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle,cartesianVelocity)<=time/1000.){
-                return Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle,cartesianVelocity);
+            double circleTime = context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle,cartesianVelocity, context.getGravity(), time/1000.);
+            if (circleTime<=time/1000.){
+                return new GadgetCollision(ball, time, circleTime);
             }
         }
-        return Double.POSITIVE_INFINITY;
+        return new GadgetCollision(ball, time, Double.POSITIVE_INFINITY);
     }
 
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball) {
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        double soonestTime = Double.POSITIVE_INFINITY;
+        for (Object lineComponent : lineComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity));
+        }
+        for (Object circleComponent : circleComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity));
+        }
+        return soonestTime;
+    }
+
+    @Override
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
         double ballRadius = 0.25;
         double homeX = this.getX() + this.getWidth() - ballRadius;
         double homeY = this.getY() + this.getHeight() - ballRadius-.1; // .1 allows the ball to not fall through bottom of absorber
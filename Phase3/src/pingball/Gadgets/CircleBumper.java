@@ -15,6 +15,7 @@ import physics.LineSegment;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 /**
  * A mutable circle shaped bumper in the pingBall game.
@@ -154,29 +155,40 @@ public class CircleBumper implements Gadget {
 	}
 
     @Override
-    public double ballHitsGadgetThisTimestep(Ball ball, long time) {
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time) {
         double doubleTime = time;
-        Geometry.setForesight(doubleTime);
+        context.setForesight(doubleTime);
 
         for (Object circleComponent : circleComponents){
-            Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-            Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity)<=time/1000.0){
-                return Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity);
+            Circle cartesianCircle = ball.getCartesianCircle();
+            Vect cartesianVelocity = ball.getCartesianVelocity();
+            double circleTime = context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity, context.getGravity(), time/1000.);
+            if (circleTime<=time/1000.0){
+                return new GadgetCollision(ball, time, circleTime);
             }
         }
-        return Double.POSITIVE_INFINITY;
+        return new GadgetCollision(ball, time, Double.POSITIVE_INFINITY);
     }
 
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball) {
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        double soonestTime = Double.POSITIVE_INFINITY;
+        for (Object circleComponent : circleComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity));
+        }
+        return soonestTime;
+    }
+
+    @Override
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
         final double RADIUS = .5;
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
         Vect gadgetCircle = new Vect(this.getX()*1.0+RADIUS,-1.0*this.getY()-RADIUS);
         Vect newCartesianVelocity = Geometry.reflectCircle(gadgetCircle, cartesianCircle.getCenter(), cartesianVelocity, this.getReflectionCoeff());
-        Vect newDisplayVelocity = new Vect(newCartesianVelocity.x(),-1*newCartesianVelocity.y());
-        ball.setVelocity(newDisplayVelocity);
+        ball.setCartesianVelocity(newCartesianVelocity);
         
     }
     
@@ -17,6 +17,7 @@ import physics.LineSegment;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 /**
  *
@@ -419,10 +420,10 @@ public class Flipper implements Gadget{
     }
 
     @Override
-    public double ballHitsGadgetThisTimestep(Ball ball, long time) {  
-        Geometry.setForesight(time);
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius()); // the ball's position
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());    // the ball's velocity
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time) {  
+        context.setForesight(time);
+        Circle cartesianCircle = ball.getCartesianCircle(); // the ball's position
+        Vect cartesianVelocity = ball.getCartesianVelocity();    // the ball's velocity
         long timeElapsed = System.currentTimeMillis() - this.getLastFlipTime();
         if (timeElapsed <= TIME_OF_ROTATION){ // it's been rotated
             Angle angleToRotate = new Angle(0);
@@ -460,100 +461,90 @@ public class Flipper implements Gadget{
             LineSegment rotatingLine = new LineSegment(this.getPivotPoint(), this.getEndPoint()); //a line representing the initial location and size of the rotating line
             rotatingLine = Geometry.rotateAround(rotatingLine,this.getPivotPoint(),angleToRotate); // partially rotate it to where it is at the beginning of the timestep
             Vect center = this.getPivotPoint(); // the point about which it's rotating
-            // rotate the endpoint circle and the line of the clipper
-            if ((Geometry.timeUntilRotatingCircleCollision(rotatingEnd,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity))<=time/1000.){
-                     return Geometry.timeUntilRotatingCircleCollision(rotatingEnd,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity);
+            // the time is the end's if it reaches the end within the timestep, and the ball 
+            // bounces off the line if it reaches the line
+            double circleTime = context.timeUntilRotatingCircleCollision(rotatingEnd,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity);
+            double wallTime = context.timeUntilRotatingWallCollision(rotatingLine,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity);
+            if (circleTime<=time/1000. || wallTime<=time/1000.){
+                double hitTime = circleTime<=time/1000. ? circleTime : wallTime;
+                Object part = wallTime<=time/1000. ? rotatingLine : rotatingEnd;
+                return new GadgetCollision(ball, time, hitTime, new TurningPart(part));
             }
-            if ((Geometry.timeUntilRotatingWallCollision(rotatingLine,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity))<=time/1000.){
-                    return Geometry.timeUntilRotatingWallCollision(rotatingLine,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity);
-            } 
         }
         else {
-
+            // the ball hits the part it reaches first, but bounces off the last of the parts it 
+            // reaches within the timestep, the edge before the ends
+            double soonestTime = Double.POSITIVE_INFINITY;
+            Object lastComponent = null;
             for (Object lineComponent : lineComponents){
-                if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity)<=time/1000.){
-                    return Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity);
+                double wallTime = context.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity, context.getGravity(), time/1000.);
+                soonestTime = Math.min(soonestTime, wallTime);
+                if (wallTime<=time/1000.){
+                    lastComponent = lineComponent;
                 }
             }
             for (Object circleComponent : circleComponents){
-                if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity)<=time/1000.){
-                    return Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity);
+                double circleTime = context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity, context.getGravity(), time/1000.);
+                soonestTime = Math.min(soonestTime, circleTime);
+                if (circleTime<=time/1000.){
+                    lastComponent = circleComponent;
                 }
-            }   
+            }
+            if (soonestTime<=time/1000.){
+                return new GadgetCollision(ball, time, soonestTime, lastComponent);
+            }
         }
-        return Double.POSITIVE_INFINITY;
+        return new GadgetCollision(ball, time, Double.POSITIVE_INFINITY);
     }
 
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
-        Geometry.setForesight(time);
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball) {
         long timeElapsed = System.currentTimeMillis() - this.getLastFlipTime();
-        if (timeElapsed <= TIME_OF_ROTATION){ // it's been rotated 
-            Angle angleToRotate = new Angle(0);
-            // Define the direction to rotate, depending on left/right flipper and if it's flipping up/down
-            if (this.isFlipped){ // it was just flipped               
-                // set initial x,y position of endpoint
-                if (this.isLeft){
-                    angleToRotate = new Angle(timeElapsed*ROTATION_SPEED);   
-                }
-                else if (!this.isLeft){
-                    angleToRotate = new Angle(-timeElapsed*ROTATION_SPEED);
-                }
-                else {
-                    throw new RuntimeException("angleToRotate not assigned");
-                }
-            }
-            
-            else if (!this.isFlipped){ // it was just unflipped
-                if (this.isLeft){
-                    angleToRotate = new Angle(-timeElapsed*ROTATION_SPEED);    
-                }
-                else if (!this.isLeft){
-                    angleToRotate = new Angle(timeElapsed*ROTATION_SPEED);
-                }
-                else {
-                    throw new RuntimeException("angleToRotate not assigned");
-                } 
-            }
-            else{
-                throw new RuntimeException("Um flipper problem");
+        if (timeElapsed <= TIME_OF_ROTATION){ // it's still rotating, so only look ahead as far as the rotation goes
+            return checkCollision(context, ball, (long) Math.ceil(TIME_OF_ROTATION)).getHitTime();
+        }
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        double soonestTime = Double.POSITIVE_INFINITY;
+        for (Object lineComponent : lineComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity));
+        }
+        for (Object circleComponent : circleComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity));
+        }
+        return soonestTime;
+    }
+
+    @Override
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
+        Object component = collision.getComponent(ball);
+        if (component == null){
+            // the ball was moved since the check, so find the part it's hitting again
+            component = checkCollision(context, ball, collision.getTimestep()).getComponent(ball);
+        }
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        Vect newVel;
+        if (component instanceof TurningPart){
+            Object part = ((TurningPart) component).part;
+            if (part instanceof Circle){
+                newVel = Geometry.reflectRotatingCircle((Circle) part,this.getPivotPoint(),ROTATION_SPEED,cartesianCircle,cartesianVelocity,this.getReflectionCoeff());
             }
-            // define the endpoint and the line, considering the initial partial rotation
-            Circle rotatingEnd = new Circle(this.getEndPoint(),0); //a circle representing the initial location and size of the rotating circle
-            rotatingEnd = Geometry.rotateAround(rotatingEnd,this.getPivotPoint(),angleToRotate); // partially rotate it to where it is at the beginning of the timestep
-            LineSegment rotatingLine = new LineSegment(this.getPivotPoint(), this.getEndPoint()); //a line representing the initial location and size of the rotating line
-            rotatingLine = Geometry.rotateAround(rotatingLine,this.getPivotPoint(),angleToRotate); // partially rotate it to where it is at the beginning of the timestep
-            Vect center = this.getPivotPoint(); // the point about which it's rotating
-            // rotate the endpoint circle and the line of the clipper
-            if ((Geometry.timeUntilRotatingCircleCollision(rotatingEnd,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity))<=time/1000.){
-                    Vect newVel = Geometry.reflectRotatingCircle(rotatingEnd,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity,this.getReflectionCoeff());
-                    ball.setVelocity(vectMakeDisplay(newVel));
+            else {
+                newVel = Geometry.reflectRotatingWall((LineSegment) part,this.getPivotPoint(),ROTATION_SPEED,cartesianCircle,cartesianVelocity,this.getReflectionCoeff());
             }
-            if ((Geometry.timeUntilRotatingWallCollision(rotatingLine,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity))<=time/1000.){
-                    Vect newVel = Geometry.reflectRotatingWall(rotatingLine,center,ROTATION_SPEED,cartesianCircle,cartesianVelocity,this.getReflectionCoeff());
-                    ball.setVelocity(vectMakeDisplay(newVel));
-            } 
+        }
+        else if (component instanceof LineSegment){
+            newVel = Geometry.reflectWall((LineSegment) component, cartesianVelocity, this.getReflectionCoeff());
+        }
+        else if (component instanceof Circle){
+            newVel = Geometry.reflectCircle(((Circle) component).getCenter(), cartesianCircle.getCenter(), cartesianVelocity, this.getReflectionCoeff());
         }
         else {
-
-            for (Object lineComponent : lineComponents){                
-                if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity)<=time/1000.){
-                    Vect newVel = Geometry.reflectWall((LineSegment) lineComponent, cartesianVelocity, this.getReflectionCoeff());
-                    ball.setVelocity(vectMakeDisplay(newVel));
-                }
-            }
-            for (Object circleComponent : circleComponents){
-                if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity)<=time/1000.){
-                    Vect newVel = Geometry.reflectCircle(((Circle) circleComponent).getCenter(), cartesianCircle.getCenter(), cartesianVelocity, this.getReflectionCoeff());
-                    ball.setVelocity(vectMakeDisplay(newVel));
-                }
-            }   
+            // nothing to collide with within the timestep
+            return;
         }
-            
-            
-        
+        ball.setVelocity(vectMakeDisplay(newVel));
     }
     
     /**
@@ -669,4 +660,16 @@ public class Flipper implements Gadget{
     public Color getDrawColor(){
         return Color.RED;
     }
+    
+    /**
+     * A part of the flipper, the LineSegment or Circle where it was when checked, that the ball 
+     * hits while the flipper is turning, so that the ball is reflected off it as it turns
+     */
+    private static class TurningPart {
+        private final Object part;
+        
+        private TurningPart(Object part) {
+            this.part = part;
+        }
+    }
 }
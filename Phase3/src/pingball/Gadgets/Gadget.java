@@ -9,6 +9,7 @@ import java.awt.Shape;
 
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 import pingball.Messages.GoodbyePortalBall;
 
 /**
@@ -153,13 +154,34 @@ public interface Gadget {
     
     /**
      * Checks to see if a ball collides with this gadget within the time frame [0, time], assuming the ball isn't inside it
-     * IMPORTANT: assumes that time step is short enough to allow for instantaneous velocity 
-     *          calculations, i.e. gravity and friction not accounted for, velocity is constant
+     * IMPORTANT: the ball falls with the gravity of PhysicsContext.forCurrentThread() over the 
+     *          time frame, but friction is not accounted for
      * @param ball to check collision path of
      * @param time in ms to check for a collision in
      * @return time before collision, unless it will not collide: then INFINITY
      */
-    public double ballHitsGadgetThisTimestep(Ball ball, long time);
+    public default double ballHitsGadgetThisTimestep(Ball ball, long time){
+        return checkCollision(PhysicsContext.forCurrentThread(), ball, time).getHitTime();
+    }
+    
+    /**
+     * Finds how long it is until a ball next collides with this gadget, assuming the ball isn't inside it.
+     * Unlike ballHitsGadgetThisTimestep, this is the soonest collision over all of the gadget's parts.
+     * IMPORTANT: assumes the ball's velocity is constant, i.e. gravity and friction not accounted for
+     * @param context the physics context to work out times of impact in
+     * @param ball to check collision path of
+     * @return time in seconds before collision, unless it will never collide: then INFINITY
+     */
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball);
+    
+    /**
+     * As timeUntilBallCollision(PhysicsContext, Ball), in PhysicsContext.forCurrentThread()
+     * @param ball to check collision path of
+     * @return time in seconds before collision, unless it will never collide: then INFINITY
+     */
+    public default double timeUntilBallCollision(Ball ball){
+        return timeUntilBallCollision(PhysicsContext.forCurrentThread(), ball);
+    }
 
     /**
      * Mutates the ball's velocity to what it is after it collides with the gadget, assuming the ball isn't inside it
@@ -167,8 +189,33 @@ public interface Gadget {
      * @param ball that's going to collide with the gadget
      * @param time in ms that the collision will occur in 
      */
-    public void collisionBallGadget(Ball ball, long time);
-    
+    public default void collisionBallGadget(Ball ball, long time){
+        PhysicsContext context = PhysicsContext.forCurrentThread();
+        collisionBallGadget(context, ball, checkCollision(context, ball, time));
+    }
+
+    /**
+     * Checks to see if a ball collides with this gadget within the time frame [0, time], like
+     * ballHitsGadgetThisTimestep, and remembers what collisionBallGadget needs to know about the
+     * collision so that it doesn't have to find it again
+     * IMPORTANT: the ball falls with the context's gravity over the time frame, but friction
+     *          is not accounted for
+     * @param context the physics context to work out times of impact in, whose gravity the ball falls with
+     * @param ball to check collision path of
+     * @param time in ms to check for a collision in
+     * @return the result of the check; its hit time is what ballHitsGadgetThisTimestep returns
+     */
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time);
+
+    /**
+     * Mutates the ball's velocity to what it is after the collision found by checkCollision
+     * IMPORTANT: assumes that the ball is at the edge of the gadget, at point of impact
+     * @param context the physics context to work out times of impact in
+     * @param ball that's going to collide with the gadget
+     * @param collision result of checkCollision for this ball and gadget
+     */
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision);
+
     /**
      * Returns whether the gadget is an absorber
      * @return true if it's an absorber.
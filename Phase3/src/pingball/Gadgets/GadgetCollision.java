@@ -0,0 +1,107 @@
+package pingball.Gadgets;
+
+import pingball.Ball;
+
+/**
+ * An immutable record of checking one ball against one gadget over one timestep. It keeps
+ * the time of the collision along with the part of the gadget the ball bounces off, so that
+ * each part's time of impact is only worked out once per check.
+ */
+public class GadgetCollision {
+    // Abstraction function:
+    //      represents checking ball, at (x, y), against a gadget over the next time ms:
+    //      hitTime is the time in seconds before the collision (INFINITY for none), and
+    //      component is the part of the gadget that collisionBallGadget should reflect the
+    //      ball off, a LineSegment or Circle unless the gadget describes it otherwise, or
+    //      null if the gadget doesn't say.
+    // Rep invariant:
+    //      ball != null
+    //      time >= 0
+    //
+
+    private final Ball ball;
+    private final double x;
+    private final double y;
+    private final long time;
+    private final double hitTime;
+    private final Object component;
+
+    /**
+     * Constructor for GadgetCollision that doesn't remember which part is hit
+     * @param ball the ball that was checked
+     * @param time the timestep in ms that was checked
+     * @param hitTime time in seconds before the collision, INFINITY if there is none
+     */
+    public GadgetCollision(Ball ball, long time, double hitTime) {
+        this(ball, time, hitTime, null);
+    }
+
+    /**
+     * Constructor for GadgetCollision
+     * @param ball the ball that was checked
+     * @param time the timestep in ms that was checked
+     * @param hitTime time in seconds before the collision, INFINITY if there is none
+     * @param component the part of the gadget the ball bounces off, null if unknown
+     */
+    public GadgetCollision(Ball ball, long time, double hitTime, Object component) {
+        this.ball = ball;
+        this.x = ball.getX();
+        this.y = ball.getY();
+        this.time = time;
+        this.hitTime = hitTime;
+        this.component = component;
+        checkRep();
+    }
+
+    /**
+     * Getter for the time of the collision
+     * @return time in seconds before the collision, unless there is none: then INFINITY
+     */
+    public double getHitTime() {
+        return hitTime;
+    }
+
+    /**
+     * Tells whether the ball collides with the gadget within the timestep
+     * @return true if there is a collision
+     */
+    public boolean isHit() {
+        return hitTime < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Getter for the timestep that was checked
+     * @return the timestep in ms
+     */
+    public long getTimestep() {
+        return time;
+    }
+
+    /**
+     * Gets the same collision once the ball has been moved along its path towards it
+     * @param elapsed time in ms the ball was moved for since the check, no more than the hit time
+     * @return the collision as checked from where the ball is now over the rest of the timestep,
+     *          off the same part of the gadget
+     */
+    public GadgetCollision afterMoving(long elapsed) {
+        return new GadgetCollision(ball, time - elapsed, Math.max(0, hitTime - elapsed/1000.), component);
+    }
+
+    /**
+     * Gets the part of the gadget the ball bounces off, if the ball is still where it was checked
+     * @param ball the ball about to collide
+     * @return the part of the gadget to reflect the ball off, or null if it has to be found again
+     */
+    public Object getComponent(Ball ball) {
+        if (ball != this.ball || ball.getX() != x || ball.getY() != y) {
+            return null;
+        }
+        return component;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert ball != null;
+        assert time >= 0;
+    }
+}
@@ -0,0 +1,102 @@
+package pingball.Gadgets;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import physics.LineSegment;
+import physics.Vect;
+import pingball.Ball;
+
+public class GadgetCollisionTest {
+    /*
+     * Testing Strategy:
+     *
+     * Method: isHit()
+     * - Partitions: finite hit time, INFINITY
+     *
+     * Method: getComponent(Ball ball)
+     * - Partitions: same ball in the same place, same ball after it moved, a different ball,
+     *               no component remembered
+     *
+     * Method: afterMoving(long elapsed)
+     * - Partitions: elapsed 0, elapsed up to the hit time; component remembered or not
+     */
+
+    //isHit()
+    @Test
+    public void testIsHit() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        assertTrue(new GadgetCollision(ball, 10, .005).isHit());
+    }
+
+    @Test
+    public void testIsNotHit() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        assertFalse(new GadgetCollision(ball, 10, Double.POSITIVE_INFINITY).isHit());
+    }
+
+    //getComponent()
+    @Test
+    public void testGetComponentSameBall() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        LineSegment side = new LineSegment(0, 0, 1, 0);
+        GadgetCollision collision = new GadgetCollision(ball, 10, .005, side);
+        ball.setVelocity(new Vect(-2,2));
+        assertEquals(side, collision.getComponent(ball));
+    }
+
+    @Test
+    public void testGetComponentMovedBall() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        GadgetCollision collision = new GadgetCollision(ball, 10, .005, new LineSegment(0, 0, 1, 0));
+        ball.update(5, new Vect(0, 0), 0, 0);
+        assertNull(collision.getComponent(ball));
+    }
+
+    @Test
+    public void testGetComponentOtherBall() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        Ball other = new Ball(new Vect(1,1), new Vect(2,2));
+        GadgetCollision collision = new GadgetCollision(ball, 10, .005, new LineSegment(0, 0, 1, 0));
+        assertNull(collision.getComponent(other));
+    }
+
+    @Test
+    public void testGetComponentUnknown() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        assertNull(new GadgetCollision(ball, 10, .005).getComponent(ball));
+    }
+
+    //afterMoving()
+    @Test
+    public void testAfterMovingNoTime() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        LineSegment side = new LineSegment(0, 0, 1, 0);
+        GadgetCollision collision = new GadgetCollision(ball, 10, .005, side).afterMoving(0);
+        assertEquals(.005, collision.getHitTime(), 1e-12);
+        assertEquals(10, collision.getTimestep());
+        assertEquals(side, collision.getComponent(ball));
+    }
+
+    @Test
+    public void testAfterMovingToImpact() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        LineSegment side = new LineSegment(0, 0, 1, 0);
+        GadgetCollision collision = new GadgetCollision(ball, 10, .0055, side);
+        ball.update(5, new Vect(0, 0), 0, 0);
+        GadgetCollision moved = collision.afterMoving(5);
+        assertEquals(.0005, moved.getHitTime(), 1e-12);
+        assertEquals(5, moved.getTimestep());
+        assertTrue(moved.isHit());
+        assertEquals(side, moved.getComponent(ball));
+    }
+
+    @Test
+    public void testAfterMovingUnknown() {
+        Ball ball = new Ball(new Vect(1,1), new Vect(2,2));
+        GadgetCollision collision = new GadgetCollision(ball, 10, .005);
+        ball.update(5, new Vect(0, 0), 0, 0);
+        assertNull(collision.afterMoving(5).getComponent(ball));
+    }
+}
@@ -9,6 +9,7 @@ import physics.Geometry;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 import pingball.Messages.GoodbyePortalBall;
 
 /** 
@@ -57,10 +58,10 @@ public class Portal extends CircleBumper {
      *      the portal eats the ball if it's connected
      *      and does nothing if it's unconnected.
      * @param ball that is colliding with portal
-     * @time time that it is going to collide within
+     * @param collision result of checkCollision for the ball and this portal
      */
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
         if (this.isConnected() && !ball.isImmune()){
             goodbyePortalBallMessages.add(new GoodbyePortalBall(
                     this.destinationBoard, this.destinationPortal, ball)); 
@@ -10,6 +10,7 @@ import java.util.List;
 import physics.*;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -154,24 +155,6 @@ public class SquareBumper implements Gadget {
         gadgetsToTrigger.add(gadget);
     }
 
-    @Override
-    public double ballHitsGadgetThisTimestep(Ball ball, long time) {       
-        Geometry.setForesight(time);
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
-        for (Object lineComponent : lineComponents){
-            if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity)<=time/1000){
-                return Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity);
-            }
-        }
-        for (Object circleComponent : circleComponents){
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity)<=time/1000){
-                return Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity);
-            }
-        }
-        return Double.POSITIVE_INFINITY;
-    }
-
 	@Override
 	public void triggerGadgets(Ball b) {
 		int numberOfGadgetsBeingTriggered = this.gadgetsToTrigger.size();
@@ -185,33 +168,69 @@ public class SquareBumper implements Gadget {
 	}
 
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
-        Geometry.setForesight(time);
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball) {
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        double soonestTime = Double.POSITIVE_INFINITY;
+        for (Object lineComponent : lineComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity));
+        }
+        for (Object circleComponent : circleComponents){
+            soonestTime = Math.min(soonestTime, context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity));
+        }
+        return soonestTime;
+    }
+
+    @Override
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time) {
+        context.setForesight(time);
         double soonestWallTime = time + 10;
         double soonestCircleTime = time + 10;
-        LineSegment closestWall = new LineSegment(0,0,0,0);
-        Circle closestCircle = new Circle(0,0,0);
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
-        for (Object lineComponent : lineComponents){    
-            if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity)<=soonestWallTime){
-                soonestWallTime = Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity);
+        LineSegment closestWall = null;
+        Circle closestCircle = null;
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
+        for (Object lineComponent : lineComponents){
+            double wallTime = context.timeUntilWallCollision((LineSegment) lineComponent, cartesianCircle, cartesianVelocity, context.getGravity(), time/1000.);
+            if (wallTime <= soonestWallTime){
+                soonestWallTime = wallTime;
                 closestWall = (LineSegment) lineComponent;
             }
         }
         for (Object circleComponent : circleComponents){
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity)<=soonestCircleTime){
-                soonestCircleTime = Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity);
+            double circleTime = context.timeUntilCircleCollision((Circle) circleComponent, cartesianCircle, cartesianVelocity, context.getGravity(), time/1000.);
+            if (circleTime <= soonestCircleTime){
+                soonestCircleTime = circleTime;
                 closestCircle = (Circle) circleComponent;
             }
         }
+        // the ball hits whichever part it reaches first
+        double soonestTime = Math.min(soonestWallTime, soonestCircleTime);
+        double hitTime = soonestTime <= time/1000.0 ? soonestTime : Double.POSITIVE_INFINITY;
         if (soonestWallTime <= soonestCircleTime && soonestWallTime < time + 10){
-            collisionBallWall(ball, closestWall);
+            return new GadgetCollision(ball, time, hitTime, closestWall);
         }
         else if (soonestCircleTime <= soonestWallTime && soonestCircleTime < time + 10){
-            collisionBallCircle(ball, closestCircle);
-        }else {
-        throw new RuntimeException("Nothing to collide?");
+            return new GadgetCollision(ball, time, hitTime, closestCircle);
+        }
+        return new GadgetCollision(ball, time, hitTime);
+    }
+
+    @Override
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
+        Object component = collision.getComponent(ball);
+        if (component == null){
+            // the ball was moved since the check, so find the part it's hitting again
+            component = checkCollision(context, ball, collision.getTimestep()).getComponent(ball);
+        }
+        if (component instanceof LineSegment){
+            collisionBallWall(ball, component);
+        }
+        else if (component instanceof Circle){
+            collisionBallCircle(ball, component);
+        }
+        else {
+            throw new RuntimeException("Nothing to collide?");
         }
     }
 
@@ -222,10 +241,10 @@ public class SquareBumper implements Gadget {
      * @param lineComponent
      */
     private void collisionBallWall(Ball ball, Object lineComponent) {
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
         Vect newVelocity = Geometry.reflectWall((LineSegment)lineComponent,cartesianVelocity, this.getReflectionCoeff());  
-        ball.setVelocity(new Vect(newVelocity.x(), -1*newVelocity.y()));
+        ball.setCartesianVelocity(newVelocity);
     }
 
     /**
@@ -235,10 +254,10 @@ public class SquareBumper implements Gadget {
      * @param circleComponent of the gadget that is getting hit
      */
     private void collisionBallCircle(Ball ball, Object circleComponent) {
-        Circle cartesianCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianVelocity = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+        Circle cartesianCircle = ball.getCartesianCircle();
+        Vect cartesianVelocity = ball.getCartesianVelocity();
         Vect newVelocity = Geometry.reflectCircle(((Circle) circleComponent).getCenter(), cartesianCircle.getCenter(), cartesianVelocity, this.getReflectionCoeff());
-        ball.setVelocity(new Vect(newVelocity.x(), -1*newVelocity.y()));
+        ball.setCartesianVelocity(newVelocity);
     }
     
     @Override
@@ -8,6 +8,7 @@ import org.junit.Test;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 public class SquareBumperTest {
 
@@ -24,6 +25,13 @@ public class SquareBumperTest {
      * - Partitions:  verify that a ball hits Square Bumper if close enough
      *                and no collision if too far
      * 
+     * Method: checkCollision(Ball ball, long time), collisionBallGadget(Ball ball, GadgetCollision collision)
+     * - Partitions:  ball close enough to hit, ball too far; verify the hit time matches
+     *                ballHitsGadgetThisTimestep and the ball reflects off the side it hits
+     * 
+     * Method: timeUntilBallCollision(Ball ball)
+     * - Partitions:  ball heading for the bumper, ball heading away
+     * 
      * Method: equals
      * - Partitions: verify reflexivity, and equivalence to an identical object,
      *               and non-equivalence to a different object
@@ -64,6 +72,44 @@ public class SquareBumperTest {
         assertTrue(testSqBumper.ballHitsGadgetThisTimestep(testBall, 1000) == Double.POSITIVE_INFINITY);
     }
     
+    //checkCollision and collisionBallGadget
+    @Test 
+    public void testCheckCollisionHit() {
+        Gadget testSqBumper = Gadget.squareBumper(1, 3); 
+        Ball testBall = new Ball(new Vect(2.5,3.5), new Vect(-2,0));
+        GadgetCollision collision = testSqBumper.checkCollision(PhysicsContext.forCurrentThread(), testBall, 1000);
+        assertTrue(collision.isHit());
+        assertEquals(testSqBumper.ballHitsGadgetThisTimestep(testBall, 1000), collision.getHitTime(), 0);
+        testSqBumper.collisionBallGadget(PhysicsContext.forCurrentThread(), testBall, collision);
+        assertEquals(2, testBall.getVelocity().x(), 0.00005);
+        assertEquals(0, testBall.getVelocity().y(), 0.00005);
+    }
+    
+    @Test 
+    public void testCheckCollisionMiss() {
+        Gadget testSqBumper = Gadget.squareBumper(1, 3); 
+        Ball testBall = new Ball(new Vect(10,10), new Vect(-2,0));
+        GadgetCollision collision = testSqBumper.checkCollision(PhysicsContext.forCurrentThread(), testBall, 1000);
+        assertFalse(collision.isHit());
+        assertTrue(collision.getHitTime() == Double.POSITIVE_INFINITY);
+    }
+    
+    //timeUntilBallCollision
+    @Test 
+    public void testTimeUntilBallCollisionSoonest() {
+        Gadget testSqBumper = Gadget.squareBumper(1, 3); 
+        Ball testBall = new Ball(new Vect(3.25,3.5), new Vect(-2,0));
+        // the near side is 1L away, the far side 2L
+        assertEquals(.5, testSqBumper.timeUntilBallCollision(testBall), 0.00001);
+    }
+    
+    @Test 
+    public void testTimeUntilBallCollisionMiss() {
+        Gadget testSqBumper = Gadget.squareBumper(1, 3); 
+        Ball testBall = new Ball(new Vect(10,10), new Vect(2,0));
+        assertTrue(testSqBumper.timeUntilBallCollision(testBall) == Double.POSITIVE_INFINITY);
+    }
+    
     //equals
     @Test 
     public void testEqualsReflexivity() {
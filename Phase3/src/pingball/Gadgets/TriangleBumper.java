@@ -16,6 +16,7 @@ import physics.LineSegment;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 /**
  * A mutable class to represent a triangle bumper
@@ -217,56 +218,70 @@ public class TriangleBumper implements Gadget {
 	}
 
     @Override
-    public double ballHitsGadgetThisTimestep(Ball ball, long time) {       
-        Geometry.setForesight(time);
-        Circle cartesianBallCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianBallVel = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+    public double timeUntilBallCollision(PhysicsContext context, Ball ball) {
+        Circle cartesianBallCircle = ball.getCartesianCircle();
+        Vect cartesianBallVel = ball.getCartesianVelocity();
+        double soonestTime = Double.POSITIVE_INFINITY;
         for (Object lineComponent : lineComponents){
-            if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel)<=time/1000.0){
-                
-                return Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel);
-            }
+            soonestTime = Math.min(soonestTime, context.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel));
         }
         for (Object circleComponent : circleComponents){
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel)<=time/1000.0){
-                return Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel);
-            }
+            soonestTime = Math.min(soonestTime, context.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel));
         }
-        return Double.POSITIVE_INFINITY;
+        return soonestTime;
     }
 
     @Override
-    public void collisionBallGadget(Ball ball, long time) {
-        Geometry.setForesight(time);
+    public GadgetCollision checkCollision(PhysicsContext context, Ball ball, long time) {
+        context.setForesight(time);
         double soonestWallTime = Double.POSITIVE_INFINITY;
         double soonestCircleTime = Double.POSITIVE_INFINITY;
-        LineSegment closestWall = new LineSegment(0,0,0,0);
-        Circle closestCircle = new Circle(0,0,0);
-        Circle cartesianBallCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianBallVel = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
-        for (Object lineComponent : lineComponents){    
-            if (Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel)<soonestWallTime){
-                soonestWallTime = Geometry.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel);
+        LineSegment closestWall = null;
+        Circle closestCircle = null;
+        Circle cartesianBallCircle = ball.getCartesianCircle();
+        Vect cartesianBallVel = ball.getCartesianVelocity();
+        for (Object lineComponent : lineComponents){
+            double wallTime = context.timeUntilWallCollision((LineSegment) lineComponent, cartesianBallCircle, cartesianBallVel, context.getGravity(), time/1000.);
+            if (wallTime < soonestWallTime){
+                soonestWallTime = wallTime;
                 closestWall = (LineSegment) lineComponent;
             }
         }
         for (Object circleComponent : circleComponents){
-            if (Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel)<soonestCircleTime){
-                soonestCircleTime = Geometry.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel);
+            double circleTime = context.timeUntilCircleCollision((Circle) circleComponent, cartesianBallCircle, cartesianBallVel, context.getGravity(), time/1000.);
+            if (circleTime < soonestCircleTime){
+                soonestCircleTime = circleTime;
                 closestCircle = (Circle) circleComponent;
             }
         }
+        // the ball hits whichever part it reaches first
+        double soonestTime = Math.min(soonestWallTime, soonestCircleTime);
+        double hitTime = soonestTime <= time/1000.0 ? soonestTime : Double.POSITIVE_INFINITY;
         if (soonestWallTime <= soonestCircleTime && soonestWallTime < (time + 10)/1000.){
-            collisionBallWall(ball, closestWall);
+            return new GadgetCollision(ball, time, hitTime, closestWall);
         }
         else if (soonestCircleTime <= soonestWallTime && soonestCircleTime < (time + 10)/1000.){
-            collisionBallCircle(ball, closestCircle);
+            return new GadgetCollision(ball, time, hitTime, closestCircle);
+        }
+        return new GadgetCollision(ball, time, hitTime);
+    }
+
+    @Override
+    public void collisionBallGadget(PhysicsContext context, Ball ball, GadgetCollision collision) {
+        Object component = collision.getComponent(ball);
+        if (component == null){
+            // the ball was moved since the check, so find the part it's hitting again
+            component = checkCollision(context, ball, collision.getTimestep()).getComponent(ball);
+        }
+        if (component instanceof LineSegment){
+            collisionBallWall(ball, component);
+        }
+        else if (component instanceof Circle){
+            collisionBallCircle(ball, component);
         }
         else {
             throw new RuntimeException("Um there's nothing to collide with?"); 
         }
-            
-
     }
     
     /**
@@ -276,8 +291,8 @@ public class TriangleBumper implements Gadget {
      * @param lineComponent
      */
     private void collisionBallWall(Ball ball, Object lineComponent) {
-        //Circle cartesianBallCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianBallVel = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+        //Circle cartesianBallCircle = ball.getCartesianCircle();
+        Vect cartesianBallVel = ball.getCartesianVelocity();
         Vect newVelocity = Geometry.reflectWall((LineSegment)lineComponent,cartesianBallVel, this.getReflectionCoeff());  
         ball.setVelocity(newVelocity);
     }
@@ -289,8 +304,8 @@ public class TriangleBumper implements Gadget {
      * @param circleComponent of the gadget that is getting hit
      */
     private void collisionBallCircle(Ball ball, Object circleComponent) {
-        Circle cartesianBallCircle = new Circle(ball.getPosition().x(),-1*ball.getPosition().y(),ball.getRadius());
-        Vect cartesianBallVel = new Vect(ball.getVelocity().x(),-1*ball.getVelocity().y());
+        Circle cartesianBallCircle = ball.getCartesianCircle();
+        Vect cartesianBallVel = ball.getCartesianVelocity();
         Vect newVelocity = Geometry.reflectCircle(((Circle) circleComponent).getCenter(), cartesianBallCircle.getCenter(), cartesianBallVel, this.getReflectionCoeff());
         ball.setVelocity(newVelocity);
     }
@@ -8,6 +8,7 @@ import org.junit.Test;
 import physics.Vect;
 import pingball.Ball;
 import pingball.Board;
+import pingball.PhysicsContext;
 
 public class TriangleBumperTest {
     /*
@@ -23,6 +24,10 @@ public class TriangleBumperTest {
      * - Partitions:  verify that a ball hits Triangle Bumper if close enough
      *                and no collision if too far
      * 
+     * Method: checkCollision(Ball ball, long time), collisionBallGadget(Ball ball, GadgetCollision collision)
+     * - Partitions:  verify the same hit time and bounce as ballHitsGadgetThisTimestep
+     *                and collisionBallGadget(Ball ball, long time)
+     * 
      * Method: equals
      * - Partitions: verify reflexivity, and equivalence to an identical object,
      *               and non-equivalence to a different object
@@ -70,6 +75,19 @@ public class TriangleBumperTest {
         assertTrue(testTriBumper.ballHitsGadgetThisTimestep(testBall, 1000) == Double.POSITIVE_INFINITY);
     }
     
+    //checkCollision and collisionBallGadget
+    @Test 
+    public void testCheckCollisionMatchesTimestepCollision() {
+        Gadget testTriBumper = Gadget.triangleBumper(1, 3, 0); 
+        Ball checkedBall = new Ball(new Vect(2.5,3.5), new Vect(-2,0));
+        Ball timestepBall = new Ball(new Vect(2.5,3.5), new Vect(-2,0));
+        GadgetCollision collision = testTriBumper.checkCollision(PhysicsContext.forCurrentThread(), checkedBall, 1000);
+        assertEquals(testTriBumper.ballHitsGadgetThisTimestep(timestepBall, 1000), collision.getHitTime(), 0);
+        testTriBumper.collisionBallGadget(PhysicsContext.forCurrentThread(), checkedBall, collision);
+        testTriBumper.collisionBallGadget(timestepBall, 1000);
+        assertEquals(timestepBall.getVelocity(), checkedBall.getVelocity());
+    }
+    
     //equals
     @Test 
     public void testEqualsReflexivity() {
@@ -0,0 +1,163 @@
+package pingball;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative long values, such as durations in nanoseconds, cheap enough to
+ * record into on every message or every tick and from many threads at once. Values up to 15
+ * are counted exactly; larger values are counted in buckets 1/8 of a power of two wide, so a
+ * percentile is reported to within 12.5% of the true value.
+ * The class is mutable.
+ */
+public class Histogram {
+
+    /* Thread Safety Argument
+     *
+     * Every count is a LongAdder, which threads add to without contending on one variable, and
+     * the largest value is a LongAccumulator, so record() is thread-safe and lock-free. The
+     * getters read the counts one at a time, so while values are being recorded they may see
+     * some of a value's counts and not others: a snapshot is approximate, but never torn
+     * within a single count.
+     */
+
+    // Abstraction function:
+    //      represents the multiset of values recorded, where counts[i] values fell in bucket i
+    //      (the values v with bucket(v) == i, the largest of which is upperBound(i)), sum is
+    //      their total and max the largest, Long.MIN_VALUE if none
+    // Rep invariant:
+    //      counts.length == BUCKETS
+    //
+
+    // values below 2^EXACT_BITS get a bucket each; each power of two above is split 2^SUB_BITS ways
+    private static final int SUB_BITS = 3;
+    private static final int EXACT_BITS = SUB_BITS + 1;
+    private static final int BUCKETS = (64 - EXACT_BITS + 1) << SUB_BITS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, Long.MIN_VALUE);
+
+    /**
+     * Makes an empty histogram
+     */
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+        checkRep();
+    }
+
+    /**
+     * Records a value
+     * @param value the value; negative values are counted as 0
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        counts[bucket(clamped)].increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Gets the number of values recorded
+     * @return the count
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucketCount : counts) {
+            count += bucketCount.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the total of the values recorded
+     * @return the sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the mean of the values recorded
+     * @return the mean, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Gets the largest value recorded
+     * @return the largest value, or 0 if nothing has been recorded
+     */
+    public long getMax() {
+        long largest = max.get();
+        return largest == Long.MIN_VALUE ? 0 : largest;
+    }
+
+    /**
+     * Gets a percentile of the values recorded
+     * @param percentile the percentile, from 0 to 100
+     * @return a value at least the given percentage of values are no larger than, exact up to
+     *         15 and within 12.5% above that; 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Gets the bucket a value is counted in
+     * @param value a non-negative value
+     * @return the index of its bucket
+     */
+    static int bucket(long value) {
+        if (value < (1L << EXACT_BITS)) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) & ((1 << SUB_BITS) - 1);
+        return ((shift + 1) << SUB_BITS) + sub;
+    }
+
+    /**
+     * Gets the largest value counted in a bucket
+     * @param bucket the index of a bucket
+     * @return its largest value
+     */
+    static long upperBound(int bucket) {
+        if (bucket < (1 << EXACT_BITS)) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BITS) - 1;
+        long lower = ((1L << SUB_BITS) + (bucket & ((1 << SUB_BITS) - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert counts.length == BUCKETS;
+    }
+}
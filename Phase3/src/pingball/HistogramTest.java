@@ -0,0 +1,133 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Methods: record(), getCount(), getSum(), getMean(), getMax()
+     * - Partitions:
+     *      - Values recorded: none, one, many
+     *      - Value: 0, negative, small (counted exactly), large, Long.MAX_VALUE
+     *      - Threads recording: one, several at once
+     *
+     * Method: getPercentile()
+     * - Partitions: 0, 50, 100, out of range; values exact, in wide buckets
+     *
+     * Methods: bucket(), upperBound()
+     * - Partitions: value below 16, at a power of two, just below one; last bucket
+     */
+
+    //record(), getCount(), getSum(), getMean(), getMax()
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void testRecordSmallValues() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getSum());
+        assertEquals(5.5, histogram.getMean(), 1e-9);
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void testRecordNegativeAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testRecordFromSeveralThreads() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int value = 0; value < 1000; value++) {
+                    histogram.record(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, histogram.getCount());
+        assertEquals(4 * 999 * 1000 / 2, histogram.getSum());
+        assertEquals(999, histogram.getMax());
+    }
+
+    //getPercentile()
+    @Test
+    public void testPercentileOfExactValues() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testPercentileOfLargeValuesIsClose() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+        long median = histogram.getPercentile(50);
+        assertTrue("median " + median, median >= 50000000 && median <= 50000000 * 1.125);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p99 " + p99, p99 >= 99000000 && p99 <= 99000000 * 1.125);
+        assertEquals(100000000, histogram.getPercentile(100));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPercentileOutOfRange() {
+        new Histogram().getPercentile(101);
+    }
+
+    //bucket(), upperBound()
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, Histogram.bucket(value));
+            assertEquals(value, Histogram.upperBound((int) value));
+        }
+        assertEquals(16, Histogram.bucket(16));
+        assertEquals(16, Histogram.bucket(17));
+        assertEquals(17, Histogram.upperBound(16));
+        assertEquals(Histogram.bucket(1023) + 1, Histogram.bucket(1024));
+        assertEquals(1023, Histogram.upperBound(Histogram.bucket(1023)));
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testRecordMaxValue() {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(50));
+    }
+}
@@ -44,31 +44,32 @@ public class GoodbyePortalBall implements Messages {
      * @param goodbyePortalBallString the message that was received
      */
     public GoodbyePortalBall(String goodbyePortalBallString) {
-        String[] messageParts = goodbyePortalBallString.split(" ");
-        
-        Vect position = new Vect(Double.parseDouble(messageParts[3]),Double.parseDouble(messageParts[4]));
-        Vect velocity = new Vect(Double.parseDouble(messageParts[5]),Double.parseDouble(messageParts[6]));
-        
-        this.destinationBoard = messageParts[1];
-        this.destinationPortal = messageParts[2];
+        this(new MessageTokenizer(goodbyePortalBallString).skip());
+    }
+
+    /**
+     * Constructs a message from the tokens of a message that has been read up to its fields
+     * @param tokens the tokens, at the destination board
+     */
+    public GoodbyePortalBall(MessageTokenizer tokens) {
+        this.destinationBoard = tokens.next();
+        this.destinationPortal = tokens.next();
+        Vect position = new Vect(tokens.nextDouble(), tokens.nextDouble());
+        Vect velocity = new Vect(tokens.nextDouble(), tokens.nextDouble());
         this.ball = new Ball(position, velocity);
     }
 
     @Override
     public String messageString() {
-        String toSend = "GoodbyePortalBall ";
-        toSend += this.getDestinationBoard();
-        toSend += " ";
-        toSend +=this.getDestinationPortal();
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().y());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().y());
-        return toSend;
+        StringBuilder toSend = new StringBuilder(96);
+        toSend.append("GoodbyePortalBall ");
+        toSend.append(this.getDestinationBoard()).append(' ');
+        toSend.append(this.getDestinationPortal()).append(' ');
+        toSend.append(this.getBall().getPosition().x()).append(' ');
+        toSend.append(this.getBall().getPosition().y()).append(' ');
+        toSend.append(this.getBall().getVelocity().x()).append(' ');
+        toSend.append(this.getBall().getVelocity().y());
+        return toSend.toString();
     }
 
     @Override
@@ -32,40 +32,32 @@ public class GoodbyeWallBall implements Messages{
     }
 
     public GoodbyeWallBall(String goodbyeWallBallString) {
-        String[] messageParts = goodbyeWallBallString.split(" ");
-        this.boardname = messageParts[1];
-        if (messageParts[2].equals("TOP")){
-            this.walltype = WallType.TOP;
-        }
-        else if (messageParts[2].equals("BOTTOM")){
-            this.walltype = WallType.BOTTOM;
-        }
-        else if (messageParts[2].equals("LEFT")){
-            this.walltype = WallType.LEFT;
-        }
-        else if (messageParts[2].equals("RIGHT")){
-            this.walltype = WallType.RIGHT;
-        }
-        Vect position = new Vect(Double.parseDouble(messageParts[3]),Double.parseDouble(messageParts[4]));
-        Vect velocity = new Vect(Double.parseDouble(messageParts[5]),Double.parseDouble(messageParts[6]));
+        this(new MessageTokenizer(goodbyeWallBallString).skip());
+    }
+
+    /**
+     * Constructs a message from the tokens of a message that has been read up to its fields
+     * @param tokens the tokens, at the board name
+     */
+    public GoodbyeWallBall(MessageTokenizer tokens) {
+        this.boardname = tokens.next();
+        this.walltype = tokens.nextWall();
+        Vect position = new Vect(tokens.nextDouble(), tokens.nextDouble());
+        Vect velocity = new Vect(tokens.nextDouble(), tokens.nextDouble());
         this.ball = new Ball(position, velocity);
     }
 
     @Override
     public String messageString() {
-        String toSend = "GoodbyeWallBall ";
-        toSend += this.getBoardName();
-        toSend += " ";
-        toSend +=this.getWalltype().toString();
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().y());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().y());
-        return toSend;
+        StringBuilder toSend = new StringBuilder(96);
+        toSend.append("GoodbyeWallBall ");
+        toSend.append(this.getBoardName()).append(' ');
+        toSend.append(this.getWalltype().toString()).append(' ');
+        toSend.append(this.getBall().getPosition().x()).append(' ');
+        toSend.append(this.getBall().getPosition().y()).append(' ');
+        toSend.append(this.getBall().getVelocity().x()).append(' ');
+        toSend.append(this.getBall().getVelocity().y());
+        return toSend.toString();
     }
     
     @Override
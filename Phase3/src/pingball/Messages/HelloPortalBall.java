@@ -29,26 +29,30 @@ public class HelloPortalBall implements Messages{
     }
 
     public HelloPortalBall(String helloPortalBallString) {
-        String[] messageParts = helloPortalBallString.split(" ");
-        this.destinationPortal = messageParts[1];
-        Vect position = new Vect(Double.parseDouble(messageParts[2]),Double.parseDouble(messageParts[3]));
-        Vect velocity = new Vect(Double.parseDouble(messageParts[4]),Double.parseDouble(messageParts[5]));
+        this(new MessageTokenizer(helloPortalBallString).skip());
+    }
+
+    /**
+     * Constructs a message from the tokens of a message that has been read up to its fields
+     * @param tokens the tokens, at the destination portal
+     */
+    public HelloPortalBall(MessageTokenizer tokens) {
+        this.destinationPortal = tokens.next();
+        Vect position = new Vect(tokens.nextDouble(), tokens.nextDouble());
+        Vect velocity = new Vect(tokens.nextDouble(), tokens.nextDouble());
         this.ball = new Ball(position, velocity);
     }
 
     @Override
     public String messageString() {
-        String toSend = "HelloPortalBall ";
-        toSend += this.getDestinationPortal();
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().y());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().y());
-        return toSend;
+        StringBuilder toSend = new StringBuilder(96);
+        toSend.append("HelloPortalBall ");
+        toSend.append(this.getDestinationPortal()).append(' ');
+        toSend.append(this.getBall().getPosition().x()).append(' ');
+        toSend.append(this.getBall().getPosition().y()).append(' ');
+        toSend.append(this.getBall().getVelocity().x()).append(' ');
+        toSend.append(this.getBall().getVelocity().y());
+        return toSend.toString();
     }
 
     @Override
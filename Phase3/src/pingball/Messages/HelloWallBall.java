@@ -29,38 +29,31 @@ public class HelloWallBall implements Messages {
     }
 
     public HelloWallBall(String helloWallBallString) {
-        String[] messageParts = helloWallBallString.split(" ");
-        if (messageParts[1].equals("TOP")){
-            this.walltype = WallType.TOP;
-        }
-        else if (messageParts[1].equals("BOTTOM")){
-            this.walltype = WallType.BOTTOM;
-        }
-        else if (messageParts[1].equals("LEFT")){
-            this.walltype = WallType.LEFT;
-        }
-        else if (messageParts[1].equals("RIGHT")){
-            this.walltype = WallType.RIGHT;
-        }
-        Vect position = new Vect(Double.parseDouble(messageParts[2]),Double.parseDouble(messageParts[3]));
-        Vect velocity = new Vect(Double.parseDouble(messageParts[4]),Double.parseDouble(messageParts[5]));
+        this(new MessageTokenizer(helloWallBallString).skip());
+    }
+
+    /**
+     * Constructs a message from the tokens of a message that has been read up to its fields
+     * @param tokens the tokens, at the wall
+     */
+    public HelloWallBall(MessageTokenizer tokens) {
+        this.walltype = tokens.nextWall();
+        Vect position = new Vect(tokens.nextDouble(), tokens.nextDouble());
+        Vect velocity = new Vect(tokens.nextDouble(), tokens.nextDouble());
         this.ball = new Ball(position, velocity);
         checkRep();
     }
 
     @Override
     public String messageString() {
-        String toSend = "HelloWallBall ";
-        toSend += this.getWalltype().toString();
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getPosition().y());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().x());
-        toSend += " ";
-        toSend +=String.valueOf(this.getBall().getVelocity().y());
-        return toSend;
+        StringBuilder toSend = new StringBuilder(96);
+        toSend.append("HelloWallBall ");
+        toSend.append(this.getWalltype().toString()).append(' ');
+        toSend.append(this.getBall().getPosition().x()).append(' ');
+        toSend.append(this.getBall().getPosition().y()).append(' ');
+        toSend.append(this.getBall().getVelocity().x()).append(' ');
+        toSend.append(this.getBall().getVelocity().y());
+        return toSend.toString();
     }
 
     @Override
@@ -0,0 +1,148 @@
+package pingball.Messages;
+
+import java.util.NoSuchElementException;
+
+import pingball.WallType;
+
+/**
+ * Reads the tokens of a line of the wire protocol where they lie in the line, instead of
+ * splitting it into an array of strings first: words and walls are compared in place, so only
+ * the names and numbers that are kept are copied out of the line. Tokens are separated by
+ * single spaces, so two spaces in a row, or a space at either end, make an empty token.
+ * The class is mutable, and not thread-safe.
+ */
+public class MessageTokenizer {
+    // Abstraction function:
+    //      represents the tokens of line that start at position or later; if position is
+    //      line.length() + 1, every token has been read
+    // Rep invariant:
+    //      0 <= position <= line.length() + 1
+    //
+
+    private final String line;
+    private int position = 0;
+
+    /**
+     * Makes a tokenizer at the first token of a line
+     * @param line the line, without a line terminator
+     */
+    public MessageTokenizer(String line) {
+        this.line = line;
+        checkRep();
+    }
+
+    /**
+     * Tells whether there are tokens left
+     * @return true if next() would return a token
+     */
+    public boolean hasNext() {
+        return position <= line.length();
+    }
+
+    /**
+     * Counts the tokens left, without reading them
+     * @return the number of tokens left
+     */
+    public int countRemaining() {
+        if (!hasNext()) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = position; i < line.length(); i++) {
+            if (line.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next token if it is the given word
+     * @param word the word, without spaces
+     * @return true if the next token was word, in which case it has been read; false otherwise,
+     *         in which case nothing has been read
+     */
+    public boolean nextIs(String word) {
+        if (!hasNext()) {
+            return false;
+        }
+        int end = tokenEnd();
+        if (end - position != word.length() || !line.regionMatches(position, word, 0, word.length())) {
+            return false;
+        }
+        position = end + 1;
+        return true;
+    }
+
+    /**
+     * Reads the next token
+     * @return the token, possibly empty
+     * @throws NoSuchElementException if there are no tokens left
+     */
+    public String next() {
+        int start = position;
+        skip();
+        return line.substring(start, position - 1);
+    }
+
+    /**
+     * Reads the next token without copying it
+     * @return this tokenizer
+     * @throws NoSuchElementException if there are no tokens left
+     */
+    public MessageTokenizer skip() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("no tokens left in: " + line);
+        }
+        position = tokenEnd() + 1;
+        checkRep();
+        return this;
+    }
+
+    /**
+     * Reads the next token as a number
+     * @return the number
+     * @throws NoSuchElementException if there are no tokens left
+     * @throws NumberFormatException if the token isn't a number
+     */
+    public double nextDouble() {
+        return Double.parseDouble(next());
+    }
+
+    /**
+     * Reads the next token as the name of a wall: LEFT, RIGHT, TOP or BOTTOM
+     * @return the wall
+     * @throws NoSuchElementException if there are no tokens left
+     * @throws IllegalArgumentException if the token isn't the name of a wall; it isn't read
+     */
+    public WallType nextWall() {
+        for (WallType wall : WallType.values()) {
+            if (nextIs(wall.name())) {
+                return wall;
+            }
+        }
+        if (!hasNext()) {
+            throw new NoSuchElementException("no tokens left in: " + line);
+        }
+        throw new IllegalArgumentException("not a wall: " + line.substring(position, tokenEnd()));
+    }
+
+    /**
+     * Gets the line being read
+     * @return the whole line
+     */
+    public String getLine() {
+        return line;
+    }
+
+    // the index just past the token at position; requires hasNext()
+    private int tokenEnd() {
+        int space = line.indexOf(' ', position);
+        return space < 0 ? line.length() : space;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert 0 <= position && position <= line.length() + 1;
+    }
+}
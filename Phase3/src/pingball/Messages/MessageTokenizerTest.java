@@ -0,0 +1,85 @@
+package pingball.Messages;
+
+import static org.junit.Assert.*;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import pingball.WallType;
+
+public class MessageTokenizerTest {
+    /*
+     * Testing strategy:
+     *   next(), nextIs(), skip(), countRemaining()
+     *      - tokens: one, many; empty tokens from double spaces or spaces at either end
+     *      - nextIs: the word, a longer or shorter token, no tokens left
+     *   nextDouble(), nextWall()
+     *      - well formed, malformed, no tokens left
+     */
+
+    @Test
+    public void testTokensLikeSplit() {
+        MessageTokenizer tokens = new MessageTokenizer("JoinWalls right Beta Alpha");
+        assertEquals(4, tokens.countRemaining());
+        assertTrue(tokens.nextIs("JoinWalls"));
+        assertEquals("right", tokens.next());
+        assertEquals(2, tokens.countRemaining());
+        assertEquals("Alpha", tokens.skip().next());
+        assertFalse(tokens.hasNext());
+        assertEquals(0, tokens.countRemaining());
+    }
+
+    @Test
+    public void testEmptyTokens() {
+        MessageTokenizer tokens = new MessageTokenizer(" a  b ");
+        assertEquals(5, tokens.countRemaining());
+        assertEquals("", tokens.next());
+        assertEquals("a", tokens.next());
+        assertEquals("", tokens.next());
+        assertEquals("b", tokens.next());
+        assertEquals("", tokens.next());
+        assertFalse(tokens.hasNext());
+        assertEquals(1, new MessageTokenizer("").countRemaining());
+    }
+
+    @Test
+    public void testNextIsOnlyReadsAMatch() {
+        MessageTokenizer tokens = new MessageTokenizer("Connected: Alpha");
+        assertFalse(tokens.nextIs("Connected"));
+        assertFalse(tokens.nextIs("Connected:x"));
+        assertTrue(tokens.nextIs("Connected:"));
+        assertTrue(tokens.nextIs("Alpha"));
+        assertFalse(tokens.nextIs("Alpha"));
+    }
+
+    @Test
+    public void testNumbersAndWalls() {
+        MessageTokenizer tokens = new MessageTokenizer("BOTTOM -4.5 2 1.0E-5");
+        assertEquals(WallType.BOTTOM, tokens.nextWall());
+        assertEquals(-4.5, tokens.nextDouble(), 0);
+        assertEquals(2, tokens.nextDouble(), 0);
+        assertEquals(1.0E-5, tokens.nextDouble(), 0);
+    }
+
+    @Test
+    public void testNotAWallIsNotRead() {
+        MessageTokenizer tokens = new MessageTokenizer("MIDDLE 1");
+        try {
+            tokens.nextWall();
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("MIDDLE", tokens.next());
+        }
+    }
+
+    @Test(expected=NumberFormatException.class)
+    public void testNotANumber() {
+        new MessageTokenizer("x").nextDouble();
+    }
+
+    @Test(expected=NoSuchElementException.class)
+    public void testNoTokensLeft() {
+        new MessageTokenizer("GoodbyePortalBall Beta").skip().skip().next();
+    }
+}
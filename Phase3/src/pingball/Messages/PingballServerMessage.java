@@ -1,11 +1,15 @@
 package pingball.Messages;
 
+import java.util.NoSuchElementException;
+
 /**
  * 
  * A message for internal Pingball server use. 
  * 
  * Abstraction Function: Represents a Pingball message containing source ID, destination ID, and a message. 
+ *                       If the message is about a ball leaving a board, ball is the message parsed. 
  * Rep Invariant: sourceID, message is immutable, *ensured through use of private final Strings. 
+ *                ball is null unless message is a GoodbyeWallBall or GoodbyePortalBall message. 
  *
  */
 
@@ -14,6 +18,8 @@ public class PingballServerMessage {
     private final String sourceSocketID;
     private String destinationSocketID; 
     private final String message; 
+    private final Messages ball; 
+    private final long receivedNanos; 
     
     /**
      * Creates a new PingballServerMessage
@@ -26,6 +32,30 @@ public class PingballServerMessage {
         this.sourceSocketID = sourceID; 
         this.destinationSocketID = destID; 
         this.message = message; 
+        this.ball = parseBall(message); 
+        this.receivedNanos = System.nanoTime(); 
+    }
+    
+    /**
+     * Parses a message about a ball leaving a board, once, so that it can be routed on its fields
+     * @param message String message, or null
+     * @return the GoodbyeWallBall or GoodbyePortalBall, or null if message isn't a well-formed one
+     */
+    private static Messages parseBall(String message) {
+        if (message == null) {
+            return null;
+        }
+        MessageTokenizer tokens = new MessageTokenizer(message);
+        try {
+            if (tokens.nextIs("GoodbyeWallBall")) {
+                return new GoodbyeWallBall(tokens);
+            } else if (tokens.nextIs("GoodbyePortalBall")) {
+                return new GoodbyePortalBall(tokens);
+            }
+        } catch (IllegalArgumentException | NoSuchElementException e) {
+            // malformed
+        }
+        return null;
     }
     
     /**
@@ -36,6 +66,22 @@ public class PingballServerMessage {
         return this.message; 
     }
     
+    /**
+     * Return the message about a ball leaving a board, parsed
+     * @return the GoodbyeWallBall or GoodbyePortalBall, or null if the message isn't one
+     */
+    public Messages getBall() {
+        return this.ball; 
+    }
+    
+    /**
+     * Return when the PingballServerMessage was made, which for a message from a client is when it was received
+     * @return System.nanoTime() when the message was made
+     */
+    public long getReceivedNanos() {
+        return this.receivedNanos; 
+    }
+    
     /**
      * Specify destinationID of PingballServerMessage
      * @param destinationID of destination Socket
@@ -37,6 +37,13 @@ public class PingballServerMessageTest {
      *          - empty string
      *          - nonempty string 
      * 
+     * getBall()
+     * - Partitions
+     *      - Message
+     *          - null
+     *          - GoodbyeWallBall, GoodbyePortalBall
+     *          - malformed ball message, other message 
+     * 
      */
     
     //getMessage()
@@ -98,4 +105,25 @@ public class PingballServerMessageTest {
         PingballServerMessage test = new PingballServerMessage("test", "test", "test"); 
         assertEquals(test.getOriginID(), "test"); 
     }
+    
+    //getBall()
+    @Test
+    public void testGetBallNull() {
+        assertNull(new PingballServerMessage(null, null, null).getBall()); 
+    }
+    
+    @Test
+    public void testGetBallParsed() {
+        String wall = "GoodbyeWallBall Alpha LEFT 0.25 19.75 -10.0 1.0"; 
+        assertEquals(new GoodbyeWallBall(wall), new PingballServerMessage("Alpha", null, wall).getBall()); 
+        String portal = "GoodbyePortalBall Beta Q 1.5 2.5 3.5 -4.5"; 
+        assertEquals(new GoodbyePortalBall(portal), new PingballServerMessage("Alpha", null, portal).getBall()); 
+    }
+    
+    @Test
+    public void testGetBallNotABallMessage() {
+        assertNull(new PingballServerMessage("Alpha", null, "GoodbyeWallBall Alpha MIDDLE 0 0 0 0").getBall()); 
+        assertNull(new PingballServerMessage("Alpha", null, "GoodbyePortalBall Beta Q 1.5").getBall()); 
+        assertNull(new PingballServerMessage("Alpha", null, "restart Alpha").getBall()); 
+    }
 }
@@ -0,0 +1,204 @@
+package pingball;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A small harness that measures the throughput of one operation, and how much memory each
+ * call to it allocates. The operation is first called for a number of warmup iterations, so
+ * that the JIT compiler has settled, and then for a number of measurement iterations of a
+ * fixed length each; the throughput of each measurement iteration is one sample.
+ * The class is immutable; each run() is a separate measurement.
+ */
+public class Microbenchmark {
+    // Abstraction function:
+    //      represents measuring how many times per second operation can be called, and how
+    //      many bytes each call allocates, under the name name
+    // Rep invariant:
+    //      name != null, operation != null
+    //
+
+    /**
+     * An operation to measure
+     */
+    public interface Operation {
+        /**
+         * Runs the operation once
+         * @return any value the operation computes, so that the compiler can't drop the work;
+         *         may be null
+         */
+        public Object run();
+    }
+
+    /**
+     * An immutable result of running a Microbenchmark
+     */
+    public static class Result {
+        private final String name;
+        private final double[] opsPerSecond;
+        private final double bytesPerOp;
+
+        private Result(String name, double[] opsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond.clone();
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        /**
+         * Getter for the name of the benchmark
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the number of measurement iterations
+         * @return the number of samples of the throughput
+         */
+        public int getSamples() {
+            return opsPerSecond.length;
+        }
+
+        /**
+         * Gets the mean throughput over the measurement iterations
+         * @return the mean number of operations per second
+         */
+        public double getMeanOpsPerSecond() {
+            double sum = 0;
+            for (double sample : opsPerSecond) {
+                sum += sample;
+            }
+            return sum / opsPerSecond.length;
+        }
+
+        /**
+         * Gets the sample standard deviation of the throughput over the measurement iterations
+         * @return the standard deviation in operations per second, 0 for a single iteration
+         */
+        public double getStandardDeviation() {
+            if (opsPerSecond.length < 2) {
+                return 0;
+            }
+            double mean = getMeanOpsPerSecond();
+            double sumOfSquares = 0;
+            for (double sample : opsPerSecond) {
+                sumOfSquares += (sample - mean) * (sample - mean);
+            }
+            return Math.sqrt(sumOfSquares / (opsPerSecond.length - 1));
+        }
+
+        /**
+         * Gets the number of bytes allocated by each operation during the measurement iterations
+         * @return the mean bytes allocated per operation, or NaN if the JVM can't measure it
+         */
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-50s %5d %15.1f +- %12.1f ops/s %12.1f B/op",
+                    name, getSamples(), getMeanOpsPerSecond(), getStandardDeviation(), bytesPerOp);
+        }
+    }
+
+    // header for lines of Result.toString()
+    public static final String HEADER = String.format("%-50s %5s %15s    %12s %5s %12s",
+            "Benchmark", "Cnt", "Score", "Stdev", "", "Alloc");
+
+    // how many calls are made between checks of the clock
+    private static final int BATCH_SIZE = 64;
+
+    // written so that the values computed by operations escape, and can't be optimized away
+    private static volatile Object sink;
+
+    private final String name;
+    private final Operation operation;
+
+    /**
+     * Constructor for Microbenchmark
+     * @param name the name to report the results under
+     * @param operation the operation to measure
+     */
+    public Microbenchmark(String name, Operation operation) {
+        this.name = name;
+        this.operation = operation;
+        checkRep();
+    }
+
+    /**
+     * Getter for the name of the benchmark
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Measures the operation on the calling thread
+     * @param warmupIterations number of iterations to run before measuring; must be nonnegative
+     * @param measurementIterations number of iterations to measure; must be positive
+     * @param iterationMillis length of each iteration in ms; must be positive
+     * @return the throughput of each measurement iteration and the allocation per operation
+     */
+    public Result run(int warmupIterations, int measurementIterations, long iterationMillis) {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(iterationMillis);
+        }
+        double[] opsPerSecond = new double[measurementIterations];
+        long totalOps = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < measurementIterations; i++) {
+            long start = System.nanoTime();
+            long ops = runIteration(iterationMillis);
+            long elapsed = System.nanoTime() - start;
+            opsPerSecond[i] = ops * 1e9 / elapsed;
+            totalOps += ops;
+        }
+        long allocatedAfter = allocatedBytes();
+        double bytesPerOp = allocatedBefore < 0 || allocatedAfter < 0
+                ? Double.NaN : (double) (allocatedAfter - allocatedBefore) / totalOps;
+        return new Result(name, opsPerSecond, bytesPerOp);
+    }
+
+    /**
+     * Calls the operation in batches for at least the given time
+     * @param iterationMillis how long to keep calling the operation, in ms
+     * @return the number of calls made
+     */
+    private long runIteration(long iterationMillis) {
+        long end = System.nanoTime() + iterationMillis * 1000000;
+        long ops = 0;
+        Object last = null;
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                last = operation.run();
+            }
+            ops += BATCH_SIZE;
+        } while (System.nanoTime() < end);
+        sink = last;
+        return ops;
+    }
+
+    /**
+     * Gets the number of bytes the calling thread has allocated so far
+     * @return the number of bytes, or -1 if the JVM can't measure it
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert name != null;
+        assert operation != null;
+    }
+}
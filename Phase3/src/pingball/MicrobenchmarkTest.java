@@ -0,0 +1,39 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MicrobenchmarkTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: run()
+     * - Partitions:
+     *      - Warmup iterations: 0, > 0
+     *      - Measurement iterations: 1, > 1
+     *      - Operation: allocates nothing, allocates on every call
+     */
+
+    @Test
+    public void testRunSingleIteration() {
+        Microbenchmark benchmark = new Microbenchmark("count", () -> null);
+        Microbenchmark.Result result = benchmark.run(0, 1, 10);
+        assertEquals("count", result.getName());
+        assertEquals(1, result.getSamples());
+        assertTrue(result.getMeanOpsPerSecond() > 0);
+        assertEquals(0, result.getStandardDeviation(), 0);
+    }
+
+    @Test
+    public void testRunAllocatingOperation() {
+        Microbenchmark benchmark = new Microbenchmark("allocate", () -> new long[16]);
+        Microbenchmark.Result result = benchmark.run(1, 3, 20);
+        assertEquals(3, result.getSamples());
+        assertTrue(result.getStandardDeviation() >= 0);
+        // escape analysis may remove the allocation, and some JVMs can't measure it
+        assertTrue(Double.isNaN(result.getBytesPerOp()) || result.getBytesPerOp() >= 0);
+        assertTrue(result.toString().contains("allocate"));
+    }
+}
@@ -0,0 +1,270 @@
+package pingball;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One client connection of a SelectorServer. Incoming bytes are collected in a read buffer
+ * and split into lines the way BufferedReader.readLine does; outgoing lines are queued by any
+ * thread and written by the server's selector thread as the socket can take them.
+ * The class is mutable.
+ */
+public class NioConnection {
+
+    /* Thread Safety Argument
+     *
+     * Everything but send(), getPendingBytes() and isClosed() is only called on the selector
+     * thread of the server that owns the connection, so the read buffer and the selection key
+     * are confined to it. send() may be called from any thread: it puts the line on a
+     * concurrent queue, counts its bytes in an atomic counter, and asks the selector thread to
+     * start writing; only the selector thread takes lines off the queue.
+     */
+
+    // Abstraction function:
+    //      represents the connection over channel, registered with key. The bytes of
+    //      readBuffer before its position have been read but not yet split into lines; if
+    //      skipLineFeed, the last line ended in \r, so a \n right after it doesn't end another.
+    //      The last line handed to the server took lastLineBytes bytes, and skippedBytes bytes
+    //      read since, the \n after a \r, belong to no line yet.
+    //      writeQueue holds the bytes still to be written, in order, pendingBytes of them.
+    // Rep invariant:
+    //      readBuffer.capacity() <= MAX_LINE_LENGTH
+    //      pendingBytes >= 0
+    //      lastLineBytes >= 0, skippedBytes >= 0
+    //
+
+    // initial size of the read buffer, which is enough for any message of the wire protocol
+    private static final int READ_BUFFER_SIZE = 1024;
+    // longest line a client may send before it is disconnected
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+    // most queued lines written to the socket in one write
+    static final int MAX_GATHER = 64;
+
+    private final SelectorServer server;
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private boolean skipLineFeed = false;
+    private int lastLineBytes = 0;
+    private int skippedBytes = 0;
+    // the lines of the current write, only used by flush()
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicLong pendingBytes = new AtomicLong(0);
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor for NioConnection
+     * @param server the server the connection belongs to
+     * @param channel the connected, non-blocking channel to the client
+     */
+    NioConnection(SelectorServer server, SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+        checkRep();
+    }
+
+    /**
+     * Queues a line to be sent to the client, followed by a newline. May be called from any
+     * thread; the line is dropped if the connection is closed.
+     * @param line the line to send, without a line terminator
+     * @return the number of bytes queued, newline included, or 0 if the line was dropped
+     */
+    public int send(String line) {
+        if (closed) {
+            return 0;
+        }
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        writeQueue.add(ByteBuffer.wrap(bytes));
+        pendingBytes.addAndGet(bytes.length);
+        if (writeRequested.compareAndSet(false, true)) {
+            server.requestWrite(this);
+        }
+        return bytes.length;
+    }
+
+    /**
+     * Gets the number of bytes queued to be sent to the client that haven't been written yet
+     * @return the number of bytes
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Gets the number of bytes the line last handed to the server's handler took on the wire,
+     * with its line terminator; only meaningful on the selector thread, inside lineReceived()
+     * @return the number of bytes
+     */
+    public int getLastLineBytes() {
+        return lastLineBytes;
+    }
+
+    /**
+     * Tells whether the connection has been closed
+     * @return true if the connection is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Gets the channel to the client
+     * @return the channel
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Sets the key the channel is registered with
+     * @param key the selection key
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Gets the key the channel is registered with
+     * @return the selection key, or null if it isn't registered yet
+     */
+    SelectionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Marks that the selector thread has seen the latest request to write, so the next send()
+     * makes a new one
+     */
+    void clearWriteRequest() {
+        writeRequested.set(false);
+    }
+
+    /**
+     * Tells whether there are queued bytes left to write
+     * @return true if the write queue isn't empty
+     */
+    boolean hasPendingWrites() {
+        return !writeQueue.isEmpty();
+    }
+
+    /**
+     * Reads whatever the client has sent and hands each complete line to the server's handler.
+     * At the end of the stream, an unterminated last line is handed over too, as readLine would.
+     * @return false if the client closed its end of the connection, or sent a line that is too long
+     * @throws IOException if reading fails
+     */
+    boolean read() throws IOException {
+        int count = channel.read(readBuffer);
+        boolean open = count >= 0;
+        int start = 0;
+        byte[] bytes = readBuffer.array();
+        int end = readBuffer.position();
+        for (int i = 0; i < end; i++) {
+            byte b = bytes[i];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    skippedBytes++;
+                    start = i + 1;
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                lastLineBytes = skippedBytes + i + 1 - start;
+                skippedBytes = 0;
+                server.lineReceived(this, new String(bytes, start, i - start, StandardCharsets.UTF_8));
+                skipLineFeed = b == '\r';
+                start = i + 1;
+            }
+        }
+        if (!open) {
+            if (start < end) {
+                lastLineBytes = skippedBytes + end - start;
+                skippedBytes = 0;
+                server.lineReceived(this, new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            }
+            readBuffer.clear();
+            return false;
+        }
+        // keep the start of the unfinished line for the next read
+        readBuffer.limit(end);
+        readBuffer.position(start);
+        readBuffer.compact();
+        if (!readBuffer.hasRemaining()) {
+            if (readBuffer.capacity() >= MAX_LINE_LENGTH) {
+                return false;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, MAX_LINE_LENGTH));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Writes as much of the queued bytes as the socket will take right now, up to
+     * MAX_GATHER lines per write
+     * @return true if everything queued has been written
+     * @throws IOException if writing fails
+     */
+    boolean flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            // gather the queued lines so that they go out together in one write
+            int count = 0;
+            for (ByteBuffer line : writeQueue) {
+                gather[count++] = line;
+                if (count == gather.length) {
+                    break;
+                }
+            }
+            long written = channel.write(gather, 0, count);
+            pendingBytes.addAndGet(-written);
+            for (int i = 0; i < count; i++) {
+                if (gather[i].hasRemaining()) {
+                    Arrays.fill(gather, 0, count, null);
+                    return false;
+                }
+                writeQueue.poll();
+            }
+            Arrays.fill(gather, 0, count, null);
+        }
+        checkRep();
+        return true;
+    }
+
+    /**
+     * Closes the channel and drops anything still queued
+     */
+    void close() {
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        writeQueue.clear();
+        pendingBytes.set(0);
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert readBuffer.capacity() <= MAX_LINE_LENGTH;
+        assert pendingBytes.get() >= 0;
+        assert lastLineBytes >= 0 && skippedBytes >= 0;
+    }
+}
@@ -0,0 +1,26 @@
+package pingball;
+
+/**
+ * An enum for what a client's outbox does with a line when it is full because the client
+ * isn't reading fast enough: DROP_NEWEST drops the line, DROP_OLDEST drops the line that has
+ * waited longest to make room for it, and DISCONNECT drops the client.
+ */
+public enum OverflowPolicy {
+    DROP_NEWEST, DROP_OLDEST, DISCONNECT;
+
+    /**
+     * Gets the policy servers start with, set with the system property pingball.overflow
+     * (drop_newest, drop_oldest or disconnect); DROP_OLDEST if the property isn't set or
+     * isn't recognized
+     * @return the default policy
+     */
+    public static OverflowPolicy getDefault() {
+        String property = System.getProperty("pingball.overflow", "drop_oldest");
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(property)) {
+                return policy;
+            }
+        }
+        return DROP_OLDEST;
+    }
+}
@@ -0,0 +1,205 @@
+package pingball;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import physics.Vect;
+import pingball.Gadgets.Absorber;
+import pingball.Gadgets.CircleBumper;
+import pingball.Gadgets.Flipper;
+import pingball.Gadgets.Gadget;
+import pingball.Gadgets.Portal;
+import pingball.Gadgets.SquareBumper;
+import pingball.Gadgets.TriangleBumper;
+
+/**
+ * Benchmarks for the hot path of the physics: Board.update on each of the BenchmarkBoards,
+ * on every board file and on synthetic boards of N balls and M gadgets, the busiest of them
+ * also with their islands updated on a pool, plus
+ * ballHitsGadgetThisTimestep for each type of gadget and Ball.update on its own.
+ *
+ * Usage: java pingball.PhysicsBenchmarks [FILTER...]
+ *
+ * Only benchmarks whose names contain one of the FILTERs are run; all of them are run if
+ * none are given. The run is configured with these system properties:
+ *      pingball.bench.warmup       warmup iterations per benchmark (default 3)
+ *      pingball.bench.iterations   measurement iterations per benchmark (default 5)
+ *      pingball.bench.millis       length of each iteration in ms (default 1000)
+ *      pingball.bench.boards       directory of board files (default boards)
+ *
+ * Each line of output gives the mean throughput, its standard deviation over the measurement
+ * iterations, and the bytes allocated per operation.
+ */
+public class PhysicsBenchmarks {
+
+    // length of each update in ms, as the client's fixed steps are
+    private static final long TIMESTEP = Pingball.TIME_RESOLUTION / 4;
+    // timestep in ms long enough for the balls in the gadget benchmarks to reach their gadget
+    private static final long COLLISION_TIMESTEP = 50;
+    private static final int[] SCALED_BALLS = {1, 10, 50, 100};
+    private static final int[] SCALED_GADGETS = {10, 50, 100};
+    private static final Vect GRAVITY = new Vect(0, -25);
+
+    /**
+     * Runs the benchmarks and prints their results
+     * @param args filters for the names of the benchmarks to run
+     */
+    public static void main(String[] args) {
+        int warmup = Integer.getInteger("pingball.bench.warmup", 3);
+        int iterations = Integer.getInteger("pingball.bench.iterations", 5);
+        long millis = Long.getLong("pingball.bench.millis", 1000);
+        File boardDirectory = new File(System.getProperty("pingball.bench.boards", "boards"));
+
+        System.out.println(Microbenchmark.HEADER);
+        for (Microbenchmark benchmark : benchmarks(boardDirectory)) {
+            if (matches(benchmark.getName(), args)) {
+                System.out.println(benchmark.run(warmup, iterations, millis));
+            }
+        }
+    }
+
+    /**
+     * Makes every benchmark in the suite
+     * @param boardDirectory directory of board files to benchmark; files that can't be parsed are skipped
+     * @return the benchmarks, in the order they should be run
+     */
+    public static List<Microbenchmark> benchmarks(File boardDirectory) {
+        List<Microbenchmark> benchmarks = new ArrayList<Microbenchmark>();
+
+        benchmarks.add(boardUpdate("Board.update[DEFAULT]", BenchmarkBoards.DEFAULT));
+        benchmarks.add(boardUpdate("Board.update[ABSORBER]", BenchmarkBoards.ABSORBER));
+        benchmarks.add(boardUpdate("Board.update[PORTAL]", BenchmarkBoards.PORTAL));
+        benchmarks.add(boardUpdate("Board.update[TRANSPARENT]", BenchmarkBoards.TRANSPARENT));
+        benchmarks.add(boardUpdate("Board.update[SIDEWAYS]", BenchmarkBoards.SIDEWAYS));
+        benchmarks.add(boardUpdate("Board.update[FLIPPERS]", BenchmarkBoards.FLIPPERS));
+
+        File[] boardFiles = boardDirectory.listFiles();
+        if (boardFiles != null) {
+            Arrays.sort(boardFiles);
+            for (File boardFile : boardFiles) {
+                try {
+                    Board board = FileParsing.createBoardFromFile(boardFile);
+                    benchmarks.add(boardUpdate("Board.update[" + boardFile.getName() + "]", board));
+                } catch (IOException | RuntimeException e) {
+                    // boards that don't parse are there to test the parser
+                }
+            }
+        }
+
+        for (int balls : SCALED_BALLS) {
+            for (int gadgets : SCALED_GADGETS) {
+                benchmarks.add(boardUpdate("Board.update[" + balls + " balls x " + gadgets + " gadgets]",
+                        scaledBoard(balls, gadgets)));
+            }
+        }
+        // the boards with the most balls again, with their islands spread over the common pool
+        int mostBalls = SCALED_BALLS[SCALED_BALLS.length - 1];
+        for (int gadgets : SCALED_GADGETS) {
+            Board board = scaledBoard(mostBalls, gadgets);
+            board.setIslandPool(ForkJoinPool.commonPool());
+            benchmarks.add(boardUpdate("Board.update[" + mostBalls + " balls x " + gadgets + " gadgets, island pool]",
+                    board));
+        }
+
+        benchmarks.add(ballHitsGadget("SquareBumper", new SquareBumper(9, 9)));
+        benchmarks.add(ballHitsGadget("CircleBumper", new CircleBumper(9, 9)));
+        benchmarks.add(ballHitsGadget("TriangleBumper", new TriangleBumper(9, 9, 0)));
+        benchmarks.add(ballHitsGadget("Absorber", new Absorber(9, 9, 4, 2)));
+        benchmarks.add(ballHitsGadget("Flipper", new Flipper(9, 9, 0, false, true)));
+        benchmarks.add(ballHitsGadget("Portal", new Portal("P", 9, 9, "Q", "Other")));
+
+        Ball ball = new Ball(new Vect(10.25, 10.25), new Vect(3, 4));
+        benchmarks.add(new Microbenchmark("Ball.update", () -> {
+            ball.update(TIMESTEP, GRAVITY, .025, .025);
+            return ball;
+        }));
+
+        return benchmarks;
+    }
+
+    /**
+     * Makes a benchmark of Board.update, one fixed step of the client per operation
+     * @param name name of the benchmark
+     * @param board the board to update; it is changed by running the benchmark
+     * @return the benchmark
+     */
+    private static Microbenchmark boardUpdate(String name, Board board) {
+        return new Microbenchmark(name, () -> {
+            board.update(TIMESTEP);
+            // balls leaving the board would otherwise pile up here, since no server takes them
+            board.emptyGoodbyePortalBallMessages();
+            board.emptyGoodbyeWallBallMessages();
+            return board;
+        });
+    }
+
+    /**
+     * Makes a benchmark of ballHitsGadgetThisTimestep, for a ball just above the gadget's
+     * top left corner that falls onto it within the timestep
+     * @param type name of the type of gadget
+     * @param gadget the gadget to check collisions with
+     * @return the benchmark
+     */
+    private static Microbenchmark ballHitsGadget(String type, Gadget gadget) {
+        Ball ball = new Ball(new Vect(gadget.getX() + .5, gadget.getY() - .5), new Vect(0, 10));
+        return new Microbenchmark("Gadget.ballHitsGadgetThisTimestep[" + type + "]",
+                () -> gadget.ballHitsGadgetThisTimestep(ball, COLLISION_TIMESTEP));
+    }
+
+    /**
+     * Makes a board with the given numbers of balls and bumpers, always laid out the same way:
+     * the bumpers fill every other column of the bottom half, and the balls start in the top
+     * half at random velocities
+     * @param balls number of balls; at most 180
+     * @param gadgets number of gadgets; at most 100
+     * @return a new board
+     */
+    static Board scaledBoard(int balls, int gadgets) {
+        Board board = new Board("Scaled");
+        for (int k = 0; k < gadgets; k++) {
+            int x = 2 * (k % 10);
+            int y = 10 + k / 10;
+            switch (k % 3) {
+            case 0:
+                board.addGadget(new SquareBumper(x, y));
+                break;
+            case 1:
+                board.addGadget(new CircleBumper(x, y));
+                break;
+            default:
+                board.addGadget(new TriangleBumper(x, y, 90 * (k % 4)));
+                break;
+            }
+        }
+        Random random = new Random(balls * 1000 + gadgets);
+        for (int i = 0; i < balls; i++) {
+            Vect position = new Vect(i % 20 + .5, i / 20 + .5);
+            Vect velocity = new Vect(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            board.addBall(new Ball(position, velocity));
+        }
+        return board;
+    }
+
+    /**
+     * Checks whether a benchmark was asked for
+     * @param name name of the benchmark
+     * @param filters substrings of the names of the benchmarks to run; empty to run them all
+     * @return true if the benchmark should run
+     */
+    private static boolean matches(String name, String[] filters) {
+        if (filters.length == 0) {
+            return true;
+        }
+        for (String filter : filters) {
+            if (name.contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
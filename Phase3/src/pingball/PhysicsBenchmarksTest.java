@@ -0,0 +1,50 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PhysicsBenchmarksTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: scaledBoard()
+     * - Partitions: fewest balls and gadgets, most balls and gadgets
+     *
+     * Method: benchmarks()
+     * - Partitions: board directory missing, board directory with files
+     */
+
+    @Test
+    public void testScaledBoardSmallest() {
+        Board board = PhysicsBenchmarks.scaledBoard(1, 0);
+        assertEquals(1, board.getNumberOfBalls());
+        assertEquals(0, board.getNumberOfGadgets());
+    }
+
+    @Test
+    public void testScaledBoardLargest() {
+        Board board = PhysicsBenchmarks.scaledBoard(180, 100);
+        assertEquals(180, board.getNumberOfBalls());
+        assertEquals(100, board.getNumberOfGadgets());
+        board.update(2);
+    }
+
+    @Test
+    public void testBenchmarksMissingBoardDirectory() {
+        List<Microbenchmark> benchmarks = PhysicsBenchmarks.benchmarks(new File("no such directory"));
+        assertEquals("Board.update[DEFAULT]", benchmarks.get(0).getName());
+        assertEquals("Ball.update", benchmarks.get(benchmarks.size() - 1).getName());
+    }
+
+    @Test
+    public void testBenchmarksBoardDirectory() {
+        int withoutFiles = PhysicsBenchmarks.benchmarks(new File("no such directory")).size();
+        int withFiles = PhysicsBenchmarks.benchmarks(new File("boards")).size();
+        assertTrue(withFiles >= withoutFiles);
+    }
+}
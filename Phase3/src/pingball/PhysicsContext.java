@@ -0,0 +1,564 @@
+package pingball;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import physics.Circle;
+import physics.Geometry;
+import physics.LineSegment;
+import physics.Vect;
+
+/**
+ * The settings and scratch space a board's physics works with: the foresight that bounds the
+ * search for collisions with rotating flippers, the tolerances collisions are judged by, the
+ * gravity balls fall with between collisions, and buffers reused from one collision check to
+ * the next. Every time of impact the board and its gadgets work out goes through a context,
+ * so that boards with contexts of their own can be updated on different threads at once.
+ *
+ * The physics package keeps its foresight in one global setting, changed by
+ * Geometry.setForesight(). A context never changes it: it keeps a search of its own, set up
+ * with its foresight the way setForesight() would set up the global one, for the rotating
+ * collisions, which are the only ones the foresight changes. Every other time of impact is the
+ * same whatever the foresight, and is worked out by Geometry as it is, or along the parabola
+ * an accelerating ball follows, which the physics package doesn't do.
+ *
+ * The searches of the physics package are package-private classes of physics.jar,
+ * physics.GeometryImpl and physics.SimpleGeometry, so a context makes them through
+ * MethodHandles.privateLookupIn, by name. That works because physics.jar is on the class path,
+ * in the unnamed module, where no module boundary stops the lookup. If physics.jar is replaced
+ * by one where those classes or their constructors and rotating-collision methods are renamed,
+ * or is put on the module path without opening the physics package, loading this class fails
+ * at once with an ExceptionInInitializerError, caused by an IllegalStateException naming what
+ * couldn't be reached.
+ *
+ * The searches are immutable, and a context keeps the ones it makes for whole-number
+ * foresights: the gadgets look ahead whole numbers of ms, and switch between a few of them
+ * from one check to the next.
+ *
+ * The class is mutable, and not thread-safe: a context belongs to one board or one thread.
+ */
+public class PhysicsContext {
+    // Abstraction function:
+    //      represents looking for collisions at most foresight into the future (in the time
+    //      unit of the velocities given), with rotating collisions searched for by geometry,
+    //      or by a search not made yet if geometry is null, and geometries[f] is the search
+    //      made for foresight f if one has been, null if not; collisions closer than
+    //      contactTolerance seconds are happening now, balls fall with gravity (cartesian, in
+    //      L/s^2) between collisions, and gadgetCandidates is scratch space
+    // Rep invariant:
+    //      foresight >= 0, contactTolerance >= 0, gridTolerance >= 0
+    //      geometry is null or a search of the physics package set up for foresight
+    //      geometries.length <= CACHED_FORESIGHTS, and geometries[f] is null or a search set up
+    //      for foresight f
+    //
+
+    // foresight used until setForesight() is called, the same as the physics package's
+    private static final double DEFAULT_FORESIGHT = Double.POSITIVE_INFINITY;
+    // the settings Geometry.setForesight() sets the global search up with
+    private static final double SIMPLE_FORESIGHT = 0.1;
+    private static final int SEARCH_SLICES = 15;
+    // whole-number foresights below this have their searches kept once made
+    private static final int CACHED_FORESIGHTS = 1024;
+    /** default for getContactTolerance() */
+    public static final double DEFAULT_CONTACT_TOLERANCE = 1e-9;
+    /** default for getGridTolerance() */
+    public static final double DEFAULT_GRID_TOLERANCE = 1e-6;
+
+    // the searches of the physics package, which it doesn't let other packages make; found
+    // by reflection, see the class comment
+    private static final MethodHandle NEW_GEOMETRY;
+    private static final MethodHandle NEW_SIMPLE_GEOMETRY;
+    private static final MethodHandle TIME_UNTIL_ROTATING_WALL_COLLISION;
+    private static final MethodHandle TIME_UNTIL_ROTATING_CIRCLE_COLLISION;
+    static {
+        MethodHandles.Lookup lookup = privateLookup("physics.GeometryImpl");
+        MethodHandles.Lookup simpleLookup = privateLookup("physics.SimpleGeometry");
+        Class<?> geometryClass = lookup.lookupClass();
+        MethodType constructor = MethodType.methodType(void.class, double.class, int.class);
+        MethodType made = MethodType.methodType(Object.class, double.class, int.class);
+        try {
+            NEW_GEOMETRY = lookup.findConstructor(geometryClass, constructor).asType(made);
+            NEW_SIMPLE_GEOMETRY = simpleLookup.findConstructor(simpleLookup.lookupClass(), constructor).asType(made);
+            TIME_UNTIL_ROTATING_WALL_COLLISION = lookup.findVirtual(geometryClass, "timeUntilRotatingWallCollision",
+                    MethodType.methodType(double.class, LineSegment.class, Vect.class, double.class, Circle.class, Vect.class))
+                    .asType(MethodType.methodType(double.class, Object.class, LineSegment.class, Vect.class, double.class, Circle.class, Vect.class));
+            TIME_UNTIL_ROTATING_CIRCLE_COLLISION = lookup.findVirtual(geometryClass, "timeUntilRotatingCircleCollision",
+                    MethodType.methodType(double.class, Circle.class, Vect.class, double.class, Circle.class, Vect.class))
+                    .asType(MethodType.methodType(double.class, Object.class, Circle.class, Vect.class, double.class, Circle.class, Vect.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("physics.jar doesn't have the constructors and rotating-collision "
+                    + "methods of GeometryImpl and SimpleGeometry that PhysicsContext uses: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets a lookup with private access to a class of the physics package, see the class comment
+     * @param className the binary name of the class
+     * @return a lookup whose lookup class is the class
+     * @throws IllegalStateException naming the class if it isn't on the class path, or its
+     *      package isn't open to this one
+     */
+    static MethodHandles.Lookup privateLookup(String className) {
+        try {
+            return MethodHandles.privateLookupIn(Class.forName(className), MethodHandles.lookup());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(className + " isn't on the class path; PhysicsContext needs "
+                    + "the physics.jar the game was built with", e);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new IllegalStateException(className + " can't be reached by reflection; put physics.jar "
+                    + "on the class path, or open the physics package to PhysicsContext", e);
+        }
+    }
+
+    // contexts of the threads calling forCurrentThread()
+    private static final ThreadLocal<PhysicsContext> THREAD_CONTEXTS = ThreadLocal.withInitial(PhysicsContext::new);
+
+    private double foresight = DEFAULT_FORESIGHT;
+    private Object geometry = null;
+    private Object[] geometries = new Object[0];
+    private final double contactTolerance;
+    private final double gridTolerance;
+    private final BitSet gadgetCandidates = new BitSet();
+    private Vect gravity = Vect.ZERO;
+
+    /**
+     * Makes a context with the default tolerances, looking for collisions however far away
+     */
+    public PhysicsContext() {
+        this(DEFAULT_CONTACT_TOLERANCE, DEFAULT_GRID_TOLERANCE);
+    }
+
+    /**
+     * Makes a context looking for collisions however far away
+     * @param contactTolerance collisions closer than this many seconds are happening now; must
+     *      not be negative
+     * @param gridTolerance slack in L added around a ball before looking up the gadgets near
+     *      it; must not be negative
+     */
+    public PhysicsContext(double contactTolerance, double gridTolerance) {
+        if (!(contactTolerance >= 0 && gridTolerance >= 0)) {
+            throw new IllegalArgumentException("tolerances must not be negative");
+        }
+        this.contactTolerance = contactTolerance;
+        this.gridTolerance = gridTolerance;
+        checkRep();
+    }
+
+    /**
+     * Gets a context with the default tolerances and no gravity for the calling thread, for
+     * callers with no context of their own, e.g. the gadget methods that don't take one. The
+     * thread gets the same context every time, so callers mustn't keep it, and must set its
+     * foresight before looking for rotating collisions.
+     * @return the calling thread's context
+     */
+    public static PhysicsContext forCurrentThread() {
+        PhysicsContext context = THREAD_CONTEXTS.get();
+        context.setGravity(Vect.ZERO);
+        return context;
+    }
+
+    /**
+     * Sets how far into the future to look for collisions with rotating walls and circles, as
+     * Geometry.setForesight() does for the physics package, but for this context only
+     * @param maximumForesight the foresight, in the time unit of the velocities that will be
+     *      given; must not be negative
+     */
+    public void setForesight(double maximumForesight) {
+        if (!(maximumForesight >= 0)) {
+            throw new IllegalArgumentException("foresight must not be negative");
+        }
+        if (maximumForesight != foresight) {
+            foresight = maximumForesight;
+            int index = cacheIndex(foresight);
+            geometry = index >= 0 && index < geometries.length ? geometries[index] : null;
+        }
+        checkRep();
+    }
+
+    /**
+     * Getter for the foresight
+     * @return how far into the future collisions with rotating walls and circles are looked for
+     */
+    public double getForesight() {
+        return foresight;
+    }
+
+    /**
+     * Getter for the contact tolerance
+     * @return the time in seconds below which a predicted collision is happening now
+     */
+    public double getContactTolerance() {
+        return contactTolerance;
+    }
+
+    /**
+     * Getter for the grid tolerance
+     * @return the slack in L added around a ball before looking up the gadgets near it
+     */
+    public double getGridTolerance() {
+        return gridTolerance;
+    }
+
+    /**
+     * Sets the gravity balls fall with between collisions
+     * @param gravity the acceleration, in cartesian coordinates (y up) in L/s^2
+     */
+    public void setGravity(Vect gravity) {
+        this.gravity = gravity;
+    }
+
+    /**
+     * Getter for the gravity, Vect.ZERO until setGravity() is called
+     * @return the acceleration balls fall with between collisions, in cartesian coordinates
+     *      (y up) in L/s^2
+     */
+    public Vect getGravity() {
+        return gravity;
+    }
+
+    /**
+     * Gets scratch space for the indices of the gadgets near a ball. It is the same set every
+     * time, so it is only good until the next caller fills it.
+     * @return the set
+     */
+    public BitSet getGadgetCandidates() {
+        return gadgetCandidates;
+    }
+
+    /**
+     * As Geometry.timeUntilWallCollision()
+     * @param line the wall
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @return time until the ball hits the wall, INFINITY if it never does
+     */
+    public double timeUntilWallCollision(LineSegment line, Circle ball, Vect velocity) {
+        return Geometry.timeUntilWallCollision(line, ball, velocity);
+    }
+
+    /**
+     * As Geometry.timeUntilCircleCollision()
+     * @param circle the circle
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @return time until the ball hits the circle, INFINITY if it never does
+     */
+    public double timeUntilCircleCollision(Circle circle, Circle ball, Vect velocity) {
+        return Geometry.timeUntilCircleCollision(circle, ball, velocity);
+    }
+
+    /**
+     * As Geometry.timeUntilWallCollision(), for a ball that keeps accelerating, so that it
+     * moves along a parabola. The times the ball touches the line through the wall are the
+     * roots of quadratics, and are worked out in closed form.
+     * @param line the wall
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @param acceleration the ball's acceleration, in the unit of the velocity per time unit
+     * @param horizon how far into the future to look, in the time unit of the velocity; must
+     *      not be negative
+     * @return time until the ball hits the wall, INFINITY if it doesn't within the horizon.
+     *      A ball overlapping the wall already hits it now if it moves towards it, and never
+     *      does otherwise, as it would without the acceleration.
+     */
+    public double timeUntilWallCollision(LineSegment line, Circle ball, Vect velocity,
+            Vect acceleration, double horizon) {
+        Vect along = line.p2().minus(line.p1());
+        double length = along.length();
+        if (acceleration.equals(Vect.ZERO) || length == 0) {
+            return withinHorizon(timeUntilWallCollision(line, ball, velocity), horizon);
+        }
+        // the distance of the ball's center from the line, on the side the normal points to,
+        // is s0 + sv*t + sa*t^2/2
+        Vect normal = new Vect(-along.y() / length, along.x() / length);
+        Vect start = ball.getCenter().minus(line.p1());
+        double s0 = normal.dot(start);
+        double sv = normal.dot(velocity);
+        double sa = normal.dot(acceleration);
+        double radius = ball.getRadius();
+        if (Math.abs(s0) <= radius) {
+            // already touching: the acceleration doesn't change which way the ball moves now
+            return withinHorizon(timeUntilWallCollision(line, ball, velocity), horizon);
+        }
+        // the ball meets the wall on the side it starts on, moving towards the line
+        double side = Math.copySign(radius, s0);
+        double[] roots = new double[2];
+        int count = quadraticRoots(sa / 2, sv, s0 - side, roots);
+        for (int i = 0; i < count; i++) {
+            double time = roots[i];
+            if (time < 0 || (sv + sa * time) * side >= 0) {
+                continue;
+            }
+            if (time > horizon) {
+                break;
+            }
+            // where along the wall the ball touches, 0 at p1 and 1 at p2
+            Vect center = start.plus(velocity.times(time)).plus(acceleration.times(time * time / 2));
+            double fraction = along.dot(center) / (length * length);
+            if (fraction >= 0 && fraction < 1) {
+                return time;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * As Geometry.timeUntilCircleCollision(), for a ball that keeps accelerating, so that it
+     * moves along a parabola. The squared distance between the centers is then a quartic in
+     * time; it changes direction at most three times, at roots of its derivative found by
+     * bisection between the roots of its second derivative (a quadratic, in closed form), and
+     * the first time it comes down to the touching distance is found by bisection between them.
+     * @param circle the circle
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @param acceleration the ball's acceleration, in the unit of the velocity per time unit
+     * @param horizon how far into the future to look, in the time unit of the velocity; must
+     *      not be negative
+     * @return time until the ball hits the circle, INFINITY if it doesn't within the horizon.
+     *      A ball overlapping the circle already hits it now if it moves towards it, and never
+     *      does otherwise, as it would without the acceleration.
+     */
+    public double timeUntilCircleCollision(Circle circle, Circle ball, Vect velocity,
+            Vect acceleration, double horizon) {
+        Vect start = ball.getCenter().minus(circle.getCenter());
+        double reach = circle.getRadius() + ball.getRadius();
+        if (acceleration.equals(Vect.ZERO) || start.dot(start) <= reach * reach) {
+            return withinHorizon(timeUntilCircleCollision(circle, ball, velocity), horizon);
+        }
+        // past this time the parabola has left the circle behind for good
+        double halfAcceleration = acceleration.length() / 2;
+        double speed = velocity.length();
+        double end = Math.min(horizon, (speed + Math.sqrt(speed * speed
+                + 4 * halfAcceleration * (start.length() + reach))) / (2 * halfAcceleration));
+        // the parabola never strays further than halfAcceleration*end^2 from the straight path
+        double stray = halfAcceleration * end * end;
+        if (start.length() > reach + stray) {
+            double straightTime = timeUntilCircleCollision(
+                    new Circle(circle.getCenter(), reach + stray), new Circle(ball.getCenter(), 0), velocity);
+            if (!(straightTime <= end)) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        CenterDistance distance = new CenterDistance(start, velocity, acceleration, reach);
+        // the second derivative's roots split [0, end] into pieces on which the first
+        // derivative is monotonic, and so changes sign at most once
+        double[] bends = new double[2];
+        int bendCount = quadraticRoots(1.5 * acceleration.dot(acceleration),
+                3 * velocity.dot(acceleration), velocity.dot(velocity) + start.dot(acceleration), bends);
+        double[] turns = new double[5];
+        int turnCount = 0;
+        turns[turnCount++] = 0;
+        double previous = 0;
+        for (int i = 0; i <= bendCount; i++) {
+            double next = i < bendCount ? bends[i] : end;
+            if (next <= previous || next > end) {
+                continue;
+            }
+            if (Math.signum(distance.slope(previous)) * Math.signum(distance.slope(next)) < 0) {
+                turns[turnCount++] = distance.bisectSlope(previous, next);
+            }
+            previous = next;
+        }
+        turns[turnCount++] = end;
+        // the distance is monotonic between turns: the first piece that ends touching the
+        // circle holds the collision
+        for (int i = 1; i < turnCount; i++) {
+            if (distance.value(turns[i]) <= 0) {
+                return distance.bisectValue(turns[i - 1], turns[i]);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // the time, or INFINITY if it is beyond the horizon
+    private static double withinHorizon(double time, double horizon) {
+        return time <= horizon ? time : Double.POSITIVE_INFINITY;
+    }
+
+    // puts the real roots of a*t^2 + b*t + c into roots, in ascending order, and returns how
+    // many there are; a quadratic that is 0 everywhere has none
+    private static int quadraticRoots(double a, double b, double c, double[] roots) {
+        if (a == 0) {
+            if (b == 0) {
+                return 0;
+            }
+            roots[0] = -c / b;
+            return 1;
+        }
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return 0;
+        }
+        // the form that doesn't subtract nearly equal numbers
+        double q = -(b + Math.copySign(Math.sqrt(discriminant), b)) / 2;
+        if (q == 0) {
+            roots[0] = 0;
+            return 1;
+        }
+        roots[0] = Math.min(q / a, c / q);
+        roots[1] = Math.max(q / a, c / q);
+        return 2;
+    }
+
+    /*
+     * The squared distance between the centers of a ball moving along a parabola and a fixed
+     * circle, less the squared distance at which they touch, as a function of time.
+     * Thread Safety Argument: immutable, and confined to the call that makes it.
+     */
+    private static class CenterDistance {
+        // as many halvings as it takes any interval of doubles down to neighbouring doubles
+        private static final int MAX_BISECTIONS = 200;
+
+        private final Vect start;
+        private final Vect velocity;
+        private final Vect acceleration;
+        private final double reach;
+
+        CenterDistance(Vect start, Vect velocity, Vect acceleration, double reach) {
+            this.start = start;
+            this.velocity = velocity;
+            this.acceleration = acceleration;
+            this.reach = reach;
+        }
+
+        // the ball's center relative to the circle's at time t
+        private Vect offset(double t) {
+            return start.plus(velocity.times(t)).plus(acceleration.times(t * t / 2));
+        }
+
+        double value(double t) {
+            Vect offset = offset(t);
+            return offset.dot(offset) - reach * reach;
+        }
+
+        // half the derivative of value()
+        double slope(double t) {
+            return offset(t).dot(velocity.plus(acceleration.times(t)));
+        }
+
+        // the time in [low, high] where slope() changes sign
+        double bisectSlope(double low, double high) {
+            boolean lowRising = slope(low) > 0;
+            for (int i = 0; i < MAX_BISECTIONS; i++) {
+                double middle = (low + high) / 2;
+                if (middle <= low || middle >= high) {
+                    break;
+                }
+                if ((slope(middle) > 0) == lowRising) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // the last time in [low, high] before value() comes down to 0, given that it is
+        // positive at low and not at high
+        double bisectValue(double low, double high) {
+            for (int i = 0; i < MAX_BISECTIONS; i++) {
+                double middle = (low + high) / 2;
+                if (middle <= low || middle >= high) {
+                    break;
+                }
+                if (value(middle) > 0) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * As Geometry.timeUntilBallBallCollision()
+     * @param ball1 one ball
+     * @param vel1 its velocity
+     * @param ball2 the other ball
+     * @param vel2 its velocity
+     * @return time until the balls touch, INFINITY if they never do
+     */
+    public double timeUntilBallBallCollision(Circle ball1, Vect vel1, Circle ball2, Vect vel2) {
+        return Geometry.timeUntilBallBallCollision(ball1, vel1, ball2, vel2);
+    }
+
+    /**
+     * As Geometry.timeUntilRotatingWallCollision(), with this context's foresight
+     * @param line the wall, where it is now
+     * @param center the point the wall rotates around
+     * @param angularVelocity how fast the wall rotates, in radians per time unit,
+     *      counterclockwise if positive
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @return time until the ball hits the wall, INFINITY if it doesn't within the foresight
+     */
+    public double timeUntilRotatingWallCollision(LineSegment line, Vect center, double angularVelocity,
+            Circle ball, Vect velocity) {
+        try {
+            return (double) TIME_UNTIL_ROTATING_WALL_COLLISION.invokeExact(getGeometry(), line, center,
+                    angularVelocity, ball, velocity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * As Geometry.timeUntilRotatingCircleCollision(), with this context's foresight
+     * @param circle the circle, where it is now
+     * @param center the point the circle rotates around
+     * @param angularVelocity how fast the circle rotates, in radians per time unit,
+     *      counterclockwise if positive
+     * @param ball the ball
+     * @param velocity the ball's velocity
+     * @return time until the ball hits the circle, INFINITY if it doesn't within the foresight
+     */
+    public double timeUntilRotatingCircleCollision(Circle circle, Vect center, double angularVelocity,
+            Circle ball, Vect velocity) {
+        try {
+            return (double) TIME_UNTIL_ROTATING_CIRCLE_COLLISION.invokeExact(getGeometry(), circle, center,
+                    angularVelocity, ball, velocity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the search for rotating collisions set up for the foresight, made the first time it is needed
+    private Object getGeometry() throws Throwable {
+        if (geometry == null) {
+            // as Geometry.setForesight() chooses
+            if (foresight <= SIMPLE_FORESIGHT) {
+                geometry = (Object) NEW_SIMPLE_GEOMETRY.invokeExact(foresight, SEARCH_SLICES);
+            } else {
+                geometry = (Object) NEW_GEOMETRY.invokeExact(foresight, SEARCH_SLICES);
+            }
+            int index = cacheIndex(foresight);
+            if (index >= 0) {
+                if (index >= geometries.length) {
+                    geometries = Arrays.copyOf(geometries, Math.min(Math.max(index + 1, 2 * geometries.length), CACHED_FORESIGHTS));
+                }
+                geometries[index] = geometry;
+            }
+        }
+        return geometry;
+    }
+
+    // where the search for a foresight is kept in geometries, or -1 if it isn't kept
+    private static int cacheIndex(double foresight) {
+        return foresight < CACHED_FORESIGHTS && foresight == Math.rint(foresight) ? (int) foresight : -1;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert foresight >= 0;
+        assert geometries.length <= CACHED_FORESIGHTS;
+        assert contactTolerance >= 0 && gridTolerance >= 0;
+    }
+}
@@ -0,0 +1,333 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import physics.Circle;
+import physics.Geometry;
+import physics.LineSegment;
+import physics.Vect;
+
+public class PhysicsContextTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: setForesight(), getForesight()
+     * - Partitions: never set, set to 0, to a small foresight (<= .1), to a larger one,
+     *   to a negative one
+     *
+     * Method: forCurrentThread()
+     * - Partitions: called again on the same thread, after gravity was set, on another thread
+     *
+     * Methods: timeUntilRotatingWallCollision(), timeUntilRotatingCircleCollision()
+     * - Partitions:
+     *      - Collision: within the foresight, beyond it
+     *      - Global foresight: the same as the context's, different
+     *      - Foresight: set once, switched back to one searched with before
+     *      - Threads: one, two with different foresights at once
+     *
+     * Method: privateLookup()
+     * - Partitions: class of the physics package, class that isn't on the class path
+     *
+     * Methods: timeUntilWallCollision(), timeUntilCircleCollision(), timeUntilBallBallCollision()
+     * - Partitions: collision, no collision
+     *
+     * Methods: timeUntilWallCollision(), timeUntilCircleCollision() with an acceleration
+     * - Partitions:
+     *      - Acceleration: none, towards the wall or circle, away from it
+     *      - Path: hits where the straight line misses, misses where the straight line hits,
+     *        only just reaches the circle at the top of its arc
+     *      - Collision: within the horizon, beyond it
+     *      - Ball: apart from the wall, already touching it
+     *
+     * Methods: getContactTolerance(), getGridTolerance(), getGadgetCandidates()
+     * - Partitions: default tolerances, given tolerances, negative tolerance
+     *
+     * Methods: setGravity(), getGravity()
+     * - Partitions: never set, set
+     */
+
+    // a flipper-like wall from the origin to (1, 0), turning a quarter turn a second,
+    // and a resting ball it reaches after about .41s
+    private static final LineSegment WALL = new LineSegment(0, 0, 1, 0);
+    private static final Vect PIVOT = new Vect(0, 0);
+    private static final double ANGULAR_VELOCITY = Math.PI / 2;
+    private static final Circle BALL = new Circle(.5, .5, .1);
+    private static final Circle END = new Circle(1, 0, 0);
+
+    private static double rotatingWallTime(PhysicsContext context) {
+        return context.timeUntilRotatingWallCollision(WALL, PIVOT, ANGULAR_VELOCITY, BALL, Vect.ZERO);
+    }
+
+    private static double globalRotatingWallTime() {
+        return Geometry.timeUntilRotatingWallCollision(WALL, PIVOT, ANGULAR_VELOCITY, BALL, Vect.ZERO);
+    }
+
+    //setForesight(), getForesight()
+    @Test
+    public void testForesight() {
+        PhysicsContext context = new PhysicsContext();
+        assertEquals(Double.POSITIVE_INFINITY, context.getForesight(), 0);
+        context.setForesight(0);
+        assertEquals(0, context.getForesight(), 0);
+        context.setForesight(20);
+        assertEquals(20, context.getForesight(), 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeForesight() {
+        new PhysicsContext().setForesight(-1);
+    }
+
+    //forCurrentThread()
+    @Test
+    public void testForCurrentThreadReused() throws InterruptedException {
+        PhysicsContext context = PhysicsContext.forCurrentThread();
+        context.setGravity(new Vect(0, -25));
+        assertTrue(context == PhysicsContext.forCurrentThread());
+        assertEquals(Vect.ZERO, context.getGravity());
+        PhysicsContext[] other = new PhysicsContext[1];
+        Thread thread = new Thread(() -> other[0] = PhysicsContext.forCurrentThread());
+        thread.start();
+        thread.join();
+        assertTrue(other[0] != null && other[0] != context);
+    }
+
+    //timeUntilRotatingWallCollision(), timeUntilRotatingCircleCollision()
+    @Test
+    public void testRotatingSameAsGlobalForesight() {
+        PhysicsContext context = new PhysicsContext();
+        for (double foresight : new double[] {.05, .1, 1, 20, Double.POSITIVE_INFINITY}) {
+            Geometry.setForesight(foresight);
+            context.setForesight(foresight);
+            assertEquals(globalRotatingWallTime(), rotatingWallTime(context), 0);
+            assertEquals(Geometry.timeUntilRotatingCircleCollision(END, PIVOT, ANGULAR_VELOCITY, BALL, Vect.ZERO),
+                    context.timeUntilRotatingCircleCollision(END, PIVOT, ANGULAR_VELOCITY, BALL, Vect.ZERO), 0);
+        }
+    }
+
+    @Test
+    public void testRotatingLeavesGlobalForesight() {
+        Geometry.setForesight(.05);
+        PhysicsContext context = new PhysicsContext();
+        context.setForesight(1);
+        double time = rotatingWallTime(context);
+        assertTrue("time " + time, time > .3 && time < .5);
+        assertEquals(Double.POSITIVE_INFINITY, globalRotatingWallTime(), 0);
+
+        Geometry.setForesight(1);
+        context.setForesight(.05);
+        assertEquals(Double.POSITIVE_INFINITY, rotatingWallTime(context), 0);
+        assertEquals(time, globalRotatingWallTime(), 0);
+    }
+
+    @Test
+    public void testRotatingForesightSwitchedBack() {
+        PhysicsContext context = new PhysicsContext();
+        for (int i = 0; i < 3; i++) {
+            for (double foresight : new double[] {1, .05, 2, 1}) {
+                PhysicsContext fresh = new PhysicsContext();
+                fresh.setForesight(foresight);
+                context.setForesight(foresight);
+                assertEquals(rotatingWallTime(fresh), rotatingWallTime(context), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testContextsOnTwoThreads() throws InterruptedException {
+        PhysicsContext reference = new PhysicsContext();
+        reference.setForesight(1);
+        double expected = rotatingWallTime(reference);
+        AtomicInteger wrong = new AtomicInteger();
+        Thread near = new Thread(() -> {
+            PhysicsContext context = new PhysicsContext();
+            for (int i = 0; i < 2000; i++) {
+                context.setForesight(.05 + (i % 2) * .01);
+                if (rotatingWallTime(context) != Double.POSITIVE_INFINITY) {
+                    wrong.incrementAndGet();
+                }
+            }
+        });
+        Thread far = new Thread(() -> {
+            PhysicsContext context = new PhysicsContext();
+            for (int i = 0; i < 2000; i++) {
+                context.setForesight(1 + (i % 2));
+                if (Math.abs(rotatingWallTime(context) - expected) > 1e-6) {
+                    wrong.incrementAndGet();
+                }
+            }
+        });
+        near.start();
+        far.start();
+        near.join();
+        far.join();
+        assertEquals(0, wrong.get());
+    }
+
+    //privateLookup()
+    @Test
+    public void testPrivateLookup() {
+        MethodHandles.Lookup lookup = PhysicsContext.privateLookup("physics.GeometryImpl");
+        assertEquals("physics.GeometryImpl", lookup.lookupClass().getName());
+        assertTrue(lookup.hasFullPrivilegeAccess());
+    }
+
+    @Test
+    public void testPrivateLookupMissingClass() {
+        try {
+            PhysicsContext.privateLookup("physics.NoSuchGeometry");
+            fail("expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("physics.NoSuchGeometry"));
+        }
+    }
+
+    //timeUntilWallCollision(), timeUntilCircleCollision(), timeUntilBallBallCollision()
+    @Test
+    public void testStraightCollisions() {
+        PhysicsContext context = new PhysicsContext();
+        context.setForesight(.001);
+        Circle ball = new Circle(5, 5, .25);
+        assertEquals(1.75, context.timeUntilWallCollision(new LineSegment(0, 3, 10, 3), ball, new Vect(0, -1)), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilWallCollision(new LineSegment(0, 3, 10, 3), ball, new Vect(0, 1)), 0);
+        assertEquals(3.75, context.timeUntilCircleCollision(new Circle(9, 5, 0), ball, new Vect(1, 0)), 1e-9);
+        assertEquals(1.75, context.timeUntilBallBallCollision(ball, new Vect(1, 0), new Circle(9, 5, .25), new Vect(-1, 0)), 1e-9);
+    }
+
+    //timeUntilWallCollision(), timeUntilCircleCollision() with an acceleration
+    private static final Vect GRAVITY = new Vect(0, -25);
+    private static final LineSegment FLOOR = new LineSegment(0, 3, 10, 3);
+
+    @Test
+    public void testFallingOntoWall() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(5, 5, .25);
+        // dropped, it falls 1.75L in sqrt(2 * 1.75 / 25) s
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilWallCollision(FLOOR, ball, Vect.ZERO), 0);
+        assertEquals(Math.sqrt(.14), context.timeUntilWallCollision(FLOOR, ball, Vect.ZERO, GRAVITY, 1), 1e-9);
+        // thrown up, it comes back down later
+        assertEquals((5 + Math.sqrt(112.5)) / 25, context.timeUntilWallCollision(FLOOR, ball, new Vect(0, 5), GRAVITY, 1), 1e-9);
+        // thrown sideways, it comes down past the end of the wall
+        assertEquals(Double.POSITIVE_INFINITY,
+                context.timeUntilWallCollision(new LineSegment(0, 3, 7, 3), ball, new Vect(10, 0), GRAVITY, 1), 0);
+    }
+
+    @Test
+    public void testFallingAwayFromWall() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(5, 5, .25);
+        LineSegment ceiling = new LineSegment(0, 7, 10, 7);
+        // the straight line reaches the ceiling after 1.75s, but the ball only rises .02L
+        assertEquals(1.75, context.timeUntilWallCollision(ceiling, ball, new Vect(0, 1)), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilWallCollision(ceiling, ball, new Vect(0, 1), GRAVITY, 10), 0);
+    }
+
+    @Test
+    public void testAcceleratedHorizon() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(5, 5, .25);
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilWallCollision(FLOOR, ball, Vect.ZERO, GRAVITY, .3), 0);
+        assertEquals(Math.sqrt(.14), context.timeUntilWallCollision(FLOOR, ball, Vect.ZERO, GRAVITY, .4), 1e-9);
+        Circle below = new Circle(5, 3, .5);
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilCircleCollision(below, ball, Vect.ZERO, GRAVITY, .3), 0);
+        assertEquals(Math.sqrt(.1), context.timeUntilCircleCollision(below, ball, Vect.ZERO, GRAVITY, .4), 1e-9);
+    }
+
+    @Test
+    public void testNoAccelerationSameAsStraight() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(5, 5, .25);
+        Vect velocity = new Vect(1, -1);
+        assertEquals(context.timeUntilWallCollision(FLOOR, ball, velocity),
+                context.timeUntilWallCollision(FLOOR, ball, velocity, Vect.ZERO, 10), 0);
+        Circle circle = new Circle(7, 3, .5);
+        assertEquals(context.timeUntilCircleCollision(circle, ball, velocity),
+                context.timeUntilCircleCollision(circle, ball, velocity, Vect.ZERO, 10), 0);
+    }
+
+    @Test
+    public void testAcceleratedAlreadyTouching() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(5, 3.2, .25);
+        // moving up and away, it only comes back down into the floor after the bounce it is in
+        assertEquals(Double.POSITIVE_INFINITY, context.timeUntilWallCollision(FLOOR, ball, new Vect(0, 1), GRAVITY, 1), 0);
+        assertEquals(0, context.timeUntilWallCollision(FLOOR, ball, new Vect(0, -1), GRAVITY, 1), 0);
+        assertEquals(0, context.timeUntilCircleCollision(new Circle(5, 3, 0), ball, new Vect(0, -1), GRAVITY, 1), 0);
+    }
+
+    @Test
+    public void testArcOverCircle() {
+        PhysicsContext context = new PhysicsContext();
+        Circle ball = new Circle(0, 0, .25);
+        Vect velocity = new Vect(0, 5);
+        // the ball rises .5L, to the top of its arc after .2s
+        assertEquals((5 - Math.sqrt(.5)) / 25,
+                context.timeUntilCircleCollision(new Circle(0, .99, .25), ball, velocity, GRAVITY, 1), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY,
+                context.timeUntilCircleCollision(new Circle(0, 1.01, .25), ball, velocity, GRAVITY, 1), 0);
+        // thrown sideways at a circle the straight line hits, it falls under it
+        assertEquals(1.8125, context.timeUntilCircleCollision(new Circle(8, 0, .5), ball, new Vect(4, 0)), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY,
+                context.timeUntilCircleCollision(new Circle(8, 0, .5), ball, new Vect(4, 0), GRAVITY, 10), 0);
+    }
+
+    @Test
+    public void testCircleAgainstSampledArcs() {
+        PhysicsContext context = new PhysicsContext();
+        Random random = new Random(6005);
+        for (int i = 0; i < 200; i++) {
+            Circle circle = new Circle(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, random.nextDouble());
+            Circle ball = new Circle(0, 0, .25);
+            Vect velocity = new Vect(random.nextDouble() * 8 - 4, random.nextDouble() * 8 - 4);
+            Vect acceleration = new Vect(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            double reach = circle.getRadius() + ball.getRadius();
+            if (circle.getCenter().length() <= reach) {
+                continue;
+            }
+            double time = context.timeUntilCircleCollision(circle, ball, velocity, acceleration, 2);
+            // no sample before the collision touches the circle, and the ball touches it then
+            for (double t = 0; t < Math.min(time, 2); t += 1e-3) {
+                Vect center = velocity.times(t).plus(acceleration.times(t * t / 2));
+                assertTrue("case " + i + " at " + t, center.minus(circle.getCenter()).length() > reach - 1e-9);
+            }
+            if (time != Double.POSITIVE_INFINITY) {
+                Vect center = velocity.times(time).plus(acceleration.times(time * time / 2));
+                assertEquals(reach, center.minus(circle.getCenter()).length(), 1e-6);
+            }
+        }
+    }
+
+    //getContactTolerance(), getGridTolerance(), getGadgetCandidates()
+    @Test
+    public void testTolerancesAndScratch() {
+        PhysicsContext defaults = new PhysicsContext();
+        assertEquals(PhysicsContext.DEFAULT_CONTACT_TOLERANCE, defaults.getContactTolerance(), 0);
+        assertEquals(PhysicsContext.DEFAULT_GRID_TOLERANCE, defaults.getGridTolerance(), 0);
+        PhysicsContext given = new PhysicsContext(1e-6, 0);
+        assertEquals(1e-6, given.getContactTolerance(), 0);
+        assertEquals(0, given.getGridTolerance(), 0);
+        assertSame(given.getGadgetCandidates(), given.getGadgetCandidates());
+        assertNotSame(given.getGadgetCandidates(), defaults.getGadgetCandidates());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeTolerance() {
+        new PhysicsContext(-1, 0);
+    }
+
+    //setGravity(), getGravity()
+    @Test
+    public void testGravity() {
+        PhysicsContext context = new PhysicsContext();
+        assertEquals(Vect.ZERO, context.getGravity());
+        context.setGravity(GRAVITY);
+        assertEquals(GRAVITY, context.getGravity());
+    }
+}
@@ -1,32 +1,31 @@
 package pingball;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
-import physics.Vect;
-import pingball.Gadgets.Portal;
 import pingball.Messages.GoodbyePortalBall;
 import pingball.Messages.GoodbyeWallBall;
 import pingball.Messages.HelloPortalBall;
 import pingball.Messages.HelloWallBall;
+import pingball.Messages.MessageTokenizer;
+import pingball.Messages.Messages;
 
 
 /**
@@ -44,10 +43,18 @@ import pingball.Messages.HelloWallBall;
  * 
  * For client-server play with multiple users, there are two primary types of threads in our Pingball client. 
  * One thread listens for incoming messages from the server regarding incoming balls and new connections
- * for portals. Another thread updates the board according to a prescribed framerate. The aforementioned incoming
- * messages are processed in a thread safe manner involving synchronization on a portalMessageLock, wallMessageLock, 
- * and connectDisconnectMessageLock. These lock for three synchronized lists.
- * Thus, the Board state is updated atomically and the client is thread safe. 
+ * for portals. Another thread updates the board according to a prescribed framerate. The listening thread 
+ * parses each incoming message into what it does to the board and puts that on the client's own inbox, a 
+ * lock-free concurrent queue; only the update thread takes from the inbox and touches the board. Neither 
+ * thread ever waits for the other, and an empty inbox costs the update thread a single volatile read.
+ * Thus, the Board state is updated atomically and the client is thread safe. The update thread runs a
+ * FixedRateLoop, which pause() and resume() act on through its own volatile flags. Setting paused and
+ * passing it on to the loop happen together under pauseLock, as does publishing the loop and
+ * passing it the current paused, so a pause or resume racing the start of the loop isn't lost.
+ * The listening thread is a platform or virtual thread, as set by the ThreadMode; it stops
+ * when close() closes the socket it reads from.
+ * The update thread times its phases in the client's TickProfile with laps confined to it;
+ * the profile itself is thread-safe, so the GUI and JMX read it while it is recorded.
  * 
  * 
  * 
@@ -59,21 +66,21 @@ public class Pingball {
     public final static double UPDATES_PER_PRINT = 20.0;
     // total amount of time between each drawBoard
     public final static long TIME_RESOLUTION = (long) (1000.0/UPDATES_PER_PRINT - .5);
+    // number of fixed-length steps each TIME_RESOLUTION is simulated in; times of impact follow
+    // the balls' parabolas, so steps of about 12 ms bounce balls where shorter ones would
+    private final static int UPDATES_PER_FRAME = 4;
     private static Map<String, Board> nameToBoard;
 
-    private Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
-
-    private static final Object portalMessageLock = new Object();
+    // most bytes of messages about balls leaving held back to be sent together
+    private final static int MAX_BATCH_BYTES = 4096;
 
-    private static final Object wallMessageLock = new Object();
-    private static final Object connectDisconnectMessageLock = new Object();
-    private static List<HelloPortalBall> incomingPortalBallMessages = new ArrayList<>(); 
-    private static List<HelloWallBall> incomingWallBallMessages = new ArrayList<>();
-    private static List<String> incomingConnectDisconnectMessages = Collections.synchronizedList(new ArrayList<>());
+    private Socket socket;
+    private WireReader in;
+    private WireWriter out;
 
-    private final BlockingQueue<String> incomingConnectionMessages = new LinkedBlockingQueue<String>();
+    // messages from the server not yet applied to the board, oldest first, each already parsed
+    // into what it does to the board; put by the listening thread, taken by the update thread
+    private final Queue<Consumer<Board>> inbox = new ConcurrentLinkedQueue<Consumer<Board>>();
     
     // private Board board = new Board();
     private Board board;
@@ -83,6 +90,16 @@ public class Pingball {
     private AtomicBoolean paused = new AtomicBoolean(false); // pause board update
     private AtomicBoolean isConnected = new AtomicBoolean(false); // connection to server
     private AtomicBoolean runningBoardUpdate = new AtomicBoolean(false);
+    private volatile FixedRateLoop updateLoop; // set once the board update thread starts
+    // held while paused is set and passed on to updateLoop, so the loop never misses a change
+    private final Object pauseLock = new Object();
+    // makes the threads listening for messages from the server
+    private final ThreadFactory listenerThreads = ThreadMode.getDefault().threadFactory("listenMessages");
+    
+    // where the time of each tick goes
+    private final TickProfile profile = new TickProfile();
+    // number of clients whose profiles were registered with JMX, to name them apart
+    private static final AtomicInteger registeredProfiles = new AtomicInteger();
     
     private static String currentHost;
     private static int currentPort;
@@ -96,7 +113,7 @@ public class Pingball {
      * @param inputBoard
      */
     public Pingball(Board inputBoard){
-        board = inputBoard;
+        setBoard(inputBoard);
         isConnected.set(false);
     }
     
@@ -106,7 +123,7 @@ public class Pingball {
      * @throws IOException if can't connect
      */
     public Pingball(String hostname, int port, Board inputBoard) throws IOException {
-        board = inputBoard;
+        setBoard(inputBoard);
         connect(hostname, port);
     }
 
@@ -121,14 +138,16 @@ public class Pingball {
         currentHost = hostname;
         currentPort = port;
         socket = new Socket(hostname, port);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+        in = new WireReader(socket.getInputStream());
+        out = new WireWriter(socket.getOutputStream());
         isConnected.set(true);
-        sendRequest("Set boardname: " + getBoard().getName());
+        // a server that can frame its messages answers with WireProtocol.MARKER
+        String offer = WireProtocol.isBinaryOffered() ? " " + WireProtocol.VERSION : "";
+        sendRequest("Set boardname: " + getBoard().getName() + offer);
     }
     
     /**
-     * Closes the client's connection to the server.
+     * Closes the client's connection to the server, which stops the thread listening to it.
      * This client is now "closed". Requires this is "open".
      * @throws IOException if close fails
      */
@@ -144,9 +163,31 @@ public class Pingball {
      * @param inputBoard the board to set
      */
     public void setBoard(Board inputBoard){
+        inputBoard.setProfile(profile);
         board = inputBoard;
     }
     
+    /**
+     * Gets where the time of the client's ticks goes
+     * @return the profile, recorded into as the board is updated
+     */
+    public TickProfile getProfile() {
+        return profile;
+    }
+    
+    /**
+     * Registers the client's profile with the platform MBean server, so that JMX clients 
+     * can read it
+     * @return the name it is registered under, pingball:type=Pingball,client=N, 
+     *         where N counts the clients registered in this JVM
+     * @throws JMException if it can't be registered
+     */
+    public ObjectName registerProfileMBean() throws JMException {
+        ObjectName name = new ObjectName("pingball:type=Pingball,client=" + registeredProfiles.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(profile, name);
+        return name;
+    }
+    
     /**
      * Gets the current board of the client
      * @return the current board
@@ -159,14 +200,32 @@ public class Pingball {
      * Forces board updates to pause.
      */
     public void pause() {
-        paused.set(true);
+        synchronized (pauseLock) {
+            paused.set(true);
+            FixedRateLoop loop = updateLoop;
+            if (loop != null) {
+                loop.pause();
+            }
+        }
+        // don't hold back balls that left before the pause
+        try {
+            flushMessages();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
     
     /**
      * Lets board updates resume.
      */
     public void resume() {
-        paused.set(false);
+        synchronized (pauseLock) {
+            paused.set(false);
+            FixedRateLoop loop = updateLoop;
+            if (loop != null) {
+                loop.resume();
+            }
+        }
     }
 
     /**
@@ -192,13 +251,16 @@ public class Pingball {
         String file = "";
         String host = "";
         int port = DEFAULT_PORT;
+        boolean eventDriven = false;
 
         Queue<String> arguments = new LinkedList<String>(Arrays.asList(args));
         try {
             while (!arguments.isEmpty()) {
                 String flag = arguments.remove();
                 try {
-                    if (flag.equals("--host")) {
+                    if (flag.equals("--event-driven")) {
+                        eventDriven = true;
+                    } else if (flag.equals("--host")) {
                         host = arguments.remove();
                         flag = arguments.remove();
                         if (flag.equals("--port")) {
@@ -222,14 +284,15 @@ public class Pingball {
         } catch (IllegalArgumentException iae) {
             System.err.println(iae.getMessage());
             System.err
-            .println("usage for single-machine play: Pingball [FILE]");
+            .println("usage for single-machine play: Pingball [--event-driven] [FILE]");
             System.err
-            .println("usage for client-server play: Pingball [--host HOST] [--port PORT] [FILE]");
+            .println("usage for client-server play: Pingball [--event-driven] [--host HOST] [--port PORT] [FILE]");
             return;
         }
         if (!file.equals("")){
             selectBoard = FileParsing.createBoardFromFile(new File("boards/" + file));
         }
+        selectBoard.setEventDriven(eventDriven);
         
         try{
             Optional<Board> oBoard;
@@ -268,34 +331,60 @@ public class Pingball {
      */
     private void handleIncomingMessages(Socket socket) throws IOException {
         System.err.println("client connected");
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
 
         try {
             for (String line = in.readLine(); line != null; line = in.readLine()) {
                 if (line != null && isConnected.get()) {
                     System.out.println("Reply = " + line);
                     //parse the input string and update board. 
-                    String[] messageParts = line.split(" ");
-                    if (messageParts[0].equals("HelloPortalBall")){
-                        synchronized(portalMessageLock){
-                            incomingPortalBallMessages.add(new HelloPortalBall(line));
+                    MessageTokenizer tokens = new MessageTokenizer(line);
+                    if (line.equals(WireProtocol.MARKER)) {
+                        // the server frames its messages from here on; so will we
+                        if (!out.isBinary()) {
+                            sendRequest(WireProtocol.MARKER);
                         }
                     }
-                    else if (messageParts[0].equals("HelloWallBall")){
-                        synchronized(wallMessageLock){
-                            incomingWallBallMessages.add(new HelloWallBall(line));    
-                        }        
+                    else if (tokens.nextIs("HelloPortalBall")){
+                        HelloPortalBall message = new HelloPortalBall(tokens);
+                        inbox.add(board -> board.addBallThroughPortal(message.getBall(), message.getDestinationPortal()));
+                    }
+                    else if (tokens.nextIs("HelloWallBall")){
+                        HelloWallBall message = new HelloWallBall(tokens);
+                        inbox.add(board -> board.addBallThroughWall(message.getBall(), message.getWalltype()));
                     }
-                    else if (messageParts[0].equals("JoinWalls") || 
-                            messageParts[0].equals("Connected:") || 
-                            messageParts[0].equals("Disconnected:") || 
-                            messageParts[0].equals("disconnectwalls:")) {  
-                        incomingConnectionMessages.put(line);
-                        synchronized(connectDisconnectMessageLock){
-                            System.out.println(messageParts[0]);
-                            incomingConnectDisconnectMessages.add(line);    
-                        }        
+                    else if (tokens.nextIs("JoinWalls")){
+                        System.out.println("JoinWalls");
+                        //JoinWalls top/bottom/left/right otherBoardName thisBoardName(ignored)
+                        String wall = tokens.next();
+                        String otherBoard = tokens.next();
+                        inbox.add(board -> board.joinWall(wall, otherBoard));
+                    }
+                    else if (tokens.nextIs("Connected:")){ 
+                        System.out.println("Connected:");
+                        // tells the client that another board has connected; portals must react
+                        // message format: "Connected: board1 board2 board3 ...."
+                        String[] boardNames = new String[tokens.countRemaining()];
+                        for (int i = 0; i < boardNames.length; i++) {
+                            boardNames[i] = tokens.next();
+                        }
+                        inbox.add(board -> board.connectBoardsToPortals(boardNames));
+                    }
+                    else if (tokens.nextIs("Disconnected:")){
+                        System.out.println("Disconnected:");
+                        // tells the client that another board has disconnected; portals and walls must react
+                        // message format: "Disconnected: board"
+                        String otherBoard = tokens.next();
+                        inbox.add(board -> {
+                            board.disconnectSingleBoardFromPortals(otherBoard);
+                            board.removeConnectedBoard(otherBoard);
+                        });
+                    }
+                    else if (tokens.nextIs("disconnectwalls:")){
+                        System.out.println("disconnectwalls:");
+                        // tells the client to disconnect a board from one of its sides
+                        // message format: "disconnectwalls: left/right/bottom/top board"
+                        String otherBoard = tokens.skip().next();
+                        inbox.add(board -> board.removeConnectedBoard(otherBoard));
                     } else {
                         throw new RuntimeException("Bad incoming message");
                     }
@@ -304,11 +393,8 @@ public class Pingball {
         } catch (SocketException se) {
             // mute socket exception
             return;
-        } catch (InterruptedException e) {
-            // mute exception
-            return;
         } finally {
-            out.close();
+            // closing in closes the socket; out may still be in use by the update thread
             in.close();
         }
     }
@@ -321,7 +407,46 @@ public class Pingball {
      */
     public synchronized void sendRequest(String message) throws IOException {
         if (out != null) {
-            out.println(message);
+            out.writeLine(message);
+        }
+    }
+
+    /**
+     * Queue a message about a ball leaving to be sent to the server with the others 
+     * of the same frame, by flushMessages or the next sendRequest. Requires this is "open".
+     * @param message message about ball leaving
+     * @throws IOException if network or server failure
+     */
+    public synchronized void bufferMessage(Messages message) throws IOException {
+        if (out != null) {
+            out.bufferMessage(message);
+        }
+    }
+
+    /**
+     * Send the messages queued by bufferMessage now, in one write.
+     * Requires this is "open".
+     * @throws IOException if network or server failure
+     */
+    public synchronized void flushMessages() throws IOException {
+        if (out != null && out.getBufferedBytes() > 0) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Send the messages queued by bufferMessage, in one write, if the frame they were queued 
+     * in is over, there are MAX_BATCH_BYTES of them, or the board is paused. 
+     * Requires this is "open".
+     * @param endOfFrame true if the board was just updated for the last time this frame
+     * @throws IOException if network or server failure
+     */
+    public synchronized void flushMessages(boolean endOfFrame) throws IOException {
+        if (out == null) {
+            return;
+        }
+        if (endOfFrame || paused.get() || out.getBufferedBytes() >= MAX_BATCH_BYTES) {
+            flushMessages();
         }
     }
 
@@ -360,7 +485,7 @@ public class Pingball {
     //    private void startThreadListenMessages(Pingball client) {
     public void startThreadListenMessages(Pingball client) {
         //Thread 1: for message receiving about incoming balls; updates board as necessary. 
-        Thread listenMessages = new Thread(new Runnable() {
+        Thread listenMessages = listenerThreads.newThread(new Runnable() {
             public void run() {
                 try {
                     try {
@@ -384,117 +509,69 @@ public class Pingball {
      */
     public void startThreadBoardUpdate(Pingball client) {
         //Thread 2: for periodically updating the board state during a simulation of Pingball
-        Thread boardUpdate = new Thread(new Runnable() {
-            public void run() {
-                try {
-                    if (runningBoardUpdate.get()) {
-                        return;
-                    }
-                    System.out.println("thread boardUpdate accessed");
-                    runningBoardUpdate.set(true);
-                    while (true) {
-                        // if paused, don't update
-                        if (paused.get()) {
-                            continue;
-                        }
-                        for (int j = 0; j < 20; j++) {
-                            Thread.sleep(TIME_RESOLUTION / 20);
-
-                            if (isConnected.get()) {
-                                handleMessagesInBoardUpdate();
-                            }
-                            board.update(TIME_RESOLUTION / 20);
-
-                            for (GoodbyePortalBall message : board
-                                    .getGoodbyePortalBallMessages()) {
-                                // returns a list of balls that need to be ejected,
-                                // with their velocities and positions and such;
-                                client.sendRequest(message.messageString());    
-                            }
-                            board.emptyGoodbyePortalBallMessages();
-
-                            for (GoodbyeWallBall message : board
-                                    .getGoodbyeWallBallMessages()) {
-                                // returns a list of balls that need to be ejected,
-                                // with their velocities and positions and such;
-                                client.sendRequest(message.messageString());
-                            }
-                            board.emptyGoodbyeWallBallMessages();
-                        }
-                        //System.out.println(board.drawBoard());
-                    }
-                } catch (InterruptedException | IOException e) {
-                    e.printStackTrace();
-                }
+        if (!runningBoardUpdate.compareAndSet(false, true)) {
+            return;
+        }
+        // an event-driven board is just as accurate in one update per frame, so it
+        // doesn't need to be split into substeps
+        int updatesPerFrame = board.isEventDriven() ? 1 : UPDATES_PER_FRAME;
+        // confined to the update thread
+        TickProfile.Laps laps = profile.newLaps();
+        AtomicInteger stepsIntoFrame = new AtomicInteger();
+        FixedRateLoop loop = new FixedRateLoop(timestep -> {
+            laps.start();
+            if (isConnected.get()) {
+                handleMessagesInBoardUpdate();
+                laps.lap(TickProfile.Phase.MESSAGES);
+            }
+            board.update(timestep);
+            laps.lap(TickProfile.Phase.UPDATE);
+
+            for (GoodbyePortalBall message : board
+                    .getGoodbyePortalBallMessages()) {
+                // returns a list of balls that need to be ejected,
+                // with their velocities and positions and such;
+                client.bufferMessage(message);
             }
+            board.emptyGoodbyePortalBallMessages();
 
-        });
-        // start Thread 2
-        boardUpdate.start(); 
-    }
-    
-    private void handleMessagesInBoardUpdate() {
-        //get balls to add to board
-        synchronized(portalMessageLock){
-            if (incomingPortalBallMessages.size() > 0){
-                for (HelloPortalBall message : incomingPortalBallMessages){
-                    Ball ball = message.getBall();
-                    ball.setImmunue(true); 
-                    Portal portal = board.getPortalByName(message.getDestinationPortal());
-                    ball.setPosition(new Vect(portal.getX(), portal.getY()));
-                    board.addBall(ball);
-                }
-                incomingPortalBallMessages.clear();
+            for (GoodbyeWallBall message : board
+                    .getGoodbyeWallBallMessages()) {
+                // returns a list of balls that need to be ejected,
+                // with their velocities and positions and such;
+                client.bufferMessage(message);
             }
-        }
-        synchronized(wallMessageLock){
-            for (HelloWallBall message : incomingWallBallMessages){
-                Ball ball = message.getBall();
-                if (message.getWalltype().equals(WallType.TOP)){
-                    ball.setPosition(new Vect(ball.getPosition().x(),0.25005));
-                }
-                else if (message.getWalltype().equals(WallType.BOTTOM)){
-                    ball.setPosition(new Vect(ball.getPosition().x(),19.7495));
-                }
-                else if (message.getWalltype().equals(WallType.LEFT)){
-                    ball.setPosition(new Vect(0.25005,ball.getPosition().y()));
-                }
-                else if (message.getWalltype().equals(WallType.RIGHT)){
-                    ball.setPosition(new Vect(19.7495,ball.getPosition().y()));
-                }
-                else{
-                    throw new RuntimeException("Um i guess the enum is messed up??");
-                }
-                board.addBall(ball);
+            board.emptyGoodbyeWallBallMessages();
+            // balls that left in this frame are sent at its last step, not a frame later
+            client.flushMessages(stepsIntoFrame.incrementAndGet() % updatesPerFrame == 0);
+            laps.lap(TickProfile.Phase.SEND);
+            profile.record(TickProfile.Phase.TICK, laps.finish());
+        }, TIME_RESOLUTION / updatesPerFrame, updatesPerFrame);
+        synchronized (pauseLock) {
+            // publish the loop before reading paused, so a pause() either sees the loop or is seen here
+            updateLoop = loop;
+            if (paused.get()) {
+                loop.pause();
             }
-            incomingWallBallMessages.clear();
         }
-        synchronized(connectDisconnectMessageLock){
-            while (!incomingConnectDisconnectMessages.isEmpty()) {
-                String message = incomingConnectDisconnectMessages.get(0);
-                incomingConnectDisconnectMessages.remove(0);
-
-                String[] messageParts = message.split(" ");
-                if (messageParts[0].equals("JoinWalls")){
-                    board.joinWall(messageParts[1],messageParts[2]); //JoinWalls top/bottom/left/right otherBoardName thisBoardName(ignored)                                         
-                }
+        // start Thread 2
+        new Thread(loop, "boardUpdate").start();
+    }
 
-                else if (messageParts[0].equals("Connected:")){ // tells the client that another board has connected; portals must react                                
-                    // message format: "Connected: board1 board2 board3 ...."
-                    board.connectBoardsToPortals(Arrays.copyOfRange(messageParts, 1, messageParts.length));
-                }
-                else if (messageParts[0].equals("Disconnected:")){// tells the client that another board has disconnected; portals and walls must react
-                    // message format: "Disconnected: board"
-                    board.disconnectSingleBoardFromPortals(messageParts[1]);
-                    board.removeConnectedBoard(messageParts[1]);
-                }
-                else if (messageParts[0].equals("disconnectwalls:")){
-                    // tells the client to disconnect a board from one of its sides
-                    // message format: "disconnectwalls: left/right/bottom/top board"
-                    board.removeConnectedBoard(messageParts[2]);
-                }
+    /**
+     * Gets the loop updating the board, which reports how closely simulated time keeps up with wall time
+     * @return the loop started by startThreadBoardUpdate, or null if it hasn't been called
+     */
+    public FixedRateLoop getUpdateLoop() {
+        return updateLoop;
+    }
 
-            }
+    /**
+     * Applies the messages received since the last update to the board, in the order they arrived
+     */
+    private void handleMessagesInBoardUpdate() {
+        for (Consumer<Board> message = inbox.poll(); message != null; message = inbox.poll()) {
+            message.accept(board);
         }
     }
     
@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.management.JMException;
 import javax.swing.GroupLayout;
 import javax.swing.JButton;
 import javax.swing.JComponent;
@@ -39,6 +40,10 @@ public class PingballGUI extends JFrame {
      *      connect - connects to provided host and port
      *      disconnect - disconnects from any server
      * 
+     * Running with -Dpingball.profile.status=true shows a status line under the buttons with 
+     * where the time of each frame goes, from the client's TickProfile; the profile can also 
+     * be read through JMX either way.
+     * 
      * The class is mutable. 
      * 
      * Rep invariant:
@@ -69,6 +74,8 @@ public class PingballGUI extends JFrame {
     private final JButton pauseButton;
     private final JButton resumeButton;
     private final JButton restartButton;
+    private final JLabel profileStatus;
+    private final boolean showProfileStatus = Boolean.getBoolean("pingball.profile.status");
     private Pingball clientModel;
     private AtomicBoolean isBoardConnected;
     private Board currentBoard;
@@ -79,6 +86,9 @@ public class PingballGUI extends JFrame {
 
     private AtomicBoolean isPainting = new AtomicBoolean(false);
     
+    // number of repaints between updates of the profile status line, about a second
+    private static final int REPAINTS_PER_STATUS = 20;
+    
     private static final int DEFAULT_PORT = 10987;
     
     /**
@@ -157,12 +167,16 @@ public class PingballGUI extends JFrame {
                                         return;
                                     }
                                     isPainting.set(true);
-                                    while(true){
+                                    for (int repaints = 1; true; repaints++){
                                         Thread.sleep(Pingball.TIME_RESOLUTION);
+                                        boolean updateStatus = showProfileStatus && repaints % REPAINTS_PER_STATUS == 0;
                                         SwingUtilities.invokeLater(new Runnable() {
                                             public void run() {
                                                 boardPanel.repaint();
                                                 updateWallNames(clientModel.getBoard().getConnectedWalls());
+                                                if (updateStatus) {
+                                                    profileStatus.setText(clientModel.getProfile().toStatusLine());
+                                                }
                                             }
                                         });
                                     }
@@ -229,6 +243,14 @@ public class PingballGUI extends JFrame {
         currentBoard = new Board();
         clientModel = new Pingball(currentBoard);
         boardPanel = new PingballPanel(clientModel.getBoard());
+        boardPanel.setProfile(clientModel.getProfile());
+        try {
+            clientModel.registerProfileMBean();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        profileStatus = new JLabel(" ");
+        profileStatus.setVisible(showProfileStatus);
         boardPanel.setSize(500, 500);
         boardPanel.requestFocusInWindow();
         // listen for keyboard input
@@ -369,6 +391,7 @@ public class PingballGUI extends JFrame {
                         .addComponent(boardRow)
                         .addComponent(bottomWallConnection)
                         .addComponent(actionRow)
+                        .addComponent(profileStatus)
                         )
                 );
         pingballLayout.setVerticalGroup(
@@ -379,6 +402,7 @@ public class PingballGUI extends JFrame {
                 .addComponent(boardRow)
                 .addComponent(bottomWallConnection)
                 .addComponent(actionRow)
+                .addComponent(profileStatus)
                 );
 
         // program stops when you close the window
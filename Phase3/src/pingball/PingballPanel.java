@@ -37,6 +37,8 @@ public class PingballPanel extends JPanel implements MouseListener {
     private static final long serialVersionUID = 1L;
     final int SCALE = 25; // pixels per 1L
     private Board board;
+    private TickProfile profile; // records the repaints, if set; confined to the event dispatch thread
+    private long lastPaintNanos; // when the board was last painted, 0 if never
 
     /**
      * Constructs an instance of the panel initializing the board and listening
@@ -55,6 +57,7 @@ public class PingballPanel extends JPanel implements MouseListener {
      */
     @Override
     public void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         setBackground(Color.WHITE);
         
         Graphics2D graphics = (Graphics2D) g;
@@ -70,6 +73,25 @@ public class PingballPanel extends JPanel implements MouseListener {
             graphics.draw(shape);
             graphics.fill(shape);
         }
+        if (profile != null) {
+            long end = System.nanoTime();
+            profile.record(TickProfile.Phase.REPAINT, end - start);
+            if (lastPaintNanos != 0) {
+                profile.record(TickProfile.Phase.FRAME, end - lastPaintNanos);
+            }
+            lastPaintNanos = end;
+        }
+    }
+
+    /**
+     * Sets the profile each painting of the board is recorded in, as a REPAINT and, from the 
+     * second painting on, as a FRAME since the one before. Must be called on the event dispatch 
+     * thread, or before the panel is shown.
+     * @param newProfile the profile, or null to stop recording
+     */
+    public void setProfile(TickProfile newProfile){
+        profile = newProfile;
+        lastPaintNanos = 0;
     }
 
     /**
@@ -1,29 +1,49 @@
 package pingball;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.sun.javafx.binding.BidirectionalBinding;
+import com.sun.net.httpserver.HttpServer;
 
 import pingball.Gadgets.Portal;
 import pingball.Messages.GoodbyePortalBall;
+import pingball.Messages.GoodbyeWallBall;
 import pingball.Messages.HelloPortalBall;
+import pingball.Messages.HelloWallBall;
+import pingball.Messages.MessageTokenizer;
+import pingball.Messages.Messages;
 import pingball.Messages.PingballServerMessage;
 
 /**
@@ -33,20 +53,36 @@ import pingball.Messages.PingballServerMessage;
  * 
  */
 
-public class PingballServer {
+public class PingballServer implements Closeable {
 
     /* Thread Safety Argument 
      * 
      * There are three primary types of threads in our PingballServer. The main thread listens 
      * for incoming socket connections. Each socket connection for each client is assigned to its own 
-     * thread. Also, two other threads takes messages off two queues queue and assigns it to the appropriate socket. 
+     * thread, or, when serving without blocking, every client is read from and written to by the main 
+     * thread through a SelectorServer, which queues lines sent from the other threads. 
+     * Also, two other threads takes messages off two queues queue and assigns it to the appropriate socket. 
+     * Neither of them writes to a socket: a client's lines go to its own bounded ClientOutbox, written by 
+     * the client's writer thread (or to its NioConnection), so one slow client doesn't hold up the others. 
      * The incoming ball messages are put onto and taken off a thread-safe BlockingQueue. In addition, other
      * messages about client board connectivity are put onto and taken off another thread-safe BlockingQueue. 
      * The messages themselves are immutable private final Strings defined inside a PingballServerMessage ADT. 
      * Additionally, the routing logic uses concurrent maps to store origin and destination
-     * addresses. Thus, routing of information by the server is accomplished in a thread-safe manner and the 
+     * addresses, and a concurrent map from board names to clients; a client leaving only removes its 
+     * name if the name still maps to that client, so it can't unmap a newer client of the same name. 
+     * Thus, routing of information by the server is accomplished in a thread-safe manner and the 
      * system is thread-safe. 
      * 
+     * Every thread but the main thread, and the outboxes' writer threads, runs on one executor, 
+     * of platform or virtual threads as set by the ThreadMode. close() sets a volatile flag and 
+     * closes the server socket and every client's socket, which wakes the threads blocked reading 
+     * them; it then interrupts the executor's threads, which wakes the ones blocked on the queues. 
+     * The flag tells the threads that they were woken to stop, rather than by an error. 
+     * 
+     * Every thread counts what it receives and sends in the server's ServerMetrics, which are 
+     * thread-safe and read concurrently by JMX and by the metrics endpoint's handler, which runs 
+     * on the same executor. 
+     * 
      * =============================================================================
      * 
      * Wire protocol:
@@ -108,12 +144,24 @@ public class PingballServer {
     /** Maximum port number as defined by ServerSocket. */
     private static final int MAXIMUM_PORT = 65535;
     private ServerSocket serverSocket;
+    private final ThreadMode threadMode;
+    // runs the threads serving clients and sending them messages
+    private final ExecutorService threads;
+    private volatile SelectorServer selectorServer; // set while serving without blocking
+    private volatile boolean closed = false;
+    private volatile int outboxCapacity = ClientOutbox.DEFAULT_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.getDefault();
+    private final ServerMetrics metrics;
+    private volatile HttpServer metricsEndpoint; // set while serving the metrics over HTTP
+    private volatile ObjectName metricsName; // set while the metrics are registered with JMX
 
     private final BlockingQueue<PingballServerMessage> in;
     private final BlockingQueue<PingballServerMessage> out;
     private final BlockingQueue<PingballServerMessage> disconnect;
 
     private final ConcurrentMap<ClientSocket, PingballServerMessage> socketMap = new ConcurrentHashMap<>(); 
+    // board name -> the client that set it, so routing a message doesn't scan every client
+    private final ConcurrentMap<String, ClientSocket> boardSockets = new ConcurrentHashMap<>(); 
     private final ConcurrentMap<String, String> bidirectionalAddressMapFromLeft = new ConcurrentHashMap<>(); 
     private final ConcurrentMap<String, String> bidirectionalAddressMapFromRight = new ConcurrentHashMap<>(); 
     private final ConcurrentMap<String, String> bidirectionalAddressMapFromTop = new ConcurrentHashMap<>(); 
@@ -129,10 +177,27 @@ public class PingballServer {
      * @throws IOException
      */
     public PingballServer(int port, BlockingQueue<PingballServerMessage> requests, BlockingQueue<PingballServerMessage> replies, BlockingQueue<PingballServerMessage> disconnect) throws IOException {
-        serverSocket = new ServerSocket(port);
+        this(port, requests, replies, disconnect, ThreadMode.getDefault());
+    }
+
+    /**
+     * Makes a PingballServer that listens for connections on port, and serves its clients 
+     * on threads of the given kind.
+     * @param port Port number 
+     * @param requests BlockingQueue for requests
+     * @param replies BlockingQueue for replies 
+     * @param threadMode the kind of thread the server's threads are
+     * @throws IOException
+     */
+    public PingballServer(int port, BlockingQueue<PingballServerMessage> requests, BlockingQueue<PingballServerMessage> replies, BlockingQueue<PingballServerMessage> disconnect, 
+            ThreadMode threadMode) throws IOException {
+        serverSocket = openServerSocket(port);
         this.in = requests;
         this.out = replies;
         this.disconnect = disconnect; 
+        this.threadMode = threadMode;
+        this.threads = threadMode.newExecutor("PingballServer");
+        this.metrics = new ServerMetrics(socketMap::size, () -> in.size(), () -> out.size(), () -> disconnect.size());
     }
 
 
@@ -170,13 +235,185 @@ public class PingballServer {
         bidirectionalAddressMapFromTop.remove(origin); 
     }
 
+    /**
+     * Tells whether a client has set the given board name
+     * @param boardName name of a board
+     * @return true if a connected client has the board
+     */
+    public boolean isBoardConnected(String boardName) {
+        return boardName != null && boardSockets.containsKey(boardName);
+    }
+
+    /**
+     * Gets the client with the given board name
+     * @param boardName name of a board, or null
+     * @return the client that most recently set the name and is still connected, 
+     *         or null if there is none
+     */
+    public ClientSocket getClientSocket(String boardName) {
+        return boardName == null ? null : boardSockets.get(boardName);
+    }
+
     /**
      * Sets the server socket to a new server socket
      * @param port - the port this server socket connects to
      * @throws IOException
      */
     public void setServerSocket(int port) throws IOException{
-        serverSocket = new ServerSocket(port);
+        serverSocket = openServerSocket(port);
+    }
+    
+    /**
+     * Sets how many lines are held for each client that connects from now on, 
+     * when the server blocks a thread per client
+     * @param capacity most lines waiting to be sent to a client; must be positive
+     */
+    public void setOutboxCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.outboxCapacity = capacity;
+    }
+    
+    /**
+     * Sets what is done with lines sent to a client whose outbox is full, 
+     * for each client that connects from now on
+     * @param policy the overflow policy
+     */
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        this.overflowPolicy = policy;
+    }
+    
+    /**
+     * Opens a server socket backed by a channel, so that it can be served either way
+     * @param port the port to listen on, 0 for any free port
+     * @return the bound server socket
+     * @throws IOException if the socket can't be bound
+     */
+    private static ServerSocket openServerSocket(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress(port));
+        return channel.socket();
+    }
+    
+    /**
+     * Gets the port the server is listening on
+     * @return the port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Gets the kind of thread the server's threads are
+     * @return the thread mode
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+    
+    /**
+     * Gets the server's metrics
+     * @return the metrics, updated as the server runs
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Registers the server's metrics with the platform MBean server, so that JMX clients can 
+     * read them, until the server is closed
+     * @return the name they are registered under, pingball:type=PingballServer,port=PORT
+     * @throws JMException if they can't be registered, e.g. if another server on the same 
+     *         port already registered its metrics
+     */
+    public ObjectName registerMetricsMBean() throws JMException {
+        ObjectName name = new ObjectName("pingball:type=PingballServer,port=" + getPort());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        metricsName = name;
+        return name;
+    }
+    
+    /**
+     * Serves the server's metrics as text at http://localhost:PORT/metrics, in the Prometheus 
+     * exposition format, until the server is closed. Only connections from this machine are 
+     * accepted.
+     * @param port the port to listen on, 0 for any free port
+     * @return the port the metrics are served on
+     * @throws IOException if the port can't be bound
+     */
+    public int startMetricsEndpoint(int port) throws IOException {
+        HttpServer endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        endpoint.createContext("/metrics", exchange -> {
+            try {
+                byte[] body = metrics.toText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        endpoint.setExecutor(threads);
+        endpoint.start();
+        metricsEndpoint = endpoint;
+        return endpoint.getAddress().getPort();
+    }
+    
+    /**
+     * Stops the server: serve() or serveNonBlocking() returns, every client is disconnected, 
+     * and the threads started by the server are stopped, except a thread reading the console, 
+     * which stops at the end of its input. The server can't be used afterwards.
+     * @throws IOException if the server socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        SelectorServer selector = selectorServer;
+        if (selector != null) {
+            selector.close();
+        }
+        serverSocket.close();
+        for (ClientSocket client : socketMap.keySet()) {
+            client.close();
+            if (client.getSocket() != null) {
+                client.getSocket().close();
+            }
+        }
+        HttpServer endpoint = metricsEndpoint;
+        if (endpoint != null) {
+            endpoint.stop(0);
+        }
+        ObjectName name = metricsName;
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+        threads.shutdownNow();
+    }
+    
+    /**
+     * Waits for the threads started by the server to stop after close()
+     * @param timeout longest to wait
+     * @param unit unit of timeout
+     * @return true if they all stopped, false if the time ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threads.awaitTermination(timeout, unit);
+    }
+    
+    /**
+     * Tells whether the server has been closed
+     * @return true once close() has been called
+     */
+    public boolean isClosed() {
+        return closed;
     }
 
 
@@ -186,26 +423,31 @@ public class PingballServer {
      */
     public void route(PingballServerMessage message) {
         try {
-            String[] tokens = message.getMessage().split(" "); 
+            // the message was parsed when it came in; route on its fields
+            Messages ball = message.getBall(); 
             String destinationID = ""; 
 
-            if (tokens[0].equals("GoodbyeWallBall")) {
-                if (tokens[2].equals("LEFT")) {
+            if (ball instanceof GoodbyeWallBall) {
+                switch (((GoodbyeWallBall) ball).getWalltype()) {
+                case LEFT:
                     destinationID = bidirectionalAddressMapFromRight.get(message.getOriginID()); 
-                } else if (tokens[2].equals("RIGHT")) {
+                    break;
+                case RIGHT:
                     destinationID = bidirectionalAddressMapFromLeft.get(message.getOriginID()); 
-                } else if (tokens[2].equals("TOP")) {
+                    break;
+                case TOP:
                     destinationID = bidirectionalAddressMapFromBottom.get(message.getOriginID()); 
-                } else if (tokens[2].equals("BOTTOM")) {
+                    break;
+                default:
                     destinationID = bidirectionalAddressMapFromTop.get(message.getOriginID()); 
+                    break;
                 }
-            } else if (tokens[0].equals("GoodbyePortalBall")) {
-                for (String destination: bidirectionalAddressMapPortal.keySet()) {
-                    if (destination.equals(tokens[1])) {
-                        destinationID = destination; 
-                    }
+            } else if (ball instanceof GoodbyePortalBall) {
+                String destinationBoard = ((GoodbyePortalBall) ball).getDestinationBoard(); 
+                if (boardSockets.containsKey(destinationBoard)) {
+                    destinationID = destinationBoard; 
                 }
-            } else if (tokens[0].equals("restart")) {
+            } else if (new MessageTokenizer(message.getMessage()).nextIs("restart")) {
                 String origin = message.getOriginID();
                 String[] walls = {"left", "right", "top", "bottom"};
                 for (String wall : walls) {
@@ -231,42 +473,109 @@ public class PingballServer {
 
     /**
      * Run the server, listening for client connections and handling them.
-     * Never returns unless an exception is thrown.
+     * Never returns unless the server is closed or an exception is thrown.
      * 
      * @throws IOException if the main server socket is broken
      *                     (IOExceptions from individual clients do *not* terminate serve()) 
      */
     public void serve() throws IOException {
-        while (true) {
+        while (!closed) {
             // block until a client connects
-            Socket socket = serverSocket.accept();
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                throw e;
+            }
 
             // modified server to handle multiple client connections on their own thread
-            Thread handler = new Thread(new Runnable() {
-                public void run() {
+            try {
+                threads.execute(new Runnable() {
+                    public void run() {
 
-                    try {
                         try {
-                            System.out.println("client connected");
-                            handleConnection(socket);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        } finally {
-                            socket.close();
-                            System.out.println("socket closed"); 
+                            try {
+                                System.out.println("client connected");
+                                handleConnection(socket);
+                            } catch (InterruptedException e) {
+                                if (!closed) {
+                                    e.printStackTrace();
+                                }
+                            } finally {
+                                socket.close();
+                                System.out.println("socket closed"); 
+                            }
+                        } catch (IOException ioe) {
+                            if (!closed) {
+                                ioe.printStackTrace();
+                            }
                         }
-                    } catch (IOException ioe) {
-                        ioe.printStackTrace();
                     }
-                }
-            }); 
-
-            handler.start();
+                }); 
+            } catch (RejectedExecutionException e) {
+                // closed since the client connected
+                socket.close();
+                return;
+            }
         }
     }
 
 
 
+    /**
+     * Run the server without blocking a thread per client: every client is served from the 
+     * calling thread with a SelectorServer, speaking the same wire protocol as serve(). 
+     * Returns only if the server is closed or the server socket fails; serve() can't be used on 
+     * this server afterwards.
+     * 
+     * @throws IOException if the main server socket is broken
+     *                     (IOExceptions from individual clients do *not* terminate serveNonBlocking()) 
+     */
+    public void serveNonBlocking() throws IOException {
+        // only touched by the selector thread
+        Map<NioConnection, ClientSocket> clients = new HashMap<>();
+        SelectorServer selectorServer = new SelectorServer(serverSocket.getChannel(), new SelectorServer.Handler() {
+            public void connected(NioConnection connection) {
+                System.out.println("client connected");
+                ClientSocket newClientSocket = new ClientSocket(null, connection, metrics);
+                clients.put(connection, newClientSocket);
+                socketMap.put(newClientSocket, new PingballServerMessage(newClientSocket.getId(), null, null)); 
+            }
+
+            public void lineReceived(NioConnection connection, String line) {
+                try {
+                    handleLine(line, connection.getLastLineBytes(), clients.get(connection));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            public void disconnected(NioConnection connection) {
+                try {
+                    handleDisconnect(clients.remove(connection));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                System.out.println("socket closed"); 
+            }
+        });
+        this.selectorServer = selectorServer;
+        if (closed) {
+            // closed before there was a selector to close
+            selectorServer.close();
+        }
+        try {
+            selectorServer.serve();
+        } catch (IOException e) {
+            if (!closed) {
+                throw e;
+            }
+        }
+    }
+
     /**
      * Handle a single client connection. Returns when client disconnects.
      * 
@@ -276,54 +585,98 @@ public class PingballServer {
      * 
      */
     private void handleConnection(Socket socket) throws IOException, InterruptedException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        WireReader in = new WireReader(socket.getInputStream());
+        WireWriter out = new WireWriter(socket.getOutputStream());
 
-        ClientSocket newClientSocket = new ClientSocket(null, socket, in, out); 
+        ClientSocket newClientSocket = new ClientSocket(null, socket, out, outboxCapacity, overflowPolicy, threadMode, metrics); 
 
         socketMap.put(newClientSocket, new PingballServerMessage(newClientSocket.getId(), null, null)); 
 
         try {
             for (String line = in.readLine(); line != null; line = in.readLine()) {
-
-                if (line.contains("Set boardname:")) {
-                    String[] tokens = line.split(" "); 
-                    String boardname = tokens[2]; 
-                    newClientSocket.setID(boardname); 
-
-                    String newline = "Connected:"; 
-
-                    for (ClientSocket socket2: socketMap.keySet()) {
-                        newline += " " + socket2.getId(); 
-                    }
-
-                    bidirectionalAddressMapPortal.put(boardname, "");
-
-                    PingballServerMessage disconnectedSocketMessage = new PingballServerMessage(null, null, newline); 
-                    disconnect.put(disconnectedSocketMessage); 
-                } else {
-                    handleRequest(line, newClientSocket.getId());
-                }
+                handleLine(line, in.getLastLineBytes(), newClientSocket);
             }
         } finally {
+            handleDisconnect(newClientSocket);
 
-            // put a new message on the disconnectQueue. 
-            String newMessage = "Disconnected: " + newClientSocket.getId(); 
-            PingballServerMessage disconnectedSocketMessage = new PingballServerMessage(null, null, newMessage); 
-            disconnect.put(disconnectedSocketMessage); 
-
-            // delete all the address mappings. 
+            // out belongs to the outbox's writer thread; closing in closes the socket
+            newClientSocket.close();
+            in.close();
+        }
+    }
+    
+    /**
+     * Handles one line from a client
+     * @param line the line
+     * @param bytes the number of bytes the line took on the wire
+     * @param newClientSocket the client that sent it
+     * @throws InterruptedException
+     */
+    private void handleLine(String line, int bytes, ClientSocket newClientSocket) throws InterruptedException {
+        metrics.received(newClientSocket.getId(), bytes); 
+        MessageTokenizer tokens = new MessageTokenizer(line); 
+        if (tokens.nextIs("Set") && tokens.nextIs("boardname:") && tokens.hasNext()) {
+            String boardname = tokens.next(); 
+            // the client offers the binary framing; switch to it once the marker is sent
+            if (tokens.nextIs(WireProtocol.VERSION) && newClientSocket.supportsBinary()) {
+                send(newClientSocket, WireProtocol.MARKER); 
+            }
             if (newClientSocket.getId() != null) {
-                this.breakLink(newClientSocket.getId()); 
+                boardSockets.remove(newClientSocket.getId(), newClientSocket); 
             }
+            newClientSocket.setID(boardname); 
+            // a later client with the same name takes the name over
+            boardSockets.put(boardname, newClientSocket); 
 
-            // remove the associated clientSocket from the socketMap
-            socketMap.remove(newClientSocket); 
+            String newline = "Connected:"; 
 
-            out.close();
-            in.close();
+            for (ClientSocket socket2: socketMap.keySet()) {
+                newline += " " + socket2.getId(); 
+            }
+
+            bidirectionalAddressMapPortal.put(boardname, "");
+
+            PingballServerMessage disconnectedSocketMessage = new PingballServerMessage(null, null, newline); 
+            disconnect.put(disconnectedSocketMessage); 
+        } else if (!line.equals(WireProtocol.MARKER)) {
+            handleRequest(line, newClientSocket.getId());
         }
     }
+    
+    /**
+     * Cleans up after a client disconnects, and tells the other clients
+     * @param newClientSocket the client that disconnected
+     * @throws InterruptedException
+     */
+    private void handleDisconnect(ClientSocket newClientSocket) throws InterruptedException {
+        // put a new message on the disconnectQueue. 
+        String newMessage = "Disconnected: " + newClientSocket.getId(); 
+        PingballServerMessage disconnectedSocketMessage = new PingballServerMessage(null, null, newMessage); 
+        disconnect.put(disconnectedSocketMessage); 
+
+        // delete all the address mappings. 
+        if (newClientSocket.getId() != null) {
+            this.breakLink(newClientSocket.getId()); 
+            boardSockets.remove(newClientSocket.getId(), newClientSocket); 
+            if (!isBoardConnected(newClientSocket.getId())) {
+                metrics.removeBoard(newClientSocket.getId()); 
+            }
+        }
+
+        // remove the associated clientSocket from the socketMap
+        socketMap.remove(newClientSocket); 
+    }
+    
+    /**
+     * Sends a line to a client, counting it in the metrics; the client counts its bytes as
+     * they are written
+     * @param client the client
+     * @param line the line, without a line terminator
+     */
+    private void send(ClientSocket client, String line) {
+        metrics.sent(client.getId()); 
+        client.send(line); 
+    }
 
 
     /**
@@ -344,10 +697,13 @@ public class PingballServer {
      * Start a PingballServer using the given arguments.
      * 
      * <br> Usage:
-     *      PingballServer [--port PORT] 
+     *      PingballServer [--port PORT] [--nio] [--metrics METRICS_PORT]
      * 
      * <br> PORT is an optional integer in the range 0 to 65535 inclusive, specifying the port the server
      *      should be listening on for incoming connections.
+     * <br> --nio serves every client from one thread without blocking, instead of a thread per client.
+     * <br> --metrics serves the server's metrics as text at http://localhost:METRICS_PORT/metrics. 
+     *      The metrics are also registered with JMX either way.
      * <br> E.g. "PingballServer --port 1234" starts the server listening on port 1234.
      * 
      * @param args arguments as described
@@ -355,6 +711,8 @@ public class PingballServer {
      */
     public static void main(String[] args) throws IOException {
         int port = DEFAULT_PORT;
+        boolean nonBlocking = false;
+        int metricsPort = -1;
         Queue<String> arguments = new LinkedList<String>(Arrays.asList(args));
         try {
             while ( ! arguments.isEmpty()) {
@@ -368,6 +726,13 @@ public class PingballServer {
                         if (port < 0 || port > MAXIMUM_PORT) {
                             throw new IllegalArgumentException("port " + port + " out of range");
                         }
+                    } else if (flag.equals("--nio")) {
+                        nonBlocking = true;
+                    } else if (flag.equals("--metrics")) {
+                        metricsPort = Integer.parseInt(arguments.remove());
+                        if (metricsPort < 0 || metricsPort > MAXIMUM_PORT) {
+                            throw new IllegalArgumentException("port " + metricsPort + " out of range");
+                        }
                     }
                 } catch (NoSuchElementException nsee) {
                     throw new IllegalArgumentException("missing argument for " + flag);
@@ -377,7 +742,7 @@ public class PingballServer {
             }
         } catch (IllegalArgumentException iae) {
             System.err.println(iae.getMessage());
-            System.err.println("usage: MinesweeperServer [--debug | --no-debug] [--port PORT] [--size SIZE_X,SIZE_Y | --file FILE]");
+            System.err.println("usage: PingballServer [--port PORT] [--nio] [--metrics METRICS_PORT]");
             return;
         }
 
@@ -386,6 +751,14 @@ public class PingballServer {
         BlockingQueue<PingballServerMessage> disconnect = new LinkedBlockingQueue<>();
         PingballServer server = new PingballServer(port, in, out, disconnect);
 
+        try {
+            server.registerMetricsMBean();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        if (metricsPort >= 0) {
+            System.out.println("metrics at http://localhost:" + server.startMetricsEndpoint(metricsPort) + "/metrics");
+        }
 
         server.startThreadSendMessages(server);
         server.startThreadReadConsole(server); 
@@ -393,7 +766,11 @@ public class PingballServer {
 
         // Use main thread for server.
         try {
-            server.serve();
+            if (nonBlocking) {
+                server.serveNonBlocking();
+            } else {
+                server.serve();
+            }
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
@@ -407,20 +784,8 @@ public class PingballServer {
      * @throws InterruptedException
      */
     public boolean handleHorizontalBoardJoins(String NAME_left, String NAME_right ) throws InterruptedException{
-        boolean nameLeftFound = false; 
-        boolean nameRightFound = false; 
-
-        for (ClientSocket socket: socketMap.keySet()) {
-            if (socket.getId() != null) {
-                if (socket.getId().equals(NAME_left)) {
-                    nameLeftFound = true; 
-                } 
-
-                if (socket.getId().equals(NAME_right)) {
-                    nameRightFound = true; 
-                }
-            }
-        }
+        boolean nameLeftFound = isBoardConnected(NAME_left); 
+        boolean nameRightFound = isBoardConnected(NAME_right); 
 
 
         if (nameLeftFound && nameRightFound) {
@@ -467,22 +832,8 @@ public class PingballServer {
      */
 
     public boolean handleVerticalBoardJoins(String NAME_top, String NAME_bottom) throws InterruptedException{
-        boolean nameTopFound = false; 
-        boolean nameBottomFound = false; 
-
-        for (ClientSocket socket: socketMap.keySet()) {
-
-            if (socket.getId() != null) {
-
-                if (socket.getId().equals(NAME_top)) {
-                    nameTopFound = true; 
-                } 
-
-                if (socket.getId().equals(NAME_bottom)) {
-                    nameBottomFound = true; 
-                }
-            }
-        }
+        boolean nameTopFound = isBoardConnected(NAME_top); 
+        boolean nameBottomFound = isBoardConnected(NAME_bottom); 
 
         if (nameTopFound && nameBottomFound) {
             if (bidirectionalAddressMapFromTop.containsKey(NAME_top)) {
@@ -523,7 +874,7 @@ public class PingballServer {
      * @param server instance of Pingball server
      */
     public void startThreadSendMessages(PingballServer server) {
-        Thread sendMessages = new Thread(new Runnable() {
+        threads.execute(new Runnable() {
             public void run() {
                 try {
                     while (true) {
@@ -531,51 +882,37 @@ public class PingballServer {
 
                         String destinationIDSocket = messageToBeSent.getDestinationID(); 
 
-                        //split the string of messagetobeSent
-                        String input = messageToBeSent.getMessage(); 
-
-                        String[] tokens = input.split(" "); 
+                        String sendMessageOverSocket = messageToBeSent.getMessage(); 
 
-                        String sendMessageOverSocket = input; 
-
-                        //handle Portal and Wall ball messages
-                        if (tokens[0].equals("GoodbyePortalBall")) {
-                            String helloPortalBallString = "HelloPortalBall " + tokens[2] + " " + tokens[3] + " " + tokens[4] + " " + tokens[5] + " " + tokens[6]; 
-                            sendMessageOverSocket = helloPortalBallString; 
-                        } else if (tokens[0].equals("GoodbyeWallBall")) {
-                            String newWall = ""; 
-
-                            if (tokens[2].equals("TOP")) {
-                                newWall = "BOTTOM"; 
-                            } else if (tokens[2].equals("BOTTOM")) {
-                                newWall = "TOP";
-                            } else if (tokens[2].equals("LEFT")) {
-                                newWall = "RIGHT"; 
-                            } else {
-                                newWall = "LEFT"; 
-                            }
-
-                            String helloWallBallString = "HelloWallBall " + newWall + " " + tokens[3] + " " + tokens[4] + " " + tokens[5] + " " + tokens[6]; 
-                            sendMessageOverSocket = helloWallBallString; 
+                        //handle Portal and Wall ball messages, rewritten from their fields
+                        Messages ball = messageToBeSent.getBall(); 
+                        if (ball instanceof GoodbyePortalBall) {
+                            GoodbyePortalBall goodbye = (GoodbyePortalBall) ball; 
+                            sendMessageOverSocket = new HelloPortalBall(goodbye.getDestinationPortal(), goodbye.getBall()).messageString(); 
+                        } else if (ball instanceof GoodbyeWallBall) {
+                            GoodbyeWallBall goodbye = (GoodbyeWallBall) ball; 
+                            sendMessageOverSocket = new HelloWallBall(goodbye.getWalltype().opposite(), goodbye.getBall()).messageString(); 
                         } 
 
 
-                        for (ClientSocket socket: server.socketMap.keySet()) {
-                            if (socket.getId().equals(destinationIDSocket)) {
-                                socket.getOutputStream().println(sendMessageOverSocket); 
+                        ClientSocket socket = server.getClientSocket(destinationIDSocket); 
+                        if (socket != null) {
+                            send(socket, sendMessageOverSocket); 
+                            if (ball != null) {
+                                metrics.routed(messageToBeSent.getReceivedNanos()); 
                             }
                         }
                     }
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    if (!closed) {
+                        e.printStackTrace();
+                    }
                 } finally {
                     //socket.close();
                     System.out.println("Client disconnected.");
                 }
             }
-        });
-
-        sendMessages.start(); // start Thread 1
+        }); // start Thread 1
     }
 
     /**
@@ -584,10 +921,10 @@ public class PingballServer {
      * @param server instance of Pingball server
      */
     public void startThreadReadConsole(PingballServer server) {
-        Thread readConsole = new Thread(new Runnable() {
+        threads.execute(new Runnable() {
             public void run() {
                 try {
-                    while (true) {
+                    while (!closed) {
                         BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 
                         System.out.println("Enter user commands");
@@ -595,36 +932,80 @@ public class PingballServer {
                         try {
                             while ((input = br.readLine()) != null) {
                                 // if grammar not met, ignore input
-                                String regexInput = "(\\s*)(h|v)(\\s+)([A-Za-z_][A-Za-z_0-9]*)(\\s+)([A-Za-z_][A-Za-z_0-9]*)";
-                                if (!input.matches(regexInput)) {
+                                String[] tokens = parseJoinCommand(input);
+                                if (tokens == null) {
                                     System.out.println("You messed up the message."); 
 
                                     continue;
                                 }
-                                String[] tokens = input.split(" ");
                                 // parse input
-                                if (tokens[0].replaceAll("\\s+","").equals("h")) {
+                                if (tokens[0].equals("h")) {
 
-                                    String NAME_left = tokens[1].replaceAll("\\s+","");
-                                    String NAME_right = tokens[2].replaceAll("\\s+","");
+                                    String NAME_left = tokens[1];
+                                    String NAME_right = tokens[2];
                                     handleHorizontalBoardJoins(NAME_left, NAME_right );
                                 }
 
-                                else if (tokens[0].replaceAll("\\s+","").equals("v")) {
-                                    String NAME_top = tokens[1].replaceAll("\\s+","");
-                                    String NAME_bottom = tokens[2].replaceAll("\\s+","");
+                                else if (tokens[0].equals("v")) {
+                                    String NAME_top = tokens[1];
+                                    String NAME_bottom = tokens[2];
                                     handleVerticalBoardJoins(NAME_top, NAME_bottom);
                                 }
                             }
                         } catch (IOException | InterruptedException e) {
-                            e.printStackTrace();
+                            if (!closed) {
+                                e.printStackTrace();
+                            }
                         }
                     }
                 } finally {
                 }
             }
         });
-        readConsole.start();
+    }
+
+    /**
+     * Parses a command from the console to join two boards, of the form 
+     *      COMMAND ::= ("h"|"v") NAME NAME 
+     * with words separated by whitespace, and whitespace allowed at either end. 
+     * @param input the command 
+     * @return the three words of the command, or null if input isn't a command 
+     */
+    static String[] parseJoinCommand(String input) {
+        String[] words = new String[3];
+        int count = 0;
+        int i = 0;
+        while (i < input.length()) {
+            if (Character.isWhitespace(input.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < input.length() && !Character.isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            if (count == words.length) {
+                return null;
+            }
+            words[count++] = input.substring(start, i);
+        }
+        if (count != words.length || !(words[0].equals("h") || words[0].equals("v")) 
+                || !isName(words[1]) || !isName(words[2])) {
+            return null;
+        }
+        return words;
+    }
+
+    // tells whether word is a NAME ::= [A-Za-z_][A-Za-z_0-9]*
+    private static boolean isName(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            boolean letter = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+            if (!letter && (i == 0 || c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return !word.isEmpty();
     }
 
     /**
@@ -634,7 +1015,7 @@ public class PingballServer {
      */
     public void startThreadDisconnectMessages(PingballServer server) {
 
-        Thread disconnectMessages = new Thread(new Runnable() {
+        threads.execute(new Runnable() {
             public void run() {
                 try {
                     while (true) {
@@ -645,41 +1026,41 @@ public class PingballServer {
                         String sendMessageOverSocket = input; 
 
                         //handle connect and disconnect messages. 
-                        String[] tokens = sendMessageOverSocket.split(" "); 
+                        MessageTokenizer tokens = new MessageTokenizer(sendMessageOverSocket); 
 
-                        if (tokens[0].equals("Connected:")) {
+                        if (tokens.nextIs("Connected:")) {
                             for (ClientSocket socket: server.socketMap.keySet()) {
-                                socket.getOutputStream().println(sendMessageOverSocket); 
+                                send(socket, sendMessageOverSocket); 
                             }
 
-                        } else if (tokens[0].equals("Disconnected:")) {
+                        } else if (tokens.nextIs("Disconnected:")) {
                             for (ClientSocket socket: server.socketMap.keySet()) {
-                                socket.getOutputStream().println(sendMessageOverSocket); 
+                                send(socket, sendMessageOverSocket); 
                             }
 
-                        } else if (tokens[0].equals("disconnectwalls:")) {
+                        } else if (tokens.nextIs("disconnectwalls:")) {
                             for (ClientSocket socket: server.socketMap.keySet()) {
-                                socket.getOutputStream().println(sendMessageOverSocket); 
+                                send(socket, sendMessageOverSocket); 
                             }
 
                         } else {
-                            for (ClientSocket socket: server.socketMap.keySet()) {
-                                if (socket.getId().equals(tokens[3])) {
-                                    socket.getOutputStream().println(sendMessageOverSocket); 
-                                }
+                            // JoinWalls wall otherBoard thisBoard
+                            ClientSocket socket = server.getClientSocket(tokens.skip().skip().skip().next()); 
+                            if (socket != null) {
+                                send(socket, sendMessageOverSocket); 
                             }
                         }
                     }
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    if (!closed) {
+                        e.printStackTrace();
+                    }
                 } finally {
                     //socket.close();
                     System.out.println("Client disconnected.");
                 }
             }
-        });
-
-        disconnectMessages.start(); // start Thread 3
+        }); // start Thread 3
 
     }
 
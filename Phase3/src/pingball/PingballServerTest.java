@@ -0,0 +1,455 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import pingball.Messages.PingballServerMessage;
+
+public class PingballServerTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Methods: isBoardConnected(), getClientSocket()
+     * - Partitions:
+     *      - Client: not connected, connected without a name, named, renamed, disconnected
+     *      - Name: unique, taken over by a later client, null
+     *
+     * Method: route()
+     * - Partitions: GoodbyePortalBall to a connected board, to a board that isn't connected;
+     *               GoodbyeWallBall through a joined wall; malformed ball message
+     *
+     * Method: parseJoinCommand()
+     * - Partitions: h, v, other command; extra whitespace; bad name; too few, too many words
+     *
+     * Method: serve(), negotiating the wire protocol
+     * - Partitions: client offers the binary framing, client doesn't
+     *
+     * Method: handleHorizontalBoardJoins()
+     * - Partitions: both boards connected, one board missing
+     *
+     * Methods: close(), awaitTermination()
+     * - Partitions: serving with serve(), with serveNonBlocking(); clients connected, none;
+     *               ThreadMode PLATFORM, VIRTUAL (platform threads on a JDK without virtual threads)
+     *
+     * Methods: getMetrics(), registerMetricsMBean(), startMetricsEndpoint()
+     * - Partitions: ball passed between two boards; read as the ServerMetrics, through JMX, 
+     *               over HTTP; after close()
+     *
+     * The clients are real sockets on loopback, served by serve() on a daemon thread. Each test
+     * closes its server and client sockets when it ends, passing or not.
+     */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final BlockingQueue<PingballServerMessage> in = new LinkedBlockingQueue<PingballServerMessage>();
+    private final BlockingQueue<PingballServerMessage> out = new LinkedBlockingQueue<PingballServerMessage>();
+    private final BlockingQueue<PingballServerMessage> disconnect = new LinkedBlockingQueue<PingballServerMessage>();
+    // client sockets opened by connect(), closed by close()
+    private final List<Socket> clients = new ArrayList<Socket>();
+
+    // starts a server on a free port, serving on a daemon thread; the test closes it with close()
+    private PingballServer startServer() throws IOException {
+        PingballServer server = new PingballServer(0, in, out, disconnect);
+        Thread thread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    private Socket connect(PingballServer server, String boardName) throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        clients.add(socket);
+        if (boardName != null) {
+            new PrintWriter(socket.getOutputStream(), true).println("Set boardname: " + boardName);
+        }
+        return socket;
+    }
+
+    // closes the client sockets opened by connect(), then the server
+    private void close(PingballServer server) throws IOException {
+        try {
+            for (Socket client : clients) {
+                client.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    // waits until the board is or isn't connected, whichever is expected
+    private static void awaitConnected(PingballServer server, String boardName, boolean expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.isBoardConnected(boardName) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, server.isBoardConnected(boardName));
+    }
+
+    // serves the server with all of its threads, and checks that close() stops them and 
+    // disconnects the client
+    private void assertCloseStopsServer(ThreadMode threadMode, boolean nonBlocking) 
+            throws IOException, InterruptedException {
+        PingballServer server = new PingballServer(0, in, out, disconnect, threadMode);
+        server.startThreadSendMessages(server);
+        server.startThreadDisconnectMessages(server);
+        Thread serving = new Thread(() -> {
+            try {
+                if (nonBlocking) {
+                    server.serveNonBlocking();
+                } else {
+                    server.serve();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+        try (Socket socket = connect(server, "Alpha")) {
+            awaitConnected(server, "Alpha", true);
+            server.close();
+            assertTrue(server.isClosed());
+            serving.join(TIMEOUT_MILLIS);
+            assertFalse(serving.isAlive());
+            assertTrue(server.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            // the client sees the server hang up
+            socket.setSoTimeout((int) TIMEOUT_MILLIS);
+            InputStream input = socket.getInputStream();
+            try {
+                while (input.read() >= 0) {
+                    // skip anything sent before closing
+                }
+            } catch (IOException e) {
+                // reset by the server
+            }
+        }
+    }
+
+    //isBoardConnected(), getClientSocket()
+    @Test
+    public void testNamedClientIsIndexed() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            assertEquals("Alpha", server.getClientSocket("Alpha").getId());
+            assertFalse(server.isBoardConnected("Beta"));
+            assertNull(server.getClientSocket("Beta"));
+            assertFalse(server.isBoardConnected(null));
+            assertNull(server.getClientSocket(null));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testUnnamedClientIsNotIndexed() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            connect(server, null);
+            connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            assertFalse(server.isBoardConnected("null"));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testRenamedClientLosesOldName() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            Socket socket = connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            ClientSocket client = server.getClientSocket("Alpha");
+            new PrintWriter(socket.getOutputStream(), true).println("Set boardname: Beta");
+            awaitConnected(server, "Beta", true);
+            assertFalse(server.isBoardConnected("Alpha"));
+            assertSame(client, server.getClientSocket("Beta"));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testDisconnectedClientIsRemoved() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            Socket socket = connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            socket.close();
+            awaitConnected(server, "Alpha", false);
+            assertNull(server.getClientSocket("Alpha"));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testLaterClientTakesOverName() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            Socket first = connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            ClientSocket firstClient = server.getClientSocket("Alpha");
+            connect(server, "Alpha");
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (server.getClientSocket("Alpha") == firstClient && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            ClientSocket secondClient = server.getClientSocket("Alpha");
+            assertNotSame(firstClient, secondClient);
+            // the first client leaving doesn't unmap the second
+            first.close();
+            Thread.sleep(200);
+            assertSame(secondClient, server.getClientSocket("Alpha"));
+        } finally {
+            close(server);
+        }
+    }
+
+    //route()
+    @Test
+    public void testRoutePortalBallToConnectedBoard() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            connect(server, "Beta");
+            awaitConnected(server, "Beta", true);
+            server.route(new PingballServerMessage("Alpha", null, "GoodbyePortalBall Beta P 1.0 2.0 3.0 4.0"));
+            assertEquals("Beta", out.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getDestinationID());
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testRoutePortalBallToMissingBoard() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            server.route(new PingballServerMessage("Alpha", null, "GoodbyePortalBall Beta P 1.0 2.0 3.0 4.0"));
+            assertEquals("", out.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getDestinationID());
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testRouteWallBallThroughJoinedWall() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            server.linkHorizontally("Alpha", "Beta");
+            server.route(new PingballServerMessage("Alpha", null, "GoodbyeWallBall Alpha RIGHT 19.75 5.0 15.0 0.0"));
+            assertEquals("Beta", out.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getDestinationID());
+            server.route(new PingballServerMessage("Beta", null, "GoodbyeWallBall Beta LEFT 0.25 5.0 -15.0 0.0"));
+            assertEquals("Alpha", out.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getDestinationID());
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testRouteMalformedBallNowhere() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            server.linkHorizontally("Alpha", "Beta");
+            server.route(new PingballServerMessage("Alpha", null, "GoodbyeWallBall Alpha RIGHT x 5.0 15.0 0.0"));
+            assertNull(out.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getDestinationID());
+        } finally {
+            close(server);
+        }
+    }
+
+    //parseJoinCommand()
+    @Test
+    public void testParseJoinCommand() {
+        assertArrayEquals(new String[] {"h", "Alpha", "Beta"}, PingballServer.parseJoinCommand("h Alpha Beta"));
+        assertArrayEquals(new String[] {"v", "top_1", "_bottom"}, PingballServer.parseJoinCommand("  v\ttop_1   _bottom "));
+        assertNull(PingballServer.parseJoinCommand("x Alpha Beta"));
+        assertNull(PingballServer.parseJoinCommand("h 1Alpha Beta"));
+        assertNull(PingballServer.parseJoinCommand("h Alpha Be-ta"));
+        assertNull(PingballServer.parseJoinCommand("h Alpha"));
+        assertNull(PingballServer.parseJoinCommand("h Alpha Beta Gamma"));
+        assertNull(PingballServer.parseJoinCommand(""));
+    }
+
+    //serve(), negotiation
+    @Test
+    public void testBinaryOfferIsAccepted() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            Socket socket = connect(server, "Alpha " + WireProtocol.VERSION);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            assertEquals(WireProtocol.MARKER, reader.readLine());
+            awaitConnected(server, "Alpha", true);
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testNoOfferStaysText() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            Socket socket = connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            socket.setSoTimeout(200);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            try {
+                fail("expected no marker, got " + reader.readLine());
+            } catch (SocketTimeoutException e) {
+                // nothing sent
+            }
+        } finally {
+            close(server);
+        }
+    }
+
+    //close(), awaitTermination()
+    @Test
+    public void testCloseStopsServe() throws IOException, InterruptedException {
+        assertCloseStopsServer(ThreadMode.PLATFORM, false);
+    }
+
+    @Test
+    public void testCloseStopsServeNonBlocking() throws IOException, InterruptedException {
+        assertCloseStopsServer(ThreadMode.PLATFORM, true);
+    }
+
+    @Test
+    public void testCloseStopsServeOnVirtualThreads() throws IOException, InterruptedException {
+        assertCloseStopsServer(ThreadMode.VIRTUAL, false);
+    }
+
+    @Test
+    public void testCloseWithoutClients() throws IOException, InterruptedException {
+        PingballServer server = new PingballServer(0, in, out, disconnect, ThreadMode.PLATFORM);
+        server.startThreadSendMessages(server);
+        server.close();
+        assertTrue(server.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        // serving a closed server returns at once
+        server.serve();
+        server.serveNonBlocking();
+    }
+
+    @Test
+    public void testThreadModeThreads() throws InterruptedException {
+        for (ThreadMode mode : ThreadMode.values()) {
+            Thread thread = mode.threadFactory("worker").newThread(() -> {});
+            assertEquals("worker", thread.getName());
+            assertTrue(thread.isDaemon());
+            ExecutorService executor = mode.newExecutor("worker");
+            BlockingQueue<String> names = new LinkedBlockingQueue<String>();
+            executor.execute(() -> names.add(Thread.currentThread().getName()));
+            assertEquals("worker", names.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(ThreadMode.PLATFORM.isSupported());
+    }
+
+    //getMetrics(), registerMetricsMBean(), startMetricsEndpoint()
+    @Test
+    public void testMetricsCountRoutedBall() throws IOException, InterruptedException, JMException {
+        PingballServer server = startServer();
+        server.startThreadSendMessages(server);
+        MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = server.registerMetricsMBean();
+        int metricsPort = server.startMetricsEndpoint(0);
+        try {
+            Socket left = connect(server, "Alpha");
+            Socket right = connect(server, "Beta");
+            awaitConnected(server, "Alpha", true);
+            awaitConnected(server, "Beta", true);
+            server.linkHorizontally("Alpha", "Beta");
+            new PrintWriter(left.getOutputStream(), true).println("GoodbyeWallBall Alpha RIGHT 19.75 5.0 15.0 0.0");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(right.getInputStream()));
+            assertEquals("HelloWallBall LEFT 19.75 5.0 15.0 0.0", reader.readLine());
+
+            ServerMetrics metrics = server.getMetrics();
+            assertEquals(2, metrics.getConnections());
+            assertEquals(3, metrics.getMessagesIn());
+            assertEquals(Long.valueOf(1), metrics.getMessagesInByBoard().get("Alpha"));
+            assertEquals(Long.valueOf(1), metrics.getMessagesOutByBoard().get("Beta"));
+            assertEquals(1, metrics.getRouteLatencyCount());
+            // each line as it came over the wire, with its newline
+            assertEquals("Set boardname: Alpha\n".length() + "Set boardname: Beta\n".length()
+                    + "GoodbyeWallBall Alpha RIGHT 19.75 5.0 15.0 0.0\n".length(), metrics.getBytesIn());
+
+            assertEquals(2, beans.getAttribute(name, "Connections"));
+            assertEquals(1L, beans.getAttribute(name, "RouteLatencyCount"));
+
+            HttpURLConnection scrape = (HttpURLConnection) new URL(
+                    "http://localhost:" + metricsPort + "/metrics").openConnection();
+            assertEquals(200, scrape.getResponseCode());
+            String text;
+            try (InputStream body = scrape.getInputStream()) {
+                text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(text, text.contains("pingball_connections 2\n"));
+            assertTrue(text, text.contains("pingball_board_messages_in_total{board=\"Alpha\"} 1\n"));
+            assertTrue(text, text.contains("pingball_route_latency_seconds_count 1\n"));
+        } finally {
+            close(server);
+        }
+        assertFalse(beans.isRegistered(name));
+    }
+
+    //handleHorizontalBoardJoins()
+    @Test
+    public void testJoinConnectedBoards() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            connect(server, "Alpha");
+            connect(server, "Beta");
+            awaitConnected(server, "Alpha", true);
+            awaitConnected(server, "Beta", true);
+            assertTrue(server.handleHorizontalBoardJoins("Alpha", "Beta"));
+        } finally {
+            close(server);
+        }
+    }
+
+    @Test
+    public void testJoinMissingBoard() throws IOException, InterruptedException {
+        PingballServer server = startServer();
+        try {
+            connect(server, "Alpha");
+            awaitConnected(server, "Alpha", true);
+            assertFalse(server.handleHorizontalBoardJoins("Alpha", "Beta"));
+            assertFalse(server.handleVerticalBoardJoins("Beta", "Alpha"));
+        } finally {
+            close(server);
+        }
+    }
+}
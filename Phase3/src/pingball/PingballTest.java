@@ -0,0 +1,114 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.Test;
+
+public class PingballTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: startThreadListenMessages(), with startThreadBoardUpdate() applying what arrives
+     * - Partitions:
+     *      - Message: HelloWallBall, control message before it
+     *      - Clients in one JVM: one gets a ball, the other gets nothing
+     *
+     * Method: pause(), resume(), with startThreadBoardUpdate()
+     * - Partitions: before the update thread starts, racing its start
+     *
+     * Method: getProfile()
+     * - Partitions: connected client updating its board records its ticks and their phases
+     *
+     * The server is a ServerSocket on loopback that the test writes lines to.
+     */
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    // waits until the board holds the expected number of balls
+    private static void awaitBalls(Board board, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (board.getBalls().size() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, board.getBalls().size());
+    }
+
+    private static void stop(Pingball client) throws IOException {
+        client.getUpdateLoop().stop();
+        client.close();
+    }
+
+    //startThreadListenMessages()
+    @Test
+    public void testBallGoesOnlyToItsClient() throws IOException, InterruptedException {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Board alpha = new Board("Alpha");
+            Board beta = new Board("Beta");
+            Pingball alphaClient = new Pingball("localhost", server.getLocalPort(), alpha);
+            try (Socket alphaSocket = server.accept()) {
+                Pingball betaClient = new Pingball("localhost", server.getLocalPort(), beta);
+                // nothing is sent to beta; its end is kept only to be closed
+                Socket betaSocket = server.accept();
+                try {
+                    for (Pingball client : new Pingball[] {alphaClient, betaClient}) {
+                        client.startThreadListenMessages(client);
+                        client.startThreadBoardUpdate(client);
+                    }
+                    PrintWriter toAlpha = new PrintWriter(alphaSocket.getOutputStream(), true);
+                    toAlpha.println("Connected: Alpha Beta");
+                    toAlpha.println("HelloWallBall LEFT 0.5 10.0 0.0 0.0");
+                    awaitBalls(alpha, 1);
+                    Thread.sleep(200);
+                    assertEquals(0, beta.getBalls().size());
+                    TickProfile profile = alphaClient.getProfile();
+                    for (TickProfile.Phase phase : new TickProfile.Phase[] {TickProfile.Phase.TICK, 
+                            TickProfile.Phase.MESSAGES, TickProfile.Phase.UPDATE, TickProfile.Phase.SEND, TickProfile.Phase.MOVE}) {
+                        assertTrue(phase.name(), profile.getHistogram(phase).getCount() > 0);
+                    }
+                } finally {
+                    stop(betaClient);
+                    betaSocket.close();
+                }
+            } finally {
+                stop(alphaClient);
+            }
+        }
+    }
+
+    //pause(), resume()
+    @Test
+    public void testPauseBeforeBoardUpdate() {
+        Pingball client = new Pingball(new Board("Alpha"));
+        client.pause();
+        client.startThreadBoardUpdate(client);
+        try {
+            assertTrue(client.getUpdateLoop().isPaused());
+            client.resume();
+            assertFalse(client.getUpdateLoop().isPaused());
+        } finally {
+            client.getUpdateLoop().stop();
+        }
+    }
+
+    @Test
+    public void testPauseRacingBoardUpdate() throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            Pingball client = new Pingball(new Board("Alpha"));
+            Thread pauser = new Thread(client::pause);
+            pauser.start();
+            client.startThreadBoardUpdate(client);
+            pauser.join();
+            try {
+                assertTrue(client.getUpdateLoop().isPaused());
+            } finally {
+                client.getUpdateLoop().stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pingball;
+
+/**
+ * An enum for how much of a board's rep invariant is checked as the board is updated:
+ * OFF checks nothing, SAMPLED checks that balls are in bounds on every update and the whole
+ * invariant every few updates, and FULL checks the whole invariant on every update.
+ * Gadgets are checked once, as they are placed, in every mode.
+ */
+public enum RepCheckMode {
+    OFF, SAMPLED, FULL;
+
+    /**
+     * Gets the mode new boards start in, set with the system property pingball.checkrep
+     * (off, sampled or full); SAMPLED if the property isn't set or isn't recognized
+     * @return the default mode
+     */
+    public static RepCheckMode getDefault() {
+        String property = System.getProperty("pingball.checkrep", "sampled");
+        for (RepCheckMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(property)) {
+                return mode;
+            }
+        }
+        return SAMPLED;
+    }
+}
@@ -0,0 +1,237 @@
+package pingball;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A line-based server that serves all of its clients from a single thread with a
+ * java.nio Selector, instead of a blocked thread per client, so that it can hold thousands of
+ * mostly idle connections. Lines from clients are handed to a Handler on that thread; lines
+ * to clients can be sent from any thread with NioConnection.send().
+ *
+ * A client's outgoing lines are buffered until its socket can take them, and the server only
+ * waits for a socket to be writable while it has something queued. While a client has more than
+ * HIGH_WATER_BYTES waiting to be sent to it, the server stops reading from it, until the backlog
+ * falls under LOW_WATER_BYTES.
+ * The class is mutable.
+ */
+public class SelectorServer {
+
+    /* Thread Safety Argument
+     *
+     * serve() runs on one thread, the selector thread, and is the only code that touches the
+     * selector, the selection keys and the set of connections; the handler is only called on it.
+     * Other threads only call NioConnection.send(), which reaches this class through
+     * requestWrite(), and close(); both put their request on a concurrent queue or set a
+     * volatile flag, then wake the selector so the selector thread acts on it.
+     */
+
+    // Abstraction function:
+    //      represents a server accepting clients on serverChannel and exchanging lines with the
+    //      clients in connections, reporting them to handler. writeRequests holds the connections
+    //      that have had lines queued since the selector thread last looked at them.
+    // Rep invariant:
+    //      every connection in connections is open and registered with selector
+    //
+
+    /**
+     * What a SelectorServer does with its clients. All methods are called on the selector thread.
+     */
+    public interface Handler {
+        /**
+         * Called when a client connects
+         * @param connection the new connection
+         */
+        public void connected(NioConnection connection);
+
+        /**
+         * Called for each line a client sends
+         * @param connection the client's connection
+         * @param line the line, without its line terminator
+         */
+        public void lineReceived(NioConnection connection, String line);
+
+        /**
+         * Called once when a client's connection is closed, by either end
+         * @param connection the closed connection
+         */
+        public void disconnected(NioConnection connection);
+    }
+
+    // most bytes queued for a client before the server stops reading from it
+    static final long HIGH_WATER_BYTES = 256 * 1024;
+    // the server reads from a client again once fewer bytes than this are queued for it
+    static final long LOW_WATER_BYTES = 64 * 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Handler handler;
+    private final Selector selector;
+    private final Set<NioConnection> connections = new LinkedHashSet<NioConnection>();
+    private final Queue<NioConnection> writeRequests = new ConcurrentLinkedQueue<NioConnection>();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor for SelectorServer
+     * @param serverChannel a bound channel to accept clients on; it is made non-blocking
+     * @param handler what to do with the clients
+     * @throws IOException if the selector can't be opened
+     */
+    public SelectorServer(ServerSocketChannel serverChannel, Handler handler) throws IOException {
+        this.serverChannel = serverChannel;
+        this.handler = handler;
+        this.selector = Selector.open();
+        checkRep();
+    }
+
+    /**
+     * Serves clients on the calling thread until close() is called
+     * @throws IOException if the server channel or the selector fails
+     */
+    public void serve() throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        try {
+            while (!closed) {
+                selector.select();
+                handleWriteRequests();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isReadable() && !connection.read()) {
+                                disconnect(connection);
+                                continue;
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(connection);
+                            }
+                        } catch (IOException e) {
+                            disconnect(connection);
+                        }
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // closed while selecting
+        } finally {
+            for (NioConnection connection : new ArrayList<NioConnection>(connections)) {
+                disconnect(connection);
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops serving; serve() disconnects every client and returns. May be called from any thread.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Gets the number of connected clients; only accurate on the selector thread
+     * @return the number of connections
+     */
+    public int getNumberOfConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Asks the selector thread to start writing a connection's queued lines. May be called from any thread.
+     * @param connection a connection of this server with lines queued
+     */
+    void requestWrite(NioConnection connection) {
+        writeRequests.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Hands a line from a client to the handler
+     * @param connection the client's connection
+     * @param line the line
+     */
+    void lineReceived(NioConnection connection, String line) {
+        handler.lineReceived(connection, line);
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        NioConnection connection = new NioConnection(this, channel);
+        connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        connections.add(connection);
+        checkRep();
+        handler.connected(connection);
+    }
+
+    /**
+     * Starts waiting for the sockets of connections with newly queued lines to become writable,
+     * and stops reading from clients that have too much waiting for them
+     */
+    private void handleWriteRequests() {
+        NioConnection connection;
+        while ((connection = writeRequests.poll()) != null) {
+            connection.clearWriteRequest();
+            SelectionKey key = connection.getKey();
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+            int interest = key.interestOps() | SelectionKey.OP_WRITE;
+            if (connection.getPendingBytes() > HIGH_WATER_BYTES) {
+                interest &= ~SelectionKey.OP_READ;
+            }
+            key.interestOps(interest);
+        }
+    }
+
+    private void flush(NioConnection connection) throws IOException {
+        SelectionKey key = connection.getKey();
+        int interest = key.interestOps();
+        if (connection.flush()) {
+            interest &= ~SelectionKey.OP_WRITE;
+        }
+        if (connection.getPendingBytes() < LOW_WATER_BYTES) {
+            interest |= SelectionKey.OP_READ;
+        }
+        key.interestOps(interest);
+        // a line queued after the flush but before OP_WRITE was cleared has already been
+        // requested, so handleWriteRequests() turns OP_WRITE back on
+    }
+
+    private void disconnect(NioConnection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        connection.close();
+        handler.disconnected(connection);
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        for (NioConnection connection : connections) {
+            assert !connection.isClosed();
+        }
+    }
+}
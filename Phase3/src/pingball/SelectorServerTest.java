@@ -0,0 +1,250 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SelectorServerTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: serve(), through an echo handler over loopback
+     * - Partitions:
+     *      - Lines: whole in one write, split across writes, several in one write
+     *      - Terminators: \n, \r\n, \r, none before the end of the stream, each counted in
+     *                     NioConnection.getLastLineBytes()
+     *      - Clients: one, several at once
+     *      - Disconnection: by the client, by close()
+     *
+     * Method: NioConnection.send()
+     * - Partitions: reply from the selector thread, burst larger than HIGH_WATER_BYTES to a slow reader
+     */
+
+    private static final long TIMEOUT = 5;
+
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+    private final BlockingQueue<Integer> receivedBytes = new LinkedBlockingQueue<Integer>();
+    private final BlockingQueue<NioConnection> disconnected = new LinkedBlockingQueue<NioConnection>();
+    private final BlockingQueue<NioConnection> connected = new LinkedBlockingQueue<NioConnection>();
+    private SelectorServer server;
+    private Thread serverThread;
+    private int port;
+
+    // starts an echo server on a free port, on its own thread
+    private void startServer() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress("localhost", 0));
+        port = channel.socket().getLocalPort();
+        server = new SelectorServer(channel, new SelectorServer.Handler() {
+            public void connected(NioConnection connection) {
+                connected.add(connection);
+            }
+
+            public void lineReceived(NioConnection connection, String line) {
+                receivedBytes.add(connection.getLastLineBytes());
+                received.add(line);
+                connection.send("echo " + line);
+            }
+
+            public void disconnected(NioConnection connection) {
+                disconnected.add(connection);
+            }
+        });
+        serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+    }
+
+    // stops the server started by startServer() and waits for it to finish
+    private void stopServer() throws InterruptedException {
+        server.close();
+        serverThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(serverThread.isAlive());
+    }
+
+    private static void write(Socket socket, String text) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private String nextLine() throws InterruptedException {
+        return received.poll(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    //serve(), lines
+    @Test
+    public void testServeWholeLine() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                write(socket, "Set boardname: Alpha\n");
+                assertEquals("Set boardname: Alpha", nextLine());
+                assertEquals("echo Set boardname: Alpha", reader(socket).readLine());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    @Test
+    public void testServeLineSplitAcrossWrites() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                write(socket, "Alpha Be");
+                Thread.sleep(100);
+                assertTrue(received.isEmpty());
+                write(socket, "ta 1.0 2.0\n");
+                assertEquals("Alpha Beta 1.0 2.0", nextLine());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    @Test
+    public void testServeSeveralLinesAndTerminators() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                write(socket, "one\r\ntwo\rthree\n\nfour");
+                assertEquals("one", nextLine());
+                assertEquals("two", nextLine());
+                assertEquals("three", nextLine());
+                assertEquals("", nextLine());
+                socket.shutdownOutput();
+                assertEquals("four", nextLine());
+            }
+            // the \n after a \r is counted with the next line
+            for (int bytes : new int[] {4, 5, 6, 1, 4}) {
+                assertEquals(Integer.valueOf(bytes), receivedBytes.poll(TIMEOUT, TimeUnit.SECONDS));
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    @Test
+    public void testServeCrSplitFromLf() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                write(socket, "one\r");
+                assertEquals("one", nextLine());
+                Thread.sleep(100);
+                write(socket, "\ntwo\n");
+                assertEquals("two", nextLine());
+                Thread.sleep(100);
+                assertTrue(received.isEmpty());
+            }
+            assertEquals(Integer.valueOf(4), receivedBytes.poll(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(5), receivedBytes.poll(TIMEOUT, TimeUnit.SECONDS));
+        } finally {
+            stopServer();
+        }
+    }
+
+    //serve(), clients and disconnection
+    @Test
+    public void testServeSeveralClients() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket first = new Socket("localhost", port); Socket second = new Socket("localhost", port)) {
+                write(first, "first\n");
+                write(second, "second\n");
+                assertEquals("echo first", reader(first).readLine());
+                assertEquals("echo second", reader(second).readLine());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    @Test
+    public void testServeClientDisconnects() throws IOException, InterruptedException {
+        startServer();
+        try {
+            Socket socket = new Socket("localhost", port);
+            NioConnection connection = connected.poll(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(connection);
+            socket.close();
+            assertSame(connection, disconnected.poll(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(connection.isClosed());
+        } finally {
+            stopServer();
+        }
+    }
+
+    @Test
+    public void testCloseDisconnectsClients() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                NioConnection connection = connected.poll(TIMEOUT, TimeUnit.SECONDS);
+                assertNotNull(connection);
+                server.close();
+                assertSame(connection, disconnected.poll(TIMEOUT, TimeUnit.SECONDS));
+                assertNull(reader(socket).readLine());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+
+    //send()
+    @Test
+    public void testSendBurstToSlowReader() throws IOException, InterruptedException {
+        startServer();
+        try {
+            try (Socket socket = new Socket("localhost", port)) {
+                NioConnection connection = connected.poll(TIMEOUT, TimeUnit.SECONDS);
+                assertNotNull(connection);
+                String line = "Alpha Beta 10.25 10.25 3.0 4.0 Beta right";
+                int count = (int) (2 * SelectorServer.HIGH_WATER_BYTES / line.length());
+                for (int i = 0; i < count; i++) {
+                    connection.send(line);
+                }
+                Thread.sleep(100);
+                BufferedReader in = reader(socket);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(line, in.readLine());
+                }
+                // the server reads from the client again once the backlog is written
+                write(socket, "done\n");
+                assertEquals("done", nextLine());
+                assertEquals("echo done", in.readLine());
+                // the count is lowered just after the write that the reader may already have seen
+                long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+                while (connection.getPendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(5);
+                }
+                assertEquals(0, connection.getPendingBytes());
+            }
+        } finally {
+            stopServer();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package pingball;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Counts what a PingballServer receives and sends, per board and in total, and how long balls
+ * take to pass through it, cheaply enough to be left on: recording a message adds to a few
+ * LongAdders. Queue depths and the number of connections are read from the server when the
+ * metrics are read. The metrics can be read through JMX, as a ServerMetricsMXBean, or as text
+ * in the Prometheus exposition format with toText().
+ * The class is mutable.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    /* Thread Safety Argument
+     *
+     * The server's reading threads call received(), its sending threads call sent() and
+     * routed(), the clients' writers call sentBytes(), and JMX and the scrape endpoint read the metrics at the same time. Every count
+     * is a LongAdder or in a Histogram, which are thread-safe; the counts of each board are
+     * created at most once by the ConcurrentMap's computeIfAbsent(). The suppliers are only
+     * given thread-safe reads, like the size of a concurrent queue or map. Reads may see a
+     * message counted in one total but not yet in another, which is fine for metrics.
+     */
+
+    // Abstraction function:
+    //      represents the traffic of a server: boards.get(b) counts the lines and bytes
+    //      received from and sent to the client of board b since it connected, the other
+    //      LongAdders count them over all clients since the server started, routeLatency holds
+    //      the nanoseconds each ball routed took, and the suppliers read the server's gauges
+    // Rep invariant:
+    //      no field is null
+    //
+
+    /**
+     * The counts of one board
+     */
+    private static class BoardCounters {
+        private final LongAdder messagesIn = new LongAdder();
+        private final LongAdder messagesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+    }
+
+    private static final long NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final IntSupplier connections;
+    private final IntSupplier inQueueDepth;
+    private final IntSupplier outQueueDepth;
+    private final IntSupplier disconnectQueueDepth;
+
+    private final ConcurrentMap<String, BoardCounters> boards = new ConcurrentHashMap<>();
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final Histogram routeLatency = new Histogram();
+
+    /**
+     * Makes metrics with nothing counted yet
+     * @param connections reads the number of clients connected
+     * @param inQueueDepth reads the number of messages in the server's in queue
+     * @param outQueueDepth reads the number of messages in the server's out queue
+     * @param disconnectQueueDepth reads the number of messages in the server's disconnect queue
+     */
+    public ServerMetrics(IntSupplier connections, IntSupplier inQueueDepth,
+            IntSupplier outQueueDepth, IntSupplier disconnectQueueDepth) {
+        this.connections = connections;
+        this.inQueueDepth = inQueueDepth;
+        this.outQueueDepth = outQueueDepth;
+        this.disconnectQueueDepth = disconnectQueueDepth;
+        checkRep();
+    }
+
+    /**
+     * Counts a message received from a client
+     * @param board the client's board name, or null if it hasn't set one
+     * @param bytes the number of bytes the message took on the wire, as counted by the reader
+     *        that decoded it
+     */
+    public void received(String board, long bytes) {
+        messagesIn.increment();
+        bytesIn.add(bytes);
+        if (board != null) {
+            BoardCounters counters = counters(board);
+            counters.messagesIn.increment();
+            counters.bytesIn.add(bytes);
+        }
+    }
+
+    /**
+     * Counts a message sent to a client. Its bytes are counted by sentBytes() once the
+     * client's writer has encoded and written it, since a writer may write several at once.
+     * @param board the client's board name, or null if it hasn't set one
+     */
+    public void sent(String board) {
+        messagesOut.increment();
+        if (board != null) {
+            counters(board).messagesOut.increment();
+        }
+    }
+
+    /**
+     * Counts bytes written to a client
+     * @param board the client's board name, or null if it hasn't set one
+     * @param bytes the number of bytes written, as counted by the writer that encoded them
+     */
+    public void sentBytes(String board, long bytes) {
+        bytesOut.add(bytes);
+        if (board != null) {
+            counters(board).bytesOut.add(bytes);
+        }
+    }
+
+    /**
+     * Records how long a ball took to pass through the server
+     * @param receivedNanos System.nanoTime() when the message of the ball leaving its board
+     *        was received; the ball is taken to have been sent on now
+     */
+    public void routed(long receivedNanos) {
+        routeLatency.record(System.nanoTime() - receivedNanos);
+    }
+
+    /**
+     * Forgets the counts of a board, once its client has gone, so that the metrics don't grow
+     * with every board that has ever connected. The totals still include them.
+     * @param board the board name
+     */
+    public void removeBoard(String board) {
+        boards.remove(board);
+    }
+
+    /**
+     * Gets the times balls took to pass through the server
+     * @return the histogram of times, in nanoseconds
+     */
+    public Histogram getRouteLatency() {
+        return routeLatency;
+    }
+
+    @Override
+    public int getConnections() {
+        return connections.getAsInt();
+    }
+
+    @Override
+    public int getInQueueDepth() {
+        return inQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getOutQueueDepth() {
+        return outQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getDisconnectQueueDepth() {
+        return disconnectQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return messagesIn.sum();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        return messagesOut.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMessagesInByBoard() {
+        Map<String, Long> byBoard = new TreeMap<>();
+        boards.forEach((board, counters) -> byBoard.put(board, counters.messagesIn.sum()));
+        return byBoard;
+    }
+
+    @Override
+    public Map<String, Long> getMessagesOutByBoard() {
+        Map<String, Long> byBoard = new TreeMap<>();
+        boards.forEach((board, counters) -> byBoard.put(board, counters.messagesOut.sum()));
+        return byBoard;
+    }
+
+    @Override
+    public long getRouteLatencyCount() {
+        return routeLatency.getCount();
+    }
+
+    @Override
+    public double getRouteLatencyMeanMicros() {
+        return routeLatency.getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getRouteLatencyP50Micros() {
+        return routeLatency.getPercentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getRouteLatencyP99Micros() {
+        return routeLatency.getPercentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public long getRouteLatencyMaxMicros() {
+        return routeLatency.getMax() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format
+     * @return the metrics, one sample per line, each line ending in a newline
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        gauge(text, "pingball_connections", "Clients connected.");
+        sample(text, "pingball_connections", "", getConnections());
+
+        gauge(text, "pingball_queue_depth", "Messages waiting in a server queue.");
+        sample(text, "pingball_queue_depth", label("queue", "in"), getInQueueDepth());
+        sample(text, "pingball_queue_depth", label("queue", "out"), getOutQueueDepth());
+        sample(text, "pingball_queue_depth", label("queue", "disconnect"), getDisconnectQueueDepth());
+
+        counter(text, "pingball_messages_in_total", "Lines received from clients.", getMessagesIn());
+        counter(text, "pingball_messages_out_total", "Lines sent to clients.", getMessagesOut());
+        counter(text, "pingball_bytes_in_total", "Bytes received from clients.", getBytesIn());
+        counter(text, "pingball_bytes_out_total", "Bytes sent to clients.", getBytesOut());
+
+        Map<String, BoardCounters> byBoard = new TreeMap<>(boards);
+        boardCounter(text, "pingball_board_messages_in_total", "Lines received from a board.", byBoard, c -> c.messagesIn);
+        boardCounter(text, "pingball_board_messages_out_total", "Lines sent to a board.", byBoard, c -> c.messagesOut);
+        boardCounter(text, "pingball_board_bytes_in_total", "Bytes received from a board.", byBoard, c -> c.bytesIn);
+        boardCounter(text, "pingball_board_bytes_out_total", "Bytes sent to a board.", byBoard, c -> c.bytesOut);
+
+        String latency = "pingball_route_latency_seconds";
+        text.append("# HELP ").append(latency).append(" Time from a ball leaving a board to it being sent on.\n");
+        text.append("# TYPE ").append(latency).append(" summary\n");
+        for (double quantile : QUANTILES) {
+            sample(text, latency, label("quantile", Double.toString(quantile)),
+                    routeLatency.getPercentile(quantile * 100) / NANOS_PER_SECOND);
+        }
+        sample(text, latency + "_sum", "", routeLatency.getSum() / NANOS_PER_SECOND);
+        sample(text, latency + "_count", "", routeLatency.getCount());
+        return text.toString();
+    }
+
+    // the counts of board, made if it has none yet
+    private BoardCounters counters(String board) {
+        return boards.computeIfAbsent(board, b -> new BoardCounters());
+    }
+
+    private static void gauge(StringBuilder text, String name, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        sample(text, name, "", value);
+    }
+
+    private static void boardCounter(StringBuilder text, String name, String help,
+            Map<String, BoardCounters> byBoard, Function<BoardCounters, LongAdder> count) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, BoardCounters> entry : byBoard.entrySet()) {
+            sample(text, name, label("board", entry.getKey()), count.apply(entry.getValue()).sum());
+        }
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, long value) {
+        text.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    // {name="value"}, with the value escaped as the exposition format requires
+    private static String label(String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{" + name + "=\"" + escaped + "\"}";
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert connections != null && inQueueDepth != null && outQueueDepth != null
+                && disconnectQueueDepth != null;
+    }
+}
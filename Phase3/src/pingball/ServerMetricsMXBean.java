@@ -0,0 +1,86 @@
+package pingball;
+
+import java.util.Map;
+
+/**
+ * The view of a PingballServer's ServerMetrics registered with JMX, so that jconsole and other
+ * JMX clients can read it. Counts are totals since the server started; a rate is the change in
+ * a count between two reads.
+ */
+public interface ServerMetricsMXBean {
+
+    /**
+     * @return number of clients connected
+     */
+    int getConnections();
+
+    /**
+     * @return number of messages waiting in the server's in queue
+     */
+    int getInQueueDepth();
+
+    /**
+     * @return number of messages waiting to be routed to a client
+     */
+    int getOutQueueDepth();
+
+    /**
+     * @return number of connect, disconnect and join messages waiting to be sent
+     */
+    int getDisconnectQueueDepth();
+
+    /**
+     * @return number of lines received from clients
+     */
+    long getMessagesIn();
+
+    /**
+     * @return number of lines sent to clients
+     */
+    long getMessagesOut();
+
+    /**
+     * @return number of bytes received from clients, as read off the wire
+     */
+    long getBytesIn();
+
+    /**
+     * @return number of bytes sent to clients, as written to the wire
+     */
+    long getBytesOut();
+
+    /**
+     * @return board name -> number of lines received from the board's client
+     */
+    Map<String, Long> getMessagesInByBoard();
+
+    /**
+     * @return board name -> number of lines sent to the board's client
+     */
+    Map<String, Long> getMessagesOutByBoard();
+
+    /**
+     * @return number of balls passed from one board to another
+     */
+    long getRouteLatencyCount();
+
+    /**
+     * @return mean time, in microseconds, from a ball leaving a board to it being sent on
+     */
+    double getRouteLatencyMeanMicros();
+
+    /**
+     * @return median time, in microseconds, from a ball leaving a board to it being sent on
+     */
+    long getRouteLatencyP50Micros();
+
+    /**
+     * @return 99th percentile time, in microseconds, from a ball leaving a board to it being sent on
+     */
+    long getRouteLatencyP99Micros();
+
+    /**
+     * @return longest time, in microseconds, from a ball leaving a board to it being sent on
+     */
+    long getRouteLatencyMaxMicros();
+}
@@ -0,0 +1,138 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ServerMetricsTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Methods: received(), sent(), sentBytes(), getters
+     * - Partitions:
+     *      - Board: named, null (counted only in the totals)
+     *      - Lines: none, one, several per board
+     *      - Bytes sent: counted with the message, later, for several messages at once
+     *
+     * Method: routed(), route latency getters
+     * - Partitions: no balls routed, one
+     *
+     * Method: removeBoard()
+     * - Partitions: board with counts, board without
+     *
+     * Method: getters of the gauges
+     * - Partitions: value read when the metrics are read, not when they are made
+     *
+     * Method: toText()
+     * - Partitions: nothing counted; boards counted; board name needing escaping
+     */
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private ServerMetrics makeMetrics() {
+        return new ServerMetrics(connections::get, () -> 1, () -> 2, () -> 3);
+    }
+
+    //received(), sent()
+    @Test
+    public void testNothingCounted() {
+        ServerMetrics metrics = makeMetrics();
+        assertEquals(0, metrics.getMessagesIn());
+        assertEquals(0, metrics.getBytesOut());
+        assertTrue(metrics.getMessagesInByBoard().isEmpty());
+        assertEquals(0, metrics.getRouteLatencyCount());
+        assertEquals(0, metrics.getRouteLatencyP99Micros());
+    }
+
+    @Test
+    public void testCountsPerBoard() {
+        ServerMetrics metrics = makeMetrics();
+        metrics.received("Alpha", 8);
+        metrics.received("Alpha", 8);
+        metrics.received(null, 20);
+        metrics.sent("Beta");
+        assertEquals(3, metrics.getMessagesIn());
+        assertEquals(8 + 8 + 20, metrics.getBytesIn());
+        assertEquals(1, metrics.getMessagesOut());
+        assertEquals(0, metrics.getBytesOut());
+        metrics.sentBytes("Beta", 35);
+        assertEquals(35, metrics.getBytesOut());
+        assertEquals(Long.valueOf(2), metrics.getMessagesInByBoard().get("Alpha"));
+        assertEquals(Long.valueOf(0), metrics.getMessagesInByBoard().get("Beta"));
+        assertEquals(Long.valueOf(1), metrics.getMessagesOutByBoard().get("Beta"));
+    }
+
+    @Test
+    public void testBytesSentTogether() {
+        ServerMetrics metrics = makeMetrics();
+        metrics.sent("Beta");
+        metrics.sent("Beta");
+        metrics.sent(null);
+        metrics.sentBytes("Beta", 74);
+        metrics.sentBytes(null, 9);
+        assertEquals(3, metrics.getMessagesOut());
+        assertEquals(74 + 9, metrics.getBytesOut());
+        assertEquals(Long.valueOf(2), metrics.getMessagesOutByBoard().get("Beta"));
+        assertTrue(metrics.toText().contains("pingball_board_bytes_out_total{board=\"Beta\"} 74\n"));
+    }
+
+    //removeBoard()
+    @Test
+    public void testRemoveBoardKeepsTotals() {
+        ServerMetrics metrics = makeMetrics();
+        metrics.received("Alpha", 8);
+        metrics.removeBoard("Alpha");
+        metrics.removeBoard("Beta");
+        assertTrue(metrics.getMessagesInByBoard().isEmpty());
+        assertEquals(1, metrics.getMessagesIn());
+    }
+
+    //routed()
+    @Test
+    public void testRouted() {
+        ServerMetrics metrics = makeMetrics();
+        metrics.routed(System.nanoTime());
+        assertEquals(1, metrics.getRouteLatencyCount());
+        assertTrue(metrics.getRouteLatencyMaxMicros() >= 0);
+        assertTrue(metrics.getRouteLatency().getSum() >= 0);
+    }
+
+    //gauges
+    @Test
+    public void testGaugesAreReadLive() {
+        ServerMetrics metrics = makeMetrics();
+        assertEquals(0, metrics.getConnections());
+        connections.set(4);
+        assertEquals(4, metrics.getConnections());
+        assertEquals(1, metrics.getInQueueDepth());
+        assertEquals(2, metrics.getOutQueueDepth());
+        assertEquals(3, metrics.getDisconnectQueueDepth());
+    }
+
+    //toText()
+    @Test
+    public void testTextOfEmptyMetrics() {
+        String text = makeMetrics().toText();
+        assertTrue(text, text.contains("# TYPE pingball_connections gauge\npingball_connections 0\n"));
+        assertTrue(text, text.contains("pingball_queue_depth{queue=\"out\"} 2\n"));
+        assertTrue(text, text.contains("pingball_messages_in_total 0\n"));
+        assertTrue(text, text.contains("pingball_route_latency_seconds{quantile=\"0.99\"} 0.0\n"));
+        assertTrue(text, text.contains("pingball_route_latency_seconds_count 0\n"));
+        assertFalse(text, text.contains("board="));
+        assertTrue(text.endsWith("\n"));
+    }
+
+    @Test
+    public void testTextOfBoards() {
+        ServerMetrics metrics = makeMetrics();
+        metrics.received("Alpha", 8);
+        metrics.sent("Be\"ta");
+        String text = metrics.toText();
+        assertTrue(text, text.contains("pingball_board_messages_in_total{board=\"Alpha\"} 1\n"));
+        assertTrue(text, text.contains("pingball_board_bytes_in_total{board=\"Alpha\"} 8\n"));
+        assertTrue(text, text.contains("pingball_board_messages_out_total{board=\"Be\\\"ta\"} 1\n"));
+    }
+}
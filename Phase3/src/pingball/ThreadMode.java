@@ -0,0 +1,122 @@
+package pingball;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An enum for the kind of threads servers and clients run their blocking I/O on: PLATFORM
+ * threads, each backed by a thread of the operating system, or VIRTUAL threads, which are
+ * cheap enough to block one per connection by the hundred thousand. Virtual threads need a
+ * JDK that has them (21 or later); on an older JDK, VIRTUAL runs on platform threads.
+ */
+public enum ThreadMode {
+    PLATFORM, VIRTUAL;
+
+    /**
+     * Looks up the virtual thread API of the running JDK, so that this compiles on JDKs
+     * without it
+     */
+    private static class VirtualThreads {
+        // Thread.ofVirtual(), Thread.Builder.name(String), Thread.Builder.factory(),
+        // Executors.newThreadPerTaskExecutor(ThreadFactory); all null if the JDK has no virtual threads
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method FACTORY;
+        private static final Method PER_TASK_EXECUTOR;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method factory = null;
+            Method perTaskExecutor = null;
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class);
+                factory = builder.getMethod("factory");
+                perTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                // no virtual threads
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            FACTORY = factory;
+            PER_TASK_EXECUTOR = perTaskExecutor;
+        }
+
+        private static ThreadFactory factory(String threadName) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), threadName);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("can't make virtual threads", e);
+            }
+        }
+
+        private static ExecutorService perTaskExecutor(ThreadFactory factory) {
+            try {
+                return (ExecutorService) PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("can't make virtual threads", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the mode servers and clients start with, set with the system property
+     * pingball.threads (platform or virtual); PLATFORM if the property isn't set or
+     * isn't recognized
+     * @return the default mode
+     */
+    public static ThreadMode getDefault() {
+        String property = System.getProperty("pingball.threads", "platform");
+        for (ThreadMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(property)) {
+                return mode;
+            }
+        }
+        return PLATFORM;
+    }
+
+    /**
+     * Tells whether threads made in this mode are really of its kind
+     * @return false for VIRTUAL on a JDK without virtual threads, true otherwise
+     */
+    public boolean isSupported() {
+        return this == PLATFORM || VirtualThreads.OF_VIRTUAL != null;
+    }
+
+    /**
+     * Makes a factory for threads of this mode. Its threads don't keep the JVM running.
+     * @param name the name of the threads it makes
+     * @return the factory; unstarted threads from it may be renamed before they start
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (this == VIRTUAL && isSupported()) {
+            return VirtualThreads.factory(name);
+        }
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Makes an executor that runs each task on a thread of this mode, starting a thread for
+     * every task if the earlier ones are all busy, so that tasks may block for as long as they
+     * like. Idle platform threads are kept for a while to be reused; virtual threads aren't.
+     * @param name the name of the executor's threads
+     * @return the executor; shutdownNow() interrupts its tasks
+     */
+    public ExecutorService newExecutor(String name) {
+        if (this == VIRTUAL && isSupported()) {
+            return VirtualThreads.perTaskExecutor(threadFactory(name));
+        }
+        return Executors.newCachedThreadPool(threadFactory(name));
+    }
+}
@@ -0,0 +1,263 @@
+package pingball;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a Pingball client spends the time of each tick and each frame, kept as one Histogram
+ * of nanoseconds per phase, cheaply enough to be left on. The update thread times its phases
+ * with Laps, the panel times its repaints, and the times can be read through JMX, as a
+ * TickProfileMXBean, or as a status line with toStatusLine().
+ * The class is mutable.
+ */
+public class TickProfile implements TickProfileMXBean {
+
+    /* Thread Safety Argument
+     *
+     * The update thread records the phases of each tick and the event dispatch thread records
+     * the repaints, while JMX and the status line read them. Every time is recorded into a
+     * Histogram, which is thread-safe, and the array of histograms is never changed after
+     * construction. A Laps is confined to the thread that times with it.
+     */
+
+    // Abstraction function:
+    //      represents the times spent in each phase: histograms[p.ordinal()] holds the
+    //      nanoseconds each time phase p took
+    // Rep invariant:
+    //      histograms.length == Phase.values().length, and no histogram is null
+    //
+
+    /**
+     * A part of a tick or frame that is timed
+     */
+    public enum Phase {
+        /** a whole tick of the update thread: MESSAGES, UPDATE and SEND */
+        TICK,
+        /** applying the messages from the server to the board */
+        MESSAGES,
+        /** Board.update(), made up of the ISLANDS, CORNERS, WALLS, BALL_BALL, GADGETS and MOVE
+         *  phases unless the board is event-driven */
+        UPDATE,
+        /** splitting the balls into islands that can't touch each other */
+        ISLANDS,
+        /** collisions of balls with the corners of the board */
+        CORNERS,
+        /** collisions of balls with the walls of the board */
+        WALLS,
+        /** collisions of balls with each other */
+        BALL_BALL,
+        /** collisions of balls with gadgets, and gadgets moving */
+        GADGETS,
+        /** balls moving under gravity and friction */
+        MOVE,
+        /** sending the messages about balls leaving to the server */
+        SEND,
+        /** painting the board */
+        REPAINT,
+        /** the time from one painting of the board to the next */
+        FRAME
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+    // the phases shown in the status line, from the outside in
+    private static final Phase[] STATUS_PHASES = {Phase.FRAME, Phase.REPAINT, Phase.TICK,
+            Phase.UPDATE, Phase.MESSAGES, Phase.SEND};
+
+    private final Histogram[] histograms = new Histogram[PHASES.length];
+
+    /**
+     * Times the phases of one thread, adding up the time of each phase over a tick and
+     * recording the totals when the tick is done, so that a phase that is split over many
+     * balls is recorded once per tick. Laps made with no profile time nothing, and cost a
+     * field read per call.
+     * The class is mutable, and not thread-safe.
+     */
+    public static class Laps {
+        // Abstraction function:
+        //      represents a tick in progress since start(), in which phase p has so far taken
+        //      sums[p.ordinal()] nanoseconds if lapped[p.ordinal()], and the current lap
+        //      started at System.nanoTime() == last; times nothing if profile is null
+        // Rep invariant:
+        //      sums.length == lapped.length == Phase.values().length
+        //
+
+        /** Laps that time nothing */
+        public static final Laps OFF = new Laps(null);
+
+        private final TickProfile profile;
+        private final long[] sums = new long[PHASES.length];
+        private final boolean[] lapped = new boolean[PHASES.length];
+        private long last;
+
+        private Laps(TickProfile profile) {
+            this.profile = profile;
+            checkRep();
+        }
+
+        /**
+         * Starts the first lap of a tick
+         */
+        public void start() {
+            if (profile != null) {
+                last = System.nanoTime();
+            }
+        }
+
+        /**
+         * Ends the current lap, adding its time to a phase, and starts the next
+         * @param phase the phase the lap was spent in
+         */
+        public void lap(Phase phase) {
+            if (profile == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            sums[phase.ordinal()] += now - last;
+            lapped[phase.ordinal()] = true;
+            last = now;
+        }
+
+        /**
+         * Ends the current lap without adding its time to any phase, and starts the next
+         */
+        public void skip() {
+            start();
+        }
+
+        /**
+         * Ends the tick, recording the time of each phase lapped in it
+         * @return the total time of the phases lapped, in nanoseconds
+         */
+        public long finish() {
+            if (profile == null) {
+                return 0;
+            }
+            long total = 0;
+            for (int i = 0; i < PHASES.length; i++) {
+                if (lapped[i]) {
+                    profile.histograms[i].record(sums[i]);
+                    total += sums[i];
+                    sums[i] = 0;
+                    lapped[i] = false;
+                }
+            }
+            return total;
+        }
+
+        // asserts rep invariant
+        private void checkRep() {
+            assert sums.length == PHASES.length && lapped.length == PHASES.length;
+        }
+    }
+
+    /**
+     * Makes a profile with nothing recorded yet
+     */
+    public TickProfile() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        checkRep();
+    }
+
+    /**
+     * Makes laps recording into this profile, for one thread to time its phases with
+     * @return new laps
+     */
+    public Laps newLaps() {
+        return new Laps(this);
+    }
+
+    /**
+     * Records one time a phase took
+     * @param phase the phase
+     * @param nanos the time, in nanoseconds
+     */
+    public void record(Phase phase, long nanos) {
+        histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Gets the times a phase took
+     * @param phase the phase
+     * @return the histogram of its times, in nanoseconds
+     */
+    public Histogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Phase phase : PHASES) {
+            counts.put(phase.name(), getHistogram(phase).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMicros() {
+        Map<String, Double> means = new TreeMap<>();
+        for (Phase phase : PHASES) {
+            means.put(phase.name(), getHistogram(phase).getMean() / NANOS_PER_MICRO);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Long> getP50Micros() {
+        return percentileMicros(50);
+    }
+
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return percentileMicros(99);
+    }
+
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        Map<String, Long> maxima = new TreeMap<>();
+        for (Phase phase : PHASES) {
+            maxima.put(phase.name(), getHistogram(phase).getMax() / NANOS_PER_MICRO);
+        }
+        return maxima;
+    }
+
+    /**
+     * Writes the median, 99th percentile and longest times of the main phases, for a status line
+     * @return e.g. "frame 50.0/52.1/80.3  repaint 0.40/1.20/3.00  ... (p50/p99/max ms)"
+     */
+    public String toStatusLine() {
+        StringBuilder line = new StringBuilder();
+        for (Phase phase : STATUS_PHASES) {
+            Histogram histogram = getHistogram(phase);
+            line.append(phase.name().toLowerCase(Locale.ROOT)).append(' ')
+                .append(String.format(Locale.ROOT, "%.2f/%.2f/%.2f  ",
+                        histogram.getPercentile(50) / NANOS_PER_MILLI,
+                        histogram.getPercentile(99) / NANOS_PER_MILLI,
+                        histogram.getMax() / NANOS_PER_MILLI));
+        }
+        return line.append("(p50/p99/max ms)").toString();
+    }
+
+    // phase name -> the percentile of its times, in microseconds
+    private Map<String, Long> percentileMicros(double percentile) {
+        Map<String, Long> percentiles = new TreeMap<>();
+        for (Phase phase : PHASES) {
+            percentiles.put(phase.name(), getHistogram(phase).getPercentile(percentile) / NANOS_PER_MICRO);
+        }
+        return percentiles;
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert histograms.length == PHASES.length;
+        for (Histogram histogram : histograms) {
+            assert histogram != null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package pingball;
+
+import java.util.Map;
+
+/**
+ * The view of a Pingball client's TickProfile registered with JMX. Every map is from the name
+ * of a TickProfile.Phase to a statistic of the times that phase took since the client started.
+ */
+public interface TickProfileMXBean {
+
+    /**
+     * @return phase -> number of times it was timed
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return phase -> mean time, in microseconds
+     */
+    Map<String, Double> getMeanMicros();
+
+    /**
+     * @return phase -> median time, in microseconds
+     */
+    Map<String, Long> getP50Micros();
+
+    /**
+     * @return phase -> 99th percentile time, in microseconds
+     */
+    Map<String, Long> getP99Micros();
+
+    /**
+     * @return phase -> longest time, in microseconds
+     */
+    Map<String, Long> getMaxMicros();
+}
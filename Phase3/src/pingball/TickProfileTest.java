@@ -0,0 +1,105 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import pingball.TickProfile.Phase;
+
+public class TickProfileTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Method: record(), getHistogram()
+     * - Partitions: phase recorded, phase not recorded
+     *
+     * Class: Laps (start(), lap(), skip(), finish())
+     * - Partitions:
+     *      - Laps: of a profile, OFF
+     *      - Phase lapped in a tick: never, once, several times
+     *      - Ticks finished: one, several
+     *
+     * Methods: getCounts(), getP50Micros(), getP99Micros(), getMaxMicros(), getMeanMicros()
+     * - Partitions: every phase present; phase with times, phase without
+     *
+     * Method: toStatusLine()
+     * - Partitions: nothing recorded, times recorded
+     */
+
+    //record(), getHistogram()
+    @Test
+    public void testRecord() {
+        TickProfile profile = new TickProfile();
+        profile.record(Phase.REPAINT, 2000000);
+        assertEquals(1, profile.getHistogram(Phase.REPAINT).getCount());
+        assertEquals(2000000, profile.getHistogram(Phase.REPAINT).getMax());
+        assertEquals(0, profile.getHistogram(Phase.FRAME).getCount());
+    }
+
+    //Laps
+    @Test
+    public void testLapsAddUpPhasesOverATick() throws InterruptedException {
+        TickProfile profile = new TickProfile();
+        TickProfile.Laps laps = profile.newLaps();
+        laps.start();
+        Thread.sleep(2);
+        laps.lap(Phase.WALLS);
+        laps.lap(Phase.CORNERS);
+        Thread.sleep(2);
+        laps.lap(Phase.WALLS);
+        long total = laps.finish();
+        assertEquals(1, profile.getHistogram(Phase.WALLS).getCount());
+        assertEquals(1, profile.getHistogram(Phase.CORNERS).getCount());
+        assertEquals(0, profile.getHistogram(Phase.MOVE).getCount());
+        assertTrue(profile.getHistogram(Phase.WALLS).getMax() >= 4000000);
+        assertEquals(total, profile.getHistogram(Phase.WALLS).getSum() + profile.getHistogram(Phase.CORNERS).getSum());
+    }
+
+    @Test
+    public void testLapsSkipAndSeveralTicks() throws InterruptedException {
+        TickProfile profile = new TickProfile();
+        TickProfile.Laps laps = profile.newLaps();
+        for (int tick = 0; tick < 3; tick++) {
+            laps.start();
+            Thread.sleep(2);
+            laps.skip();
+            laps.lap(Phase.MOVE);
+            laps.finish();
+        }
+        assertEquals(3, profile.getHistogram(Phase.MOVE).getCount());
+        assertTrue(profile.getHistogram(Phase.MOVE).getMax() < 2000000);
+    }
+
+    @Test
+    public void testLapsOffRecordNothing() {
+        TickProfile.Laps.OFF.start();
+        TickProfile.Laps.OFF.lap(Phase.WALLS);
+        assertEquals(0, TickProfile.Laps.OFF.finish());
+    }
+
+    //getCounts(), getP50Micros(), getP99Micros(), getMaxMicros(), getMeanMicros()
+    @Test
+    public void testMXBeanMaps() {
+        TickProfile profile = new TickProfile();
+        profile.record(Phase.TICK, 3000);
+        assertEquals(Phase.values().length, profile.getCounts().size());
+        assertEquals(Long.valueOf(1), profile.getCounts().get("TICK"));
+        assertEquals(Long.valueOf(0), profile.getCounts().get("SEND"));
+        assertEquals(Long.valueOf(3), profile.getP50Micros().get("TICK"));
+        assertEquals(Long.valueOf(3), profile.getP99Micros().get("TICK"));
+        assertEquals(Long.valueOf(3), profile.getMaxMicros().get("TICK"));
+        assertEquals(3.0, profile.getMeanMicros().get("TICK"), 1e-9);
+    }
+
+    //toStatusLine()
+    @Test
+    public void testStatusLine() {
+        TickProfile profile = new TickProfile();
+        assertTrue(profile.toStatusLine(), profile.toStatusLine().startsWith("frame 0.00/0.00/0.00  repaint"));
+        profile.record(Phase.FRAME, 50000000);
+        String line = profile.toStatusLine();
+        assertTrue(line, line.startsWith("frame 50.00/50.00/50.00  "));
+        assertTrue(line, line.endsWith("(p50/p99/max ms)"));
+    }
+}
@@ -7,4 +7,21 @@ package pingball;
  */
 public enum WallType {
     LEFT, RIGHT, TOP, BOTTOM;
+    
+    /**
+     * Gets the wall a ball comes in through on a board joined at this wall
+     * @return the wall facing this one
+     */
+    public WallType opposite() {
+        switch (this) {
+        case LEFT:
+            return RIGHT;
+        case RIGHT:
+            return LEFT;
+        case TOP:
+            return BOTTOM;
+        default:
+            return TOP;
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package pingball;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and helpers shared by WireWriter and WireReader, for the compact binary framing
+ * of the wire protocol.
+ *
+ * A connection starts out in the text protocol, one message per line. A client that can
+ * speak the binary framing offers it by adding VERSION to its board name request:
+ *
+ *      Set boardname: NAME binary1
+ *
+ * A server that can speak it accepts by sending the line MARKER, and everything it sends
+ * after that line is framed. The client answers with MARKER too, and everything it sends
+ * after that is framed. A server that doesn't know the offer ignores the extra token, so
+ * both ends stay on text.
+ *
+ * Each frame is a varint length, then that many bytes: a type byte and its payload.
+ *
+ *      INTERN              varint id, UTF-8 name
+ *      HELLO_WALL          wall byte, x, y, vx, vy
+ *      GOODBYE_WALL        varint board, wall byte, x, y, vx, vy
+ *      HELLO_PORTAL        varint portal, x, y, vx, vy
+ *      GOODBYE_PORTAL      varint board, varint portal, x, y, vx, vy
+ *      CONNECTED           varint count, count varint names
+ *      DISCONNECTED        varint board
+ *      JOIN_WALLS          varint side, varint other board, varint this board
+ *      DISCONNECT_WALLS    varint side, varint board
+ *      TEXT                UTF-8 line, for any other message
+ *
+ * The coordinates are 8-byte big-endian doubles, and the wall byte is the ordinal of a
+ * WallType. Names are sent once per connection and direction in an INTERN frame, numbered
+ * from 0 in the order they are first sent, and referred to by number after that.
+ */
+public final class WireProtocol {
+
+    // token a client adds to its board name request to offer the binary framing
+    public static final String VERSION = "binary1";
+    // line after which the sender's messages are framed
+    public static final String MARKER = "Protocol " + VERSION;
+
+    static final byte INTERN = 0;
+    static final byte HELLO_WALL = 1;
+    static final byte GOODBYE_WALL = 2;
+    static final byte HELLO_PORTAL = 3;
+    static final byte GOODBYE_PORTAL = 4;
+    static final byte CONNECTED = 5;
+    static final byte DISCONNECTED = 6;
+    static final byte JOIN_WALLS = 7;
+    static final byte DISCONNECT_WALLS = 8;
+    static final byte TEXT = 9;
+
+    // most names interned on one connection in one direction; later names are sent as text
+    static final int MAX_NAMES = 1 << 16;
+    // longest frame a reader accepts
+    static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private WireProtocol() {
+        // not instantiable
+    }
+
+    /**
+     * Tells whether clients offer the binary framing, set with the system property pingball.wire
+     * (binary or text); true unless the property is text
+     * @return true if clients should offer the binary framing
+     */
+    public static boolean isBinaryOffered() {
+        return !"text".equalsIgnoreCase(System.getProperty("pingball.wire", "binary"));
+    }
+
+    /**
+     * Writes a nonnegative int in as few bytes as it needs, 7 bits at a time, low bits first
+     * @param out where to write it
+     * @param value the int; must be nonnegative
+     * @throws IOException if writing fails
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an int written by writeVarint
+     * @param in the bytes to read it from
+     * @return the int
+     * @throws IOException if the bytes don't hold a valid varint
+     */
+    static int readVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IOException("truncated varint");
+            }
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("negative varint");
+                }
+                return value;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+}
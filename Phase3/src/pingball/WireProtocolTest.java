@@ -0,0 +1,270 @@
+package pingball;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import physics.Vect;
+import pingball.Messages.GoodbyePortalBall;
+import pingball.Messages.GoodbyeWallBall;
+import pingball.Messages.HelloWallBall;
+
+public class WireProtocolTest {
+
+    /*
+     * Testing Strategy:
+     *
+     * Methods: WireWriter.writeLine(), WireReader.readLine(), written by one and read by the other
+     * - Partitions:
+     *      - Mode: text, binary, switching at WireProtocol.MARKER
+     *      - Message: each type with a frame of its own, any other line
+     *      - Names: first use, used again
+     *      - Line: well formed, malformed (bad number, bad wall, wrong number of tokens, extra spaces)
+     *
+     * Method: WireWriter.writeMessage()
+     * - Partitions: GoodbyeWallBall, GoodbyePortalBall; text, binary
+     *
+     * Methods: WireWriter.bufferLine(), bufferMessage(), writeLines(), flush(), getBufferedBytes()
+     * - Partitions: nothing buffered, messages buffered, flushed; text, binary
+     *
+     * Method: WireReader.readLine()
+     * - Partitions: text line endings \n, \r\n, \r, none at the end;
+     *               truncated frame, unknown frame type, name that wasn't interned
+     *
+     * Methods: WireWriter.getBytesWritten(), WireReader.getLastLineBytes()
+     * - Partitions: text, binary; ASCII names, names of several bytes a character;
+     *               message after an INTERN frame, at the end of the stream
+     */
+
+    // writes the lines through a WireWriter, starting binary if binary is true
+    private static byte[] write(boolean binary, String... lines) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WireWriter writer = new WireWriter(bytes);
+        if (binary) {
+            writer.writeLine(WireProtocol.MARKER);
+        }
+        for (String line : lines) {
+            writer.writeLine(line);
+        }
+        return bytes.toByteArray();
+    }
+
+    // reads every message, skipping the marker if binary is true
+    private static String readAll(byte[] bytes, boolean binary) throws IOException {
+        WireReader reader = new WireReader(new ByteArrayInputStream(bytes));
+        if (binary) {
+            assertEquals(WireProtocol.MARKER, reader.readLine());
+            assertTrue(reader.isBinary());
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.append(line).append('\n');
+        }
+        return lines.toString();
+    }
+
+    private static void assertRoundTrip(String... lines) throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (String line : lines) {
+            expected.append(line).append('\n');
+        }
+        assertEquals(expected.toString(), readAll(write(false, lines), false));
+        assertEquals(expected.toString(), readAll(write(true, lines), true));
+    }
+
+    //writeLine(), readLine()
+    @Test
+    public void testTextModeIsPlainLines() throws IOException {
+        byte[] bytes = write(false, "Set boardname: Alpha binary1", "restart Alpha");
+        assertEquals("Set boardname: Alpha binary1\nrestart Alpha\n", new String(bytes, "UTF-8"));
+    }
+
+    @Test
+    public void testRoundTripBallMessages() throws IOException {
+        assertRoundTrip("HelloWallBall TOP 5.2 3.5 -4.5 2.3",
+                "GoodbyeWallBall Alpha LEFT 0.25 19.75 -10.0 1.0E-5",
+                "HelloPortalBall P 1.5 2.5 3.5 4.5",
+                "GoodbyePortalBall Beta Q 1.5 2.5 3.5 -4.5");
+    }
+
+    @Test
+    public void testRoundTripControlMessages() throws IOException {
+        assertRoundTrip("Connected: Alpha Beta null",
+                "Connected:",
+                "Disconnected: Alpha",
+                "JoinWalls right Beta Alpha",
+                "disconnectwalls: left Alpha",
+                WireProtocol.MARKER,
+                "restart Alpha",
+                "");
+    }
+
+    @Test
+    public void testRoundTripMalformedAsText() throws IOException {
+        assertRoundTrip("HelloWallBall TOP 5.2 3.5 x 2.3",
+                "HelloWallBall MIDDLE 5.2 3.5 4.5 2.3",
+                "HelloWallBall TOP 5.2 3.5 4.5",
+                "GoodbyePortalBall  Beta Q 1.5 2.5 3.5 4.5",
+                "Disconnected: Alpha Beta",
+                "Connected: Alpha ");
+    }
+
+    @Test
+    public void testIntegersComeBackAsDoubles() throws IOException {
+        String read = readAll(write(true, "HelloWallBall RIGHT 5 3 4 2"), true);
+        assertEquals("HelloWallBall RIGHT 5.0 3.0 4.0 2.0\n", read);
+        assertEquals(new HelloWallBall("HelloWallBall RIGHT 5 3 4 2"), new HelloWallBall(read.trim()));
+    }
+
+    @Test
+    public void testNamesAreSentOnce() throws IOException {
+        String line = "GoodbyePortalBall Beta Q 1.5 2.5 3.5 -4.5";
+        int once = write(true, line).length;
+        int twice = write(true, line, line).length;
+        int text = (line + "\n").length();
+        // the second message refers to the names by number
+        int second = twice - once;
+        assertTrue(second < once - WireProtocol.MARKER.length());
+        assertTrue(second < text);
+        assertEquals(1 + 1 + 2 + 4 * 8, second);
+    }
+
+    //writeMessage()
+    @Test
+    public void testWriteMessageMatchesWriteLine() throws IOException {
+        Ball ball = new Ball(new Vect(10.25, 0.25), new Vect(-3.5, 7.125));
+        GoodbyeWallBall wall = new GoodbyeWallBall("Alpha", WallType.BOTTOM, ball);
+        GoodbyePortalBall portal = new GoodbyePortalBall("Beta", "Q", ball);
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WireWriter writer = new WireWriter(bytes);
+            if (binary) {
+                writer.writeLine(WireProtocol.MARKER);
+            }
+            writer.writeMessage(wall);
+            writer.writeMessage(portal);
+            assertArrayEquals(write(binary, wall.messageString(), portal.messageString()), bytes.toByteArray());
+            assertEquals(wall.messageString() + "\n" + portal.messageString() + "\n",
+                    readAll(bytes.toByteArray(), binary));
+        }
+    }
+
+    //bufferLine(), bufferMessage(), writeLines(), flush(), getBufferedBytes()
+    @Test
+    public void testBufferedMessagesWaitForFlush() throws IOException {
+        Ball ball = new Ball(new Vect(10.25, 0.25), new Vect(-3.5, 7.125));
+        GoodbyeWallBall wall = new GoodbyeWallBall("Alpha", WallType.BOTTOM, ball);
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WireWriter writer = new WireWriter(bytes);
+            if (binary) {
+                writer.writeLine(WireProtocol.MARKER);
+            }
+            int flushed = bytes.size();
+            assertEquals(0, writer.getBufferedBytes());
+            writer.bufferMessage(wall);
+            writer.bufferLine("restart Alpha");
+            assertEquals(flushed, bytes.size());
+            int buffered = writer.getBufferedBytes();
+            assertTrue(buffered > 0);
+            writer.flush();
+            assertEquals(0, writer.getBufferedBytes());
+            assertEquals(flushed + buffered, bytes.size());
+            assertEquals(wall.messageString() + "\nrestart Alpha\n", readAll(bytes.toByteArray(), binary));
+        }
+    }
+
+    @Test
+    public void testWriteLinesMatchesWriteLine() throws IOException {
+        String[] lines = {"HelloWallBall TOP 5.2 3.5 -4.5 2.3", "Disconnected: Alpha", "restart Alpha"};
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WireWriter writer = new WireWriter(bytes);
+            if (binary) {
+                writer.writeLine(WireProtocol.MARKER);
+            }
+            writer.writeLines(Arrays.asList(lines));
+            assertEquals(0, writer.getBufferedBytes());
+            assertArrayEquals(write(binary, lines), bytes.toByteArray());
+        }
+    }
+
+    //getBytesWritten(), getLastLineBytes()
+    @Test
+    public void testBytesCountedAsEncoded() throws IOException {
+        String[] lines = {"Connected: \u00c5lpha Beta", "HelloPortalBall \u00c5lpha 1.0 2.0 3.0 4.0", "restart \u00c5lpha"};
+        for (boolean binary : new boolean[] {false, true}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WireWriter writer = new WireWriter(bytes);
+            if (binary) {
+                writer.writeLine(WireProtocol.MARKER);
+            }
+            writer.writeLines(Arrays.asList(lines));
+            writer.bufferLine("restart Beta");
+            assertEquals(bytes.size(), writer.getBytesWritten());
+            writer.flush();
+            assertEquals(bytes.size(), writer.getBytesWritten());
+
+            WireReader reader = new WireReader(new ByteArrayInputStream(bytes.toByteArray()));
+            long read = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                read += reader.getLastLineBytes();
+            }
+            assertEquals(0, reader.getLastLineBytes());
+            assertEquals(bytes.size(), read);
+        }
+    }
+
+    @Test
+    public void testTextLineBytes() throws IOException {
+        WireReader reader = new WireReader(new ByteArrayInputStream("\u00e9\r\none\rtwo".getBytes("UTF-8")));
+        assertEquals("\u00e9", reader.readLine());
+        assertEquals(3, reader.getLastLineBytes());
+        // the \n after the \r is read with the next line
+        assertEquals("one", reader.readLine());
+        assertEquals(5, reader.getLastLineBytes());
+        assertEquals("two", reader.readLine());
+        assertEquals(3, reader.getLastLineBytes());
+    }
+
+    //readLine()
+    @Test
+    public void testReadTextLineEndings() throws IOException {
+        byte[] bytes = "one\r\ntwo\rthree\n\nfour".getBytes("UTF-8");
+        assertEquals("one\ntwo\nthree\n\nfour\n", readAll(bytes, false));
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadTruncatedFrame() throws IOException {
+        byte[] bytes = write(true, "HelloWallBall TOP 5.2 3.5 -4.5 2.3");
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        readAll(truncated, true);
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadUnknownFrameType() throws IOException {
+        byte[] marker = write(false, WireProtocol.MARKER);
+        byte[] bytes = new byte[marker.length + 2];
+        System.arraycopy(marker, 0, bytes, 0, marker.length);
+        bytes[marker.length] = 1;
+        bytes[marker.length + 1] = 99;
+        readAll(bytes, true);
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadNameNotInterned() throws IOException {
+        byte[] marker = write(false, WireProtocol.MARKER);
+        byte[] bytes = new byte[marker.length + 3];
+        System.arraycopy(marker, 0, bytes, 0, marker.length);
+        bytes[marker.length] = 2;
+        bytes[marker.length + 1] = WireProtocol.DISCONNECTED;
+        bytes[marker.length + 2] = 0;
+        readAll(bytes, true);
+    }
+}
@@ -0,0 +1,269 @@
+package pingball;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads messages of the wire protocol from a stream, as text lines until it reads
+ * WireProtocol.MARKER and as binary frames after that. Every message is returned as its
+ * line in the text protocol, so callers handle both the same way.
+ * The class is mutable, and not thread-safe: only one thread should read from it.
+ */
+public class WireReader implements Closeable {
+    // Abstraction function:
+    //      represents the receiving end of a connection over in, which reads frames if binary
+    //      and lines otherwise; names.get(i) is the name numbered i by an INTERN frame. If
+    //      skipLineFeed, the last line ended in \r, so a \n right after it doesn't end another.
+    //      The first lineLength bytes of lineBytes are the line being read. The last call to
+    //      readLine() read lastLineBytes bytes from in.
+    // Rep invariant:
+    //      names is empty unless binary
+    //      0 <= lineLength <= lineBytes.length
+    //      lastLineBytes >= 0
+    //
+
+    private final InputStream in;
+    private final List<String> names = new ArrayList<String>();
+    private byte[] lineBytes = new byte[128];
+    private int lineLength = 0;
+    private int lastLineBytes = 0;
+    private boolean skipLineFeed = false;
+    private boolean binary = false;
+
+    /**
+     * Constructor for WireReader
+     * @param in the stream to read from
+     */
+    public WireReader(InputStream in) {
+        this.in = new BufferedInputStream(in);
+        checkRep();
+    }
+
+    /**
+     * Tells whether messages are read as binary frames
+     * @return true once WireProtocol.MARKER has been read
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Reads the next message. Lines end in \n, \r or \r\n, as for BufferedReader.readLine.
+     * @return the message as its line in the text protocol, without a line terminator,
+     *         or null at the end of the stream
+     * @throws IOException if reading fails, or a frame is malformed
+     */
+    public String readLine() throws IOException {
+        lastLineBytes = 0;
+        if (binary) {
+            return readFrame();
+        }
+        String line = readTextLine();
+        if (WireProtocol.MARKER.equals(line)) {
+            binary = true;
+        }
+        checkRep();
+        return line;
+    }
+
+    /**
+     * Gets the number of bytes the last message read took on the wire: its line terminator or
+     * frame length included, along with any INTERN frames read before it
+     * @return the number of bytes read by the last call to readLine()
+     */
+    public int getLastLineBytes() {
+        return lastLineBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readTextLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            int b = in.read();
+            if (b >= 0) {
+                lastLineBytes++;
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b < 0) {
+                return lineLength == 0 ? null : new String(lineBytes, 0, lineLength, StandardCharsets.UTF_8);
+            }
+            if (b == '\n' || b == '\r') {
+                skipLineFeed = b == '\r';
+                return new String(lineBytes, 0, lineLength, StandardCharsets.UTF_8);
+            }
+            if (lineLength == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, lineBytes.length * 2);
+            }
+            lineBytes[lineLength++] = (byte) b;
+        }
+    }
+
+    /**
+     * Reads frames until one that isn't an INTERN frame, and rebuilds its message
+     * @return the message, or null at the end of the stream
+     * @throws IOException if reading fails, or a frame is malformed
+     */
+    private String readFrame() throws IOException {
+        while (true) {
+            int length = readFrameLength();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int count = in.read(bytes, read, length - read);
+                if (count < 0) {
+                    throw new EOFException("truncated frame");
+                }
+                read += count;
+            }
+            lastLineBytes += length;
+            ByteBuffer frame = ByteBuffer.wrap(bytes);
+            if (!frame.hasRemaining()) {
+                throw new IOException("empty frame");
+            }
+            byte type = frame.get();
+            if (type == WireProtocol.INTERN) {
+                int id = WireProtocol.readVarint(frame);
+                if (id != names.size()) {
+                    throw new IOException("name " + id + " interned out of order");
+                }
+                names.add(remainingText(frame));
+                continue;
+            }
+            return decode(type, frame);
+        }
+    }
+
+    /**
+     * Reads the varint length at the start of a frame
+     * @return the length, or -1 at the end of the stream
+     * @throws IOException if reading fails, or the length is malformed or too long
+     */
+    private int readFrameLength() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("truncated frame length");
+            }
+            lastLineBytes++;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0 || value > WireProtocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("frame too long: " + value);
+                }
+                return value;
+            }
+        }
+        throw new IOException("frame length too long");
+    }
+
+    private String decode(byte type, ByteBuffer frame) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        switch (type) {
+        case WireProtocol.HELLO_WALL:
+            line.append("HelloWallBall ").append(readWall(frame));
+            appendDoubles(line, frame);
+            break;
+        case WireProtocol.GOODBYE_WALL:
+            line.append("GoodbyeWallBall ").append(readName(frame)).append(' ').append(readWall(frame));
+            appendDoubles(line, frame);
+            break;
+        case WireProtocol.HELLO_PORTAL:
+            line.append("HelloPortalBall ").append(readName(frame));
+            appendDoubles(line, frame);
+            break;
+        case WireProtocol.GOODBYE_PORTAL:
+            line.append("GoodbyePortalBall ").append(readName(frame)).append(' ').append(readName(frame));
+            appendDoubles(line, frame);
+            break;
+        case WireProtocol.CONNECTED:
+            line.append("Connected:");
+            int count = WireProtocol.readVarint(frame);
+            for (int i = 0; i < count; i++) {
+                line.append(' ').append(readName(frame));
+            }
+            break;
+        case WireProtocol.DISCONNECTED:
+            line.append("Disconnected: ").append(readName(frame));
+            break;
+        case WireProtocol.JOIN_WALLS:
+            line.append("JoinWalls ").append(readName(frame)).append(' ').append(readName(frame))
+                .append(' ').append(readName(frame));
+            break;
+        case WireProtocol.DISCONNECT_WALLS:
+            line.append("disconnectwalls: ").append(readName(frame)).append(' ').append(readName(frame));
+            break;
+        case WireProtocol.TEXT:
+            return remainingText(frame);
+        default:
+            throw new IOException("unknown frame type " + type);
+        }
+        if (frame.hasRemaining()) {
+            throw new IOException("frame of type " + type + " is too long");
+        }
+        return line.toString();
+    }
+
+    private String readName(ByteBuffer frame) throws IOException {
+        int id = WireProtocol.readVarint(frame);
+        if (id >= names.size()) {
+            throw new IOException("name " + id + " wasn't interned");
+        }
+        return names.get(id);
+    }
+
+    private static WallType readWall(ByteBuffer frame) throws IOException {
+        if (!frame.hasRemaining()) {
+            throw new IOException("truncated frame");
+        }
+        int ordinal = frame.get();
+        WallType[] walls = WallType.values();
+        if (ordinal < 0 || ordinal >= walls.length) {
+            throw new IOException("unknown wall " + ordinal);
+        }
+        return walls[ordinal];
+    }
+
+    private static void appendDoubles(StringBuilder line, ByteBuffer frame) throws IOException {
+        if (frame.remaining() < 4 * Double.BYTES) {
+            throw new IOException("truncated frame");
+        }
+        for (int i = 0; i < 4; i++) {
+            line.append(' ').append(frame.getDouble());
+        }
+    }
+
+    private static String remainingText(ByteBuffer frame) {
+        return new String(frame.array(), frame.position(), frame.remaining(), StandardCharsets.UTF_8);
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert binary || names.isEmpty();
+        assert 0 <= lineLength && lineLength <= lineBytes.length;
+        assert lastLineBytes >= 0;
+    }
+}
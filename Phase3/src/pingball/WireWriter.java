@@ -0,0 +1,356 @@
+package pingball;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pingball.Messages.GoodbyePortalBall;
+import pingball.Messages.GoodbyeWallBall;
+import pingball.Messages.MessageTokenizer;
+import pingball.Messages.Messages;
+
+/**
+ * Writes messages of the wire protocol to a stream, as text lines until it writes
+ * WireProtocol.MARKER and as binary frames after that. The write methods flush each message
+ * as it is written; the buffer methods leave messages to be flushed together, so that a
+ * burst of messages goes out in one write.
+ * The class is mutable, and not thread-safe: its callers confine it to one thread or
+ * lock around it.
+ */
+public class WireWriter implements Closeable {
+    // Abstraction function:
+    //      represents the sending end of a connection over out, which sends frames if binary
+    //      and lines otherwise; names maps each name already sent in an INTERN frame to its
+    //      number. body holds the frame being built. out.size() bytes written to out haven't
+    //      been flushed; bytesWritten bytes have been.
+    // Rep invariant:
+    //      the numbers in names are 0 .. names.size()-1
+    //      names is empty unless binary
+    //      bytesWritten >= 0
+    //
+
+    /**
+     * A DataOutputStream whose count of written bytes can be reset at each flush
+     */
+    private static class FlushCountingStream extends DataOutputStream {
+        FlushCountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+            written = 0;
+        }
+    }
+
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream bodyData = new DataOutputStream(body);
+    private final Map<String, Integer> names = new HashMap<String, Integer>();
+    private boolean binary = false;
+    private long bytesWritten = 0;
+
+    /**
+     * Constructor for WireWriter
+     * @param out the stream to write to
+     */
+    public WireWriter(OutputStream out) {
+        this.out = new FlushCountingStream(new BufferedOutputStream(out));
+        checkRep();
+    }
+
+    /**
+     * Tells whether messages are written as binary frames
+     * @return true once WireProtocol.MARKER has been written
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Writes a message, given as its line in the text protocol, and flushes it
+     * @param line the message, without a line terminator
+     * @throws IOException if writing fails
+     */
+    public void writeLine(String line) throws IOException {
+        bufferLine(line);
+        flush();
+    }
+
+    /**
+     * Writes messages, given as their lines in the text protocol, and flushes them together
+     * @param lines the messages, without line terminators
+     * @throws IOException if writing fails
+     */
+    public void writeLines(List<String> lines) throws IOException {
+        for (String line : lines) {
+            bufferLine(line);
+        }
+        flush();
+    }
+
+    /**
+     * Writes a message about a ball and flushes it
+     * @param message the message
+     * @throws IOException if writing fails
+     */
+    public void writeMessage(Messages message) throws IOException {
+        bufferMessage(message);
+        flush();
+    }
+
+    /**
+     * Writes a message, given as its line in the text protocol, without flushing it
+     * @param line the message, without a line terminator
+     * @throws IOException if writing fails
+     */
+    public void bufferLine(String line) throws IOException {
+        if (!binary) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            if (line.equals(WireProtocol.MARKER)) {
+                binary = true;
+            }
+            return;
+        }
+        if (!encode(line)) {
+            beginFrame(WireProtocol.TEXT);
+            bodyData.write(line.getBytes(StandardCharsets.UTF_8));
+        }
+        endFrame();
+        checkRep();
+    }
+
+    /**
+     * Writes a message about a ball without flushing it, framed straight from the message
+     * when binary, so the message doesn't have to be turned into a line first
+     * @param message the message
+     * @throws IOException if writing fails
+     */
+    public void bufferMessage(Messages message) throws IOException {
+        if (binary && message instanceof GoodbyeWallBall) {
+            GoodbyeWallBall goodbye = (GoodbyeWallBall) message;
+            int board = intern(goodbye.getBoardName());
+            if (board >= 0) {
+                beginFrame(WireProtocol.GOODBYE_WALL);
+                WireProtocol.writeVarint(bodyData, board);
+                bodyData.writeByte(goodbye.getWalltype().ordinal());
+                writeBall(goodbye);
+                endFrame();
+                return;
+            }
+        } else if (binary && message instanceof GoodbyePortalBall) {
+            GoodbyePortalBall goodbye = (GoodbyePortalBall) message;
+            int board = intern(goodbye.getDestinationBoard());
+            int portal = intern(goodbye.getDestinationPortal());
+            if (board >= 0 && portal >= 0) {
+                beginFrame(WireProtocol.GOODBYE_PORTAL);
+                WireProtocol.writeVarint(bodyData, board);
+                WireProtocol.writeVarint(bodyData, portal);
+                writeBall(goodbye);
+                endFrame();
+                return;
+            }
+        }
+        bufferLine(message.messageString());
+    }
+
+    /**
+     * Sends everything written since the last flush, in as few writes as the stream allows
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        int buffered = out.size();
+        out.flush();
+        bytesWritten += buffered;
+    }
+
+    /**
+     * Gets the number of bytes written since the last flush
+     * @return the number of bytes waiting to be flushed
+     */
+    public int getBufferedBytes() {
+        return out.size();
+    }
+
+    /**
+     * Gets the number of bytes flushed so far, as encoded on the wire
+     * @return the number of bytes flushed to the stream
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Puts the frame of a message into body, if it is one of the messages with a frame of its own
+     * @param line the message
+     * @return true if body holds the frame, false if the message should be sent as text
+     * @throws IOException if an INTERN frame can't be written
+     */
+    private boolean encode(String line) throws IOException {
+        // tokens are separated by single spaces, and an empty token is a name like any other,
+        // so every line is rebuilt exactly from its frame
+        MessageTokenizer tokens = new MessageTokenizer(line);
+        try {
+            if (tokens.nextIs("HelloWallBall")) {
+                if (tokens.countRemaining() != 5) {
+                    return false;
+                }
+                WallType helloWall = tokens.nextWall();
+                beginFrame(WireProtocol.HELLO_WALL);
+                bodyData.writeByte(helloWall.ordinal());
+                writeDoubles(tokens);
+                return true;
+            } else if (tokens.nextIs("GoodbyeWallBall")) {
+                if (tokens.countRemaining() != 6) {
+                    return false;
+                }
+                String boardName = tokens.next();
+                WallType goodbyeWall = tokens.nextWall();
+                int board = intern(boardName);
+                if (board < 0) {
+                    return false;
+                }
+                beginFrame(WireProtocol.GOODBYE_WALL);
+                WireProtocol.writeVarint(bodyData, board);
+                bodyData.writeByte(goodbyeWall.ordinal());
+                writeDoubles(tokens);
+                return true;
+            } else if (tokens.nextIs("HelloPortalBall")) {
+                if (tokens.countRemaining() != 5) {
+                    return false;
+                }
+                int portal = intern(tokens.next());
+                if (portal < 0) {
+                    return false;
+                }
+                beginFrame(WireProtocol.HELLO_PORTAL);
+                WireProtocol.writeVarint(bodyData, portal);
+                writeDoubles(tokens);
+                return true;
+            } else if (tokens.nextIs("GoodbyePortalBall")) {
+                if (tokens.countRemaining() != 6) {
+                    return false;
+                }
+                int board = intern(tokens.next());
+                int portal = intern(tokens.next());
+                if (board < 0 || portal < 0) {
+                    return false;
+                }
+                beginFrame(WireProtocol.GOODBYE_PORTAL);
+                WireProtocol.writeVarint(bodyData, board);
+                WireProtocol.writeVarint(bodyData, portal);
+                writeDoubles(tokens);
+                return true;
+            } else if (tokens.nextIs("Connected:")) {
+                return encodeNames(WireProtocol.CONNECTED, tokens, true);
+            } else if (tokens.nextIs("Disconnected:")) {
+                return tokens.countRemaining() == 1 && encodeNames(WireProtocol.DISCONNECTED, tokens, false);
+            } else if (tokens.nextIs("JoinWalls")) {
+                return tokens.countRemaining() == 3 && encodeNames(WireProtocol.JOIN_WALLS, tokens, false);
+            } else if (tokens.nextIs("disconnectwalls:")) {
+                return tokens.countRemaining() == 2 && encodeNames(WireProtocol.DISCONNECT_WALLS, tokens, false);
+            }
+            return false;
+        } catch (IllegalArgumentException e) {
+            // not a wall, or not a number
+            return false;
+        }
+    }
+
+    /**
+     * Puts a frame of the names left in a message into body
+     * @param type the type of the frame
+     * @param tokens the message's tokens, at the first name
+     * @param counted whether the frame starts with the number of names
+     * @return true if body holds the frame, false if a name couldn't be interned
+     * @throws IOException if an INTERN frame can't be written
+     */
+    private boolean encodeNames(byte type, MessageTokenizer tokens, boolean counted) throws IOException {
+        int[] ids = new int[tokens.countRemaining()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = intern(tokens.next());
+            if (ids[i] < 0) {
+                return false;
+            }
+        }
+        beginFrame(type);
+        if (counted) {
+            WireProtocol.writeVarint(bodyData, ids.length);
+        }
+        for (int id : ids) {
+            WireProtocol.writeVarint(bodyData, id);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of a name, sending it in an INTERN frame if it hasn't been sent yet
+     * @param name the name
+     * @return its number, or -1 if too many names have been sent already
+     * @throws IOException if the INTERN frame can't be written
+     */
+    private int intern(String name) throws IOException {
+        Integer id = names.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (names.size() >= WireProtocol.MAX_NAMES) {
+            return -1;
+        }
+        int newId = names.size();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(bytes.length + 4);
+        frame.write(WireProtocol.INTERN);
+        WireProtocol.writeVarint(frame, newId);
+        frame.write(bytes);
+        WireProtocol.writeVarint(out, frame.size());
+        frame.writeTo(out);
+        names.put(name, newId);
+        return newId;
+    }
+
+    private void beginFrame(byte type) throws IOException {
+        body.reset();
+        bodyData.writeByte(type);
+    }
+
+    private void endFrame() throws IOException {
+        WireProtocol.writeVarint(out, body.size());
+        body.writeTo(out);
+    }
+
+    private void writeDoubles(MessageTokenizer tokens) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            bodyData.writeDouble(tokens.nextDouble());
+        }
+    }
+
+    private void writeBall(Messages message) throws IOException {
+        Ball ball = message.getBall();
+        bodyData.writeDouble(ball.getPosition().x());
+        bodyData.writeDouble(ball.getPosition().y());
+        bodyData.writeDouble(ball.getVelocity().x());
+        bodyData.writeDouble(ball.getVelocity().y());
+    }
+
+    // asserts rep invariant
+    private void checkRep() {
+        assert binary || names.isEmpty();
+        assert names.size() <= WireProtocol.MAX_NAMES;
+        assert bytesWritten >= 0;
+    }
+}